@@ -0,0 +1,115 @@
+package org.tron.common.overlay.message;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.ArrayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tron.common.utils.ByteArray;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.net.message.BlockMessage;
+import org.tron.core.net.message.TronMessageFactory;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+/**
+ * Encoding and decoding a 1 MB block message, with pooled direct buffers and single copies as the
+ * channel does now, and with the array copies and unpooled buffers it used to make. Run with
+ * -PjmhProfilers=gc to compare the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+  private static final int BLOCK_SIZE = 1024 * 1024;
+
+  private final TronMessageFactory factory = new TronMessageFactory();
+  private BlockMessage message;
+  // the frame without its length prefix, as the frame decoder hands it on
+  private ByteBuf pooledFrame;
+  private ByteBuf heapFrame;
+
+  @Setup
+  public void setup() {
+    Block.Builder block = Block.newBuilder();
+    for (long i = 0; block.build().getSerializedSize() < BLOCK_SIZE; i++) {
+      TransferContract contract = TransferContract.newBuilder()
+          .setOwnerAddress(ByteString.copyFrom(ByteArray.fromLong(i)))
+          .setToAddress(ByteString.copyFrom(ByteArray.fromLong(i + 1)))
+          .setAmount(i + 1)
+          .build();
+      block.addTransactions(new TransactionCapsule(contract, ContractType.TransferContract)
+          .getInstance());
+    }
+    message = new BlockMessage(block.build());
+    byte[] data = message.getData();
+    pooledFrame = PooledByteBufAllocator.DEFAULT.directBuffer(data.length + 1);
+    pooledFrame.writeByte(message.type).writeBytes(data);
+    heapFrame = Unpooled.buffer(data.length + 1);
+    heapFrame.writeByte(message.type).writeBytes(data);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pooledFrame.release();
+    heapFrame.release();
+  }
+
+  @Benchmark
+  public int encodePooled() {
+    ByteBuf out = PooledByteBufAllocator.DEFAULT
+        .directBuffer(MessageEncoder.frameLength(message.getData().length));
+    try {
+      MessageEncoder.write(message, out);
+      return out.readableBytes();
+    } finally {
+      out.release();
+    }
+  }
+
+  @Benchmark
+  public int encodeCopying() {
+    // getSendData followed by the length prepender
+    ByteBuf body = Unpooled.wrappedBuffer(ArrayUtils.add(message.getData(), 0, message.type));
+    ByteBuf out = Unpooled.buffer(body.readableBytes() + 5);
+    try {
+      MessageEncoder.writeLength(out, body.readableBytes());
+      out.writeBytes(body);
+      return out.readableBytes();
+    } finally {
+      body.release();
+      out.release();
+    }
+  }
+
+  @Benchmark
+  public byte[] decodePooled() {
+    return MessageCodec.createMessage(pooledFrame.duplicate()).getData();
+  }
+
+  @Benchmark
+  public byte[] decodeCopying() {
+    ByteBuf frame = heapFrame.duplicate();
+    byte[] encoded = new byte[frame.readableBytes()];
+    frame.readBytes(encoded);
+    byte[] payload = ArrayUtils.subarray(encoded, 1, encoded.length);
+    return factory.create(encoded[0], payload).getData();
+  }
+}
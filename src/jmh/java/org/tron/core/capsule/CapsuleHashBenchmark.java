@@ -0,0 +1,91 @@
+package org.tron.core.capsule;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+/**
+ * Measures the repeated id/hash lookups done while a block travels through the node.
+ * Run with -PjmhProfilers=gc to compare the allocation rate of the cached and uncached paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CapsuleHashBenchmark {
+
+  // how many times a single capsule is asked for its id during validation, storage and relay
+  private static final int LOOKUPS = 8;
+
+  @Param({"100", "1000"})
+  public int trxCount;
+
+  private List<Transaction> transactions;
+  private BlockCapsule block;
+
+  @Setup
+  public void setup() {
+    transactions = new ArrayList<>(trxCount);
+    for (int i = 0; i < trxCount; i++) {
+      TransferContract contract = TransferContract.newBuilder()
+          .setOwnerAddress(ByteString.copyFrom(ByteArray.fromLong(i)))
+          .setToAddress(ByteString.copyFrom(ByteArray.fromLong(i + 1)))
+          .setAmount(i + 1)
+          .build();
+      transactions.add(new TransactionCapsule(contract, ContractType.TransferContract)
+          .getInstance());
+    }
+    block = new BlockCapsule(System.currentTimeMillis(), Sha256Hash.ZERO_HASH.getByteString(), 1,
+        transactions);
+    block.setMerkleRoot();
+  }
+
+  @Benchmark
+  public void transactionIdCached(Blackhole blackhole) {
+    for (Transaction trx : transactions) {
+      TransactionCapsule capsule = new TransactionCapsule(trx);
+      for (int i = 0; i < LOOKUPS; i++) {
+        blackhole.consume(capsule.getTransactionId());
+      }
+    }
+  }
+
+  @Benchmark
+  public void transactionIdUncached(Blackhole blackhole) {
+    for (Transaction trx : transactions) {
+      for (int i = 0; i < LOOKUPS; i++) {
+        blackhole.consume(Sha256Hash.of(trx.toByteArray()));
+      }
+    }
+  }
+
+  @Benchmark
+  public void blockIdAndMerkleRoot(Blackhole blackhole) {
+    BlockCapsule capsule = new BlockCapsule(block.getInstance());
+    for (int i = 0; i < LOOKUPS; i++) {
+      blackhole.consume(capsule.getBlockId());
+      blackhole.consume(capsule.calcMerkleRoot());
+      blackhole.consume(capsule.getData());
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.tron.core.db;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tron.common.crypto.ECKey;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.config.args.AdmissionTier;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+/**
+ * Transactions admitted per second by several submitting threads, through the pipeline and
+ * through one lock held for both the signature check and the apply step as pushTransactions used
+ * to. Applying is simulated by a fixed amount of work per transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionPipelineBenchmark {
+
+  private static final int SIGNED = 1024;
+  // roughly what executing a transfer against the pending state costs
+  private static final long APPLY_TOKENS = 2_000;
+
+  private final List<Transaction> transactions = new ArrayList<>(SIGNED);
+  private final AtomicInteger next = new AtomicInteger();
+  private final Object lock = new Object();
+  private TransactionPipeline pipeline;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < SIGNED; i++) {
+      ECKey key = new ECKey();
+      TransferContract contract = TransferContract.newBuilder()
+          .setOwnerAddress(ByteString.copyFrom(key.getAddress()))
+          .setToAddress(ByteString.copyFrom(new ECKey().getAddress()))
+          .setAmount(i + 1)
+          .build();
+      Transaction unsigned = new TransactionCapsule(contract, ContractType.TransferContract)
+          .getInstance();
+      byte[] signature = key.sign(new TransactionCapsule(unsigned).getRawHash().getBytes())
+          .toByteArray();
+      transactions.add(
+          unsigned.toBuilder().addSignature(ByteString.copyFrom(signature)).build());
+    }
+    pipeline = new TransactionPipeline(batch -> {
+      synchronized (lock) {
+        for (TransactionPipeline.Pending pending : batch) {
+          Blackhole.consumeCPU(APPLY_TOKENS);
+          pending.complete(true);
+        }
+      }
+    }, unlimited(), Long.MAX_VALUE, Runtime.getRuntime().availableProcessors());
+  }
+
+  @TearDown
+  public void tearDown() {
+    pipeline.shutdown();
+  }
+
+  private static TransactionAdmission unlimited() {
+    return new TransactionAdmission(
+        Collections.singletonList(new AdmissionTier(0, Double.MAX_VALUE, Long.MAX_VALUE)),
+        address -> 0);
+  }
+
+  // a fresh capsule each time, so the signature is really recovered
+  private TransactionCapsule nextTransaction() {
+    return new TransactionCapsule(
+        transactions.get((next.getAndIncrement() & Integer.MAX_VALUE) % SIGNED));
+  }
+
+  private boolean pipelined() {
+    return pipeline.submit(nextTransaction()).join();
+  }
+
+  private boolean serialized() throws Exception {
+    TransactionCapsule trx = nextTransaction();
+    synchronized (lock) {
+      pipeline.checkStateless(trx);
+      Blackhole.consumeCPU(APPLY_TOKENS);
+      return true;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean pipelined1() {
+    return pipelined();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean pipelined4() {
+    return pipelined();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public boolean pipelined16() {
+    return pipelined();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean serialized1() throws Exception {
+    return serialized();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean serialized4() throws Exception {
+    return serialized();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public boolean serialized16() throws Exception {
+    return serialized();
+  }
+}
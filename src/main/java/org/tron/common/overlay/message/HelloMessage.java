@@ -2,12 +2,14 @@ package org.tron.common.overlay.message;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
 import org.tron.common.overlay.discover.Node;
 import org.tron.common.utils.ByteArray;
 import org.tron.core.config.args.Args;
 import org.tron.core.net.message.MessageTypes;
 import org.tron.protos.Discover.Endpoint;
 import org.tron.protos.Protocol;
+import org.tron.protos.Protocol.Compression;
 import org.tron.protos.Protocol.HelloMessage.Builder;
 
 public class HelloMessage extends P2pMessage {
@@ -45,6 +47,10 @@ public class HelloMessage extends P2pMessage {
 
     builder.setFrom(fromEndpoint);
     builder.setVersion(Args.getInstance().getNodeP2pVersion());
+    builder.addAllCompressions(
+        MessageCompression.supported(Args.getInstance().isNodeP2pCompression()));
+    builder.setCompactBlocks(Args.getInstance().isNodeP2pCompactBlocks());
+    builder.setHeadersFirst(Args.getInstance().isNodeP2pHeadersFirst());
 
     this.helloMessage = builder.build();
     this.type = MessageTypes.P2P_HELLO.asByte();
@@ -71,6 +77,27 @@ public class HelloMessage extends P2pMessage {
     return this.helloMessage.getVersion();
   }
 
+  /**
+   * Get the compressions the peer can read and write.
+   */
+  public List<Compression> getCompressions() {
+    return this.helloMessage.getCompressionsList();
+  }
+
+  /**
+   * Whether the peer reads and relays compact blocks.
+   */
+  public boolean isCompactBlocks() {
+    return this.helloMessage.getCompactBlocks();
+  }
+
+  /**
+   * Whether the peer serves block headers and syncs headers first.
+   */
+  public boolean isHeadersFirst() {
+    return this.helloMessage.getHeadersFirst();
+  }
+
   /**
    * Get listen port.
    */
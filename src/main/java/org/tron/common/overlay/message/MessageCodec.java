@@ -22,7 +22,6 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import java.io.IOException;
 import java.util.List;
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -36,7 +35,8 @@ import org.tron.core.net.message.TronMessageFactory;
 
 
 /**
- * The Netty codec which encodes/decodes RPLx frames to subprotocol Messages
+ * The Netty codec which decodes frames to subprotocol Messages. Frames arrive as slices of the
+ * received buffer from {@link MessageFrameDecoder}, messages are written by {@link MessageEncoder}.
  */
 @Component
 @Scope("prototype")
@@ -45,8 +45,9 @@ public class MessageCodec extends ByteToMessageDecoder {
   private static final Logger loggerNet = LoggerFactory.getLogger("net");
 
   private Channel channel;
-  private P2pMessageFactory p2pMessageFactory = new P2pMessageFactory();
-  private TronMessageFactory tronMessageFactory = new TronMessageFactory();
+  private static final P2pMessageFactory p2pMessageFactory = new P2pMessageFactory();
+  private static final TronMessageFactory tronMessageFactory = new TronMessageFactory();
+  private volatile MessageCompression compression;
 
   @Autowired
   private MessageCodec(ApplicationContext ctx) {
@@ -55,15 +56,11 @@ public class MessageCodec extends ByteToMessageDecoder {
 
   private Message decodeMessage(ChannelHandlerContext ctx, ByteBuf buffer) throws IOException {
 
-    byte[] encoded = new byte[buffer.readableBytes()];
-    buffer.readBytes(encoded);
-    byte code = encoded[0];
-    byte[] payload = ArrayUtils.subarray(encoded, 1, encoded.length);
-
     Message msg;
     try {
-      msg = createMessage(code, payload);
+      msg = createMessage(buffer, compression);
     } catch (Exception ex) {
+      buffer.skipBytes(buffer.readableBytes());
       loggerNet.info("Incorrectly encoded message from: \t{}, dropping peer", channel);
       loggerNet.info(ex.getMessage());
       channel.disconnect(ReasonCode.BAD_PROTOCOL);
@@ -81,7 +78,25 @@ public class MessageCodec extends ByteToMessageDecoder {
     return msg;
   }
 
-  private Message createMessage(byte code, byte[] payload) {
+  /**
+   * the payload is the only copy made, messages keep their bytes for relaying and hashing.
+   */
+  static Message createMessage(ByteBuf frame) {
+    return createMessage(frame, null);
+  }
+
+  static Message createMessage(ByteBuf frame, MessageCompression compression) {
+    byte code = frame.readByte();
+    if ((code & MessageCompression.FLAG) != 0 && compression != null) {
+      return createMessage((byte) (code & ~MessageCompression.FLAG),
+          compression.decompress(frame));
+    }
+    byte[] payload = new byte[frame.readableBytes()];
+    frame.readBytes(payload);
+    return createMessage(code, payload);
+  }
+
+  private static Message createMessage(byte code, byte[] payload) {
     if (MessageTypes.inP2pRange(code)) {
       return p2pMessageFactory.create(code, payload);
     }
@@ -100,7 +115,9 @@ public class MessageCodec extends ByteToMessageDecoder {
       throws Exception {
 
     Message message = decodeMessage(ctx, in);
-    out.add(message);
+    if (message != null) {
+      out.add(message);
+    }
 
   }
 
@@ -109,4 +126,8 @@ public class MessageCodec extends ByteToMessageDecoder {
     this.channel = channel;
   }
 
+  public void setCompression(MessageCompression compression) {
+    this.compression = compression;
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package org.tron.common.overlay.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.compression.Snappy;
+import java.util.Collections;
+import java.util.List;
+import org.tron.common.overlay.server.WireTrafficStats.CompressionSavings;
+import org.tron.core.net.message.MessageTypes;
+import org.tron.protos.Protocol.Compression;
+
+/**
+ * Snappy compression of the payloads of block, transaction and sync messages, once both sides
+ * announced it in their hello. A compressed frame has {@link #FLAG} set on its type byte, so
+ * small messages and the ones that do not shrink still go out as they are.
+ */
+public class MessageCompression {
+
+  public static final int FLAG = 0x80;
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  private final int threshold;
+  private final int maxSize;
+  private final CompressionSavings savings;
+
+  /**
+   * @param threshold smallest payload compressed, the default if not positive.
+   * @param maxSize largest payload accepted once decompressed.
+   */
+  public MessageCompression(int threshold, int maxSize, CompressionSavings savings) {
+    this.threshold = threshold > 0 ? threshold : DEFAULT_THRESHOLD;
+    this.maxSize = maxSize;
+    this.savings = savings;
+  }
+
+  /**
+   * compressions to announce in our hello.
+   */
+  public static List<Compression> supported(boolean enabled) {
+    return enabled ? Collections.singletonList(Compression.SNAPPY) : Collections.emptyList();
+  }
+
+  /**
+   * the compression both sides announced, the same on both as each checks the other's list.
+   */
+  public static Compression negotiate(List<Compression> ours, List<Compression> theirs) {
+    for (Compression compression : ours) {
+      if (compression != Compression.NONE && theirs.contains(compression)) {
+        return compression;
+      }
+    }
+    return Compression.NONE;
+  }
+
+  /**
+   * hashes and addresses do not compress, lists of them are left alone.
+   */
+  static boolean compressible(MessageTypes type) {
+    if (type == null) {
+      return false;
+    }
+    switch (type) {
+      case BLOCK:
+      case BLOCKS:
+      case BLOCKHEADERS:
+      case TRX:
+      case TRXS:
+      case BLOCK_TRXS:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * write the compressed data to out if it is worth it.
+   *
+   * @return false if nothing was written and the data should be sent as it is.
+   */
+  boolean compress(MessageTypes type, byte[] data, ByteBuf out) {
+    if (data.length < threshold || !compressible(type)) {
+      return false;
+    }
+    int start = out.writerIndex();
+    new Snappy().encode(Unpooled.wrappedBuffer(data), out, data.length);
+    int compressed = out.writerIndex() - start;
+    if (compressed >= data.length) {
+      out.writerIndex(start);
+      return false;
+    }
+    savings.sent(data.length, compressed);
+    return true;
+  }
+
+  byte[] decompress(ByteBuf in) {
+    int compressed = in.readableBytes();
+    int length = MessageFrameDecoder.readLength(in.duplicate());
+    if (length < 0 || length > maxSize) {
+      throw new CorruptedFrameException("compressed payload of " + length + " bytes");
+    }
+    byte[] data = new byte[length];
+    ByteBuf out = Unpooled.wrappedBuffer(data).clear();
+    new Snappy().decode(in, out);
+    if (out.writerIndex() != length) {
+      throw new CorruptedFrameException(
+          "compressed payload of " + out.writerIndex() + " bytes, announced " + length);
+    }
+    savings.received(length, compressed);
+    return data;
+  }
+}
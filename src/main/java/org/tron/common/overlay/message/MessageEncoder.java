@@ -0,0 +1,73 @@
+package org.tron.common.overlay.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Writes a message as its varint32 length, type and data straight into one buffer of the
+ * channel's allocator, pooled and direct by default, sized exactly for the frame. Once the
+ * handshake agreed on a compression, large enough payloads are written compressed.
+ */
+public class MessageEncoder extends MessageToByteEncoder<Message> {
+
+  private volatile MessageCompression compression;
+
+  public void setCompression(MessageCompression compression) {
+    this.compression = compression;
+  }
+
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Message msg, boolean preferDirect) {
+    return ctx.alloc().ioBuffer(frameLength(msg.getData().length));
+  }
+
+  @Override
+  protected void encode(ChannelHandlerContext ctx, Message msg, ByteBuf out) {
+    MessageCompression compression = this.compression;
+    if (compression != null) {
+      byte[] data = msg.getData();
+      ByteBuf compressed = ctx.alloc().ioBuffer(data.length);
+      try {
+        if (compression.compress(msg.getType(), data, compressed)) {
+          writeLength(out, compressed.readableBytes() + 1);
+          out.writeByte(msg.type | MessageCompression.FLAG);
+          out.writeBytes(compressed);
+          return;
+        }
+      } finally {
+        compressed.release();
+      }
+    }
+    write(msg, out);
+  }
+
+  static void write(Message msg, ByteBuf out) {
+    byte[] data = msg.getData();
+    writeLength(out, data.length + 1);
+    out.writeByte(msg.type);
+    out.writeBytes(data);
+  }
+
+  static int frameLength(int dataLength) {
+    int length = dataLength + 1;
+    return lengthSize(length) + length;
+  }
+
+  private static int lengthSize(int value) {
+    int size = 1;
+    while ((value & ~0x7f) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  static void writeLength(ByteBuf out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+}
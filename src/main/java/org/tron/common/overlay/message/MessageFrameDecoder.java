@@ -0,0 +1,66 @@
+package org.tron.common.overlay.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import java.util.List;
+
+/**
+ * Splits the stream into frames prefixed with their varint32 length, as written by
+ * {@link MessageEncoder}. A frame is passed on as a slice of the received buffer, nothing is
+ * copied, and a peer announcing a frame above the limit is cut off before it is buffered.
+ */
+public class MessageFrameDecoder extends ByteToMessageDecoder {
+
+  public static final int DEFAULT_MAX_FRAME_SIZE = 8 * 1024 * 1024;
+
+  private final int maxFrameSize;
+
+  /**
+   * @param maxFrameSize largest frame accepted, the default if not positive.
+   */
+  public MessageFrameDecoder(int maxFrameSize) {
+    this.maxFrameSize = maxFrameSize > 0 ? maxFrameSize : DEFAULT_MAX_FRAME_SIZE;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    in.markReaderIndex();
+    int length = readLength(in);
+    if (length < 0) {
+      in.resetReaderIndex();
+      return;
+    }
+    if (length > maxFrameSize) {
+      throw new TooLongFrameException("frame of " + length + " bytes exceeds " + maxFrameSize);
+    }
+    if (in.readableBytes() < length) {
+      in.resetReaderIndex();
+      return;
+    }
+    out.add(in.readRetainedSlice(length));
+  }
+
+  /**
+   * @return the varint32 at the reader index, -1 if it is not complete yet.
+   */
+  static int readLength(ByteBuf in) {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      if (!in.isReadable()) {
+        return -1;
+      }
+      byte b = in.readByte();
+      result |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        if (result < 0) {
+          throw new CorruptedFrameException("negative frame length " + result);
+        }
+        return result;
+      }
+    }
+    throw new CorruptedFrameException("frame length wider than 32 bits");
+  }
+}
@@ -19,8 +19,6 @@ package org.tron.common.overlay.server;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
-import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
-import io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -35,11 +33,16 @@ import org.tron.common.overlay.discover.NodeManager;
 import org.tron.common.overlay.discover.NodeStatistics;
 import org.tron.common.overlay.message.HelloMessage;
 import org.tron.common.overlay.message.MessageCodec;
+import org.tron.common.overlay.message.MessageCompression;
+import org.tron.common.overlay.message.MessageEncoder;
+import org.tron.common.overlay.message.MessageFrameDecoder;
 import org.tron.common.overlay.message.ReasonCode;
 import org.tron.common.overlay.message.StaticMessages;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.ByteArrayWrapper;
 import org.tron.core.net.peer.PeerConnectionDelegate;
 import org.tron.core.net.peer.TronHandler;
+import org.tron.protos.Protocol.Compression;
 
 @Component
 @Scope("prototype")
@@ -71,6 +74,14 @@ public class Channel {
     @Autowired
     private TronHandler tronHandler;
 
+    private final MessageEncoder messageEncoder = new MessageEncoder();
+
+    private WireTrafficStats.CompressionSavings compressionSavings;
+
+    private volatile boolean compactBlocks;
+
+    private volatile boolean headersFirst;
+
     private ChannelManager channelManager;
 
     private InetSocketAddress inetSocketAddress;
@@ -108,8 +119,9 @@ public class Channel {
         //TODO: use config here
         pipeline.addLast("readTimeoutHandler", new ReadTimeoutHandler(60, TimeUnit.SECONDS));
         pipeline.addLast(stats.tcp);
-        pipeline.addLast("protoPender", new ProtobufVarint32LengthFieldPrepender());
-        pipeline.addLast("lengthDecode", new ProtobufVarint32FrameDecoder());
+        pipeline.addLast("messageEncoder", messageEncoder);
+        pipeline.addLast("lengthDecode",
+            new MessageFrameDecoder(Args.getInstance().getNodeMaxFrameSize()));
         //handshake first
         pipeline.addLast("handshakeHandler", handshakeHandler);
 
@@ -129,6 +141,21 @@ public class Channel {
     }
 
     public void publicHandshakeFinished(ChannelHandlerContext ctx, HelloMessage helloRemote) throws IOException, InterruptedException {
+        Args args = Args.getInstance();
+        Compression compression = MessageCompression.negotiate(
+            MessageCompression.supported(args.isNodeP2pCompression()),
+            helloRemote.getCompressions());
+        if (compression == Compression.SNAPPY) {
+            compressionSavings = stats.newPeerSavings();
+            MessageCompression messageCompression = new MessageCompression(
+                args.getNodeP2pCompressionThreshold(), args.getNodeMaxFrameSize() > 0
+                ? args.getNodeMaxFrameSize() : MessageFrameDecoder.DEFAULT_MAX_FRAME_SIZE,
+                compressionSavings);
+            messageEncoder.setCompression(messageCompression);
+            messageCodec.setCompression(messageCompression);
+        }
+        compactBlocks = args.isNodeP2pCompactBlocks() && helloRemote.isCompactBlocks();
+        headersFirst = args.isNodeP2pHeadersFirst() && helloRemote.isHeadersFirst();
         ctx.pipeline().addLast("messageCodec", messageCodec);
         ctx.pipeline().addLast("p2p", p2pHandler);
         ctx.pipeline().addLast("data", tronHandler);
@@ -138,7 +165,7 @@ public class Channel {
 
     public void sendHelloMessage(ChannelHandlerContext ctx) throws IOException, InterruptedException {
         final HelloMessage helloMessage = staticMessages.createHelloMessage(nodeManager.getPublicHomeNode());
-        ctx.writeAndFlush(helloMessage.getSendData()).sync();
+        ctx.writeAndFlush(helloMessage).sync();
         getNodeStatistics().p2pOutHello.add();
     }
 
@@ -220,6 +247,27 @@ public class Channel {
         return peerStats;
     }
 
+    /**
+     * null unless the handshake agreed on a compression.
+     */
+    public WireTrafficStats.CompressionSavings getCompressionSavings() {
+        return compressionSavings;
+    }
+
+    /**
+     * both sides announced compact blocks in their hello.
+     */
+    public boolean isCompactBlocks() {
+        return compactBlocks;
+    }
+
+    /**
+     * both sides announced headers first sync in their hello.
+     */
+    public boolean isHeadersFirst() {
+        return headersFirst;
+    }
+
     public enum TronState {
         INIT,
         HANDSHAKE_FINISHED,
@@ -0,0 +1,63 @@
+package org.tron.common.overlay.server;
+
+import org.tron.common.overlay.message.Message;
+import org.tron.core.net.message.InventoryMessage;
+import org.tron.core.net.message.MessageTypes;
+
+/**
+ * Classes of outbound messages. Each one is queued separately per channel and, while several have
+ * messages waiting, gets up to its weight of messages written in every round.
+ */
+public enum MessagePriority {
+
+  // blocks, block inventory and requests for blocks
+  CONSENSUS(8),
+  // replies and requests of a chain being synchronized
+  SYNC(4),
+  TRANSACTIONS(2),
+  // pong, hello, disconnect
+  KEEPALIVE(1);
+
+  private final int weight;
+
+  MessagePriority(int weight) {
+    this.weight = weight;
+  }
+
+  public int getWeight() {
+    return weight;
+  }
+
+  public static MessagePriority of(Message msg) {
+    MessageTypes type = msg.getType();
+    if (type == null) {
+      return KEEPALIVE;
+    }
+    switch (type) {
+      case BLOCK:
+      case BLOCK_INVENTORY:
+      case COMPACT_BLOCK:
+      case FETCH_BLOCK_TRXS:
+      case BLOCK_TRXS:
+        return CONSENSUS;
+      case INVENTORY:
+      case FETCH_INV_DATA:
+        return msg instanceof InventoryMessage
+            && ((InventoryMessage) msg).getInvMessageType() == MessageTypes.BLOCK
+            ? CONSENSUS : TRANSACTIONS;
+      case BLOCKS:
+      case BLOCKHEADERS:
+      case FETCH_BLOCK_HEADERS:
+      case SYNC_BLOCK_CHAIN:
+      case BLOCK_CHAIN_INVENTORY:
+      case ITEM_NOT_FOUND:
+        return SYNC;
+      case TRX:
+      case TRXS:
+      case TRX_INVENTORY:
+        return TRANSACTIONS;
+      default:
+        return KEEPALIVE;
+    }
+  }
+}
@@ -26,8 +26,12 @@ import org.springframework.stereotype.Component;
 import org.tron.common.overlay.message.*;
 
 import java.util.Queue;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
 
 /**
  * This class contains the logic for sending messages in a queue
@@ -42,6 +46,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The following messages will not be answered:
  *      PONG, PEERS, HELLO, STATUS, TRANSACTIONS, BLOCKS
  *
+ * Messages are written by the event loop of the channel as soon as they are queued, several
+ * writes sharing one flush. Each {@link MessagePriority} has its own queue, served in weighted
+ * rounds so a burst of transactions delays a block by at most a few messages. While netty reports
+ * the channel unwritable nothing more is written, and once {@link #MAX_QUEUED} messages of a
+ * class are waiting new ones of that class are dropped.
+ *
  * @author Roman Mandeleil
  */
 @Component
@@ -50,78 +60,111 @@ public class MessageQueue {
 
   private static final Logger logger = LoggerFactory.getLogger("MessageQueue");
 
-  private boolean sendMsgFlag = true;
-
-  private static final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4, new ThreadFactory() {
-    private AtomicInteger cnt = new AtomicInteger(0);
+  // messages of one class waiting for the channel before new ones are dropped
+  public static final int MAX_QUEUED = 4096;
+  // messages written before a flush, and before the event loop is handed to other channels
+  private static final int FLUSH_BATCH = 64;
+  private static final long ANSWER_TIMEOUT_MS = 20000;
 
-    public Thread newThread(Runnable r) {
-      return new Thread(r, "MessageQueueTimer-" + cnt.getAndIncrement());
-    }
-  });
+  private final Queue<MessageRoundtrip> requestQueue = new ConcurrentLinkedQueue<>();
 
-  private static Thread sendMsgThread;
+  private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+  private final Lane[] lanes = new Lane[PRIORITIES.length];
+  private final AtomicLong dropped = new AtomicLong();
 
-  private Queue<MessageRoundtrip> requestQueue = new ConcurrentLinkedQueue<>();
-  //private Queue<MessageRoundtrip> respondQueue = new ConcurrentLinkedQueue<>();
+  // weighted round robin position, only used on the event loop
+  private int turn = 0;
+  private int credit = PRIORITIES[0].getWeight();
 
-  private BlockingQueue<Message> msgQueue = new LinkedBlockingQueue<>();
+  // a flush task is pending on the event loop
+  private final AtomicBoolean scheduled = new AtomicBoolean();
 
-  private ChannelHandlerContext ctx = null;
+  private volatile ChannelHandlerContext ctx = null;
 
-  boolean hasPing = false;
-  private ScheduledFuture<?> timerTask;
+  volatile boolean hasPing = false;
   private Channel channel;
 
   public MessageQueue() {
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new Lane();
+    }
   }
 
   public void activate(ChannelHandlerContext ctx) {
     this.ctx = ctx;
-
-    timerTask = timer.scheduleAtFixedRate(() -> {
-      try {
-        nudgeQueue();
-      } catch (Throwable t) {
-        logger.error("Unhandled exception", t);
-      }
-    }, 10, 10, TimeUnit.MILLISECONDS);
-
-    sendMsgThread = new Thread(()->{
-     while (sendMsgFlag) {
-       try {
-         if (msgQueue.isEmpty()){
-           Thread.sleep(10);
-           continue;
-         }
-         Message msg = msgQueue.take();
-         ctx.writeAndFlush(msg.getSendData())
-                 .addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
-         logger.debug("send {} to {}", msg.getType(), ctx.channel().remoteAddress());
-       }catch (InterruptedException e){
-         break;
-       }catch (Exception e) {
-         logger.error("send message failed, {}, error info: {}", ctx.channel().remoteAddress(), e.getMessage());
-       }
-     }
-    });
-    sendMsgThread.start();
+    schedule();
   }
 
   public void setChannel(Channel channel) {
     this.channel = channel;
   }
 
-  public void sendMessage(Message msg) {
+  /**
+   * @return false if the message was dropped because the channel is too far behind.
+   */
+  public boolean sendMessage(Message msg) {
     if (msg instanceof PingMessage) {
-      if (hasPing) return;
+      if (hasPing) return true;
       hasPing = true;
     }
 
-    if (msg.getAnswerMessage() != null)
+    if (msg.getAnswerMessage() != null) {
       requestQueue.add(new MessageRoundtrip(msg));
-    else
-      msgQueue.offer(msg);
+    } else {
+      MessagePriority priority = MessagePriority.of(msg);
+      Lane lane = lanes[priority.ordinal()];
+      if (lane.depth.incrementAndGet() > MAX_QUEUED) {
+        lane.depth.decrementAndGet();
+        if (dropped.incrementAndGet() % 1000 == 1) {
+          logger.warn("{} send queue of {} is full, {} messages dropped", priority,
+              remoteAddress(), dropped.get());
+        }
+        return false;
+      }
+      lane.messages.offer(new Queued(msg));
+    }
+    schedule();
+    return true;
+  }
+
+  public int getQueued() {
+    int queued = 0;
+    for (Lane lane : lanes) {
+      queued += lane.depth.get();
+    }
+    return queued;
+  }
+
+  public int getQueued(MessagePriority priority) {
+    return lanes[priority.ordinal()].depth.get();
+  }
+
+  public long getSent(MessagePriority priority) {
+    return lanes[priority.ordinal()].sent.get();
+  }
+
+  /**
+   * mean time messages of the class spent queued before being written.
+   */
+  public double getAverageWaitMillis(MessagePriority priority) {
+    Lane lane = lanes[priority.ordinal()];
+    long sent = lane.sent.get();
+    return sent == 0 ? 0 : lane.waitNanos.get() / 1e6 / sent;
+  }
+
+  public double getMaxWaitMillis(MessagePriority priority) {
+    return lanes[priority.ordinal()].maxWaitNanos.get() / 1e6;
+  }
+
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * called by the pipeline when the outbound buffer of the channel crossed a water mark.
+   */
+  public void writabilityChanged() {
+    schedule();
   }
 
   public void disconnect() {
@@ -133,6 +176,7 @@ public class MessageQueue {
   }
 
   private void disconnect(DisconnectMessage msg) {
+    ChannelHandlerContext ctx = this.ctx;
     if (ctx != null){
       ctx.writeAndFlush(msg);
       ctx.close();
@@ -141,75 +185,156 @@ public class MessageQueue {
 
   public void receivedMessage(Message msg) throws InterruptedException {
 
-    logger.debug("rcv {} from {}",msg.getType(), ctx.channel().remoteAddress());
+    logger.debug("rcv {} from {}",msg.getType(), remoteAddress());
 
-    if (requestQueue.peek() != null) {
-      MessageRoundtrip messageRoundtrip = requestQueue.peek();
+    MessageRoundtrip messageRoundtrip = requestQueue.peek();
+    if (messageRoundtrip != null) {
       Message waitingMessage = messageRoundtrip.getMsg();
 
       if (waitingMessage instanceof PingMessage) hasPing = false;
 
       if (waitingMessage.getAnswerMessage() != null
           && msg.getClass() == waitingMessage.getAnswerMessage()) {
-        logger.info("rcv {} from {}",msg.getType(), ctx.channel().remoteAddress());
+        logger.info("rcv {} from {}",msg.getType(), remoteAddress());
         messageRoundtrip.answer();
         channel.getPeerStats().pong(messageRoundtrip.lastTimestamp);
+        requestQueue.remove();
+        // the next request goes out now instead of on the next tick
+        schedule();
       }
     }
   }
 
-  private void removeAnsweredMessage(MessageRoundtrip messageRoundtrip) {
-    if (messageRoundtrip != null && messageRoundtrip.isAnswered()) 
-      requestQueue.remove();
-  }
-
-  private void nudgeQueue() {
-    // remove last answered message on the queue
-    removeAnsweredMessage(requestQueue.peek());
-    // Now send the next message
-    //sendToWire(respondQueue.poll());
-    sendToWire(requestQueue.peek());
+  private void schedule() {
+    ChannelHandlerContext ctx = this.ctx;
+    if (ctx != null && scheduled.compareAndSet(false, true)) {
+      ctx.executor().execute(this::flushQueue);
+    }
   }
 
-  private void sendToWire(MessageRoundtrip messageRoundtrip) {
-
-    if (messageRoundtrip == null){
+  // runs on the event loop of the channel only
+  private void flushQueue() {
+    scheduled.set(false);
+    ChannelHandlerContext ctx = this.ctx;
+    if (ctx == null) {
       return;
     }
+    sendToWire(ctx, requestQueue.peek());
+
+    int written = 0;
+    Message msg;
+    while (written < FLUSH_BATCH && ctx.channel().isWritable() && (msg = next()) != null) {
+      ctx.write(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+      logger.debug("send {} to {}", msg.getType(), ctx.channel().remoteAddress());
+      written++;
+    }
+    if (written > 0) {
+      ctx.flush();
+    }
+    // a full batch yields to the other channels of the loop, an unwritable channel waits for
+    // writabilityChanged
+    if (getQueued() > 0 && ctx.channel().isWritable()) {
+      schedule();
+    }
+  }
 
-    if (messageRoundtrip.getRetryTimes() > 0 && !messageRoundtrip.hasToRetry()){
-      return;
+  /**
+   * the next message in weighted round robin order. A class keeps the turn until it has used its
+   * weight or has nothing left, and the position carries over between flushes.
+   */
+  private Message next() {
+    for (int tried = 0; tried <= lanes.length; ) {
+      if (credit > 0) {
+        Lane lane = lanes[turn];
+        Queued queued = lane.messages.poll();
+        if (queued != null) {
+          credit--;
+          lane.depth.decrementAndGet();
+          long wait = System.nanoTime() - queued.queuedAt;
+          lane.sent.incrementAndGet();
+          lane.waitNanos.addAndGet(wait);
+          lane.maxWaitNanos.accumulate(wait);
+          return queued.msg;
+        }
+      }
+      turn = (turn + 1) % lanes.length;
+      credit = PRIORITIES[turn].getWeight();
+      tried++;
     }
+    return null;
+  }
+
+  private void sendToWire(ChannelHandlerContext ctx, MessageRoundtrip messageRoundtrip) {
 
-    if (messageRoundtrip.getRetryTimes() > 0){
-      logger.warn("wait {} timeout. close channel {}.", messageRoundtrip.getMsg().getAnswerMessage(), ctx.channel().remoteAddress());
-      close();
+    if (messageRoundtrip == null || messageRoundtrip.getRetryTimes() > 0){
       return;
     }
 
     Message msg = messageRoundtrip.getMsg();
 
-    ctx.writeAndFlush(msg.getSendData())
+    ctx.writeAndFlush(msg)
             .addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
 
     logger.info("send {} to {}",msg.getType(), ctx.channel().remoteAddress());
 
-    if (msg.getAnswerMessage() != null) {
-      messageRoundtrip.incRetryTimes();
-      messageRoundtrip.saveTime();
-    }
+    messageRoundtrip.incRetryTimes();
+    messageRoundtrip.saveTime();
+    ctx.executor().schedule(() -> {
+      if (!messageRoundtrip.isAnswered() && this.ctx != null) {
+        logger.warn("wait {} timeout. close channel {}.", msg.getAnswerMessage(),
+            ctx.channel().remoteAddress());
+        close();
+      }
+    }, ANSWER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
   }
 
-  public void close() {
+  private Object remoteAddress() {
+    ChannelHandlerContext ctx = this.ctx;
+    return ctx == null ? null : ctx.channel().remoteAddress();
+  }
 
-    sendMsgFlag = false;
+  public void close() {
 
-    timerTask.cancel(true);
+    ChannelHandlerContext ctx = this.ctx;
+    this.ctx = null;
+    for (Lane lane : lanes) {
+      lane.messages.clear();
+      lane.depth.set(0);
+    }
 
     if (ctx != null){
       ctx.close();
-      ctx = null;
     }
   }
 
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (MessagePriority priority : PRIORITIES) {
+      sb.append(String.format("%s queued %d sent %d wait avg %.1f max %.1f ms%n", priority,
+          getQueued(priority), getSent(priority), getAverageWaitMillis(priority),
+          getMaxWaitMillis(priority)));
+    }
+    return sb.toString();
+  }
+
+  private static class Queued {
+
+    private final Message msg;
+    private final long queuedAt = System.nanoTime();
+
+    Queued(Message msg) {
+      this.msg = msg;
+    }
+  }
+
+  private static class Lane {
+
+    private final Queue<Queued> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+  }
+
 }
@@ -21,6 +21,7 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,6 +80,8 @@ public class TronChannelInitializer extends ChannelInitializer<NioSocketChannel>
             ch.config().setRecvByteBufAllocator(new FixedRecvByteBufAllocator(256 * 1024));
             ch.config().setOption(ChannelOption.SO_RCVBUF, 256 * 1024);
             ch.config().setOption(ChannelOption.SO_BACKLOG, 1024);
+            // the message queue stops writing above the high mark until the peer reads below the low
+            ch.config().setWriteBufferWaterMark(new WriteBufferWaterMark(512 * 1024, 2 * 1024 * 1024));
 
             // be aware of channel closing
             ch.closeFuture().addListener((ChannelFutureListener) future -> {
@@ -44,6 +44,8 @@ public class WireTrafficStats  implements Runnable  {
     private ScheduledExecutorService executor;
     public final TrafficStatHandler tcp = new TrafficStatHandler();
     public final TrafficStatHandler udp = new TrafficStatHandler();
+    // bytes saved by compression, over all peers
+    private final CompressionSavings totalSavings = new CompressionSavings();
 
     public WireTrafficStats() {
         executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("WireTrafficStats-%d").build());
@@ -51,7 +53,71 @@ public class WireTrafficStats  implements Runnable  {
     }
 
     @Override
-    public void run() {}
+    public void run() {
+        if (totalSavings.getRawBytes() > 0) {
+            logger.info("compression: {}", totalSavings);
+        }
+    }
+
+    /**
+     * counters for one peer, also added to the totals of all peers.
+     */
+    public CompressionSavings newPeerSavings() {
+        return new CompressionSavings(totalSavings);
+    }
+
+    public CompressionSavings getTotalSavings() {
+        return totalSavings;
+    }
+
+    /**
+     * Sizes of compressed message payloads before and after compression, both directions.
+     */
+    public static class CompressionSavings {
+        private final CompressionSavings parent;
+        private final AtomicLong rawOut = new AtomicLong();
+        private final AtomicLong wireOut = new AtomicLong();
+        private final AtomicLong rawIn = new AtomicLong();
+        private final AtomicLong wireIn = new AtomicLong();
+
+        public CompressionSavings() {
+            this(null);
+        }
+
+        private CompressionSavings(CompressionSavings parent) {
+            this.parent = parent;
+        }
+
+        public void sent(int raw, int wire) {
+            rawOut.addAndGet(raw);
+            wireOut.addAndGet(wire);
+            if (parent != null) {
+                parent.sent(raw, wire);
+            }
+        }
+
+        public void received(int raw, int wire) {
+            rawIn.addAndGet(raw);
+            wireIn.addAndGet(wire);
+            if (parent != null) {
+                parent.received(raw, wire);
+            }
+        }
+
+        public long getRawBytes() {
+            return rawOut.get() + rawIn.get();
+        }
+
+        public long getSavedBytes() {
+            return rawOut.get() - wireOut.get() + rawIn.get() - wireIn.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("sent %d of %d bytes, received %d of %d bytes, saved %d",
+                wireOut.get(), rawOut.get(), wireIn.get(), rawIn.get(), getSavedBytes());
+        }
+    }
 
     @PreDestroy
     public void close() {
@@ -22,11 +22,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.iq80.leveldb.CompressionType;
@@ -226,6 +231,65 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]> {
     }
   }
 
+  /**
+   * stream all values in key order to consumer, batchSize at a time, so the database is never
+   * held in memory as a whole.
+   */
+  public void forEachValueBatch(int batchSize, Consumer<List<byte[]>> consumer) {
+    resetDbLock.readLock().lock();
+    try (DBIterator iterator = database.iterator()) {
+      List<byte[]> batch = new ArrayList<>(batchSize);
+      for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
+        batch.add(iterator.peekNext().getValue());
+        if (batch.size() == batchSize) {
+          consumer.accept(batch);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        consumer.accept(batch);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * all entries whose key starts with prefix, in key order.
+   */
+  public Map<byte[], byte[]> getPrefixData(byte[] prefix) {
+    resetDbLock.readLock().lock();
+    try (DBIterator iterator = database.iterator()) {
+      Map<byte[], byte[]> result = new LinkedHashMap<>();
+      for (iterator.seek(prefix); iterator.hasNext(); iterator.next()) {
+        Entry<byte[], byte[]> entry = iterator.peekNext();
+        if (!hasPrefix(entry.getKey(), prefix)) {
+          break;
+        }
+        result.put(entry.getKey(), entry.getValue());
+      }
+      return result;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  private static boolean hasPrefix(byte[] key, byte[] prefix) {
+    if (key.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (key[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public long getTotal() throws RuntimeException {
     resetDbLock.readLock().lock();
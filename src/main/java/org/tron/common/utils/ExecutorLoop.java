@@ -1,53 +1,142 @@
 package org.tron.common.utils;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Hands its inputs to a consumer on up to a given number of threads at once. The queue is bounded
+ * and push never blocks, the caller is usually a network thread: once the queue is full the
+ * overflow policy decides which input is dropped. The threads are the loop's own, or borrowed from
+ * a work stealing pool shared by all loops that ask for it.
+ */
 public class ExecutorLoop<In> {
 
-  private BlockingQueue<Runnable> queue;
-  private ThreadPoolExecutor exec;
-  private Consumer<In> consumer;
-  private Consumer<Throwable> exceptionHandler;
-  private String threadPoolName;
+  public enum OverflowPolicy {
+    // the input waiting longest gives way to the new one
+    DROP_OLDEST,
+    // the new input is rejected
+    DROP_NEW,
+    // an input with the key of one waiting takes its place, else the oldest gives way
+    COALESCE
+  }
+
+  // inputs taken by a thread before it goes back to the pool
+  private static final int BATCH = 64;
 
-  private static AtomicInteger loopNum = new AtomicInteger(1);
+  private static final AtomicInteger loopNum = new AtomicInteger(1);
+
+  private final int threads;
+  private final int queueSize;
+  private final Consumer<In> consumer;
+  private final Consumer<Throwable> exceptionHandler;
+  private String threadPoolName;
   private AtomicInteger threadNumber = new AtomicInteger(1);
 
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+  private Function<In, ?> coalesceKey;
+  private Consumer<In> dropHandler = in -> {
+  };
+  private boolean sharedPool;
+
+  // waiting inputs in arrival order, by their coalesce key or by themselves
+  private final LinkedHashMap<Object, Pending<In>> queue = new LinkedHashMap<>();
+  private ExecutorService exec;
+  private int running;
+  private boolean shutdown;
+
+  private int maxQueued;
+  private long started;
+  private long processed;
+  private long dropped;
+  private long rejected;
+  private long coalesced;
+  private long totalWaitNanos;
+  private long maxWaitNanos;
+
+  private static class Pending<In> {
+
+    private In in;
+    private final long time = System.nanoTime();
+
+    private Pending(In in) {
+      this.in = in;
+    }
+  }
+
+  private static class SharedPool {
+
+    private static final ExecutorService POOL = Executors.newWorkStealingPool();
+  }
+
   public ExecutorLoop(
       int threads,
       int queueSize,
       Consumer<In> consumer,
       Consumer<Throwable> exceptionHandler) {
-
-    this.queue = new LimitedQueue<>(queueSize);
-    this.exec = new ThreadPoolExecutor(
-      threads,
-      threads,
-      0L,
-      TimeUnit.MILLISECONDS,
-      queue,
-      r -> new Thread(r, threadPoolName + "-" + threadNumber.getAndIncrement())
-    );
-
+    this.threads = threads;
+    this.queueSize = queueSize;
     this.consumer = consumer;
     this.exceptionHandler = exceptionHandler;
     this.threadPoolName = "loop-" + loopNum.getAndIncrement();
   }
 
-  public void push(final In in) {
-    exec.execute(() -> {
-      try {
-        consumer.accept(in);
-      } catch (Throwable e) {
-        exceptionHandler.accept(e);
+  /**
+   * queue the input without waiting, dropping an input if the queue is full.
+   *
+   * @return false if the input was dropped or the loop is shut down.
+   */
+  public boolean push(final In in) {
+    In drop = null;
+    boolean accepted = true;
+    synchronized (this) {
+      if (shutdown) {
+        rejected++;
+        accepted = false;
+        drop = in;
+      } else {
+        Object key = overflowPolicy == OverflowPolicy.COALESCE
+            ? coalesceKey.apply(in) : new Object();
+        Pending<In> waiting = queue.get(key);
+        if (waiting != null) {
+          drop = waiting.in;
+          waiting.in = in;
+          coalesced++;
+        } else {
+          if (queue.size() >= queueSize) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEW) {
+              rejected++;
+              drop = in;
+              accepted = false;
+            } else {
+              Iterator<Pending<In>> oldest = queue.values().iterator();
+              drop = oldest.next().in;
+              oldest.remove();
+              dropped++;
+            }
+          }
+          if (accepted) {
+            queue.put(key, new Pending<>(in));
+            maxQueued = Math.max(maxQueued, queue.size());
+          }
+        }
+        if (accepted && running < threads) {
+          running++;
+          submit();
+        }
       }
-    });
+    }
+    if (drop != null) {
+      dropHandler.accept(drop);
+    }
+    return accepted;
   }
 
   public void pushAll(final List<In> list) {
@@ -56,49 +145,171 @@ public class ExecutorLoop<In> {
     }
   }
 
+  // under the lock
+  private void submit() {
+    try {
+      executor().execute(this::drain);
+    } catch (RejectedExecutionException e) {
+      running--;
+      exceptionHandler.accept(e);
+    }
+  }
+
+  private ExecutorService executor() {
+    if (exec == null) {
+      exec = sharedPool ? SharedPool.POOL : Executors.newFixedThreadPool(threads,
+          r -> new Thread(r, threadPoolName + "-" + threadNumber.getAndIncrement()));
+    }
+    return exec;
+  }
+
+  private void drain() {
+    for (int taken = 0; ; taken++) {
+      Pending<In> next;
+      synchronized (this) {
+        if (queue.isEmpty()) {
+          running--;
+          notifyAll();
+          return;
+        }
+        // give the thread back now and then, unless the loop is closing
+        if (taken == BATCH && !shutdown) {
+          submit();
+          return;
+        }
+        Iterator<Pending<In>> oldest = queue.values().iterator();
+        next = oldest.next();
+        oldest.remove();
+        started++;
+        long waited = System.nanoTime() - next.time;
+        totalWaitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+      }
+      try {
+        consumer.accept(next.in);
+      } catch (Throwable e) {
+        exceptionHandler.accept(e);
+      }
+      synchronized (this) {
+        processed++;
+      }
+    }
+  }
+
   public ExecutorLoop<In> setThreadPoolName(String threadPoolName) {
     this.threadPoolName = threadPoolName;
     return this;
   }
 
-  public BlockingQueue<Runnable> getQueue() {
-    return queue;
+  public synchronized ExecutorLoop<In> setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    if (overflowPolicy == OverflowPolicy.COALESCE && coalesceKey == null) {
+      throw new IllegalArgumentException("coalescing needs a key, use setCoalesceKey");
+    }
+    this.overflowPolicy = overflowPolicy;
+    return this;
   }
 
+  /**
+   * coalesce the inputs by the given key.
+   */
+  public synchronized ExecutorLoop<In> setCoalesceKey(Function<In, ?> coalesceKey) {
+    this.coalesceKey = coalesceKey;
+    this.overflowPolicy = OverflowPolicy.COALESCE;
+    return this;
+  }
 
-  public void shutdown() {
-    try {
-      exec.shutdown();
-    } catch (Exception e) {
+  /**
+   * called with every input dropped, rejected or replaced, outside the lock.
+   */
+  public synchronized ExecutorLoop<In> setDropHandler(Consumer<In> dropHandler) {
+    this.dropHandler = dropHandler;
+    return this;
+  }
+
+  /**
+   * run on the work stealing pool shared by loops, still at most threads inputs at once.
+   */
+  public synchronized ExecutorLoop<In> setSharedPool(boolean sharedPool) {
+    if (exec != null) {
+      throw new IllegalStateException("the loop already runs");
     }
+    this.sharedPool = sharedPool;
+    return this;
   }
 
-  public boolean isShutdown() {
-    return exec.isShutdown();
+  public synchronized int getQueueSize() {
+    return queue.size();
   }
 
-  public void join() throws InterruptedException {
-    exec.shutdown();
-    exec.awaitTermination(10, TimeUnit.MINUTES);
+  public synchronized int getMaxQueueSize() {
+    return maxQueued;
+  }
+
+  public synchronized long getProcessed() {
+    return processed;
   }
 
-  private static class LimitedQueue<E> extends LinkedBlockingQueue<E> {
+  /**
+   * inputs that gave way to newer ones.
+   */
+  public synchronized long getDropped() {
+    return dropped;
+  }
 
-    public LimitedQueue(int maxSize) {
-      super(maxSize);
+  /**
+   * inputs refused as the queue was full or the loop shut down.
+   */
+  public synchronized long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * inputs replaced by a newer one of the same key.
+   */
+  public synchronized long getCoalesced() {
+    return coalesced;
+  }
+
+  /**
+   * the average time inputs waited in the queue, in milliseconds.
+   */
+  public synchronized double getAverageLatency() {
+    return started == 0 ? 0 : totalWaitNanos / 1e6 / started;
+  }
+
+  public synchronized double getMaxLatency() {
+    return maxWaitNanos / 1e6;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s queued %d (max %d), processed %d, dropped %d, rejected %d, "
+            + "coalesced %d, latency %.1f ms (max %.1f)", threadPoolName, queue.size(), maxQueued,
+        processed, dropped, rejected, coalesced, getAverageLatency(), getMaxLatency());
+  }
+
+  public synchronized void shutdown() {
+    shutdown = true;
+    if (exec != null && !sharedPool) {
+      exec.shutdown();
     }
+  }
 
-    @Override
-    public boolean offer(E e) {
-      // turn offer() and add() into a blocking calls (unless interrupted)
-      try {
-        put(e);
-        return true;
-      } catch (InterruptedException ie) {
-        Thread.currentThread().interrupt();
+  public synchronized boolean isShutdown() {
+    return shutdown;
+  }
+
+  /**
+   * stop taking inputs and wait for the queued ones to be done.
+   */
+  public void join() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+    synchronized (this) {
+      shutdown = true;
+      while ((running > 0 || !queue.isEmpty()) && System.currentTimeMillis() < deadline) {
+        wait(Math.max(1, deadline - System.currentTimeMillis()));
       }
-      return false;
     }
+    shutdown();
   }
 }
-
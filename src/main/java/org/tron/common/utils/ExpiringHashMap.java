@@ -0,0 +1,324 @@
+package org.tron.common.utils;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Maps 32 byte hashes to a long, mostly the time they were seen, and forgets them after a fixed
+ * time. The keys and values sit in primitive arrays indexed by an open addressing table, and each
+ * entry hangs in the bucket of a hashed timing wheel for the tick it expires in. Every call first
+ * drops the buckets of the ticks passed since the last one, so adding, finding and expiring are
+ * O(1) and no pass over the whole map is ever needed. When the map is full the entry due to
+ * expire next gives way to the new one.
+ */
+public class ExpiringHashMap {
+
+  public static final long ABSENT = Long.MIN_VALUE;
+
+  private static final int WHEEL_SIZE = 64;
+  private static final int KEY_WORDS = Sha256Hash.LENGTH / Long.BYTES;
+  private static final int MIN_ENTRIES = 16;
+  private static final int NONE = -1;
+
+  private final long tickMs;
+  private final int ttlTicks;
+  private final int capacity;
+  private final LongSupplier clock;
+
+  // entry e has the key words [e * KEY_WORDS, (e + 1) * KEY_WORDS)
+  private long[] keys;
+  private long[] values;
+  // neighbours in the wheel bucket, next also links the free entries
+  private int[] next;
+  private int[] prev;
+  private int[] bucketOf;
+  // entry + 1 by the hash of its key, 0 for a free slot
+  private int[] table;
+  private final int[] buckets = new int[WHEEL_SIZE];
+
+  private int free = NONE;
+  private int allocated;
+  private int size;
+  private long currentTick;
+  private long expired;
+  private long evicted;
+
+  public ExpiringHashMap(long ttlMs, int capacity) {
+    this(ttlMs, capacity, Time::getCurrentMillis);
+  }
+
+  /**
+   * @param ttlMs how long an entry is kept after its last put, up to two ticks of ttlMs / 62
+   * more.
+   * @param capacity most entries kept, memory grows with use up to it.
+   * @param clock the time in milliseconds.
+   */
+  public ExpiringHashMap(long ttlMs, int capacity, LongSupplier clock) {
+    if (ttlMs <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("ttl and capacity must be positive");
+    }
+    // an entry put late in a tick still lives ttlMs, and never wraps around the wheel
+    this.tickMs = Math.max(1, (ttlMs + WHEEL_SIZE - 3) / (WHEEL_SIZE - 2));
+    this.ttlTicks = (int) ((ttlMs + tickMs - 1) / tickMs) + 1;
+    this.capacity = capacity;
+    this.clock = clock;
+    this.currentTick = clock.getAsLong() / tickMs;
+    Arrays.fill(buckets, NONE);
+    resize(Math.min(MIN_ENTRIES, capacity));
+  }
+
+  /**
+   * @return the value the key had, ABSENT if none.
+   */
+  public synchronized long put(Sha256Hash key, long value) {
+    advance();
+    byte[] bytes = key.getBytes();
+    int slot = find(bytes);
+    long previous = ABSENT;
+    int entry;
+    if (table[slot] != 0) {
+      entry = table[slot] - 1;
+      previous = values[entry];
+      unlink(entry);
+    } else {
+      if (size == capacity) {
+        evictNext();
+        slot = find(bytes);
+      }
+      if (free == NONE && allocated == values.length) {
+        resize(Math.min(capacity, values.length * 2));
+        slot = find(bytes);
+      }
+      entry = allocate();
+      for (int i = 0; i < KEY_WORDS; i++) {
+        keys[entry * KEY_WORDS + i] = word(bytes, i);
+      }
+      table[slot] = entry + 1;
+      size++;
+    }
+    values[entry] = value;
+    link(entry, (int) ((currentTick + ttlTicks) % WHEEL_SIZE));
+    return previous;
+  }
+
+  /**
+   * @return the value of the key, ABSENT if it is not here or expired.
+   */
+  public synchronized long get(Sha256Hash key) {
+    advance();
+    int slot = find(key.getBytes());
+    return table[slot] == 0 ? ABSENT : values[table[slot] - 1];
+  }
+
+  public boolean containsKey(Sha256Hash key) {
+    return get(key) != ABSENT;
+  }
+
+  /**
+   * @return whether the key was here.
+   */
+  public synchronized boolean remove(Sha256Hash key) {
+    advance();
+    int slot = find(key.getBytes());
+    if (table[slot] == 0) {
+      return false;
+    }
+    delete(table[slot] - 1, slot);
+    return true;
+  }
+
+  public synchronized int size() {
+    advance();
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * entries dropped as their time ran out.
+   */
+  public synchronized long getExpired() {
+    return expired;
+  }
+
+  /**
+   * entries dropped early to make room.
+   */
+  public synchronized long getEvicted() {
+    return evicted;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d/%d, expired %d, evicted %d", size(), capacity, expired, evicted);
+  }
+
+  private void advance() {
+    long nowTick = clock.getAsLong() / tickMs;
+    if (nowTick - currentTick >= WHEEL_SIZE) {
+      for (int bucket = 0; bucket < WHEEL_SIZE; bucket++) {
+        expire(bucket);
+      }
+      currentTick = nowTick;
+      return;
+    }
+    while (currentTick < nowTick) {
+      currentTick++;
+      expire((int) (currentTick % WHEEL_SIZE));
+    }
+  }
+
+  private void expire(int bucket) {
+    while (buckets[bucket] != NONE) {
+      drop(buckets[bucket]);
+      expired++;
+    }
+  }
+
+  private void evictNext() {
+    for (int i = 1; i <= WHEEL_SIZE; i++) {
+      int bucket = (int) ((currentTick + i) % WHEEL_SIZE);
+      if (buckets[bucket] != NONE) {
+        drop(buckets[bucket]);
+        evicted++;
+        return;
+      }
+    }
+  }
+
+  private void drop(int entry) {
+    int slot = home(entry, table.length - 1);
+    while (table[slot] != entry + 1) {
+      slot = (slot + 1) & (table.length - 1);
+    }
+    delete(entry, slot);
+  }
+
+  private void delete(int entry, int slot) {
+    unlink(entry);
+    unindex(slot);
+    next[entry] = free;
+    free = entry;
+    size--;
+  }
+
+  private int allocate() {
+    if (free != NONE) {
+      int entry = free;
+      free = next[entry];
+      return entry;
+    }
+    return allocated++;
+  }
+
+  private void link(int entry, int bucket) {
+    int head = buckets[bucket];
+    next[entry] = head;
+    prev[entry] = NONE;
+    if (head != NONE) {
+      prev[head] = entry;
+    }
+    buckets[bucket] = entry;
+    bucketOf[entry] = bucket;
+  }
+
+  private void unlink(int entry) {
+    if (prev[entry] != NONE) {
+      next[prev[entry]] = next[entry];
+    } else {
+      buckets[bucketOf[entry]] = next[entry];
+    }
+    if (next[entry] != NONE) {
+      prev[next[entry]] = prev[entry];
+    }
+  }
+
+  /**
+   * @return the slot holding the key, or the free slot it goes to.
+   */
+  private int find(byte[] key) {
+    int mask = table.length - 1;
+    int slot = hash(word(key, 1), word(key, 3)) & mask;
+    while (table[slot] != 0 && !keyEquals(table[slot] - 1, key)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean keyEquals(int entry, byte[] key) {
+    for (int i = 0; i < KEY_WORDS; i++) {
+      if (keys[entry * KEY_WORDS + i] != word(key, i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * close the gap left in the probe sequence by moving back the entries that probed past it.
+   */
+  private void unindex(int slot) {
+    int mask = table.length - 1;
+    int hole = slot;
+    int i = slot;
+    while (true) {
+      i = (i + 1) & mask;
+      if (table[i] == 0) {
+        break;
+      }
+      int entry = table[i] - 1;
+      int home = home(entry, mask);
+      boolean stays = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+      if (!stays) {
+        table[hole] = table[i];
+        hole = i;
+      }
+    }
+    table[hole] = 0;
+  }
+
+  private void resize(int entries) {
+    keys = keys == null ? new long[entries * KEY_WORDS] : Arrays.copyOf(keys, entries * KEY_WORDS);
+    values = values == null ? new long[entries] : Arrays.copyOf(values, entries);
+    next = next == null ? new int[entries] : Arrays.copyOf(next, entries);
+    prev = prev == null ? new int[entries] : Arrays.copyOf(prev, entries);
+    bucketOf = bucketOf == null ? new int[entries] : Arrays.copyOf(bucketOf, entries);
+
+    // at most half full
+    table = new int[Integer.highestOneBit(Math.max(entries, 2) * 2 - 1) * 2];
+    int mask = table.length - 1;
+    for (int bucket = 0; bucket < WHEEL_SIZE; bucket++) {
+      for (int entry = buckets[bucket]; entry != NONE; entry = next[entry]) {
+        int slot = home(entry, mask);
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+      }
+    }
+  }
+
+  private int home(int entry, int mask) {
+    return hash(keys[entry * KEY_WORDS + 1], keys[entry * KEY_WORDS + 3]) & mask;
+  }
+
+  // the keys are hashes already, two of their words spread them well
+  private static int hash(long word1, long word3) {
+    long h = word1 ^ word3;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static long word(byte[] bytes, int index) {
+    long word = 0;
+    for (int i = index * Long.BYTES; i < (index + 1) * Long.BYTES; i++) {
+      word = word << 8 | (bytes[i] & 0xFF);
+    }
+    return word;
+  }
+}
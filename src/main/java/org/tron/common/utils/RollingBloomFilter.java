@@ -0,0 +1,131 @@
+package org.tron.common.utils;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A bloom filter of 32 byte hashes that remembers at least the last given number of them. The
+ * hashes go into the current of two generations, and once it holds that many the older one is
+ * cleared and takes their place. A hash is found if one generation has all its bits, so each
+ * generation gets half the false positive rate. The bits are placed with a random key of the
+ * filter so no one can send hashes that collide on every node.
+ */
+public class RollingBloomFilter {
+
+  private final int generationSize;
+  private final int hashes;
+  private final long bits;
+  private final long key0;
+  private final long key1;
+
+  private long[] current;
+  private long[] previous;
+  private int count;
+  private long added;
+
+  /**
+   * @param entries the hashes last added that are always found.
+   * @param falsePositiveRate how often a hash not added is found.
+   */
+  public RollingBloomFilter(int entries, double falsePositiveRate) {
+    this(entries, falsePositiveRate, new SecureRandom());
+  }
+
+  RollingBloomFilter(int entries, double falsePositiveRate, Random random) {
+    if (entries <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("entries must be positive and the rate in (0, 1)");
+    }
+    double rate = falsePositiveRate / 2;
+    long optimal = (long) Math.ceil(-entries * Math.log(rate) / (Math.log(2) * Math.log(2)));
+    int words = (int) ((optimal + Long.SIZE - 1) / Long.SIZE);
+    this.generationSize = entries;
+    this.bits = (long) words * Long.SIZE;
+    this.hashes = (int) Math.max(1, Math.round((double) bits / entries * Math.log(2)));
+    this.key0 = random.nextLong();
+    this.key1 = random.nextLong();
+    this.current = new long[words];
+    this.previous = new long[words];
+  }
+
+  public synchronized void add(Sha256Hash hash) {
+    if (count == generationSize) {
+      long[] cleared = previous;
+      Arrays.fill(cleared, 0);
+      previous = current;
+      current = cleared;
+      count = 0;
+    }
+    long h1 = h1(hash);
+    long h2 = h2(h1);
+    for (int i = 0; i < hashes; i++) {
+      long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+      current[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    count++;
+    added++;
+  }
+
+  /**
+   * @return true if the hash was among the last ones added, or rarely if it was not.
+   */
+  public synchronized boolean contains(Sha256Hash hash) {
+    long h1 = h1(hash);
+    long h2 = h2(h1);
+    return contains(current, h1, h2) || contains(previous, h1, h2);
+  }
+
+  private boolean contains(long[] generation, long h1, long h2) {
+    for (int i = 0; i < hashes; i++) {
+      long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+      if ((generation[(int) (bit >>> 6)] & 1L << bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * hashes added since the filter was made.
+   */
+  public synchronized long getAdded() {
+    return added;
+  }
+
+  /**
+   * bytes taken by both generations.
+   */
+  public long getMemorySize() {
+    return bits / 4;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("added %d, %d bits x 2, %d hashes", added, bits, hashes);
+  }
+
+  // every word goes in, keyed so the bits differ between nodes
+  private long h1(Sha256Hash hash) {
+    ByteBuffer words = ByteBuffer.wrap(hash.getBytes());
+    long h = key0;
+    for (int i = 0; i < Sha256Hash.LENGTH; i += Long.BYTES) {
+      h = mix(h ^ words.getLong(i));
+    }
+    return h;
+  }
+
+  private long h2(long h1) {
+    return mix(h1 ^ key1) | 1;
+  }
+
+  // the finalizer of murmur3
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
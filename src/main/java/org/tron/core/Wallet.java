@@ -20,6 +20,9 @@ package org.tron.core;
 
 import com.google.protobuf.ByteString;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.api.GrpcAPI.AccountList;
@@ -40,12 +43,10 @@ import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.db.AccountStore;
 import org.tron.core.db.BlockStore;
 import org.tron.core.db.Manager;
+import org.tron.core.db.TransactionPipeline.Pending;
 import org.tron.core.db.UtxoStore;
 import org.tron.core.exception.BadItemException;
-import org.tron.core.exception.ContractExeException;
-import org.tron.core.exception.ContractValidateException;
 import org.tron.core.exception.ItemNotFoundException;
-import org.tron.core.exception.ValidateSignatureException;
 import org.tron.core.net.message.TransactionMessage;
 import org.tron.core.net.node.Node;
 import org.tron.protos.Contract.AccountCreateContract;
@@ -64,6 +65,9 @@ import org.tron.protos.Protocol.Transaction;
 @Slf4j
 public class Wallet {
 
+  // ms a broadcast waits for its transaction to be applied, a block interval at most
+  private static final long BROADCAST_TIMEOUT = Manager.LOOP_INTERVAL;
+
   private BlockStore db;
   @Getter
   private final ECKey ecKey;
@@ -192,19 +196,31 @@ public class Wallet {
    */
   public boolean broadcastTransaction(Transaction signaturedTransaction) {
     TransactionCapsule trx = new TransactionCapsule(signaturedTransaction);
+    // verified on the pipeline along with transactions from peers, applied in a batch
+    Pending pending = dbManager.getTransactionPipeline().enqueue(trx);
     try {
-      if (trx.validateSignature()) {
+      boolean applied;
+      try {
+        applied = pending.getResult().get(BROADCAST_TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (pending.cancel()) {
+          logger.info("transaction {} not applied within {}ms", trx.getTransactionId(),
+              BROADCAST_TIMEOUT);
+          return false;
+        }
+        // the applier has it already, the outcome is moments away
+        applied = pending.getResult().get();
+      }
+      if (applied) {
         Message message = new TransactionMessage(signaturedTransaction);
-        dbManager.pushTransactions(trx);
         p2pnode.broadcast(message);
         return true;
       }
-    } catch (ValidateSignatureException e) {
-      logger.debug(e.getMessage(), e);
-    } catch (ContractValidateException e) {
-      logger.debug(e.getMessage(), e);
-    } catch (ContractExeException e) {
-      logger.debug(e.getMessage(), e);
+    } catch (ExecutionException e) {
+      logger.debug(e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      pending.cancel();
+      Thread.currentThread().interrupt();
     } catch (Exception e) {
       logger.debug(e.getMessage(), e);
     }
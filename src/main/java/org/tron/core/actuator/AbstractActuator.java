@@ -1,6 +1,8 @@
 package org.tron.core.actuator;
 
 import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 import org.tron.core.db.Manager;
 
 public abstract class AbstractActuator implements Actuator {
@@ -8,8 +10,29 @@ public abstract class AbstractActuator implements Actuator {
   protected Any contract;
   protected Manager dbManager;
 
+  // decoded once and shared by validate, execute and the access declarations
+  private Message parsedContract;
+
   AbstractActuator(Any contract, Manager dbManager) {
     this.contract = contract;
     this.dbManager = dbManager;
   }
+
+  /**
+   * hand over a contract already decoded from the same parameter, see
+   * {@link org.tron.core.capsule.TransactionCapsule#getContract(int)}.
+   */
+  void setParsedContract(Message parsedContract) {
+    this.parsedContract = parsedContract;
+  }
+
+  /**
+   * the contract parameter decoded as type, unpacked on first use only.
+   */
+  protected <T extends Message> T getContract(Class<T> type) throws InvalidProtocolBufferException {
+    if (!type.isInstance(parsedContract)) {
+      parsedContract = contract.unpack(type);
+    }
+    return type.cast(parsedContract);
+  }
 }
@@ -0,0 +1,105 @@
+package org.tron.core.actuator;
+
+import com.google.protobuf.ByteString;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The state a contract reads and writes, known from the contract alone before it is executed.
+ * Writes are not repeated as reads.
+ */
+public class AccessSet {
+
+  public enum Space {
+    ACCOUNT,
+    ASSET_ISSUE,
+    WITNESS
+  }
+
+  public static class Key {
+
+    private final Space space;
+    private final ByteString key;
+
+    public Key(Space space, ByteString key) {
+      this.space = space;
+      this.key = key;
+    }
+
+    public Space getSpace() {
+      return space;
+    }
+
+    public ByteString getKey() {
+      return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return space == other.space && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(space, key);
+    }
+
+    @Override
+    public String toString() {
+      return space + ":" + key;
+    }
+  }
+
+  private final Set<Key> reads = new LinkedHashSet<>();
+  private final Set<Key> writes = new LinkedHashSet<>();
+
+  public AccessSet read(Space space, ByteString key) {
+    Key k = new Key(space, key);
+    if (!writes.contains(k)) {
+      reads.add(k);
+    }
+    return this;
+  }
+
+  public AccessSet write(Space space, ByteString key) {
+    Key k = new Key(space, key);
+    reads.remove(k);
+    writes.add(k);
+    return this;
+  }
+
+  /**
+   * add the reads and writes of another, as of a contract run after the ones of this set.
+   */
+  public AccessSet add(AccessSet other) {
+    other.reads.forEach(k -> read(k.getSpace(), k.getKey()));
+    other.writes.forEach(k -> write(k.getSpace(), k.getKey()));
+    return this;
+  }
+
+  public Set<Key> getReads() {
+    return Collections.unmodifiableSet(reads);
+  }
+
+  public Set<Key> getWrites() {
+    return Collections.unmodifiableSet(writes);
+  }
+
+  /**
+   * whether the outcome can depend on the order the two run in.
+   */
+  public boolean conflictsWith(AccessSet other) {
+    return !Collections.disjoint(writes, other.writes)
+        || !Collections.disjoint(writes, other.reads)
+        || !Collections.disjoint(reads, other.writes);
+  }
+}
@@ -14,5 +14,10 @@ public interface Actuator {
 
   ByteString getOwnerAddress() throws InvalidProtocolBufferException;
 
+  /**
+   * state read and written by execute, declared without touching the stores.
+   */
+  AccessSet getAccessSet() throws InvalidProtocolBufferException;
+
   long calcFee();
 }
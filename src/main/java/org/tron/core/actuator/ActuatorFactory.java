@@ -2,6 +2,7 @@ package org.tron.core.actuator;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.core.capsule.TransactionCapsule;
@@ -38,13 +39,23 @@ public class ActuatorFactory {
     Preconditions.checkNotNull(manager, "manager is null");
     Protocol.Transaction.raw rawData = transactionCapsule.getInstance().getRawData();
     if (TransactionType.ContractType.equals(rawData.getType())) {
-      rawData.getContractList()
-          .forEach(contract -> actuatorList.add(getActuatorByContract(contract, manager)));
+      for (int i = 0; i < rawData.getContractCount(); i++) {
+        AbstractActuator actuator = getActuatorByContract(rawData.getContract(i), manager);
+        if (actuator != null) {
+          // the capsule decodes each contract once, for the signature check and for the actuator
+          try {
+            actuator.setParsedContract(transactionCapsule.getContract(i));
+          } catch (InvalidProtocolBufferException e) {
+            logger.debug(e.getMessage(), e); // left to the actuator, which reports it on validate
+          }
+        }
+        actuatorList.add(actuator);
+      }
     }
     return actuatorList;
   }
 
-  private static Actuator getActuatorByContract(Contract contract, Manager manager) {
+  private static AbstractActuator getActuatorByContract(Contract contract, Manager manager) {
     switch (contract.getType()) {
       case AccountCreateContract:
         return new CreateAccountActuator(contract.getParameter(), manager);
@@ -22,6 +22,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.common.utils.ByteArray;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.AssetIssueCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
@@ -51,7 +52,7 @@ public class AssetIssueActuator extends AbstractActuator {
       if (dbManager == null) {
         throw new ContractExeException();
       }
-      AssetIssueContract assetIssueContract = contract.unpack(AssetIssueContract.class);
+      AssetIssueContract assetIssueContract = getContract(AssetIssueContract.class);
       AssetIssueCapsule assetIssueCapsule = new AssetIssueCapsule(assetIssueContract);
       dbManager.getAssetIssueStore()
           .put(assetIssueCapsule.getName().toByteArray(), assetIssueCapsule);
@@ -84,7 +85,7 @@ public class AssetIssueActuator extends AbstractActuator {
     }
 
     try {
-      final AssetIssueContract assetIssueContract = this.contract.unpack(AssetIssueContract.class);
+      final AssetIssueContract assetIssueContract = getContract(AssetIssueContract.class);
 
       if (!Wallet.addressValid(assetIssueContract.getOwnerAddress().toByteArray())) {
         throw new ContractValidateException("Invalidate ownerAddress");
@@ -104,8 +105,16 @@ public class AssetIssueActuator extends AbstractActuator {
   }
 
   @Override
-  public ByteString getOwnerAddress() {
-    return null;
+  public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
+    return getContract(AssetIssueContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    AssetIssueContract assetIssueContract = getContract(AssetIssueContract.class);
+    return new AccessSet()
+        .write(Space.ACCOUNT, assetIssueContract.getOwnerAddress())
+        .write(Space.ASSET_ISSUE, assetIssueContract.getName());
   }
 
   @Override
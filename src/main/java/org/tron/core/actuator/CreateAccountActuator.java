@@ -6,6 +6,7 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.db.Manager;
@@ -28,7 +29,7 @@ public class CreateAccountActuator extends AbstractActuator {
     long fee = calcFee();
     try {
 
-      AccountCreateContract accountCreateContract = contract.unpack(AccountCreateContract.class);
+      AccountCreateContract accountCreateContract = getContract(AccountCreateContract.class);
       AccountCapsule accountCapsule = new AccountCapsule(accountCreateContract);
       dbManager.getAccountStore()
           .put(accountCreateContract.getOwnerAddress().toByteArray(), accountCapsule);
@@ -50,7 +51,7 @@ public class CreateAccountActuator extends AbstractActuator {
                 .getClass() + "]");
       }
 
-      AccountCreateContract contract = this.contract.unpack(AccountCreateContract.class);
+      AccountCreateContract contract = getContract(AccountCreateContract.class);
 
       Preconditions.checkNotNull(contract.getAccountName(), "AccountName is null");
       if (!Wallet.addressValid(contract.getOwnerAddress().toByteArray())) {
@@ -70,7 +71,13 @@ public class CreateAccountActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return contract.unpack(AccountCreateContract.class).getOwnerAddress();
+    return getContract(AccountCreateContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    return new AccessSet()
+        .write(Space.ACCOUNT, getContract(AccountCreateContract.class).getOwnerAddress());
   }
 
   @Override
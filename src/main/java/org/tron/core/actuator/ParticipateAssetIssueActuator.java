@@ -23,6 +23,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.tron.common.utils.ByteArray;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.AssetIssueCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
@@ -46,7 +47,7 @@ public class ParticipateAssetIssueActuator extends AbstractActuator {
 
     try {
       Contract.ParticipateAssetIssueContract participateAssetIssueContract =
-          contract.unpack(Contract.ParticipateAssetIssueContract.class);
+          getContract(Contract.ParticipateAssetIssueContract.class);
 
       long cost = participateAssetIssueContract.getAmount();
 
@@ -91,7 +92,7 @@ public class ParticipateAssetIssueActuator extends AbstractActuator {
 
     try {
       final Contract.ParticipateAssetIssueContract participateAssetIssueContract =
-          this.contract.unpack(Contract.ParticipateAssetIssueContract.class);
+          getContract(Contract.ParticipateAssetIssueContract.class);
 
       if (!Wallet.addressValid(participateAssetIssueContract.getOwnerAddress().toByteArray())) {
         throw new ContractValidateException("Invalidate ownerAddress");
@@ -165,7 +166,17 @@ public class ParticipateAssetIssueActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return null;
+    return getContract(Contract.ParticipateAssetIssueContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    Contract.ParticipateAssetIssueContract participateAssetIssueContract =
+        getContract(Contract.ParticipateAssetIssueContract.class);
+    return new AccessSet()
+        .write(Space.ACCOUNT, participateAssetIssueContract.getOwnerAddress())
+        .write(Space.ACCOUNT, participateAssetIssueContract.getToAddress())
+        .read(Space.ASSET_ISSUE, participateAssetIssueContract.getAssetName());
   }
 
   @Override
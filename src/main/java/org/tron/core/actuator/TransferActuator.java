@@ -6,6 +6,7 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.config.Parameter.ChainConstant;
@@ -31,7 +32,7 @@ public class TransferActuator extends AbstractActuator {
     long fee = calcFee();
     try {
       TransferContract transferContract = null;
-      transferContract = contract.unpack(TransferContract.class);
+      transferContract = getContract(TransferContract.class);
 
       dbManager.adjustBalance(transferContract.getOwnerAddress().toByteArray(), -calcFee());
       ret.setStatus(fee, code.SUCESS);
@@ -62,7 +63,7 @@ public class TransferActuator extends AbstractActuator {
             "contract type error,expected type [TransferContract],real type[" + contract
                 .getClass() + "]");
       }
-      TransferContract transferContract = this.contract.unpack(TransferContract.class);
+      TransferContract transferContract = getContract(TransferContract.class);
       if (!Wallet.addressValid(transferContract.getOwnerAddress().toByteArray())) {
         throw new ContractValidateException("Invalidate ownerAddress");
       }
@@ -115,7 +116,15 @@ public class TransferActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return contract.unpack(TransferContract.class).getOwnerAddress();
+    return getContract(TransferContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    TransferContract transferContract = getContract(TransferContract.class);
+    return new AccessSet()
+        .write(Space.ACCOUNT, transferContract.getOwnerAddress())
+        .write(Space.ACCOUNT, transferContract.getToAddress());
   }
 
   @Override
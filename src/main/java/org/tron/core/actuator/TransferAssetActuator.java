@@ -19,9 +19,8 @@ import com.google.common.base.Preconditions;
 import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
-import java.util.Map;
-import org.tron.common.utils.ByteArray;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.db.AccountStore;
@@ -50,8 +49,7 @@ public class TransferAssetActuator extends AbstractActuator {
     }
 
     try {
-      TransferAssetContract transferAssetContract = this.contract
-          .unpack(TransferAssetContract.class);
+      TransferAssetContract transferAssetContract = getContract(TransferAssetContract.class);
       AccountStore accountStore = this.dbManager.getAccountStore();
       byte[] ownerKey = transferAssetContract.getOwnerAddress().toByteArray();
       byte[] toKey = transferAssetContract.getToAddress().toByteArray();
@@ -79,8 +77,7 @@ public class TransferAssetActuator extends AbstractActuator {
   @Override
   public boolean validate() throws ContractValidateException {
     try {
-      TransferAssetContract transferAssetContract = this.contract
-          .unpack(TransferAssetContract.class);
+      TransferAssetContract transferAssetContract = getContract(TransferAssetContract.class);
 
       if (!Wallet.addressValid(transferAssetContract.getOwnerAddress().toByteArray())) {
         throw new ContractValidateException("Invalidate ownerAddress");
@@ -113,14 +110,7 @@ public class TransferAssetActuator extends AbstractActuator {
       long amount = transferAssetContract.getAmount();
 
       AccountCapsule ownerAccount = this.dbManager.getAccountStore().get(ownerKey);
-      Map<String, Long> asset = ownerAccount.getAssetMap();
-
-      if (asset.isEmpty()) {
-        throw new ContractValidateException();
-      }
-
-      Long assetAmount = asset.get(ByteArray.toStr(nameKey));
-      if (amount <= 0 || null == assetAmount || amount > assetAmount || assetAmount <= 0) {
+      if (!ownerAccount.assetBalanceEnough(transferAssetContract.getAssetName(), amount)) {
         throw new ContractValidateException();
       }
     } catch (InvalidProtocolBufferException e) {
@@ -131,8 +121,17 @@ public class TransferAssetActuator extends AbstractActuator {
   }
 
   @Override
-  public ByteString getOwnerAddress() {
-    return null;
+  public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
+    return getContract(TransferAssetContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    TransferAssetContract transferAssetContract = getContract(TransferAssetContract.class);
+    return new AccessSet()
+        .write(Space.ACCOUNT, transferAssetContract.getOwnerAddress())
+        .write(Space.ACCOUNT, transferAssetContract.getToAddress())
+        .read(Space.ASSET_ISSUE, transferAssetContract.getAssetName());
   }
 
   @Override
@@ -4,6 +4,7 @@ import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.db.Manager;
@@ -23,7 +24,7 @@ public class UpdateAccountActuator extends AbstractActuator {
     long fee = calcFee();
     try {
 
-      AccountUpdateContract accountUpdateContract = contract.unpack(AccountUpdateContract.class);
+      AccountUpdateContract accountUpdateContract = getContract(AccountUpdateContract.class);
       AccountCapsule account =
           dbManager.getAccountStore().get(accountUpdateContract.getOwnerAddress().toByteArray());
 
@@ -45,7 +46,13 @@ public class UpdateAccountActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return contract.unpack(AccountUpdateContract.class).getOwnerAddress();
+    return getContract(AccountUpdateContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    return new AccessSet()
+        .write(Space.ACCOUNT, getContract(AccountUpdateContract.class).getOwnerAddress());
   }
 
   @Override
@@ -7,6 +7,7 @@ import java.util.Iterator;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.common.utils.ByteArray;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.db.AccountStore;
@@ -29,7 +30,7 @@ public class VoteWitnessActuator extends AbstractActuator {
   public boolean execute(TransactionResultCapsule ret) throws ContractExeException {
     long fee = calcFee();
     try {
-      VoteWitnessContract voteContract = contract.unpack(VoteWitnessContract.class);
+      VoteWitnessContract voteContract = getContract(VoteWitnessContract.class);
       countVoteAccount(voteContract);
       ret.setStatus(fee, code.SUCESS);
     } catch (InvalidProtocolBufferException e) {
@@ -49,7 +50,7 @@ public class VoteWitnessActuator extends AbstractActuator {
                 .getClass() + "]");
       }
 
-      VoteWitnessContract contract = this.contract.unpack(VoteWitnessContract.class);
+      VoteWitnessContract contract = getContract(VoteWitnessContract.class);
       if (!Wallet.addressValid(contract.getOwnerAddress().toByteArray())) {
         throw new ContractValidateException("Invalidate address");
       }
@@ -116,7 +117,17 @@ public class VoteWitnessActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return contract.unpack(VoteWitnessContract.class).getOwnerAddress();
+    return getContract(VoteWitnessContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    VoteWitnessContract voteContract = getContract(VoteWitnessContract.class);
+    AccessSet accessSet = new AccessSet();
+    voteContract.getVotesList().forEach(vote -> accessSet
+        .read(Space.ACCOUNT, vote.getVoteAddress())
+        .read(Space.WITNESS, vote.getVoteAddress()));
+    return accessSet.write(Space.ACCOUNT, voteContract.getOwnerAddress());
   }
 
   @Override
@@ -6,6 +6,7 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.capsule.WitnessCapsule;
@@ -26,8 +27,7 @@ public class WitnessCreateActuator extends AbstractActuator {
   public boolean execute(TransactionResultCapsule ret) throws ContractExeException {
     long fee = calcFee();
     try {
-      final WitnessCreateContract witnessCreateContract = this.contract
-          .unpack(WitnessCreateContract.class);
+      final WitnessCreateContract witnessCreateContract = getContract(WitnessCreateContract.class);
       this.createWitness(witnessCreateContract);
       ret.setStatus(fee, code.SUCESS);
     } catch (final InvalidProtocolBufferException e) {
@@ -47,7 +47,7 @@ public class WitnessCreateActuator extends AbstractActuator {
                 .getClass() + "]");
       }
 
-      final WitnessCreateContract contract = this.contract.unpack(WitnessCreateContract.class);
+      final WitnessCreateContract contract = getContract(WitnessCreateContract.class);
 
       if (!Wallet.addressValid(contract.getOwnerAddress().toByteArray())) {
         throw new ContractValidateException("Invalidate address");
@@ -76,7 +76,15 @@ public class WitnessCreateActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return contract.unpack(WitnessCreateContract.class).getOwnerAddress();
+    return getContract(WitnessCreateContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    ByteString ownerAddress = getContract(WitnessCreateContract.class).getOwnerAddress();
+    return new AccessSet()
+        .read(Space.ACCOUNT, ownerAddress)
+        .write(Space.WITNESS, ownerAddress);
   }
 
   @Override
@@ -5,6 +5,7 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.db.Manager;
@@ -31,8 +32,7 @@ public class WitnessUpdateActuator extends AbstractActuator {
   public boolean execute(TransactionResultCapsule ret) throws ContractExeException {
     long fee = calcFee();
     try {
-      final WitnessUpdateContract witnessUpdateContract = this.contract
-          .unpack(WitnessUpdateContract.class);
+      final WitnessUpdateContract witnessUpdateContract = getContract(WitnessUpdateContract.class);
       this.updateWitness(witnessUpdateContract);
       ret.setStatus(fee, code.SUCESS);
     } catch (final InvalidProtocolBufferException e) {
@@ -52,7 +52,7 @@ public class WitnessUpdateActuator extends AbstractActuator {
                 .getClass() + "]");
       }
 
-      final WitnessUpdateContract contract = this.contract.unpack(WitnessUpdateContract.class);
+      final WitnessUpdateContract contract = getContract(WitnessUpdateContract.class);
       if(!Wallet.addressValid(contract.getOwnerAddress().toByteArray())){
         throw new ContractValidateException("Invalidate address");
       }
@@ -69,7 +69,13 @@ public class WitnessUpdateActuator extends AbstractActuator {
 
   @Override
   public ByteString getOwnerAddress() throws InvalidProtocolBufferException {
-    return contract.unpack(WitnessUpdateContract.class).getOwnerAddress();
+    return getContract(WitnessUpdateContract.class).getOwnerAddress();
+  }
+
+  @Override
+  public AccessSet getAccessSet() throws InvalidProtocolBufferException {
+    return new AccessSet()
+        .write(Space.WITNESS, getContract(WitnessUpdateContract.class).getOwnerAddress());
   }
 
   @Override
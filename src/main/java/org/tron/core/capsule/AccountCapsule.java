@@ -19,10 +19,13 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.common.utils.ByteArray;
+import org.tron.core.db.AssetBalanceStore;
 import org.tron.protos.Contract.AccountCreateContract;
 import org.tron.protos.Contract.AccountUpdateContract;
 import org.tron.protos.Protocol.Account;
@@ -34,6 +37,20 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
 
   private Account account;
 
+  // balance, operation time and asset amounts change on almost every transaction, so they are
+  // kept outside the proto once modified and folded back into it only when it is read or stored
+  private boolean stale = false;
+  private long balance;
+  private long latestOperationTime;
+  private Map<String, Long> assets;
+
+  // where token balances live once the account has been stored, see drainAssets
+  private AssetBalanceStore assetBalanceStore;
+  // the balances found there when first needed, until the account is written again
+  private Map<String, Long> storedAssets;
+
+  // modified since it was last written to the store
+  private boolean dirty = false;
 
   @Override
   public int compareTo(AccountCapsule otherObject) {
@@ -111,17 +128,126 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
     this.account = account;
   }
 
+  /**
+   * the account as stored, balances kept in the asset balance store are not included.
+   */
   public byte[] getData() {
-    return this.account.toByteArray();
+    return fold().toByteArray();
   }
 
+  /**
+   * the whole account, including the balances kept in the asset balance store.
+   */
   @Override
   public Account getInstance() {
+    Account folded = fold();
+    Map<String, Long> stored = getStoredAssets();
+    if (stored.isEmpty()) {
+      return folded;
+    }
+    return folded.toBuilder().clearAsset().putAllAsset(stored)
+        .putAllAsset(folded.getAssetMap()).build();
+  }
+
+  private Map<String, Long> getStoredAssets() {
+    if (assetBalanceStore == null) {
+      return Collections.emptyMap();
+    }
+    if (storedAssets == null) {
+      storedAssets = assetBalanceStore.getAllBalances(createDbKey());
+    }
+    return storedAssets;
+  }
+
+  private Account fold() {
+    if (stale) {
+      Account.Builder builder = this.account.toBuilder()
+          .setBalance(balance)
+          .setLatestOprationTime(latestOperationTime);
+      if (assets != null) {
+        builder.putAllAsset(assets);
+      }
+      this.account = builder.build();
+      this.assets = null;
+      this.stale = false;
+    }
     return this.account;
   }
 
+  /**
+   * take the asset balances that are not in the asset balance store yet, the caller writes them
+   * there and attaches the store with {@link #setAssetBalanceStore}.
+   */
+  public Map<String, Long> drainAssets() {
+    Account folded = fold();
+    if (folded.getAssetCount() == 0) {
+      return Collections.emptyMap();
+    }
+    Map<String, Long> drained = new LinkedHashMap<>(folded.getAssetMap());
+    this.account = folded.toBuilder().clearAsset().build();
+    return drained;
+  }
+
+  /**
+   * attach the store, called whenever the account has been written to it.
+   */
+  public void setAssetBalanceStore(AssetBalanceStore assetBalanceStore) {
+    this.assetBalanceStore = assetBalanceStore;
+    this.storedAssets = null;
+  }
+
+  public boolean hasAssetBalanceStore() {
+    return assetBalanceStore != null;
+  }
+
   public void setInstance(Account account) {
     this.account = account;
+    this.assets = null;
+    this.storedAssets = null;
+    this.stale = false;
+    this.dirty = true;
+  }
+
+  private void detach() {
+    if (!stale) {
+      this.balance = this.account.getBalance();
+      this.latestOperationTime = this.account.getLatestOprationTime();
+      this.stale = true;
+    }
+    this.dirty = true;
+  }
+
+  private Long getAssetAmount(String name) {
+    if (assets != null && assets.containsKey(name)) {
+      return assets.get(name);
+    }
+    Long amount = this.account.getAssetMap().get(name);
+    if (amount == null && storedAssets != null) {
+      amount = storedAssets.get(name);
+    } else if (amount == null && assetBalanceStore != null) {
+      amount = assetBalanceStore.getBalance(createDbKey(), name);
+    }
+    return amount;
+  }
+
+  private Map<String, Long> mutableAssets() {
+    detach();
+    if (assets == null) {
+      assets = new LinkedHashMap<>();
+    }
+    return assets;
+  }
+
+  public boolean isDirty() {
+    return dirty;
+  }
+
+  public void markDirty() {
+    this.dirty = true;
+  }
+
+  public void clearDirty() {
+    this.dirty = false;
   }
 
   public ByteString getAddress() {
@@ -142,24 +268,26 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
 
 
   public long getBalance() {
-    return this.account.getBalance();
+    return stale ? balance : this.account.getBalance();
   }
 
   public long getLatestOperationTime() {
-    return this.account.getLatestOprationTime();
+    return stale ? latestOperationTime : this.account.getLatestOprationTime();
   }
 
   public void setLatestOperationTime(long latest_time) {
-    this.account = this.account.toBuilder().setLatestOprationTime(latest_time).build();
+    detach();
+    this.latestOperationTime = latest_time;
   }
 
   public void setBalance(long balance) {
-    this.account = this.account.toBuilder().setBalance(balance).build();
+    detach();
+    this.balance = balance;
   }
 
   @Override
   public String toString() {
-    return this.account.toString();
+    return getInstance().toString();
   }
 
 
@@ -167,7 +295,8 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
    * set votes.
    */
   public void addVotes(ByteString voteAddress, long voteAdd) {
-    this.account = this.account.toBuilder()
+    this.dirty = true;
+    this.account = fold().toBuilder()
         .addVotes(Vote.newBuilder().setVoteAddress(voteAddress).setVoteCount(voteAdd).build())
         .build();
   }
@@ -184,16 +313,15 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
   }
 
   public long getShare() {
-    return this.account.getBalance();
+    return getBalance();
   }
 
   /**
    * asset balance enough
    */
   public boolean assetBalanceEnough(ByteString name, long amount) {
-    Map<String, Long> assetMap = this.account.getAssetMap();
     String nameKey = ByteArray.toStr(name.toByteArray());
-    Long currentAmount = assetMap.get(nameKey);
+    Long currentAmount = getAssetAmount(nameKey);
 
     if (amount > 0 && null != currentAmount && amount <= currentAmount) {
       return true;
@@ -206,14 +334,12 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
    * reduce asset amount.
    */
   public boolean reduceAssetAmount(ByteString name, long amount) {
-    Map<String, Long> assetMap = this.account.getAssetMap();
-
     String nameKey = ByteArray.toStr(name.toByteArray());
 
-    Long currentAmount = assetMap.get(nameKey);
+    Long currentAmount = getAssetAmount(nameKey);
 
     if (amount > 0 && null != currentAmount && amount <= currentAmount) {
-      this.account = this.account.toBuilder().putAsset(nameKey, currentAmount - amount).build();
+      mutableAssets().put(nameKey, currentAmount - amount);
       return true;
     }
 
@@ -224,17 +350,15 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
    * add asset amount.
    */
   public boolean addAssetAmount(ByteString name, long amount) {
-    Map<String, Long> assetMap = this.account.getAssetMap();
-
     String nameKey = ByteArray.toStr(name.toByteArray());
 
-    Long currentAmount = assetMap.get(nameKey);
+    Long currentAmount = getAssetAmount(nameKey);
 
     if (currentAmount == null) {
       currentAmount = 0L;
     }
 
-    this.account = this.account.toBuilder().putAsset(nameKey, currentAmount + amount).build();
+    mutableAssets().put(nameKey, currentAmount + amount);
 
     return true;
   }
@@ -243,7 +367,8 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
    * set account name
    */
   public void setAccountName(byte[] name) {
-    this.account = this.account.toBuilder().setAccountName(ByteString.copyFrom(name)).build();
+    this.dirty = true;
+    this.account = fold().toBuilder().setAccountName(ByteString.copyFrom(name)).build();
 
   }
 
@@ -251,14 +376,11 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
    * add asset.
    */
   public boolean addAsset(String key, Long value) {
-    Map<String, Long> assetMap = this.account.getAssetMap();
-    if (!assetMap.isEmpty()) {
-      if (assetMap.containsKey(key)) {
-        return false;
-      }
+    if (getAssetAmount(key) != null) {
+      return false;
     }
 
-    this.account = this.account.toBuilder().putAsset(key, value).build();
+    mutableAssets().put(key, value);
 
     return true;
   }
@@ -267,9 +389,10 @@ public class AccountCapsule implements ProtoCapsule<Account>, Comparable<Account
    * add asset.
    */
   public Map<String, Long> getAssetMap() {
-    Map<String, Long> assetMap = this.account.getAssetMap();
-    if (assetMap.isEmpty()) {
-      assetMap = Maps.newHashMap();
+    Map<String, Long> assetMap = Maps.newLinkedHashMap(getStoredAssets());
+    assetMap.putAll(this.account.getAssetMap());
+    if (assets != null) {
+      assetMap.putAll(assets);
     }
 
     return assetMap;
@@ -16,18 +16,22 @@
 package org.tron.core.capsule;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.CollectionUtils;
 import org.tron.common.crypto.ECKey;
 import org.tron.common.crypto.ECKey.ECDSASignature;
 import org.tron.common.utils.Sha256Hash;
-import org.tron.core.capsule.utils.MerkleTree;
+import org.tron.core.capsule.utils.MerkleUtil;
+import org.tron.core.exception.BadBlockException;
 import org.tron.core.exception.BadItemException;
 import org.tron.core.exception.ValidateSignatureException;
 import org.tron.protos.Protocol.Block;
@@ -109,9 +113,21 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 
   private BlockId blockId = new BlockId(Sha256Hash.ZERO_HASH, 0);
 
-  private Block block;
+  // null until the body is needed when the capsule is built from serialized bytes
+  private volatile Block block;
   public boolean generatedByMyself = false;
 
+  // lazily decoded form: the header and the position of each transaction inside data
+  private BlockHeader header;
+  private int[] trxOffsets;
+  private int[] trxLengths;
+
+  // derived from the immutable block, computed on first use and dropped whenever block is rebuilt
+  private byte[] data;
+  private Sha256Hash rawHash;
+  private Sha256Hash merkleRoot;
+  private List<TransactionCapsule> transactions;
+
   public BlockCapsule(long number, Sha256Hash hash, long when, ByteString witnessAddress) {
     // blockheader raw
     BlockHeader.raw.Builder blockHeaderRawBuild = BlockHeader.raw.newBuilder();
@@ -170,13 +186,78 @@ public class BlockCapsule implements ProtoCapsule<Block> {
   }
 
   public void addTransaction(TransactionCapsule pendingTrx) {
-    this.block = this.block.toBuilder().addTransactions(pendingTrx.getInstance()).build();
+    this.block = getInstance().toBuilder().addTransactions(pendingTrx.getInstance()).build();
+    clearCache();
   }
 
+  /**
+   * add transactions with a single rebuild of the block.
+   */
+  public void addTransactions(List<TransactionCapsule> pendingTrxs) {
+    Block.Builder blockBuilder = getInstance().toBuilder();
+    pendingTrxs.forEach(trx -> blockBuilder.addTransactions(trx.getInstance()));
+    this.block = blockBuilder.build();
+    clearCache();
+  }
+
+  private void clearCache() {
+    this.blockId = new BlockId(Sha256Hash.ZERO_HASH, 0);
+    this.data = null;
+    this.rawHash = null;
+    this.merkleRoot = null;
+    this.transactions = null;
+  }
+
+  /**
+   * the capsules are created once per block, so hashes and signature checks done on them are kept.
+   */
   public List<TransactionCapsule> getTransactions() {
-    return this.block.getTransactionsList().stream()
-        .map(trx -> new TransactionCapsule(trx))
-        .collect(Collectors.toList());
+    if (transactions == null) {
+      Block decoded = this.block;
+      if (decoded != null) {
+        transactions = Collections.unmodifiableList(decoded.getTransactionsList().stream()
+            .map(trx -> new TransactionCapsule(trx))
+            .collect(Collectors.toList()));
+      } else {
+        try {
+          transactions = Collections.unmodifiableList(decodeTransactions());
+        } catch (InvalidProtocolBufferException e) {
+          throw new IllegalArgumentException("block " + getNum() + " has a malformed body", e);
+        }
+      }
+    }
+    return transactions;
+  }
+
+  /**
+   * decode the transactions of a block received as bytes, so a malformed one is found before the
+   * block is applied rather than halfway through.
+   *
+   * @throws BadBlockException if a transaction does not decode.
+   */
+  public void decodeBody() throws BadBlockException {
+    if (transactions == null && this.block == null) {
+      try {
+        transactions = Collections.unmodifiableList(decodeTransactions());
+      } catch (InvalidProtocolBufferException e) {
+        throw new BadBlockException("block " + getNum() + " has a malformed body: "
+            + e.getMessage());
+      }
+    }
+  }
+
+  public int getTransactionCount() {
+    Block decoded = this.block;
+    return decoded != null ? decoded.getTransactionsCount() : trxOffsets.length;
+  }
+
+  private List<TransactionCapsule> decodeTransactions() throws InvalidProtocolBufferException {
+    List<TransactionCapsule> decoded = new ArrayList<>(trxOffsets.length);
+    for (int i = 0; i < trxOffsets.length; i++) {
+      decoded.add(new TransactionCapsule(
+          Transaction.parser().parseFrom(data, trxOffsets[i], trxLengths[i])));
+    }
+    return decoded;
   }
 
   public void sign(byte[] privateKey) {
@@ -185,14 +266,19 @@ public class BlockCapsule implements ProtoCapsule<Block> {
     ECDSASignature signature = ecKey.sign(getRawHash().getBytes());
     ByteString sig = ByteString.copyFrom(signature.toByteArray());
 
-    BlockHeader blockHeader = this.block.getBlockHeader().toBuilder().setWitnessSignature(sig)
+    BlockHeader blockHeader = getHeader().toBuilder().setWitnessSignature(sig)
         .build();
 
-    this.block = this.block.toBuilder().setBlockHeader(blockHeader).build();
+    this.block = getInstance().toBuilder().setBlockHeader(blockHeader).build();
+    this.blockId = new BlockId(Sha256Hash.ZERO_HASH, 0);
+    this.data = null;
   }
 
   private Sha256Hash getRawHash() {
-    return Sha256Hash.of(this.block.getBlockHeader().getRawData().toByteArray());
+    if (rawHash == null) {
+      rawHash = Sha256Hash.of(getHeader().getRawData().toByteArray());
+    }
+    return rawHash;
   }
 
   public boolean validateSignature() throws ValidateSignatureException {
@@ -200,8 +286,8 @@ public class BlockCapsule implements ProtoCapsule<Block> {
       return Arrays
           .equals(ECKey.signatureToAddress(getRawHash().getBytes(),
               TransactionCapsule
-                  .getBase64FromByteString(block.getBlockHeader().getWitnessSignature())),
-              block.getBlockHeader().getRawData().getWitnessAddress().toByteArray());
+                  .getBase64FromByteString(getHeader().getWitnessSignature())),
+              getHeader().getRawData().getWitnessAddress().toByteArray());
     } catch (SignatureException e) {
       throw new ValidateSignatureException(e.getMessage());
     }
@@ -209,41 +295,49 @@ public class BlockCapsule implements ProtoCapsule<Block> {
 
   public BlockId getBlockId() {
     if (blockId.equals(Sha256Hash.ZERO_HASH)) {
-      blockId = new BlockId(Sha256Hash.of(this.block.getBlockHeader().toByteArray()), getNum());
+      blockId = new BlockId(Sha256Hash.of(getHeader().toByteArray()), getNum());
     }
     return blockId;
   }
 
   public Sha256Hash calcMerkleRoot() {
-    List<Transaction> transactionsList = this.block.getTransactionsList();
-
-    if (CollectionUtils.isEmpty(transactionsList)) {
-      return Sha256Hash.ZERO_HASH;
+    if (merkleRoot != null) {
+      return merkleRoot;
     }
 
-    Vector<Sha256Hash> ids = transactionsList.stream()
-        .map(TransactionCapsule::new)
+    List<Sha256Hash> ids = getTransactions().stream()
         .map(TransactionCapsule::getHash)
-        .collect(Collectors.toCollection(Vector::new));
+        .collect(Collectors.toList());
 
-    return MerkleTree.getInstance().createTree(ids).getRoot().getHash();
+    merkleRoot = MerkleUtil.computeRoot(ids);
+    return merkleRoot;
   }
 
   public void setMerkleRoot() {
-    BlockHeader.raw blockHeaderRaw =
-        this.block.getBlockHeader().getRawData().toBuilder()
-            .setTxTrieRoot(calcMerkleRoot().getByteString()).build();
+    setMerkleRoot(calcMerkleRoot());
+  }
 
-    this.block = this.block.toBuilder().setBlockHeader(
-        this.block.getBlockHeader().toBuilder().setRawData(blockHeaderRaw)).build();
+  /**
+   * set a root computed elsewhere from the same transactions, e.g. while the body was assembled.
+   */
+  public void setMerkleRoot(Sha256Hash merkleRoot) {
+    BlockHeader.raw blockHeaderRaw =
+        getHeader().getRawData().toBuilder()
+            .setTxTrieRoot(merkleRoot.getByteString()).build();
+
+    this.block = getInstance().toBuilder().setBlockHeader(
+        getHeader().toBuilder().setRawData(blockHeaderRaw)).build();
+    this.blockId = new BlockId(Sha256Hash.ZERO_HASH, 0);
+    this.data = null;
+    this.rawHash = null;
   }
 
   public Sha256Hash getMerkleRoot() {
-    return Sha256Hash.wrap(this.block.getBlockHeader().getRawData().getTxTrieRoot());
+    return Sha256Hash.wrap(getHeader().getRawData().getTxTrieRoot());
   }
 
   public ByteString getWitnessAddress() {
-    return this.block.getBlockHeader().getRawData().getWitnessAddress();
+    return getHeader().getRawData().getWitnessAddress();
   }
 
 
@@ -251,38 +345,93 @@ public class BlockCapsule implements ProtoCapsule<Block> {
     this.block = block;
   }
 
+  /**
+   * only the header is decoded here, transactions are decoded when first asked for, so ids,
+   * parent links and duplicate checks never pay for the body.
+   */
   public BlockCapsule(byte[] data) throws BadItemException {
     try {
-      this.block = Block.parseFrom(data);
-    } catch (InvalidProtocolBufferException e) {
+      BlockHeader.Builder headerBuilder = BlockHeader.newBuilder();
+      int[] offsets = new int[16];
+      int[] lengths = new int[16];
+      int count = 0;
+
+      CodedInputStream input = CodedInputStream.newInstance(data);
+      int tag;
+      while ((tag = input.readTag()) != 0) {
+        int field = WireFormat.getTagFieldNumber(tag);
+        boolean delimited =
+            WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+        if (field == Block.TRANSACTIONS_FIELD_NUMBER && delimited) {
+          int length = input.readRawVarint32();
+          if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+          }
+          offsets[count] = input.getTotalBytesRead();
+          lengths[count] = length;
+          count++;
+          input.skipRawBytes(length);
+        } else if (field == Block.BLOCK_HEADER_FIELD_NUMBER && delimited) {
+          headerBuilder.mergeFrom(input.readBytes());
+        } else if (!input.skipField(tag)) {
+          break;
+        }
+      }
+
+      this.header = headerBuilder.build();
+      this.trxOffsets = Arrays.copyOf(offsets, count);
+      this.trxLengths = Arrays.copyOf(lengths, count);
+      this.data = data;
+    } catch (IOException e) {
       throw new BadItemException();
     }
   }
 
+  /**
+   * the returned array is shared, callers must not modify it.
+   */
   @Override
   public byte[] getData() {
-    return this.block.toByteArray();
+    if (data == null) {
+      data = getInstance().toByteArray();
+    }
+    return data;
   }
 
   @Override
   public Block getInstance() {
-    return this.block;
+    Block decoded = this.block;
+    if (decoded == null) {
+      try {
+        decoded = Block.parseFrom(data);
+      } catch (InvalidProtocolBufferException e) {
+        throw new IllegalArgumentException("block " + getNum() + " has a malformed body", e);
+      }
+      this.block = decoded;
+    }
+    return decoded;
+  }
+
+  private BlockHeader getHeader() {
+    Block decoded = this.block;
+    return decoded != null ? decoded.getBlockHeader() : header;
   }
 
   public Sha256Hash getParentHash() {
-    return Sha256Hash.wrap(this.block.getBlockHeader().getRawData().getParentHash());
+    return Sha256Hash.wrap(getHeader().getRawData().getParentHash());
   }
 
   public ByteString getParentHashStr() {
-    return this.block.getBlockHeader().getRawData().getParentHash();
+    return getHeader().getRawData().getParentHash();
   }
 
   public long getNum() {
-    return this.block.getBlockHeader().getRawData().getNumber();
+    return getHeader().getRawData().getNumber();
   }
 
   public long getTimeStamp() {
-    return this.block.getBlockHeader().getRawData().getTimestamp();
+    return getHeader().getRawData().getTimestamp();
   }
 
   @Override
@@ -25,9 +25,9 @@ import static org.tron.protos.Contract.WitnessUpdateContract;
 import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 import java.security.SignatureException;
 import java.util.Arrays;
-import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.common.crypto.ECKey;
 import org.tron.common.crypto.ECKey.ECDSASignature;
@@ -49,6 +49,21 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
 
   private Transaction transaction;
 
+  // signatures only depend on raw data, so a verified capsule stays verified until mutated
+  private boolean isVerified = false;
+
+  // serialized form and hashes, computed on first use and dropped on every mutation
+  private byte[] data;
+  private Sha256Hash id;
+  private Sha256Hash rawHash;
+
+  // decoded contract parameters by contract index, shared by the owner lookup, the signature
+  // check and the actuators of this transaction
+  private Message[] contracts;
+
+  // outcome of the last execution, kept beside the transaction since its hash covers the ret list
+  private TransactionResultCapsule result;
+
   /**
    * constructor TransactionCapsule.
    */
@@ -124,19 +139,28 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
   }
 
   public void setResult(TransactionResultCapsule transactionResultCapsule) {
-    //this.getInstance().toBuilder(). (transactionResultCapsule.getInstance());
+    this.result = transactionResultCapsule;
+  }
+
+  /**
+   * result of the last execution, null if it was not executed.
+   */
+  public TransactionResultCapsule getResult() {
+    return result;
   }
 
   public void setReference(long blockNum, byte[] blockHash) {
     Transaction.raw rawData = this.transaction.getRawData().toBuilder().setRefBlockNum(blockNum)
         .setRefBlockHash(ByteString.copyFrom(blockHash)).build();
     this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+    clearCache();
   }
 
   public void setExpiration(long expiration) {
     Transaction.raw rawData = this.transaction.getRawData().toBuilder().setExpiration(expiration)
         .build();
     this.transaction = this.transaction.toBuilder().setRawData(rawData).build();
+    clearCache();
   }
 
   public TransactionCapsule(AssetIssueContract assetIssueContract) {
@@ -162,15 +186,26 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
             Any.pack(message)).build());
     logger.info("Transaction create succeeded！");
     transaction = Transaction.newBuilder().setRawData(transactionBuilder.build()).build();
+    clearCache();
+  }
+
+  private void clearCache() {
+    this.data = null;
+    this.id = null;
+    this.rawHash = null;
+    this.contracts = null;
+    this.isVerified = false;
   }
 
   public Sha256Hash getHash() {
-    byte[] transBytes = this.transaction.toByteArray();
-    return Sha256Hash.of(transBytes);
+    return getTransactionId();
   }
 
   public Sha256Hash getRawHash() {
-    return Sha256Hash.of(this.transaction.getRawData().toByteArray());
+    if (rawHash == null) {
+      rawHash = Sha256Hash.of(this.transaction.getRawData().toByteArray());
+    }
+    return rawHash;
   }
 
   /**
@@ -205,53 +240,119 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
     ECDSASignature signature = ecKey.sign(getRawHash().getBytes());
     ByteString sig = ByteString.copyFrom(signature.toBase64().getBytes());
     this.transaction = this.transaction.toBuilder().addSignature(sig).build();
+    clearCache();
+  }
+
+  /**
+   * proto class of the parameter of a contract type, null for types without one.
+   */
+  public static Class<? extends Message> getContractClass(ContractType type) {
+    switch (type) {
+      case AccountCreateContract:
+        return AccountCreateContract.class;
+      case TransferContract:
+        return TransferContract.class;
+      case TransferAssetContract:
+        return TransferAssetContract.class;
+      case VoteAssetContract:
+        return VoteAssetContract.class;
+      case VoteWitnessContract:
+        return VoteWitnessContract.class;
+      case WitnessCreateContract:
+        return WitnessCreateContract.class;
+      case AssetIssueContract:
+        return AssetIssueContract.class;
+      case DeployContract:
+        return DeployContract.class;
+      case WitnessUpdateContract:
+        return WitnessUpdateContract.class;
+      case ParticipateAssetIssueContract:
+        return ParticipateAssetIssueContract.class;
+      // todo add other contract
+
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * the decoded parameter of the contract at index, null if its type is unknown. Decoded once
+   * per capsule.
+   */
+  public Message getContract(int index) throws InvalidProtocolBufferException {
+    Message[] decoded = contracts;
+    if (decoded == null) {
+      decoded = new Message[this.transaction.getRawData().getContractCount()];
+      contracts = decoded;
+    }
+    if (decoded[index] == null) {
+      Transaction.Contract contract = this.transaction.getRawData().getContract(index);
+      Class<? extends Message> type = getContractClass(contract.getType());
+      if (type == null) {
+        return null;
+      }
+      decoded[index] = contract.getParameter().unpack(type);
+    }
+    return decoded[index];
+  }
+
+  /**
+   * owner of the contract at index, null if it can not be decoded.
+   */
+  public byte[] getOwner(int index) {
+    try {
+      return toBytes(getOwnerAddress(getContract(index)));
+    } catch (InvalidProtocolBufferException ex) {
+      logger.debug(ex.getMessage(), ex);
+      return null;
+    }
   }
 
   // todo mv this static function to capsule util
   public static byte[] getOwner(Transaction.Contract contract) {
-    ByteString owner;
     try {
-      Any contractParameter = contract.getParameter();
-      switch (contract.getType()) {
-        case AccountCreateContract:
-          owner = contractParameter.unpack(AccountCreateContract.class).getOwnerAddress();
-          break;
-        case TransferContract:
-          owner = contractParameter.unpack(TransferContract.class).getOwnerAddress();
-          break;
-        case TransferAssetContract:
-          owner = contractParameter.unpack(TransferAssetContract.class).getOwnerAddress();
-          break;
-        case VoteAssetContract:
-          owner = contractParameter.unpack(VoteAssetContract.class).getOwnerAddress();
-          break;
-        case VoteWitnessContract:
-          owner = contractParameter.unpack(VoteWitnessContract.class).getOwnerAddress();
-          break;
-        case WitnessCreateContract:
-          owner = contractParameter.unpack(WitnessCreateContract.class).getOwnerAddress();
-          break;
-        case AssetIssueContract:
-          owner = contractParameter.unpack(AssetIssueContract.class).getOwnerAddress();
-          break;
-        case DeployContract:
-          owner = contractParameter.unpack(DeployContract.class).getOwnerAddress();
-          break;
-        case ParticipateAssetIssueContract:
-          owner = contractParameter.unpack(ParticipateAssetIssueContract.class).getOwnerAddress();
-          break;
-        // todo add other contract
-
-        default:
-          return null;
-      }
-      return owner.toByteArray();
+      return toBytes(getOwnerAddress(unpack(contract)));
     } catch (Exception ex) {
       ex.printStackTrace();
       return null;
     }
   }
 
+  private static Message unpack(Transaction.Contract contract)
+      throws InvalidProtocolBufferException {
+    Class<? extends Message> type = getContractClass(contract.getType());
+    return type == null ? null : contract.getParameter().unpack(type);
+  }
+
+  private static ByteString getOwnerAddress(Message contract) {
+    if (contract instanceof AccountCreateContract) {
+      return ((AccountCreateContract) contract).getOwnerAddress();
+    } else if (contract instanceof TransferContract) {
+      return ((TransferContract) contract).getOwnerAddress();
+    } else if (contract instanceof TransferAssetContract) {
+      return ((TransferAssetContract) contract).getOwnerAddress();
+    } else if (contract instanceof VoteAssetContract) {
+      return ((VoteAssetContract) contract).getOwnerAddress();
+    } else if (contract instanceof VoteWitnessContract) {
+      return ((VoteWitnessContract) contract).getOwnerAddress();
+    } else if (contract instanceof WitnessCreateContract) {
+      return ((WitnessCreateContract) contract).getOwnerAddress();
+    } else if (contract instanceof WitnessUpdateContract) {
+      return ((WitnessUpdateContract) contract).getOwnerAddress();
+    } else if (contract instanceof AssetIssueContract) {
+      return ((AssetIssueContract) contract).getOwnerAddress();
+    } else if (contract instanceof DeployContract) {
+      return ((DeployContract) contract).getOwnerAddress();
+    } else if (contract instanceof ParticipateAssetIssueContract) {
+      return ((ParticipateAssetIssueContract) contract).getOwnerAddress();
+    }
+    return null;
+  }
+
+  private static byte[] toBytes(ByteString address) {
+    return address == null ? null : address.toByteArray();
+  }
+
   public static String getBase64FromByteString(ByteString sign) {
     byte[] r = sign.substring(0, 32).toByteArray();
     byte[] s = sign.substring(32, 64).toByteArray();
@@ -268,16 +369,17 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
    * validate signature
    */
   public boolean validateSignature() throws ValidateSignatureException {
+    if (isVerified) {
+      return true;
+    }
     if (this.getInstance().getSignatureCount() !=
         this.getInstance().getRawData().getContractCount()) {
       throw new ValidateSignatureException("miss sig or contract");
     }
 
-    List<Transaction.Contract> listContract = this.transaction.getRawData().getContractList();
     for (int i = 0; i < this.transaction.getSignatureCount(); ++i) {
       try {
-        Transaction.Contract contract = listContract.get(i);
-        byte[] owner = getOwner(contract);
+        byte[] owner = getOwner(i);
         byte[] address = ECKey.signatureToAddress(getRawHash().getBytes(),
             getBase64FromByteString(this.transaction.getSignature(i)));
         if (!Arrays.equals(owner, address)) {
@@ -287,17 +389,27 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
         throw new ValidateSignatureException(e.getMessage());
       }
     }
+    isVerified = true;
     return true;
   }
 
 
   public Sha256Hash getTransactionId() {
-    return Sha256Hash.of(this.transaction.toByteArray());
+    if (id == null) {
+      id = Sha256Hash.of(getData());
+    }
+    return id;
   }
 
+  /**
+   * the returned array is shared, callers must not modify it.
+   */
   @Override
   public byte[] getData() {
-    return this.transaction.toByteArray();
+    if (data == null) {
+      data = this.transaction.toByteArray();
+    }
+    return data;
   }
 
   @Override
@@ -7,6 +7,10 @@ import java.util.stream.IntStream;
 import lombok.Getter;
 import org.tron.common.utils.Sha256Hash;
 
+/**
+ * Keeps every node of the last tree it created, which makes it unsafe to share between threads.
+ * Use {@link MerkleUtil} when only the root or a proof is needed.
+ */
 @Getter
 public class MerkleTree {
     private static volatile MerkleTree instance;
@@ -0,0 +1,266 @@
+/*
+ * java-tron is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * java-tron is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.tron.core.capsule.utils;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.tron.common.utils.Sha256Hash;
+
+/**
+ * Stateless merkle root computation, safe to call from any thread.
+ *
+ * <p>The tree is the one built by {@link MerkleTree}: a parent is sha256(left || right) and the
+ * last node of an odd level is promoted to the next level unchanged. Levels are kept in flat
+ * arrays of 32-byte hashes, so no object is created per node.
+ */
+public class MerkleUtil {
+
+  private static final int HASH_LENGTH = Sha256Hash.LENGTH;
+
+  // levels with fewer pairs are hashed on the calling thread
+  private static final int PARALLEL_THRESHOLD = 1024;
+
+  private static final ThreadLocal<MessageDigest> DIGEST =
+      ThreadLocal.withInitial(Sha256Hash::newDigest);
+
+  private MerkleUtil() {
+  }
+
+  /**
+   * root of the given leaves, {@link Sha256Hash#ZERO_HASH} for an empty list.
+   */
+  public static Sha256Hash computeRoot(List<Sha256Hash> hashList) {
+    int count = hashList.size();
+    if (count == 0) {
+      return Sha256Hash.ZERO_HASH;
+    }
+    if (count == 1) {
+      return hashList.get(0);
+    }
+
+    byte[] src = toLevel(hashList);
+    byte[] dst = new byte[((count + 1) / 2) * HASH_LENGTH];
+    while (count > 1) {
+      count = hashLevel(src, dst, count);
+      byte[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+    return Sha256Hash.wrap(Arrays.copyOf(src, HASH_LENGTH));
+  }
+
+  /**
+   * path from the leaf at index to the root.
+   */
+  public static Proof getProof(List<Sha256Hash> hashList, int index) {
+    int count = hashList.size();
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("index " + index + ", leaf count " + count);
+    }
+
+    List<Sha256Hash> siblings = new ArrayList<>();
+    byte[] level = toLevel(hashList);
+    int position = index;
+    while (count > 1) {
+      int sibling = position ^ 1;
+      if (sibling < count) {
+        siblings.add(Sha256Hash.wrap(
+            Arrays.copyOfRange(level, sibling * HASH_LENGTH, (sibling + 1) * HASH_LENGTH)));
+      }
+      byte[] parents = new byte[((count + 1) / 2) * HASH_LENGTH];
+      count = hashLevel(level, parents, count);
+      level = parents;
+      position >>= 1;
+    }
+    return new Proof(index, hashList.size(), siblings);
+  }
+
+  private static byte[] toLevel(List<Sha256Hash> hashList) {
+    byte[] level = new byte[hashList.size() * HASH_LENGTH];
+    for (int i = 0; i < hashList.size(); i++) {
+      System.arraycopy(hashList.get(i).getBytes(), 0, level, i * HASH_LENGTH, HASH_LENGTH);
+    }
+    return level;
+  }
+
+  /**
+   * hash count nodes of src into dst.
+   *
+   * @return the number of nodes written to dst.
+   */
+  private static int hashLevel(byte[] src, byte[] dst, int count) {
+    int pairs = count / 2;
+    if (pairs >= PARALLEL_THRESHOLD) {
+      IntStream.range(0, pairs).parallel().forEach(i -> hashPair(src, i * 2, dst, i));
+    } else {
+      for (int i = 0; i < pairs; i++) {
+        hashPair(src, i * 2, dst, i);
+      }
+    }
+    if ((count & 1) == 1) {
+      System.arraycopy(src, (count - 1) * HASH_LENGTH, dst, pairs * HASH_LENGTH, HASH_LENGTH);
+      return pairs + 1;
+    }
+    return pairs;
+  }
+
+  private static void hashPair(byte[] src, int left, byte[] dst, int parent) {
+    MessageDigest digest = DIGEST.get();
+    digest.update(src, left * HASH_LENGTH, HASH_LENGTH * 2);
+    digestInto(digest, dst, parent * HASH_LENGTH);
+  }
+
+  private static void hashPair(byte[] left, byte[] right, byte[] out) {
+    MessageDigest digest = DIGEST.get();
+    digest.update(left, 0, HASH_LENGTH);
+    digest.update(right, 0, HASH_LENGTH);
+    digestInto(digest, out, 0);
+  }
+
+  private static void digestInto(MessageDigest digest, byte[] out, int offset) {
+    try {
+      digest.digest(out, offset, HASH_LENGTH);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e); // the buffer always has room for a sha256 hash
+    }
+  }
+
+  /**
+   * Merkle inclusion proof: the siblings met on the way from a leaf to the root. Nodes promoted
+   * on an odd level have no sibling, so the leaf count is needed to replay the path.
+   */
+  public static class Proof {
+
+    private final int index;
+    private final int leafCount;
+    private final List<Sha256Hash> siblings;
+
+    public Proof(int index, int leafCount, List<Sha256Hash> siblings) {
+      this.index = index;
+      this.leafCount = leafCount;
+      this.siblings = Collections.unmodifiableList(new ArrayList<>(siblings));
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public int getLeafCount() {
+      return leafCount;
+    }
+
+    public List<Sha256Hash> getSiblings() {
+      return siblings;
+    }
+
+    /**
+     * whether leaf sits at this proof's index of a tree with the given root.
+     */
+    public boolean verify(Sha256Hash leaf, Sha256Hash root) {
+      if (index < 0 || index >= leafCount) {
+        return false;
+      }
+
+      byte[] node = leaf.getBytes().clone();
+      int position = index;
+      int count = leafCount;
+      int next = 0;
+      while (count > 1) {
+        int sibling = position ^ 1;
+        if (sibling < count) {
+          if (next == siblings.size()) {
+            return false;
+          }
+          byte[] other = siblings.get(next++).getBytes();
+          if ((position & 1) == 0) {
+            hashPair(node, other, node);
+          } else {
+            hashPair(other, node, node);
+          }
+        }
+        position >>= 1;
+        count = (count + 1) / 2;
+      }
+      return next == siblings.size() && Arrays.equals(node, root.getBytes());
+    }
+  }
+
+  /**
+   * Root of a growing leaf list with a logarithmic amount of work per append.
+   *
+   * <p>With odd nodes promoted, the tree over n leaves splits into perfect subtrees following the
+   * binary digits of n, largest first; the root is those subtree roots folded from the right.
+   * Only the subtree roots are kept, like the digits of a binary counter. Not thread safe.
+   */
+  public static class Accumulator {
+
+    // peaks[h] is the root of a perfect subtree of 2^h leaves, when bit h of count is set
+    private final List<byte[]> peaks = new ArrayList<>();
+    private long count = 0;
+
+    public void append(Sha256Hash hash) {
+      byte[] carry = hash.getBytes().clone();
+      int height = 0;
+      while ((count & (1L << height)) != 0) {
+        hashPair(peaks.get(height), carry, carry);
+        peaks.set(height, null);
+        height++;
+      }
+      if (height == peaks.size()) {
+        peaks.add(carry);
+      } else {
+        peaks.set(height, carry);
+      }
+      count++;
+    }
+
+    public long size() {
+      return count;
+    }
+
+    /**
+     * same value as {@link MerkleUtil#computeRoot(List)} over the appended leaves.
+     */
+    public Sha256Hash getRoot() {
+      if (count == 0) {
+        return Sha256Hash.ZERO_HASH;
+      }
+      byte[] root = null;
+      for (int height = 0; height < peaks.size(); height++) {
+        byte[] peak = peaks.get(height);
+        if (peak == null) {
+          continue;
+        }
+        if (root == null) {
+          root = peak.clone();
+        } else {
+          hashPair(peak, root, root);
+        }
+      }
+      return Sha256Hash.wrap(root);
+    }
+
+    public void clear() {
+      peaks.clear();
+      count = 0;
+    }
+  }
+}
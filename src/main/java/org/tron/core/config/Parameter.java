@@ -22,6 +22,7 @@ public interface Parameter {
     long MAX_BLOCKS_IN_PROCESS = 400;
     long MAX_BLOCKS_ALREADY_FETCHED = 800;
     long MAX_BLOCKS_SYNC_FROM_ONE_PEER = 200;
+    long MIN_BLOCKS_SYNC_WINDOW = 50;
     long SYNC_CHAIN_LIMIT_NUM = 500;
 
   }
@@ -33,9 +34,15 @@ public interface Parameter {
   interface NetConstants {
     long ADV_TIME_OUT = 1000L;
     long SYNC_TIME_OUT = 5000L;
+    long SYNC_REASSIGN_TIME_OUT = 1000L;
     long HEAD_NUM_MAX_DELTA = 1000L;
     long HEAD_NUM_CHECK_TIME = 60000L;
     long MAX_INVENTORY_SIZE_IN_MINUTES = 2L;
+    int MAX_INVENTORY_SIZE = 50000;
+    long BAD_ADV_OBJ_TIME_OUT = 30 * 60 * 1000L;
+    int MAX_BAD_ADV_OBJ_SIZE = 10000;
+    int MAX_RECENTLY_SEEN_SIZE = 100000;
+    double INVENTORY_FILTER_FP_RATE = 0.000001;
   }
 
 
@@ -0,0 +1,52 @@
+package org.tron.core.config.args;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Transfer rate allowed to accounts holding at least minBalance: rate transactions per second on
+ * average, up to burst of them at once.
+ */
+public class AdmissionTier implements Serializable {
+
+  private static final long serialVersionUID = 4716203953521844127L;
+
+  @Getter
+  private final long minBalance;
+
+  @Getter
+  private final double rate;
+
+  @Getter
+  private final long burst;
+
+  public AdmissionTier(long minBalance, double rate, long burst) {
+    if (minBalance < 0) {
+      throw new IllegalArgumentException("minBalance(" + minBalance + ") must not be negative");
+    }
+    if (rate <= 0 || burst < 1) {
+      throw new IllegalArgumentException(
+          "rate(" + rate + ") must be positive and burst(" + burst + ") at least 1");
+    }
+    this.minBalance = minBalance;
+    this.rate = rate;
+    this.burst = burst;
+  }
+
+  /**
+   * one transfer a second for small accounts, twenty for accounts of 1000 TRX or more.
+   */
+  public static List<AdmissionTier> getDefault() {
+    List<AdmissionTier> tiers = new ArrayList<>();
+    tiers.add(new AdmissionTier(0, 1, 5));
+    tiers.add(new AdmissionTier(1000_000_000L, 20, 100));
+    return tiers;
+  }
+
+  @Override
+  public String toString() {
+    return "balance >= " + minBalance + ": " + rate + "/s, burst " + burst;
+  }
+}
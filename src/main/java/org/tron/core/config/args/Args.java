@@ -149,6 +149,26 @@ public class Args {
   @Setter
   private int nodeP2pVersion;
 
+  @Getter
+  @Setter
+  private int nodeMaxFrameSize;
+
+  @Getter
+  @Setter
+  private boolean nodeP2pCompression;
+
+  @Getter
+  @Setter
+  private int nodeP2pCompressionThreshold;
+
+  @Getter
+  @Setter
+  private boolean nodeP2pCompactBlocks;
+
+  @Getter
+  @Setter
+  private boolean nodeP2pHeadersFirst;
+
   @Getter
   @Setter
   private String p2pNodeId;
@@ -163,6 +183,9 @@ public class Args {
   @Parameter(names = {"--trust-node"}, description = "Trust node addr")
   private String trustNodeAddr;
 
+  @Getter
+  private List<AdmissionTier> admissionTiers = AdmissionTier.getDefault();
+
   public static void clearParam() {
     INSTANCE.outputDirectory = "output-directory";
     INSTANCE.help = false;
@@ -190,9 +213,15 @@ public class Args {
     INSTANCE.nodeP2pPingInterval = 0L;
     INSTANCE.syncNodeCount = 0;
     INSTANCE.nodeP2pVersion = 0;
+    INSTANCE.nodeMaxFrameSize = 0;
+    INSTANCE.nodeP2pCompression = false;
+    INSTANCE.nodeP2pCompressionThreshold = 0;
+    INSTANCE.nodeP2pCompactBlocks = false;
+    INSTANCE.nodeP2pHeadersFirst = false;
     INSTANCE.p2pNodeId = "";
     INSTANCE.solidityNode = false;
     INSTANCE.trustNodeAddr = "";
+    INSTANCE.admissionTiers = AdmissionTier.getDefault();
   }
 
   /**
@@ -295,9 +324,37 @@ public class Args {
     INSTANCE.nodeP2pVersion =
         config.hasPath("node.p2p.version") ? config.getInt("node.p2p.version") : 0;
 
+    INSTANCE.nodeMaxFrameSize =
+        config.hasPath("node.p2p.maxFrameSize") ? config.getInt("node.p2p.maxFrameSize") : 0;
+
+    INSTANCE.nodeP2pCompression =
+        config.hasPath("node.p2p.compression.enable") && config
+            .getBoolean("node.p2p.compression.enable");
+
+    INSTANCE.nodeP2pCompressionThreshold =
+        config.hasPath("node.p2p.compression.threshold") ? config
+            .getInt("node.p2p.compression.threshold") : 0;
+
+    INSTANCE.nodeP2pCompactBlocks =
+        !config.hasPath("node.p2p.compactBlocks") || config.getBoolean("node.p2p.compactBlocks");
+
+    INSTANCE.nodeP2pHeadersFirst =
+        !config.hasPath("node.p2p.headersFirst") || config.getBoolean("node.p2p.headersFirst");
+
     if (StringUtils.isEmpty(INSTANCE.trustNodeAddr)) {
       INSTANCE.trustNodeAddr = config.hasPath("node.trustNode") ? config.getString("node.trustNode") : null;
     }
+
+    INSTANCE.admissionTiers = config.hasPath("transaction.admission.tiers")
+        ? getAdmissionTiersFromConfig(config) : AdmissionTier.getDefault();
+  }
+
+  private static List<AdmissionTier> getAdmissionTiersFromConfig(
+      final com.typesafe.config.Config config) {
+    return config.getConfigList("transaction.admission.tiers").stream()
+        .map(tier -> new AdmissionTier(tier.getLong("minBalance"), tier.getDouble("rate"),
+            tier.getLong("burst")))
+        .collect(Collectors.toCollection(ArrayList::new));
   }
 
 
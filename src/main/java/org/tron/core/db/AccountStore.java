@@ -1,9 +1,12 @@
 package org.tron.core.db;
 
+import com.google.common.primitives.Longs;
 import com.typesafe.config.ConfigObject;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
@@ -16,6 +19,12 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
   private static Map<String, String> assertsAddress = new HashMap<String, String>();
   private static AccountStore instance;
 
+  // accounts used by the block or transaction being applied on each thread, see openWorkingSet
+  private final ThreadLocal<Map<ByteArrayWrapper, AccountCapsule>> workingSet =
+      new ThreadLocal<>();
+
+  // token balances are moved out of the accounts into this store when they are written
+  private AssetBalanceStore assetBalanceStore;
 
   private AccountStore(String dbName) {
     super(dbName);
@@ -41,10 +50,137 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
     return instance;
   }
 
+  /**
+   * Start sharing account objects on the calling thread: until the working set is closed, get
+   * returns the same mutable capsule for an address and put only marks it dirty. Dirty accounts
+   * are serialized and written once, on flush. Each thread has its own working set, other
+   * threads keep reading the database. Writers are serialized by the manager lock.
+   *
+   * @return false if the thread already has an open working set, which the caller must then
+   *     neither flush nor close.
+   */
+  public boolean openWorkingSet() {
+    if (workingSet.get() != null) {
+      return false;
+    }
+    workingSet.set(new LinkedHashMap<>());
+    return true;
+  }
+
+  /**
+   * write every dirty account of the working set, in the order they were first used.
+   */
+  public void flushWorkingSet() {
+    Map<ByteArrayWrapper, AccountCapsule> accounts = getWorkingSet();
+    if (accounts == null) {
+      return;
+    }
+    accounts.forEach((key, account) -> {
+      if (account.isDirty()) {
+        write(key.getData(), account);
+        account.clearDirty();
+      }
+    });
+  }
+
+  /**
+   * drop the working set, anything not flushed is discarded.
+   */
+  public void closeWorkingSet() {
+    workingSet.remove();
+  }
+
+  private Map<ByteArrayWrapper, AccountCapsule> getWorkingSet() {
+    return workingSet.get();
+  }
+
   @Override
   public AccountCapsule get(byte[] key) {
+    Map<ByteArrayWrapper, AccountCapsule> accounts = getWorkingSet();
+    if (accounts == null) {
+      return load(key);
+    }
+    ByteArrayWrapper wrapper = new ByteArrayWrapper(key);
+    AccountCapsule account = accounts.get(wrapper);
+    if (account == null) {
+      account = load(key);
+      if (account != null) {
+        accounts.put(wrapper, account);
+      }
+    }
+    return account;
+  }
+
+  AccountCapsule load(byte[] key) {
     byte[] value = dbSource.getData(key);
-    return ArrayUtils.isEmpty(value) ? null : new AccountCapsule(value);
+    return ArrayUtils.isEmpty(value) ? null : attach(new AccountCapsule(value));
+  }
+
+  private AccountCapsule attach(AccountCapsule account) {
+    account.setAssetBalanceStore(assetBalanceStore);
+    return account;
+  }
+
+  private void write(byte[] key, AccountCapsule account) {
+    if (assetBalanceStore != null) {
+      byte[] address = account.createDbKey();
+      Map<String, Long> assets = account.drainAssets();
+      if (!account.hasAssetBalanceStore()) {
+        // a capsule built in memory is the whole account, assets it does not hold are dropped
+        assetBalanceStore.getAllBalances(address).keySet().stream()
+            .filter(name -> !assets.containsKey(name))
+            .forEach(name -> assetBalanceStore.deleteBalance(address, name));
+      }
+      assets.forEach((name, amount) -> assetBalanceStore.putBalance(address, name, amount));
+      attach(account);
+    }
+    super.put(key, account);
+  }
+
+  public void setAssetBalanceStore(AssetBalanceStore assetBalanceStore) {
+    this.assetBalanceStore = assetBalanceStore;
+  }
+
+  /**
+   * move the asset maps still embedded in stored accounts to the asset balance store, once.
+   *
+   * @return the number of accounts migrated.
+   */
+  public long migrateAssets() {
+    long migrated = 0;
+    for (byte[] key : dbSource.allKeys()) {
+      AccountCapsule account = new AccountCapsule(dbSource.getData(key));
+      if (account.getInstance().getAssetCount() == 0) {
+        continue;
+      }
+      byte[] address = account.createDbKey();
+      account.drainAssets().forEach((name, amount) -> assetBalanceStore.getDbSource()
+          .putData(AssetBalanceStore.createKey(address, name), Longs.toByteArray(amount)));
+      dbSource.putData(key, account.getData());
+      migrated++;
+    }
+    return migrated;
+  }
+
+  @Override
+  public void put(byte[] key, AccountCapsule item) {
+    Map<ByteArrayWrapper, AccountCapsule> accounts = getWorkingSet();
+    if (accounts == null) {
+      write(key, item);
+      item.clearDirty();
+      return;
+    }
+    item.markDirty();
+    accounts.put(new ByteArrayWrapper(key), item);
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    Map<ByteArrayWrapper, AccountCapsule> accounts = getWorkingSet();
+    if (accounts != null) {
+      accounts.remove(new ByteArrayWrapper(key));
+    }
+    super.delete(key);
   }
 
   /**
@@ -54,6 +190,10 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
    */
   @Override
   public boolean has(byte[] key) {
+    Map<ByteArrayWrapper, AccountCapsule> accounts = getWorkingSet();
+    if (accounts != null && accounts.containsKey(new ByteArrayWrapper(key))) {
+      return true;
+    }
     byte[] account = dbSource.getData(key);
     return null != account;
   }
@@ -63,35 +203,37 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
    */
   public List<AccountCapsule> getAllAccounts() {
     return dbSource.allValues().stream().map(bytes ->
-        new AccountCapsule(bytes)
+        attach(new AccountCapsule(bytes))
     ).collect(Collectors.toList());
   }
 
+  /**
+   * stream the stored accounts in key order, batchSize serialized accounts at a time, see
+   * {@link AccountCapsule#AccountCapsule(byte[])}. Accounts held by a working set are not seen.
+   */
+  public void forEachBatch(int batchSize, Consumer<List<byte[]>> consumer) {
+    dbSource.forEachValueBatch(batchSize, consumer);
+  }
+
   /**
    * Max TRX account.
    */
   public AccountCapsule getSun() {
-    byte[] data = dbSource.getData((ByteArray.fromHexString(assertsAddress.get("Sun"))));
-    AccountCapsule accountCapsule = new AccountCapsule(data);
-    return accountCapsule;
+    return get(ByteArray.fromHexString(assertsAddress.get("Sun")));
   }
 
   /**
    * Min TRX account.
    */
   public AccountCapsule getBlackhole() {
-    byte[] data = dbSource.getData((ByteArray.fromHexString(assertsAddress.get("Blackhole"))));
-    AccountCapsule accountCapsule = new AccountCapsule(data);
-    return accountCapsule;
+    return get(ByteArray.fromHexString(assertsAddress.get("Blackhole")));
   }
 
   /**
    * Get foundation account info.
    */
   public AccountCapsule getZion() {
-    byte[] data = dbSource.getData((ByteArray.fromHexString(assertsAddress.get("Zion"))));
-    AccountCapsule accountCapsule = new AccountCapsule(data);
-    return accountCapsule;
+    return get(ByteArray.fromHexString(assertsAddress.get("Zion")));
   }
 
   public static void setAccount(com.typesafe.config.Config config) {
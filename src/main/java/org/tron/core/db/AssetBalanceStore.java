@@ -0,0 +1,91 @@
+package org.tron.core.db;
+
+import com.google.common.primitives.Longs;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
+import org.tron.common.utils.ByteArray;
+import org.tron.core.capsule.BytesCapsule;
+
+/**
+ * Token balances, one entry per (account, asset). The key is the address length, the address and
+ * the asset name, so all assets of an account are one prefix scan away; the value is the amount as
+ * a fixed 8 bytes.
+ */
+@Slf4j
+public class AssetBalanceStore extends TronStoreWithRevoking<BytesCapsule> {
+
+  private static AssetBalanceStore instance;
+
+  private AssetBalanceStore(String dbName) {
+    super(dbName);
+  }
+
+  public void destroy() {
+    instance = null;
+  }
+
+  /**
+   * create fun.
+   *
+   * @param dbName the name of database
+   */
+  public static AssetBalanceStore create(String dbName) {
+    if (instance == null) {
+      synchronized (AssetBalanceStore.class) {
+        if (instance == null) {
+          instance = new AssetBalanceStore(dbName);
+        }
+      }
+    }
+    return instance;
+  }
+
+  @Override
+  public BytesCapsule get(byte[] key) {
+    byte[] value = dbSource.getData(key);
+    return ArrayUtils.isEmpty(value) ? null : new BytesCapsule(value);
+  }
+
+  @Override
+  public boolean has(byte[] key) {
+    return null != dbSource.getData(key);
+  }
+
+  /**
+   * amount of the asset held by the account, null if it never held any.
+   */
+  public Long getBalance(byte[] address, String assetName) {
+    byte[] value = dbSource.getData(createKey(address, assetName));
+    return ArrayUtils.isEmpty(value) ? null : Longs.fromByteArray(value);
+  }
+
+  public void putBalance(byte[] address, String assetName, long amount) {
+    put(createKey(address, assetName), new BytesCapsule(Longs.toByteArray(amount)));
+  }
+
+  public void deleteBalance(byte[] address, String assetName) {
+    delete(createKey(address, assetName));
+  }
+
+  /**
+   * every asset held by the account, by asset name.
+   */
+  public Map<String, Long> getAllBalances(byte[] address) {
+    byte[] prefix = createPrefix(address);
+    Map<String, Long> balances = new LinkedHashMap<>();
+    dbSource.getPrefixData(prefix).forEach((key, value) -> balances.put(
+        ByteArray.toStr(ArrayUtils.subarray(key, prefix.length, key.length)),
+        Longs.fromByteArray(value)));
+    return balances;
+  }
+
+  private static byte[] createPrefix(byte[] address) {
+    return ArrayUtils.addAll(new byte[]{(byte) address.length}, address);
+  }
+
+  static byte[] createKey(byte[] address, String assetName) {
+    return ArrayUtils.addAll(createPrefix(address), ByteArray.fromString(assetName));
+  }
+}
@@ -0,0 +1,112 @@
+package org.tron.core.db;
+
+import com.google.protobuf.CodedOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.capsule.utils.MerkleUtil;
+import org.tron.protos.Protocol.Block;
+
+/**
+ * Candidate block body assembled while transactions arrive. Pending transactions are executed on
+ * top of the head one after another, so every prefix of the pending list is a valid block body;
+ * the builder keeps the longest prefix that fits in the size limit and which head it was executed
+ * on, so producing a block at slot time only needs the header and the signature.
+ */
+@Slf4j
+public class BlockBuilder {
+
+  private final long maxTrxsSize;
+
+  private Sha256Hash parentHash;
+
+  private List<TransactionCapsule> transactions = new ArrayList<>();
+
+  private final MerkleUtil.Accumulator merkleRoot = new MerkleUtil.Accumulator();
+
+  private long trxsSize = 0;
+
+  private boolean isFull = false;
+
+  private long postponedTrxCount = 0;
+
+  public BlockBuilder(long maxTrxsSize) {
+    this.maxTrxsSize = maxTrxsSize;
+  }
+
+  /**
+   * drop the candidate, called whenever the pending state is discarded.
+   */
+  public synchronized void reset() {
+    this.parentHash = null;
+    this.transactions = new ArrayList<>();
+    this.merkleRoot.clear();
+    this.trxsSize = 0;
+    this.isFull = false;
+    this.postponedTrxCount = 0;
+  }
+
+  /**
+   * append a transaction that has just been applied on top of headHash.
+   *
+   * @return false if the transaction has to wait for a later block.
+   */
+  public synchronized boolean append(TransactionCapsule trx, Sha256Hash headHash) {
+    if (parentHash == null || !parentHash.equals(headHash)) {
+      reset();
+      parentHash = headHash;
+    }
+
+    if (isFull) {
+      postponedTrxCount++;
+      return false;
+    }
+
+    long size = sizeInBlock(trx);
+    if (trxsSize + size > maxTrxsSize) {
+      // later transactions may depend on this one, so the body stops growing here
+      isFull = true;
+      postponedTrxCount++;
+      return false;
+    }
+
+    trxsSize += size;
+    transactions.add(trx);
+    merkleRoot.append(trx.getHash());
+    return true;
+  }
+
+  /**
+   * exact number of bytes the transaction adds to a serialized block.
+   */
+  public static long sizeInBlock(TransactionCapsule trx) {
+    return CodedOutputStream
+        .computeMessageSize(Block.TRANSACTIONS_FIELD_NUMBER, trx.getInstance());
+  }
+
+  public synchronized boolean isBuiltOn(Sha256Hash headHash) {
+    return parentHash != null && parentHash.equals(headHash);
+  }
+
+  public synchronized List<TransactionCapsule> getTransactions() {
+    return Collections.unmodifiableList(new ArrayList<>(transactions));
+  }
+
+  /**
+   * merkle root of {@link #getTransactions()}, kept up to date on every append.
+   */
+  public synchronized Sha256Hash getMerkleRoot() {
+    return merkleRoot.getRoot();
+  }
+
+  public synchronized long getTrxsSize() {
+    return trxsSize;
+  }
+
+  public synchronized long getPostponedTrxCount() {
+    return postponedTrxCount;
+  }
+}
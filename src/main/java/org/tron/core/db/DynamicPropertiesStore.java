@@ -28,6 +28,8 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
 
   private static final byte[] BLOCK_FILLED_SLOTS = "BLOCK_FILLED_SLOTS".getBytes();
 
+  private static final byte[] ASSET_BALANCE_MIGRATED = "ASSET_BALANCE_MIGRATED".getBytes();
+
   private static final int BLOCK_FILLED_SLOTS_NUMBER = 128;
 
   private int blockFilledSlotsIndex = 0;
@@ -230,6 +232,17 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
     this.put(LATEST_BLOCK_HEADER_HASH, new BytesCapsule(h.toByteArray()));
   }
 
+  /**
+   * whether the asset maps embedded in accounts have been moved to the asset balance store.
+   */
+  public boolean isAssetBalanceMigrated() {
+    return this.dbSource.getData(ASSET_BALANCE_MIGRATED) != null;
+  }
+
+  public void saveAssetBalanceMigrated() {
+    this.put(ASSET_BALANCE_MIGRATED, new BytesCapsule(ByteArray.fromInt(1)));
+  }
+
   public void saveStateFlag(int n) {
     logger.info("update state flag = {}", n);
     this.put(STATE_FLAG, new BytesCapsule(ByteArray.fromInt(n)));
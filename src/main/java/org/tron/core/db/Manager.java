@@ -1,11 +1,7 @@
 package org.tron.core.db;
 
-import static org.tron.core.config.Parameter.ChainConstant.SOLIDIFIED_THRESHOLD;
 import static org.tron.core.config.Parameter.ChainConstant.WITNESS_PAY_PER_BLOCK;
-import static org.tron.protos.Protocol.Transaction.Contract.ContractType.TransferAssetContract;
-import static org.tron.protos.Protocol.Transaction.Contract.ContractType.TransferContract;
 
-import com.carrotsearch.sizeof.RamUsageEstimator;
 import com.google.protobuf.ByteString;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,7 +24,6 @@ import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.DialogOptional;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.common.utils.StringUtil;
-import org.tron.common.utils.Time;
 import org.tron.core.actuator.Actuator;
 import org.tron.core.actuator.ActuatorFactory;
 import org.tron.core.capsule.AccountCapsule;
@@ -42,6 +37,7 @@ import org.tron.core.capsule.utils.BlockUtil;
 import org.tron.core.config.args.Args;
 import org.tron.core.config.args.GenesisBlock;
 import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.events.EventBus;
 import org.tron.core.exception.BadItemException;
 import org.tron.core.exception.BalanceInsufficientException;
 import org.tron.core.exception.ContractExeException;
@@ -52,9 +48,9 @@ import org.tron.core.exception.RevokingStoreIllegalStateException;
 import org.tron.core.exception.UnLinkedBlockException;
 import org.tron.core.exception.ValidateScheduleException;
 import org.tron.core.exception.ValidateSignatureException;
+import org.tron.core.witness.SolidifiedBlockTracker;
 import org.tron.core.witness.WitnessController;
 import org.tron.protos.Protocol.AccountType;
-import org.tron.protos.Protocol.Transaction;
 
 @Slf4j
 @Component
@@ -73,6 +69,7 @@ public class Manager {
   private UtxoStore utxoStore;
   private WitnessStore witnessStore;
   private AssetIssueStore assetIssueStore;
+  private AssetBalanceStore assetBalanceStore;
   private DynamicPropertiesStore dynamicPropertiesStore;
   private BlockIndexStore blockIndexStore;
 
@@ -98,6 +95,18 @@ public class Manager {
   @Setter
   private WitnessController witnessController;
 
+  // block, transaction and solidification events for listeners and event subscribers
+  @Getter
+  private EventBus eventBus = new EventBus(this::getEventBlock);
+
+  // per owner transfer rate, checked before a transaction takes the lock
+  @Getter
+  private TransactionAdmission transactionAdmission;
+
+  // concurrent stateless checks and batched apply for transactions from peers and the api
+  @Getter
+  private TransactionPipeline transactionPipeline;
+
 
   public WitnessStore getWitnessStore() {
     return this.witnessStore;
@@ -119,6 +128,13 @@ public class Manager {
     return this.pendingTransactions;
   }
 
+  /**
+   * a copy of the pending transactions, for readers outside the threads applying them.
+   */
+  public synchronized List<TransactionCapsule> getPendingTransactionsSnapshot() {
+    return new ArrayList<>(this.pendingTransactions);
+  }
+
   public List<TransactionCapsule> getPoppedTransactions() {
     return this.popedTransactions;
   }
@@ -130,6 +146,10 @@ public class Manager {
   // transactions popped
   private List<TransactionCapsule> popedTransactions = new ArrayList<>();
 
+  // next block body, assembled from the pending transactions as they arrive
+  @Getter
+  private BlockBuilder blockBuilder = new BlockBuilder(TRXS_SIZE);
+
 
   //for test only
   public List<WitnessCapsule> getWitnesses() {
@@ -206,6 +226,7 @@ public class Manager {
     getBlockStore().destroy();
     getWitnessStore().destory();
     getAssetIssueStore().destroy();
+    getAssetBalanceStore().destroy();
     getDynamicPropertiesStore().destroy();
   }
 
@@ -219,15 +240,26 @@ public class Manager {
     this.setUtxoStore(UtxoStore.create("utxo"));
     this.setWitnessStore(WitnessStore.create("witness"));
     this.setAssetIssueStore(AssetIssueStore.create("asset-issue"));
+    this.setAssetBalanceStore(AssetBalanceStore.create("asset-balance"));
+    this.accountStore.setAssetBalanceStore(this.assetBalanceStore);
     this.setDynamicPropertiesStore(DynamicPropertiesStore.create("properties"));
+    this.migrateAssetBalances();
     this.setWitnessController(WitnessController.createInstance(this));
     this.setBlockIndexStore(BlockIndexStore.create("block-index"));
     revokingStore = RevokingStore.getInstance();
     revokingStore.enable();
     this.khaosDb = new KhaosDatabase("block" + "_KDB");
     this.pendingTransactions = new ArrayList<>();
+    this.transactionAdmission = new TransactionAdmission(
+        Args.getInstance().getAdmissionTiers(), address -> {
+          AccountCapsule account = accountStore.get(address);
+          return account == null ? 0 : account.getBalance();
+        });
+    this.transactionPipeline = new TransactionPipeline(this::pushVerifiedTransactions,
+        transactionAdmission, TRXS_SIZE, Runtime.getRuntime().availableProcessors());
     this.initGenesis();
     this.witnessController.initWits();
+    this.addSolidifiedBlockListener(eventBus::publishBlockSolidified);
     this.khaosDb.start(genesisBlock);
   }
 
@@ -261,6 +293,7 @@ public class Manager {
             new BytesCapsule(this.genesisBlock.getBlockId().getBytes()));
 
         logger.info("save block: " + this.genesisBlock);
+        eventBus.publishBlockApplied(this.genesisBlock);
         // init DynamicPropertiesStore
         this.dynamicPropertiesStore.saveLatestBlockHeaderNumber(0);
         this.dynamicPropertiesStore.saveLatestBlockHeaderHash(
@@ -339,16 +372,107 @@ public class Manager {
   /**
    * push transaction into db.
    */
-  public synchronized boolean pushTransactions(final TransactionCapsule trx)
+  public boolean pushTransactions(final TransactionCapsule trx)
       throws ValidateSignatureException, ContractValidateException,
       ContractExeException, HighFreqException {
     logger.info("push transaction");
+    // none of these checks needs chain state, so traffic they reject never waits for the lock
+    transactionPipeline.checkStateless(trx);
+
+    return pushAdmittedTransaction(trx);
+  }
+
+  private synchronized boolean pushAdmittedTransaction(final TransactionCapsule trx)
+      throws ValidateSignatureException, ContractValidateException, ContractExeException {
+    return applyPendingTransaction(trx);
+  }
+
+  /**
+   * apply a batch of transactions that passed the stateless checks under one acquisition of the
+   * lock, reporting the outcome of each.
+   */
+  synchronized void pushVerifiedTransactions(List<TransactionPipeline.Pending> batch) {
+    for (TransactionPipeline.Pending pending : batch) {
+      if (!pending.claim()) {
+        continue;
+      }
+      try {
+        pending.complete(applyPendingTransaction(pending.getTransaction()));
+      } catch (ValidateSignatureException | ContractValidateException | ContractExeException
+          | RuntimeException e) {
+        pending.fail(e);
+      }
+    }
+  }
+
+  /**
+   * re-apply a pending transaction on top of a new head. It was admitted and its signature
+   * verified when it was first pushed.
+   */
+  synchronized boolean repushTransaction(final TransactionCapsule trx)
+      throws ValidateSignatureException, ContractValidateException, ContractExeException {
     if (!trx.validateSignature()) {
       throw new ValidateSignatureException("trans sig validate failed");
     }
 
-    validateFreq(trx);
+    return applyPendingTransaction(trx);
+  }
 
+  /**
+   * re-apply pending transactions the new block left alone, as one unit: under one dialog, and
+   * with their accounts written once. They applied on the same state before, so they are expected
+   * to apply again. If one does not, they are applied one by one.
+   */
+  synchronized void repushUntouchedTransactions(final List<TransactionCapsule> trxs) {
+    if (trxs.isEmpty()) {
+      return;
+    }
+    if (!dialog.valid()) {
+      dialog.setValue(revokingStore.buildDialog());
+    }
+
+    boolean applied = false;
+    try (RevokingStore.Dialog tmpDialog = revokingStore.buildDialog()) {
+      boolean ownWorkingSet = accountStore.openWorkingSet();
+      try {
+        for (TransactionCapsule trx : trxs) {
+          if (!processTransaction(trx)) {
+            throw new ValidateSignatureException("trans sig validate failed");
+          }
+        }
+        if (ownWorkingSet) {
+          accountStore.flushWorkingSet();
+        }
+      } finally {
+        if (ownWorkingSet) {
+          accountStore.closeWorkingSet();
+        }
+      }
+      tmpDialog.merge();
+      applied = true;
+    } catch (ValidateSignatureException | ContractValidateException | ContractExeException
+        | RevokingStoreIllegalStateException e) {
+      logger.debug("re-applying {} pending transactions one by one: {}", trxs.size(),
+          e.getMessage());
+    }
+
+    for (TransactionCapsule trx : trxs) {
+      if (applied) {
+        pendingTransactions.add(trx);
+        blockBuilder.append(trx, getDynamicPropertiesStore().getLatestBlockHeaderHash());
+      } else {
+        try {
+          repushTransaction(trx);
+        } catch (ValidateSignatureException | ContractValidateException
+            | ContractExeException e) {
+          logger.debug(e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  private boolean applyPendingTransaction(final TransactionCapsule trx)
+      throws ValidateSignatureException, ContractValidateException, ContractExeException {
     if (!dialog.valid()) {
       dialog.setValue(revokingStore.buildDialog());
     }
@@ -357,6 +481,7 @@ public class Manager {
         RevokingStore.Dialog tmpDialog = revokingStore.buildDialog()) {
       processTransaction(trx);
       pendingTransactions.add(trx);
+      blockBuilder.append(trx, getDynamicPropertiesStore().getLatestBlockHeaderHash());
 
       tmpDialog.merge();
     } catch (RevokingStoreIllegalStateException e) {
@@ -365,36 +490,6 @@ public class Manager {
     return true;
   }
 
-  void validateFreq(TransactionCapsule trx) throws HighFreqException {
-    List<org.tron.protos.Protocol.Transaction.Contract> contracts = trx.getInstance().getRawData()
-        .getContractList();
-    for (Transaction.Contract contract : contracts) {
-      if (contract.getType() == TransferContract
-          || contract.getType() == TransferAssetContract) {
-        byte[] address = TransactionCapsule.getOwner(contract);
-        AccountCapsule accountCapsule = this.getAccountStore().get(address);
-        long balacne = accountCapsule.getBalance();
-        long latestOperationTime = accountCapsule.getLatestOperationTime();
-        if (latestOperationTime != 0) {
-          doValidateFreq(balacne, 0, latestOperationTime);
-        } else {
-          accountCapsule.setLatestOperationTime(Time.getCurrentMillis());
-        }
-      }
-    }
-  }
-
-  void doValidateFreq(long balance, int transNumber, long latestOperationTime)
-      throws HighFreqException {
-    long now = Time.getCurrentMillis();
-    // todo: avoid ddos, design more smoothly formula later.
-    if (balance < 1000000 * 1000) {
-      if (now - latestOperationTime < 5 * 60 * 1000) {
-        throw new HighFreqException("try later");
-      }
-    }
-  }
-
   /**
    * when switch fork need erase blocks on fork branch.
    */
@@ -408,6 +503,8 @@ public class Manager {
       logger.debug(e.getMessage(), e);
     }
     khaosDb.pop();
+    witnessController.invalidateSchedule();
+    eventBus.publishBlockReverted(oldHeadBlock);
     popedTransactions.addAll(oldHeadBlock.getTransactions());
   }
 
@@ -440,6 +537,8 @@ public class Manager {
               .put(ByteArray.fromLong(item.getNum()),
                   new BytesCapsule(item.getBlockId().getBytes()));
           tmpDialog.commit();
+          eventBus.publishBlockApplied(item);
+          publishSolidifiedBlock();
         } catch (ValidateSignatureException e) {
           logger.debug(e.getMessage(), e);
         } catch (ContractValidateException e) {
@@ -462,13 +561,14 @@ public class Manager {
 
 
   /**
-   * save a block.
+   * save a block. Holds the lock the pending transactions are applied under, so a block from the
+   * network never interleaves with them.
    */
-  public void pushBlock(final BlockCapsule block)
+  public synchronized void pushBlock(final BlockCapsule block)
       throws ValidateSignatureException, ContractValidateException,
       ContractExeException, UnLinkedBlockException, ValidateScheduleException {
 
-    try (PendingManager pm = new PendingManager(this)) {
+    try (PendingManager pm = new PendingManager(this, block)) {
 
       if (!block.generatedByMyself) {
         if (!block.validateSignature()) {
@@ -540,6 +640,8 @@ public class Manager {
           this.blockIndexStore
               .put(ByteArray.fromLong(block.getNum()),
                   new BytesCapsule(block.getBlockId().getBytes()));
+          eventBus.publishBlockApplied(newBlock);
+          publishSolidifiedBlock();
         } catch (RevokingStoreIllegalStateException e) {
           logger.debug(e.getMessage(), e);
         }
@@ -633,6 +735,18 @@ public class Manager {
         : blockStore.get(hash.getBytes());
   }
 
+  /**
+   * the block an event refers to, read back when the event is delivered. Reverted blocks are still
+   * found in the khaos db.
+   */
+  private BlockCapsule getEventBlock(final Sha256Hash blockId) {
+    try {
+      return getBlockById(blockId);
+    } catch (BadItemException | ItemNotFoundException e) {
+      return null;
+    }
+  }
+
   /**
    * Delete a block.
    */
@@ -664,11 +778,22 @@ public class Manager {
     final List<Actuator> actuatorList = ActuatorFactory.createActuator(trxCap, this);
     TransactionResultCapsule ret = new TransactionResultCapsule();
 
-    for (Actuator act : actuatorList) {
+    // inside a block the working set of the block is used, accounts are written once per block
+    boolean ownWorkingSet = accountStore.openWorkingSet();
+    try {
+      for (Actuator act : actuatorList) {
 
-      act.validate();
-      act.execute(ret);
-      trxCap.setResult(ret);
+        act.validate();
+        act.execute(ret);
+        trxCap.setResult(ret);
+      }
+      if (ownWorkingSet) {
+        accountStore.flushWorkingSet();
+      }
+    } finally {
+      if (ownWorkingSet) {
+        accountStore.closeWorkingSet();
+      }
     }
     transactionStore.put(trxCap.getTransactionId().getBytes(), trxCap);
     return true;
@@ -720,37 +845,50 @@ public class Manager {
     final BlockCapsule blockCapsule = new BlockCapsule(number + 1, preHash, when,
         witnessCapsule.getAddress());
 
-    dialog.reset();
-    dialog.setValue(revokingStore.buildDialog());
-
-    Iterator iterator = pendingTransactions.iterator();
-    while (iterator.hasNext()) {
-      TransactionCapsule trx = (TransactionCapsule) iterator.next();
-      currentTrxSize += RamUsageEstimator.sizeOf(trx);
-      // judge block size
-      if (currentTrxSize > TRXS_SIZE) {
-        postponedTrxCount++;
-        continue;
-      }
-      // apply transaction
-      try (Dialog tmpDialog = revokingStore.buildDialog()) {
-        processTransaction(trx);
-        tmpDialog.merge();
-        // push into block
-        blockCapsule.addTransaction(trx);
-        iterator.remove();
-      } catch (ContractExeException e) {
-        logger.info("contract not processed during execute");
-        logger.debug(e.getMessage(), e);
-      } catch (ContractValidateException e) {
-        logger.info("contract not processed during validate");
-        logger.debug(e.getMessage(), e);
-      } catch (RevokingStoreIllegalStateException e) {
-        logger.debug(e.getMessage(), e);
+    List<TransactionCapsule> assembled = blockBuilder.getTransactions();
+    if (blockBuilder.isBuiltOn(preHash) && isPendingPrefix(assembled)) {
+      // the candidate body has already been executed on the head while it was assembled
+      blockCapsule.addTransactions(assembled);
+      blockCapsule.setMerkleRoot(blockBuilder.getMerkleRoot());
+      pendingTransactions.subList(0, assembled.size()).clear();
+      postponedTrxCount = blockBuilder.getPostponedTrxCount();
+    } else {
+      dialog.reset();
+      dialog.setValue(revokingStore.buildDialog());
+
+      List<TransactionCapsule> packed = new ArrayList<>();
+      Iterator iterator = pendingTransactions.iterator();
+      while (iterator.hasNext()) {
+        TransactionCapsule trx = (TransactionCapsule) iterator.next();
+        long trxSize = BlockBuilder.sizeInBlock(trx);
+        // judge block size
+        if (currentTrxSize + trxSize > TRXS_SIZE) {
+          postponedTrxCount++;
+          continue;
+        }
+        // apply transaction
+        try (Dialog tmpDialog = revokingStore.buildDialog()) {
+          processTransaction(trx);
+          tmpDialog.merge();
+          // push into block
+          currentTrxSize += trxSize;
+          packed.add(trx);
+          iterator.remove();
+        } catch (ContractExeException e) {
+          logger.info("contract not processed during execute");
+          logger.debug(e.getMessage(), e);
+        } catch (ContractValidateException e) {
+          logger.info("contract not processed during validate");
+          logger.debug(e.getMessage(), e);
+        } catch (RevokingStoreIllegalStateException e) {
+          logger.debug(e.getMessage(), e);
+        }
       }
-    }
+      blockCapsule.addTransactions(packed);
+      blockCapsule.setMerkleRoot();
 
-    dialog.reset();
+      dialog.reset();
+    }
 
     if (postponedTrxCount > 0) {
       logger.info("{} transactions over the block size limit", postponedTrxCount);
@@ -759,13 +897,24 @@ public class Manager {
     logger.info(
         "postponedTrxCount[" + postponedTrxCount + "],TrxLeft[" + pendingTransactions.size() + "]");
 
-    blockCapsule.setMerkleRoot();
     blockCapsule.sign(privateKey);
     blockCapsule.generatedByMyself = true;
     this.pushBlock(blockCapsule);
     return blockCapsule;
   }
 
+  private boolean isPendingPrefix(List<TransactionCapsule> assembled) {
+    if (assembled.size() > pendingTransactions.size()) {
+      return false;
+    }
+    for (int i = 0; i < assembled.size(); i++) {
+      if (assembled.get(i) != pendingTransactions.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void setAccountStore(final AccountStore accountStore) {
     this.accountStore = accountStore;
   }
@@ -800,12 +949,23 @@ public class Manager {
   public void processBlock(BlockCapsule block)
       throws ValidateSignatureException, ContractValidateException, ContractExeException {
     // todo set revoking db max size.
-    this.updateDynamicProperties(block);
-    this.updateSignedWitness(block);
-    this.updateLatestSolidifiedBlock();
+    boolean ownWorkingSet = accountStore.openWorkingSet();
+    try {
+      this.updateDynamicProperties(block);
+      this.updateSignedWitness(block);
+      this.updateLatestSolidifiedBlock();
 
-    for (TransactionCapsule transactionCapsule : block.getTransactions()) {
-      processTransaction(transactionCapsule);
+      for (TransactionCapsule transactionCapsule : block.getTransactions()) {
+        processTransaction(transactionCapsule);
+      }
+      // maintenance reads every account from the database
+      if (ownWorkingSet) {
+        accountStore.flushWorkingSet();
+      }
+    } finally {
+      if (ownWorkingSet) {
+        accountStore.closeWorkingSet();
+      }
     }
 
     boolean needMaint = needMaintenance(block.getTimeStamp());
@@ -818,27 +978,21 @@ public class Manager {
     }
     updateMaintenanceState(needMaint);
     witnessController.updateWitnessSchedule();
+    // the head and maintenance state the schedule was built for are gone
+    witnessController.invalidateSchedule();
   }
 
   /**
    * update the latest solidified block.
    */
   public void updateLatestSolidifiedBlock() {
-    List<Long> numbers = witnessController.getWitnesses().stream()
-        .map(wit -> wit.getLatestBlockNum())
-        .sorted()
-        .collect(Collectors.toList());
-
-    long size = witnessController.getWitnesses().size();
-    int solidifiedPosition = (int) (size * (1 - SOLIDIFIED_THRESHOLD)) - 1;
-    if (solidifiedPosition < 0) {
-      logger.warn("updateLatestSolidifiedBlock error,solidifiedPosition:{},wits.size:{}",
-          solidifiedPosition, size);
+    SolidifiedBlockTracker tracker = witnessController.getSolidifiedBlockTracker();
+    long latestSolidifiedBlockNum = tracker.getSolidifiedBlockNum();
+    if (latestSolidifiedBlockNum < 0) {
+      logger.warn("updateLatestSolidifiedBlock error,wits.size:{}", tracker.size());
       return;
     }
 
-    long latestSolidifiedBlockNum = numbers.get(solidifiedPosition);
-
     getDynamicPropertiesStore().saveLatestSolidifiedBlockNum(latestSolidifiedBlockNum);
     ((AbstractRevokingStore) revokingStore).setMaxSize((int) (
         dynamicPropertiesStore.getLatestBlockHeaderNumber()
@@ -846,6 +1000,20 @@ public class Manager {
     );
   }
 
+  /**
+   * tell the listeners about a new solidified height, once the block that raised it is committed.
+   */
+  private void publishSolidifiedBlock() {
+    witnessController.getSolidifiedBlockTracker().publish();
+  }
+
+  /**
+   * called for every block that becomes solidified, on the thread applying blocks.
+   */
+  public void addSolidifiedBlockListener(SolidifiedBlockTracker.Listener listener) {
+    witnessController.getSolidifiedBlockTracker().addListener(listener);
+  }
+
   public long getSyncBeginNumber() {
     return dynamicPropertiesStore.getLatestBlockHeaderNumber() - revokingStore.size();
   }
@@ -884,6 +1052,7 @@ public class Manager {
       wit.setTotalProduced(witnessCapsule.getTotalProduced() + 1);
       wit.setLatestBlockNum(block.getNum());
       wit.setLatestSlotNum(witnessController.getAbSlotAtTime(block.getTimeStamp()));
+      witnessController.getSolidifiedBlockTracker().update(wit.getAddress(), block.getNum());
     }
 
     this.getWitnessStore().put(witnessCapsule.getAddress().toByteArray(), witnessCapsule);
@@ -930,6 +1099,26 @@ public class Manager {
     this.assetIssueStore = assetIssueStore;
   }
 
+  public AssetBalanceStore getAssetBalanceStore() {
+    return assetBalanceStore;
+  }
+
+  public void setAssetBalanceStore(AssetBalanceStore assetBalanceStore) {
+    this.assetBalanceStore = assetBalanceStore;
+  }
+
+  /**
+   * accounts written before the asset balance store existed still embed their asset map.
+   */
+  private void migrateAssetBalances() {
+    if (dynamicPropertiesStore.isAssetBalanceMigrated()) {
+      return;
+    }
+    long migrated = accountStore.migrateAssets();
+    logger.info("moved the asset balances of {} accounts to the asset balance store", migrated);
+    dynamicPropertiesStore.saveAssetBalanceMigrated();
+  }
+
   public void setBlockIndexStore(BlockIndexStore indexStore) {
     this.blockIndexStore = indexStore;
   }
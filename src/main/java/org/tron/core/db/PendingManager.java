@@ -1,12 +1,23 @@
 package org.tron.core.db;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.actuator.AccessSet;
+import org.tron.core.actuator.AccessSet.Space;
+import org.tron.core.actuator.Actuator;
+import org.tron.core.actuator.ActuatorFactory;
+import org.tron.core.capsule.AccountCapsule;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.exception.ContractExeException;
 import org.tron.core.exception.ContractValidateException;
-import org.tron.core.exception.HighFreqException;
 import org.tron.core.exception.ValidateSignatureException;
 
 @Slf4j
@@ -14,48 +25,125 @@ public class PendingManager implements AutoCloseable {
 
   List<TransactionCapsule> tmpTransactions = new ArrayList<>();
   Manager dbManager;
+  private BlockCapsule block;
+  private BlockId oldHeadBlockId;
 
   public PendingManager(Manager db) {
+    this(db, null);
+  }
+
+  public PendingManager(Manager db, BlockCapsule block) {
     this.dbManager = db;
+    this.block = block;
+    this.oldHeadBlockId = db.getHeadBlockId();
     tmpTransactions.addAll(db.getPendingTransactions());
     db.getPendingTransactions().clear();
+    db.getBlockBuilder().reset();
     db.getDialog().reset();
   }
 
   @Override
   public void close() {
-    this.tmpTransactions.stream()
-        .filter(
-            trx -> dbManager.getTransactionStore().get(trx.getTransactionId().getBytes()) == null)
-        .forEach(trx -> {
-          try {
-            dbManager.pushTransactions(trx);
-          } catch (ValidateSignatureException e) {
-            logger.debug(e.getMessage(), e);
-          } catch (ContractValidateException e) {
-            logger.debug(e.getMessage(), e);
-          } catch (ContractExeException e) {
-            logger.debug(e.getMessage(), e);
-          } catch (HighFreqException e) {
-            logger.debug(e.getMessage(), e);
-          }
-        });
+    if (isAppliedOnOldHead()) {
+      // the block only extended our head, so the packed transactions are known without a
+      // store lookup.
+      Set<Sha256Hash> packed = new HashSet<>();
+      block.getTransactions().forEach(trx -> packed.add(trx.getTransactionId()));
+      AccessSet changed = getChangedByBlock();
+
+      // The pending state was revoked with the dialog, so every pending transaction runs again.
+      // Only the ones touching state the block wrote, or state written by one of those, can come
+      // out differently: they are re-applied one by one, the others together.
+      List<TransactionCapsule> untouched = new ArrayList<>();
+      this.tmpTransactions.stream()
+          .filter(trx -> !packed.contains(trx.getTransactionId()))
+          .forEach(trx -> {
+            AccessSet access = changed == null ? null : getAccessSet(trx);
+            if (access != null && !changed.conflictsWith(access)) {
+              untouched.add(trx);
+              return;
+            }
+            dbManager.repushUntouchedTransactions(untouched);
+            untouched.clear();
+            repush(trx);
+            if (access != null) {
+              access.getWrites().forEach(key -> changed.write(key.getSpace(), key.getKey()));
+            }
+          });
+      dbManager.repushUntouchedTransactions(untouched);
+    } else {
+      this.tmpTransactions.stream()
+          .filter(trx -> isNotStored(trx))
+          .forEach(trx -> repush(trx));
+    }
+
     dbManager.getPoppedTransactions().stream()
-        .filter(
-            trx -> dbManager.getTransactionStore().get(trx.getTransactionId().getBytes()) == null)
-        .forEach(trx -> {
-          try {
-            dbManager.pushTransactions(trx);
-          } catch (ValidateSignatureException e) {
-            e.printStackTrace();
-          } catch (ContractValidateException e) {
-            e.printStackTrace();
-          } catch (ContractExeException e) {
-            e.printStackTrace();
-          } catch (HighFreqException e) {
-            e.printStackTrace();
-          }
-        });
+        .filter(trx -> isNotStored(trx))
+        .forEach(trx -> repush(trx));
     dbManager.getPoppedTransactions().clear();
   }
+
+  private boolean isAppliedOnOldHead() {
+    return block != null
+        && dbManager.getPoppedTransactions().isEmpty()
+        && block.getParentHash().equals(oldHeadBlockId)
+        && dbManager.getHeadBlockId().equals(block.getBlockId());
+  }
+
+  /**
+   * @return the state the block wrote, null if it can not be told, as after a maintenance.
+   */
+  private AccessSet getChangedByBlock() {
+    if (dbManager.lastHeadBlockIsMaintenance()) {
+      return null;
+    }
+    AccessSet changed = new AccessSet();
+    for (TransactionCapsule trx : block.getTransactions()) {
+      AccessSet access = getAccessSet(trx);
+      if (access == null) {
+        return null;
+      }
+      access.getWrites().forEach(key -> changed.write(key.getSpace(), key.getKey()));
+    }
+    // the witness is paid out of the sun account for every block
+    ByteString witness = block.getWitnessAddress();
+    changed.write(Space.ACCOUNT, witness).write(Space.WITNESS, witness);
+    AccountCapsule sun = dbManager.getAccountStore().getSun();
+    if (sun != null) {
+      changed.write(Space.ACCOUNT, sun.getAddress());
+    }
+    return changed;
+  }
+
+  /**
+   * @return the state the contracts of the transaction read and write, null if unknown.
+   */
+  private AccessSet getAccessSet(TransactionCapsule trx) {
+    AccessSet access = new AccessSet();
+    try {
+      for (Actuator actuator : ActuatorFactory.createActuator(trx, dbManager)) {
+        access.add(actuator.getAccessSet());
+      }
+    } catch (InvalidProtocolBufferException | RuntimeException e) {
+      logger.debug(e.getMessage(), e);
+      return null;
+    }
+    return access;
+  }
+
+  private boolean isNotStored(TransactionCapsule trx) {
+    return dbManager.getTransactionStore().get(trx.getTransactionId().getBytes()) == null;
+  }
+
+  private void repush(TransactionCapsule trx) {
+    try {
+      dbManager.repushTransaction(trx);
+    } catch (ValidateSignatureException e) {
+      logger.debug(e.getMessage(), e);
+    } catch (ContractValidateException e) {
+      logger.debug(e.getMessage(), e);
+    } catch (ContractExeException e) {
+      logger.debug(e.getMessage(), e);
+    }
+  }
 }
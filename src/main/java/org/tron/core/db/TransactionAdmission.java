@@ -0,0 +1,198 @@
+package org.tron.core.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.config.args.AdmissionTier;
+import org.tron.core.exception.HighFreqException;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+/**
+ * Per owner token buckets for transfers, checked right after the signature and before the
+ * manager lock. Signature recovery comes first on purpose: the owner address is only a claim
+ * until it is verified, and charging unverified transactions would let anyone drain the bucket of
+ * any account with forged transfers and lock its real owner out. The refill rate of a bucket depends on the balance tier of its owner, which
+ * is read from the account store when the bucket is created and then only every
+ * {@link #TIER_REFRESH_NANOS}. Buckets are spread over independently locked stripes, each keeping
+ * only its most recently used owners.
+ */
+@Slf4j
+public class TransactionAdmission {
+
+  private static final int STRIPES = 64;
+  private static final int BUCKETS_PER_STRIPE = 4096;
+  private static final long TIER_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  // ascending minimum balance
+  private final AdmissionTier[] tiers;
+  private final ToLongFunction<byte[]> balances;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  private final AtomicLong admitted = new AtomicLong();
+  private final AtomicLongArray rejected;
+
+  /**
+   * @param balances balance of an account, 0 if it does not exist.
+   */
+  public TransactionAdmission(List<AdmissionTier> tiers, ToLongFunction<byte[]> balances) {
+    List<AdmissionTier> sorted = new ArrayList<>(
+        tiers.isEmpty() ? AdmissionTier.getDefault() : tiers);
+    sorted.sort(Comparator.comparingLong(AdmissionTier::getMinBalance));
+    this.tiers = sorted.toArray(new AdmissionTier[0]);
+    this.balances = balances;
+    this.rejected = new AtomicLongArray(this.tiers.length);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * take a token for every transfer of the transaction from its owner's bucket.
+   *
+   * @throws HighFreqException if an owner has none left, the transaction should be dropped.
+   */
+  public void admit(TransactionCapsule trx) throws HighFreqException {
+    List<Transaction.Contract> contracts = trx.getInstance().getRawData().getContractList();
+    for (int i = 0; i < contracts.size(); i++) {
+      ContractType type = contracts.get(i).getType();
+      if (type != ContractType.TransferContract && type != ContractType.TransferAssetContract) {
+        continue;
+      }
+      byte[] owner = trx.getOwner(i);
+      // an undecodable contract is rejected by validation, there is no owner to charge here
+      if (owner == null) {
+        continue;
+      }
+      int tier = tryAcquire(owner, System.nanoTime());
+      if (tier >= 0) {
+        rejected.incrementAndGet(tier);
+        throw new HighFreqException("try later");
+      }
+    }
+    admitted.incrementAndGet();
+  }
+
+  /**
+   * @return -1 if a token was taken, else the tier of the owner.
+   */
+  int tryAcquire(byte[] owner, long now) {
+    ByteArrayWrapper key = new ByteArrayWrapper(owner);
+    Stripe stripe = stripes[key.hashCode() & (STRIPES - 1)];
+
+    Bucket bucket;
+    synchronized (stripe) {
+      bucket = stripe.get(key);
+    }
+    // the balance is read outside the stripe lock, it may cost a database read
+    int tier = bucket == null || now - bucket.tierCheckedAt >= TIER_REFRESH_NANOS
+        ? tierOf(balances.applyAsLong(owner)) : -1;
+
+    synchronized (stripe) {
+      bucket = stripe.get(key);
+      if (bucket == null) {
+        if (tier < 0) {
+          tier = tierOf(balances.applyAsLong(owner));
+        }
+        bucket = new Bucket(tier, tiers[tier].getBurst(), now);
+        stripe.put(key, bucket);
+      } else {
+        bucket.refill(now, tiers[bucket.tier]);
+        if (tier >= 0) {
+          bucket.tier = tier;
+          bucket.tierCheckedAt = now;
+          bucket.tokens = Math.min(bucket.tokens, tiers[tier].getBurst());
+        }
+      }
+      if (bucket.tokens >= 1) {
+        bucket.tokens -= 1;
+        return -1;
+      }
+      return bucket.tier;
+    }
+  }
+
+  private int tierOf(long balance) {
+    int tier = 0;
+    for (int i = 1; i < tiers.length; i++) {
+      if (balance >= tiers[i].getMinBalance()) {
+        tier = i;
+      }
+    }
+    return tier;
+  }
+
+  public long getAdmitted() {
+    return admitted.get();
+  }
+
+  /**
+   * transactions dropped, by the tier of the owner that was over its rate.
+   */
+  public Map<AdmissionTier, Long> getRejected() {
+    Map<AdmissionTier, Long> result = new LinkedHashMap<>();
+    for (int i = 0; i < tiers.length; i++) {
+      result.put(tiers[i], rejected.get(i));
+    }
+    return result;
+  }
+
+  public long getRejectedTotal() {
+    long total = 0;
+    for (int i = 0; i < tiers.length; i++) {
+      total += rejected.get(i);
+    }
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    return "admitted " + getAdmitted() + ", rejected " + getRejected();
+  }
+
+  private static class Bucket {
+
+    private int tier;
+    private long tierCheckedAt;
+    private double tokens;
+    private long refilledAt;
+
+    Bucket(int tier, double tokens, long now) {
+      this.tier = tier;
+      this.tierCheckedAt = now;
+      this.tokens = tokens;
+      this.refilledAt = now;
+    }
+
+    void refill(long now, AdmissionTier tier) {
+      long elapsed = now - refilledAt;
+      if (elapsed > 0) {
+        tokens = Math.min(tier.getBurst(), tokens + elapsed * tier.getRate() / 1e9);
+        refilledAt = now;
+      }
+    }
+  }
+
+  // least recently used owners are forgotten first, they come back with a full bucket
+  private static class Stripe extends LinkedHashMap<ByteArrayWrapper, Bucket> {
+
+    private static final long serialVersionUID = 1L;
+
+    Stripe() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Bucket> eldest) {
+      return size() > BUCKETS_PER_STRIPE;
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package org.tron.core.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.exception.ContractValidateException;
+import org.tron.core.exception.HighFreqException;
+import org.tron.core.exception.ValidateSignatureException;
+import org.tron.protos.Protocol.Transaction;
+
+/**
+ * Admission of transactions from the network and the API in two stages. The checks that need no
+ * chain state (format, size, expiration, signature and rate) run concurrently on a pool of
+ * verifiers. Verified transactions are queued, and whichever verifier finds the apply stage idle
+ * applies everything queued in batches, each under one acquisition of the manager lock, so
+ * submitters never wait for the lock and block production only competes with one applier. Both
+ * queues are bounded: while the applier waits for the lock, for instance through a whole block,
+ * verified transactions pile up only to the capacity and the rest are turned away.
+ */
+@Slf4j
+public class TransactionPipeline {
+
+  public static final int BATCH_SIZE = 256;
+  // transactions waiting for a verifier, and verified ones waiting to be applied, before new ones
+  // are turned away
+  private static final int QUEUE_CAPACITY = 10_000;
+
+  private final Consumer<List<Pending>> applier;
+  private final TransactionAdmission admission;
+  private final long maxTransactionSize;
+  private final ThreadPoolExecutor verifiers;
+
+  private final ConcurrentLinkedQueue<Pending> verified = new ConcurrentLinkedQueue<>();
+  private final Semaphore applySlots = new Semaphore(QUEUE_CAPACITY);
+  private final AtomicBoolean applying = new AtomicBoolean();
+
+  /**
+   * @param applier applies a batch of verified transactions and completes each of them, see
+   * {@link Manager#pushVerifiedTransactions}.
+   */
+  public TransactionPipeline(Consumer<List<Pending>> applier, TransactionAdmission admission,
+      long maxTransactionSize, int threads) {
+    this.applier = applier;
+    this.admission = admission;
+    this.maxTransactionSize = maxTransactionSize;
+    AtomicInteger count = new AtomicInteger();
+    this.verifiers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+          Thread thread = new Thread(runnable, "trx-verifier-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.verifiers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * completes with the outcome of applying the transaction to the pending state, or
+   * exceptionally with the reason it was turned away.
+   */
+  public CompletableFuture<Boolean> submit(TransactionCapsule trx) {
+    return enqueue(trx).result;
+  }
+
+  /**
+   * like {@link #submit}, for a submitter that may give up waiting and {@link Pending#cancel}
+   * the transaction.
+   */
+  public Pending enqueue(TransactionCapsule trx) {
+    Pending pending = new Pending(trx);
+    try {
+      verifiers.execute(() -> verify(pending));
+    } catch (RejectedExecutionException e) {
+      pending.fail(new HighFreqException("transaction pipeline is full"));
+    }
+    return pending;
+  }
+
+  public int getQueuedForVerification() {
+    return verifiers.getQueue().size();
+  }
+
+  public int getQueuedForApply() {
+    return QUEUE_CAPACITY - applySlots.availablePermits();
+  }
+
+  public void shutdown() {
+    verifiers.shutdown();
+  }
+
+  private void verify(Pending pending) {
+    try {
+      checkStateless(pending.trx);
+    } catch (Exception e) {
+      pending.fail(e);
+      return;
+    }
+    if (!applySlots.tryAcquire()) {
+      pending.fail(new HighFreqException("transaction pipeline is full"));
+      return;
+    }
+    verified.add(pending);
+    drain();
+  }
+
+  void checkStateless(TransactionCapsule trx)
+      throws ContractValidateException, HighFreqException, ValidateSignatureException {
+    Transaction.raw raw = trx.getInstance().getRawData();
+    if (raw.getContractCount() == 0) {
+      throw new ContractValidateException("transaction has no contract");
+    }
+    long size = BlockBuilder.sizeInBlock(trx);
+    if (size > maxTransactionSize) {
+      throw new ContractValidateException(
+          "transaction size " + size + " exceeds " + maxTransactionSize);
+    }
+    if (raw.getExpiration() != 0 && raw.getExpiration() <= System.currentTimeMillis()) {
+      throw new ContractValidateException("transaction expired at " + raw.getExpiration());
+    }
+    // only the owner can spend the owner's rate, forged transactions must not drain it
+    if (!trx.validateSignature()) {
+      throw new ValidateSignatureException("trans sig validate failed");
+    }
+    admission.admit(trx);
+  }
+
+  /**
+   * apply everything verified so far unless another thread is already doing it. The queue is
+   * checked again after letting go, so nothing added meanwhile is left behind.
+   */
+  private void drain() {
+    while (!verified.isEmpty() && applying.compareAndSet(false, true)) {
+      try {
+        List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        Pending pending;
+        while (batch.size() < BATCH_SIZE && (pending = verified.poll()) != null) {
+          applySlots.release();
+          batch.add(pending);
+        }
+        if (!batch.isEmpty()) {
+          applier.accept(batch);
+        }
+      } catch (RuntimeException e) {
+        logger.error("applying verified transactions failed", e);
+      } finally {
+        applying.set(false);
+      }
+    }
+  }
+
+  public static class Pending {
+
+    private final TransactionCapsule trx;
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    Pending(TransactionCapsule trx) {
+      this.trx = trx;
+    }
+
+    public TransactionCapsule getTransaction() {
+      return trx;
+    }
+
+    public CompletableFuture<Boolean> getResult() {
+      return result;
+    }
+
+    /**
+     * taken by the applier right before applying, so the transaction is applied only if it was
+     * not cancelled first.
+     */
+    boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * withdraw the transaction unless the applier already took it. Once this returns true the
+     * transaction will never be applied and the result is false.
+     */
+    public boolean cancel() {
+      if (!claim()) {
+        return false;
+      }
+      result.complete(false);
+      return true;
+    }
+
+    public void complete(boolean applied) {
+      result.complete(applied);
+    }
+
+    public void fail(Exception e) {
+      result.completeExceptionally(e);
+    }
+  }
+}
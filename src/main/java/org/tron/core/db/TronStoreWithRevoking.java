@@ -1,5 +1,7 @@
 package org.tron.core.db;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
@@ -37,6 +39,23 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> extends Tron
     }
   }
 
+  /**
+   * put several items with a single database write, undo is recorded per key as by put.
+   */
+  public void putAll(Map<byte[], T> items) {
+    Map<byte[], byte[]> rows = new LinkedHashMap<>();
+    items.forEach((key, item) -> {
+      byte[] value = dbSource.getData(key);
+      if (ArrayUtils.isNotEmpty(value)) {
+        onModify(key, value);
+      } else {
+        onCreate(key);
+      }
+      rows.put(key, item.getData());
+    });
+    dbSource.updateByBatch(rows);
+  }
+
   @Override
   public void delete(byte[] key) {
     onDelete(key);
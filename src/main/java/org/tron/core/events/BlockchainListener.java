@@ -16,6 +16,7 @@
 package org.tron.core.events;
 
 import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.Transaction;
 
 public interface BlockchainListener {
 
@@ -28,4 +29,23 @@ public interface BlockchainListener {
    * Genesis block added to blockchain.
    */
   void addGenesisBlock(Block block);
+
+  /**
+   * Block undone while switching to another fork.
+   */
+  default void revertBlock(Block block) {
+  }
+
+  /**
+   * Transaction of an applied block, with its result.
+   */
+  default void executeTransaction(long blockNum, Transaction transaction,
+      Transaction.Result result) {
+  }
+
+  /**
+   * Block confirmed by enough witnesses to never be undone.
+   */
+  default void solidifyBlock(long blockNum) {
+  }
 }
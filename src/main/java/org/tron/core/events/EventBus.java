@@ -0,0 +1,317 @@
+package org.tron.core.events;
+
+import com.google.protobuf.ByteString;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.api.GrpcAPI.ChainEvent;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.TransactionCapsule;
+
+/**
+ * Chain events published by the manager, fanned out to in-process listeners and remote
+ * subscribers. Publishing only writes the ring buffer; a single dispatcher thread moves every
+ * subscriber along its own cursor, so a slow consumer never holds up block processing and at worst
+ * loses its place. The ring keeps ids only, bodies are read back from the chain when an event is
+ * delivered, so buffered events cost little whether anyone listens or not.
+ */
+@Slf4j
+public class EventBus {
+
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+  // events handed to one subscriber before the dispatcher moves on to the next one
+  private static final int DISPATCH_BATCH = 256;
+  // the dispatcher is woken up by publishers and ready subscribers, this is only a safety net
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  // cursors restart with the node, subscribers resuming from a cursor must be in the same session
+  private final long session = System.currentTimeMillis();
+  private final EventRingBuffer buffer;
+  private final BlockLoader blocks;
+  private final List<EventSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+  // the block last read back and its transactions by id, only used by the dispatcher
+  private BlockCapsule loadedBlock;
+  private Map<ByteString, TransactionCapsule> loadedTransactions;
+
+  private volatile Thread dispatcher;
+  private volatile boolean running = true;
+
+  public EventBus(BlockLoader blocks) {
+    this(DEFAULT_CAPACITY, blocks);
+  }
+
+  public EventBus(int capacity, BlockLoader blocks) {
+    this.buffer = new EventRingBuffer(capacity);
+    this.blocks = blocks;
+  }
+
+  public long getSession() {
+    return session;
+  }
+
+  public long getPublished() {
+    return buffer.getPublished();
+  }
+
+  public long getOldest() {
+    return buffer.getOldest();
+  }
+
+  public ChainEvent publish(ChainEvent.Builder event) {
+    ChainEvent published = buffer.publish(event.setSession(session));
+    wakeUp();
+    return published;
+  }
+
+  /**
+   * the block and then each of its transactions, with their results.
+   */
+  public void publishBlockApplied(BlockCapsule block) {
+    publish(blockReference(ChainEvent.Type.BLOCK_APPLIED, block));
+    block.getTransactions().forEach(trx -> publish(transactionReference(block, trx)));
+  }
+
+  public void publishBlockReverted(BlockCapsule block) {
+    publish(blockReference(ChainEvent.Type.BLOCK_REVERTED, block));
+  }
+
+  public void publishBlockSolidified(long blockNum) {
+    publish(ChainEvent.newBuilder()
+        .setType(ChainEvent.Type.BLOCK_SOLIDIFIED)
+        .setBlockNum(blockNum));
+  }
+
+  public static ChainEvent.Builder blockEvent(ChainEvent.Type type, BlockCapsule block) {
+    return blockReference(type, block).setBlock(block.getInstance());
+  }
+
+  public static ChainEvent.Builder transactionEvent(BlockCapsule block, TransactionCapsule trx) {
+    return transactionReference(block, trx).setTransaction(trx.getInstance());
+  }
+
+  private static ChainEvent.Builder blockReference(ChainEvent.Type type, BlockCapsule block) {
+    return ChainEvent.newBuilder()
+        .setType(type)
+        .setBlockNum(block.getNum())
+        .setBlockId(block.getBlockId().getByteString());
+  }
+
+  /**
+   * the result is only known at execution, so unlike the transaction it is kept in the ring.
+   */
+  private static ChainEvent.Builder transactionReference(BlockCapsule block,
+      TransactionCapsule trx) {
+    ChainEvent.Builder event = ChainEvent.newBuilder()
+        .setType(ChainEvent.Type.TRANSACTION_EXECUTED)
+        .setBlockNum(block.getNum())
+        .setBlockId(block.getBlockId().getByteString())
+        .setTransactionId(trx.getTransactionId().getByteString());
+    if (trx.getResult() != null) {
+      event.setResult(trx.getResult().getInstance());
+    }
+    return event;
+  }
+
+  /**
+   * deliver the events published after a cursor.
+   *
+   * @return false if events after the cursor were already overwritten.
+   */
+  public boolean subscribe(EventSubscriber subscriber, long afterCursor) {
+    long next = Math.min(afterCursor, buffer.getPublished()) + 1;
+    if (next < buffer.getOldest()) {
+      return false;
+    }
+    subscriber.setNext(next);
+    subscribers.add(subscriber);
+    startDispatcher();
+    wakeUp();
+    return true;
+  }
+
+  /**
+   * deliver the events published from now on.
+   */
+  public void subscribeLive(EventSubscriber subscriber) {
+    subscribe(subscriber, buffer.getPublished());
+  }
+
+  public void unsubscribe(EventSubscriber subscriber) {
+    subscribers.remove(subscriber);
+  }
+
+  public void addListener(BlockchainListener listener) {
+    subscribeLive(new ListenerSubscriber(listener));
+  }
+
+  public void removeListener(BlockchainListener listener) {
+    subscribers.removeIf(subscriber -> subscriber instanceof ListenerSubscriber
+        && ((ListenerSubscriber) subscriber).listener == listener);
+  }
+
+  /**
+   * there are events to deliver or a subscriber became ready.
+   */
+  public void wakeUp() {
+    Thread thread = dispatcher;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  public void shutdown() {
+    running = false;
+    wakeUp();
+  }
+
+  private synchronized void startDispatcher() {
+    if (dispatcher == null) {
+      Thread thread = new Thread(this::dispatch, "chain-event-dispatcher");
+      thread.setDaemon(true);
+      dispatcher = thread;
+      thread.start();
+    }
+  }
+
+  private void dispatch() {
+    while (running) {
+      boolean progress = false;
+      for (EventSubscriber subscriber : subscribers) {
+        progress |= drain(subscriber);
+      }
+      if (!progress) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  private boolean drain(EventSubscriber subscriber) {
+    long published = buffer.getPublished();
+    long start = subscriber.getNext();
+    int delivered = 0;
+    while (subscriber.getNext() <= published && delivered < DISPATCH_BATCH
+        && subscriber.isReady()) {
+      long cursor = subscriber.getNext();
+      ChainEvent event = buffer.get(cursor);
+      if (event != null && subscriber.accepts(event)) {
+        event = withBody(event);
+      }
+      if (event == null) {
+        subscribers.remove(subscriber);
+        logger.warn("event subscriber fell behind, events from cursor {} are gone", cursor);
+        subscriber.expired(cursor);
+        return false;
+      }
+      subscriber.setNext(cursor + 1);
+      if (subscriber.accepts(event)) {
+        try {
+          subscriber.deliver(event);
+        } catch (Exception e) {
+          subscribers.remove(subscriber);
+          logger.info("event subscriber dropped: " + e.getMessage());
+          return false;
+        }
+        delivered++;
+      }
+    }
+    return subscriber.getNext() != start;
+  }
+
+  /**
+   * the event with the block or transaction it refers to, null if that can not be read any more.
+   * Subscribers mostly follow the head together, so the block last read is kept for the next one.
+   */
+  private ChainEvent withBody(ChainEvent event) {
+    switch (event.getType()) {
+      case BLOCK_APPLIED:
+      case BLOCK_REVERTED: {
+        BlockCapsule block = load(event.getBlockId());
+        return block == null ? null : event.toBuilder().setBlock(block.getInstance()).build();
+      }
+      case TRANSACTION_EXECUTED: {
+        TransactionCapsule trx = load(event.getBlockId()) == null ? null
+            : loadedTransactions.get(event.getTransactionId());
+        return trx == null ? null : event.toBuilder().setTransaction(trx.getInstance()).build();
+      }
+      default:
+        return event;
+    }
+  }
+
+  private BlockCapsule load(ByteString blockId) {
+    if (loadedBlock == null || !loadedBlock.getBlockId().getByteString().equals(blockId)) {
+      BlockCapsule block = blocks.load(Sha256Hash.wrap(blockId));
+      if (block == null) {
+        return null;
+      }
+      Map<ByteString, TransactionCapsule> transactions = new HashMap<>();
+      block.getTransactions().forEach(
+          trx -> transactions.put(trx.getTransactionId().getByteString(), trx));
+      loadedBlock = block;
+      loadedTransactions = transactions;
+    }
+    return loadedBlock;
+  }
+
+  /**
+   * reads back the block an event refers to.
+   */
+  public interface BlockLoader {
+
+    /**
+     * @return null if the block is not known any more.
+     */
+    BlockCapsule load(Sha256Hash blockId);
+  }
+
+  private static class ListenerSubscriber extends EventSubscriber {
+
+    private final BlockchainListener listener;
+
+    ListenerSubscriber(BlockchainListener listener) {
+      super(Collections.emptyList());
+      this.listener = listener;
+    }
+
+    @Override
+    protected void deliver(ChainEvent event) {
+      try {
+        switch (event.getType()) {
+          case BLOCK_APPLIED:
+            if (event.getBlockNum() == 0) {
+              listener.addGenesisBlock(event.getBlock());
+            } else {
+              listener.addBlock(event.getBlock());
+            }
+            break;
+          case BLOCK_REVERTED:
+            listener.revertBlock(event.getBlock());
+            break;
+          case TRANSACTION_EXECUTED:
+            listener.executeTransaction(event.getBlockNum(), event.getTransaction(),
+                event.getResult());
+            break;
+          case BLOCK_SOLIDIFIED:
+            listener.solidifyBlock(event.getBlockNum());
+            break;
+          default:
+            break;
+        }
+      } catch (Exception e) {
+        logger.error("blockchain listener failed at event " + event.getCursor(), e);
+      }
+    }
+
+    @Override
+    protected void expired(long cursor) {
+      logger.error("blockchain listener missed the events from cursor {}", cursor);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.tron.core.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.tron.api.GrpcAPI.ChainEvent;
+
+/**
+ * Fixed size ring of the latest chain events, addressed by cursor. Publishers claim a cursor and
+ * make it visible in claim order; readers never lock and never block the publisher, a reader that
+ * falls more than the capacity behind finds its events overwritten.
+ */
+public class EventRingBuffer {
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<ChainEvent> slots;
+
+  // last cursor handed out and last cursor readers may see, cursors start at 1
+  private final AtomicLong claimed = new AtomicLong();
+  private volatile long published;
+
+  public EventRingBuffer(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+    }
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * stamp the event with the next cursor and make it visible to readers.
+   */
+  public ChainEvent publish(ChainEvent.Builder builder) {
+    long cursor = claimed.incrementAndGet();
+    ChainEvent event = builder.setCursor(cursor).build();
+    // concurrent publishers become visible in the order they claimed
+    while (published != cursor - 1) {
+      Thread.yield();
+    }
+    slots.set((int) (cursor & mask), event);
+    published = cursor;
+    return event;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * cursor of the latest visible event, 0 before the first one.
+   */
+  public long getPublished() {
+    return published;
+  }
+
+  /**
+   * oldest cursor that may still be read.
+   */
+  public long getOldest() {
+    return Math.max(1, published - capacity + 1);
+  }
+
+  /**
+   * the event at cursor, null if it is not published yet or already overwritten.
+   */
+  public ChainEvent get(long cursor) {
+    if (cursor < 1 || cursor > published) {
+      return null;
+    }
+    ChainEvent event = slots.get((int) (cursor & mask));
+    return event != null && event.getCursor() == cursor ? event : null;
+  }
+}
@@ -0,0 +1,52 @@
+package org.tron.core.events;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import org.tron.api.GrpcAPI.ChainEvent;
+
+/**
+ * One consumer of the event bus with its own cursor. Events are handed over by the dispatcher
+ * thread of the bus, one at a time and in cursor order.
+ */
+public abstract class EventSubscriber {
+
+  private final Set<ChainEvent.Type> types;
+  // next cursor to deliver, only touched by the dispatcher once subscribed
+  private long next;
+
+  /**
+   * @param types the event types wanted, all of them if empty.
+   */
+  protected EventSubscriber(Collection<ChainEvent.Type> types) {
+    this.types = types.isEmpty() ? EnumSet.allOf(ChainEvent.Type.class) : EnumSet.copyOf(types);
+  }
+
+  long getNext() {
+    return next;
+  }
+
+  void setNext(long next) {
+    this.next = next;
+  }
+
+  protected boolean accepts(ChainEvent event) {
+    return types.contains(event.getType());
+  }
+
+  /**
+   * false while the consumer can not take another event, the dispatcher retries on the next wake
+   * up.
+   */
+  protected boolean isReady() {
+    return true;
+  }
+
+  protected abstract void deliver(ChainEvent event);
+
+  /**
+   * the events from cursor on were overwritten before they could be delivered, the subscriber has
+   * been dropped.
+   */
+  protected abstract void expired(long cursor);
+}
@@ -24,7 +24,7 @@ public class BlockHeadersMessage extends TronMessage {
 
   @Override
   public String toString() {
-    return null;
+    return "size: " + getBlockHeaders().size();
   }
 
   @Override
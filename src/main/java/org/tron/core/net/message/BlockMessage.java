@@ -1,14 +1,16 @@
 package org.tron.core.net.message;
 
-import com.google.protobuf.InvalidProtocolBufferException;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.exception.BadItemException;
 import org.tron.protos.Protocol.Block;
 
 public class BlockMessage extends TronMessage {
 
-  private Block block;
+  // built once, so the block id and transaction hashes are hashed only once per message;
+  // received blocks only decode their header until the body is needed
+  private volatile BlockCapsule blockCapsule;
 
   public BlockMessage(byte[] packed) {
     super(packed);
@@ -16,14 +18,15 @@ public class BlockMessage extends TronMessage {
   }
 
   public BlockMessage(Block block) {
-    this.block = block;
+    this.blockCapsule = new BlockCapsule(block);
     unpacked = true;
     this.type = MessageTypes.BLOCK.asByte();
   }
 
   public BlockMessage(BlockCapsule block) {
     data = block.getData();
-    unpacked = false;
+    this.blockCapsule = block;
+    unpacked = true;
     this.type = MessageTypes.BLOCK.asByte();
   }
 
@@ -67,12 +70,12 @@ public class BlockMessage extends TronMessage {
   }
 
   public Block getBlock() {
-    unPack();
-    return block;
+    return getBlockCapsule().getInstance();
   }
 
   public BlockCapsule getBlockCapsule() {
-    return new BlockCapsule(getBlock());
+    unPack();
+    return blockCapsule;
   }
 
   private synchronized void unPack() {
@@ -81,16 +84,16 @@ public class BlockMessage extends TronMessage {
     }
 
     try {
-      this.block = Block.parseFrom(data);
-    } catch (InvalidProtocolBufferException e) {
-      logger.debug(e.getMessage());
+      this.blockCapsule = new BlockCapsule(data);
+    } catch (BadItemException e) {
+      logger.debug("bad block message", e);
     }
 
     unpacked = true;
   }
 
   private void pack() {
-    this.data = this.block.toByteArray();
+    this.data = this.blockCapsule.getData();
   }
 
 
@@ -0,0 +1,86 @@
+package org.tron.core.net.message;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.protos.Protocol.BlockTransactions;
+import org.tron.protos.Protocol.Transaction;
+
+/**
+ * The transactions asked for by a {@link FetchBlockTransactionsMessage}, in the order asked for.
+ * None at all means the block is not known to the sender any more.
+ */
+public class BlockTransactionsMessage extends TronMessage {
+
+  private BlockTransactions transactions;
+
+  public BlockTransactionsMessage(byte[] packed) {
+    super(packed);
+    this.type = MessageTypes.BLOCK_TRXS.asByte();
+  }
+
+  public BlockTransactionsMessage(BlockId blockId, List<Transaction> trxs) {
+    this.transactions = BlockTransactions.newBuilder()
+        .setBlockHash(blockId.getByteString())
+        .setBlockNum(blockId.getNum())
+        .addAllTransactions(trxs)
+        .build();
+    this.type = MessageTypes.BLOCK_TRXS.asByte();
+    unpacked = true;
+  }
+
+  @Override
+  public byte[] getData() {
+    if (data == null) {
+      pack();
+    }
+    return data;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + getBlockId().getString() + " trxs:" + getTransactions().size();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public MessageTypes getType() {
+    return MessageTypes.fromByte(this.type);
+  }
+
+  public BlockId getBlockId() {
+    BlockTransactions transactions = getBlockTransactions();
+    return new BlockId(transactions.getBlockHash(), transactions.getBlockNum());
+  }
+
+  public List<Transaction> getTransactions() {
+    return getBlockTransactions().getTransactionsList();
+  }
+
+  private BlockTransactions getBlockTransactions() {
+    unPack();
+    return transactions;
+  }
+
+  private void pack() {
+    this.data = this.transactions.toByteArray();
+  }
+
+  private synchronized void unPack() {
+    if (unpacked) {
+      return;
+    }
+
+    try {
+      this.transactions = BlockTransactions.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      this.transactions = BlockTransactions.getDefaultInstance();
+    }
+    unpacked = true;
+  }
+}
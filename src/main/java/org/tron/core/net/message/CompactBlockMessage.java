@@ -0,0 +1,171 @@
+package org.tron.core.net.message;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
+import java.util.List;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.BlockHeader;
+import org.tron.protos.Protocol.CompactBlock;
+
+/**
+ * A block as its header and a 6 byte short id per transaction, SipHash-2-4 of the transaction id
+ * keyed by the block id and a nonce of the sender, so ids colliding in one relay do not collide in
+ * the next.
+ */
+public class CompactBlockMessage extends TronMessage {
+
+  public static final int SHORT_ID_BYTES = 6;
+
+  private static final long SHORT_ID_MASK = (1L << (SHORT_ID_BYTES * 8)) - 1;
+  private static final SecureRandom random = new SecureRandom();
+
+  private CompactBlock compactBlock;
+  private BlockId blockId;
+  private HashFunction shortIdHash;
+
+  public CompactBlockMessage(byte[] packed) {
+    super(packed);
+    this.type = MessageTypes.COMPACT_BLOCK.asByte();
+  }
+
+  public CompactBlockMessage(BlockCapsule block) {
+    this(block, random.nextLong());
+  }
+
+  public CompactBlockMessage(BlockCapsule block, long nonce) {
+    this.blockId = block.getBlockId();
+    List<TransactionCapsule> trxs = block.getTransactions();
+    ByteBuffer shortIds = ByteBuffer.allocate(trxs.size() * SHORT_ID_BYTES);
+    HashFunction hash = shortIdHash(blockId, nonce);
+    trxs.forEach(trx -> putShortId(shortIds, shortId(hash, trx.getTransactionId())));
+    this.compactBlock = CompactBlock.newBuilder()
+        .setBlockHeader(block.getInstance().getBlockHeader())
+        .setNonce(nonce)
+        .setShortIds(ByteString.copyFrom(shortIds.array()))
+        .build();
+    this.shortIdHash = hash;
+    this.type = MessageTypes.COMPACT_BLOCK.asByte();
+    unpacked = true;
+  }
+
+  @Override
+  public byte[] getData() {
+    if (data == null) {
+      pack();
+    }
+    return data;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + getBlockId().getString() + " trxs:" + getTransactionCount();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public MessageTypes getType() {
+    return MessageTypes.fromByte(this.type);
+  }
+
+  public BlockHeader getBlockHeader() {
+    return getCompactBlock().getBlockHeader();
+  }
+
+  public synchronized BlockId getBlockId() {
+    if (blockId == null) {
+      blockId = new BlockCapsule(Block.newBuilder().setBlockHeader(getBlockHeader()).build())
+          .getBlockId();
+    }
+    return blockId;
+  }
+
+  public int getTransactionCount() {
+    return getCompactBlock().getShortIds().size() / SHORT_ID_BYTES;
+  }
+
+  /**
+   * the short ids in block order.
+   */
+  public long[] getShortIds() {
+    ByteBuffer buffer = getCompactBlock().getShortIds().asReadOnlyByteBuffer();
+    long[] shortIds = new long[getTransactionCount()];
+    for (int i = 0; i < shortIds.length; i++) {
+      long id = 0;
+      for (int b = 0; b < SHORT_ID_BYTES; b++) {
+        id |= (buffer.get() & 0xFFL) << (8 * b);
+      }
+      shortIds[i] = id;
+    }
+    return shortIds;
+  }
+
+  /**
+   * the short id the sender would give the transaction in this block.
+   */
+  public long shortIdOf(Sha256Hash trxId) {
+    HashFunction hash;
+    synchronized (this) {
+      if (shortIdHash == null) {
+        shortIdHash = shortIdHash(getBlockId(), getCompactBlock().getNonce());
+      }
+      hash = shortIdHash;
+    }
+    return shortId(hash, trxId);
+  }
+
+  private static HashFunction shortIdHash(BlockId blockId, long nonce) {
+    byte[] seed = Sha256Hash.hash(
+        ByteBuffer.allocate(Sha256Hash.LENGTH + Long.BYTES)
+            .put(blockId.getBytes())
+            .putLong(nonce)
+            .array());
+    ByteBuffer key = ByteBuffer.wrap(seed).order(ByteOrder.LITTLE_ENDIAN);
+    return Hashing.sipHash24(key.getLong(), key.getLong());
+  }
+
+  private static long shortId(HashFunction hash, Sha256Hash trxId) {
+    return hash.hashBytes(trxId.getBytes()).asLong() & SHORT_ID_MASK;
+  }
+
+  private static void putShortId(ByteBuffer out, long shortId) {
+    for (int b = 0; b < SHORT_ID_BYTES; b++) {
+      out.put((byte) (shortId >>> (8 * b)));
+    }
+  }
+
+  private CompactBlock getCompactBlock() {
+    unPack();
+    return compactBlock;
+  }
+
+  private void pack() {
+    this.data = this.compactBlock.toByteArray();
+  }
+
+  private synchronized void unPack() {
+    if (unpacked) {
+      return;
+    }
+
+    try {
+      this.compactBlock = CompactBlock.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      this.compactBlock = CompactBlock.getDefaultInstance();
+    }
+    unpacked = true;
+  }
+}
@@ -1,6 +1,9 @@
 package org.tron.core.net.message;
 
+import java.util.List;
+import org.tron.common.utils.Sha256Hash;
 import org.tron.protos.Protocol;
+import org.tron.protos.Protocol.Inventory.InventoryType;
 
 public class FetchBlockHeadersMessage extends InventoryMessage {
 
@@ -14,6 +17,11 @@ public class FetchBlockHeadersMessage extends InventoryMessage {
     this.type = MessageTypes.FETCH_BLOCK_HEADERS.asByte();
   }
 
+  public FetchBlockHeadersMessage(List<Sha256Hash> hashList, InventoryType type) {
+    super(hashList, type);
+    this.type = MessageTypes.FETCH_BLOCK_HEADERS.asByte();
+  }
+
   @Override
   public MessageTypes getType() {
     return MessageTypes.fromByte(this.type);
@@ -0,0 +1,85 @@
+package org.tron.core.net.message;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.protos.Protocol.BlockTransactionsRequest;
+
+/**
+ * Asks the sender of a compact block for the transactions at the given positions, the ones the
+ * pending pool could not supply.
+ */
+public class FetchBlockTransactionsMessage extends TronMessage {
+
+  private BlockTransactionsRequest request;
+
+  public FetchBlockTransactionsMessage(byte[] packed) {
+    super(packed);
+    this.type = MessageTypes.FETCH_BLOCK_TRXS.asByte();
+  }
+
+  public FetchBlockTransactionsMessage(BlockId blockId, List<Integer> indexes) {
+    this.request = BlockTransactionsRequest.newBuilder()
+        .setBlockHash(blockId.getByteString())
+        .setBlockNum(blockId.getNum())
+        .addAllIndexes(indexes)
+        .build();
+    this.type = MessageTypes.FETCH_BLOCK_TRXS.asByte();
+    unpacked = true;
+  }
+
+  @Override
+  public byte[] getData() {
+    if (data == null) {
+      pack();
+    }
+    return data;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + getBlockId().getString() + " indexes:" + getIndexes().size();
+  }
+
+  @Override
+  public Class<?> getAnswerMessage() {
+    return null;
+  }
+
+  @Override
+  public MessageTypes getType() {
+    return MessageTypes.fromByte(this.type);
+  }
+
+  public BlockId getBlockId() {
+    BlockTransactionsRequest request = getRequest();
+    return new BlockId(request.getBlockHash(), request.getBlockNum());
+  }
+
+  public List<Integer> getIndexes() {
+    return getRequest().getIndexesList();
+  }
+
+  private BlockTransactionsRequest getRequest() {
+    unPack();
+    return request;
+  }
+
+  private void pack() {
+    this.data = this.request.toByteArray();
+  }
+
+  private synchronized void unPack() {
+    if (unpacked) {
+      return;
+    }
+
+    try {
+      this.request = BlockTransactionsRequest.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      this.request = BlockTransactionsRequest.getDefaultInstance();
+    }
+    unpacked = true;
+  }
+}
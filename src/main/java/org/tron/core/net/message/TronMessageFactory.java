@@ -38,6 +38,12 @@ public class TronMessageFactory extends MessageFactory {
         return new BlockInventoryMessage(packed);
       case TRX_INVENTORY:
         return new TransactionInventoryMessage(packed);
+      case COMPACT_BLOCK:
+        return new CompactBlockMessage(packed);
+      case FETCH_BLOCK_TRXS:
+        return new FetchBlockTransactionsMessage(packed);
+      case BLOCK_TRXS:
+        return new BlockTransactionsMessage(packed);
       default:
         throw new IllegalArgumentException("No such message");
     }
@@ -0,0 +1,23 @@
+package org.tron.core.net.node;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * the latest entries put, the eldest give way.
+ */
+class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int capacity;
+
+  BoundedMap(int capacity) {
+    this.capacity = capacity;
+  }
+
+  @Override
+  protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+    return size() > capacity;
+  }
+}
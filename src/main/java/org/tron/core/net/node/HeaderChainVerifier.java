@@ -0,0 +1,155 @@
+package org.tron.core.net.node;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.tron.common.utils.RandomGenerator;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.db.Manager;
+import org.tron.core.exception.BadBlockException;
+import org.tron.core.exception.UnLinkedBlockException;
+import org.tron.core.exception.ValidateSignatureException;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.BlockHeader;
+
+/**
+ * Checks the headers of a sync before any body is asked for: each must have the id announced for
+ * it, follow its parent by number and time, and be signed by the witness it names. When the
+ * witness order at the parent is known, each header must come from the witness scheduled for its
+ * slot, otherwise from one of the witnesses. The witnesses are only known until the next
+ * maintenance, so later headers are checked against their own signature alone and the schedule of
+ * their blocks is checked on import.
+ */
+class HeaderChainVerifier {
+
+  private final Set<ByteString> witnesses;
+  private final long witnessesUntil;
+  private final long maxTime;
+  private final WitnessOrder order;
+
+  /**
+   * @param witnesses the witnesses producing blocks until witnessesUntil.
+   * @param maxTime the latest timestamp accepted, to reject blocks from the future.
+   * @param order the witness order after the parent, null if it is not known.
+   */
+  HeaderChainVerifier(List<ByteString> witnesses, long witnessesUntil, long maxTime,
+      WitnessOrder order) {
+    this.witnesses = new HashSet<>(witnesses);
+    this.witnessesUntil = witnessesUntil;
+    this.maxTime = maxTime;
+    this.order = order;
+  }
+
+  /**
+   * @param parent the block the first header follows.
+   * @param ids the ids the peer announced, one per header.
+   * @return the witness order after the last header, null if it is not known.
+   * @throws UnLinkedBlockException if the first header does not follow the parent.
+   * @throws BadBlockException if the headers are not the chain announced or not validly signed.
+   */
+  WitnessOrder verify(BlockId parent, long parentTime, List<BlockId> ids,
+      List<BlockHeader> headers) throws BadBlockException, UnLinkedBlockException {
+    if (headers.size() != ids.size()) {
+      throw new BadBlockException(
+          "got " + headers.size() + " headers for " + ids.size() + " blocks");
+    }
+    BlockCapsule[] blocks = headers.stream()
+        .map(header -> new BlockCapsule(Block.newBuilder().setBlockHeader(header).build()))
+        .toArray(BlockCapsule[]::new);
+
+    WitnessOrder next = order;
+    BlockId previous = parent;
+    long previousTime = parentTime;
+    for (int i = 0; i < blocks.length; i++) {
+      BlockCapsule block = blocks[i];
+      if (!block.getParentHash().equals(previous) || block.getNum() != previous.getNum() + 1) {
+        if (i == 0) {
+          throw new UnLinkedBlockException(
+              "header " + block.getNum() + " does not follow " + parent.getString());
+        }
+        throw new BadBlockException("header " + block.getNum() + " is not linked");
+      }
+      if (!block.getBlockId().equals(ids.get(i)) || block.getNum() != ids.get(i).getNum()) {
+        throw new BadBlockException("header " + block.getNum() + " is not the block announced");
+      }
+      if (block.getTimeStamp() <= previousTime || block.getTimeStamp() > maxTime) {
+        throw new BadBlockException("header " + block.getNum() + " has timestamp "
+            + block.getTimeStamp() + " after " + previousTime);
+      }
+      if (next != null && block.getTimeStamp() >= next.until) {
+        next = null;
+      }
+      if (next != null) {
+        if (!next.getScheduledWitness(block.getTimeStamp()).equals(block.getWitnessAddress())) {
+          throw new BadBlockException(
+              "header " + block.getNum() + " is not from the witness of its slot");
+        }
+        next = next.after(block);
+      } else if (block.getTimeStamp() < witnessesUntil
+          && !witnesses.contains(block.getWitnessAddress())) {
+        throw new BadBlockException("header " + block.getNum() + " is not from a witness");
+      }
+      previous = block.getBlockId();
+      previousTime = block.getTimeStamp();
+    }
+
+    // the signatures are recovered last and in parallel, they cost the most
+    if (!IntStream.range(0, blocks.length).parallel().allMatch(i -> isSigned(blocks[i]))) {
+      throw new BadBlockException("a header in " + ids.get(0).getString() + " is badly signed");
+    }
+    return next;
+  }
+
+  /**
+   * The witness order following a block, kept the way {@link
+   * org.tron.core.witness.WitnessController} keeps it: the shuffled witnesses take the slots in
+   * turn, and after every block whose number is a multiple of the witness count the witness list
+   * is shuffled again, seeded with the time of that block. Known until the next maintenance.
+   */
+  static class WitnessOrder {
+
+    private final List<ByteString> shuffled;
+    // what the next shuffle starts from, the shuffled list itself once it has been shuffled
+    private final List<ByteString> witnesses;
+    private final long genesisTime;
+    // slots left out after the block the order follows, when that is a maintenance block
+    private final long skippedSlots;
+    private final long until;
+
+    WitnessOrder(List<ByteString> shuffled, List<ByteString> witnesses, long genesisTime,
+        long skippedSlots, long until) {
+      this.shuffled = shuffled;
+      this.witnesses = witnesses;
+      this.genesisTime = genesisTime;
+      this.skippedSlots = skippedSlots;
+      this.until = until;
+    }
+
+    ByteString getScheduledWitness(long time) {
+      long slot = (time - genesisTime) / Manager.LOOP_INTERVAL - skippedSlots;
+      return shuffled.get((int) slot % shuffled.size());
+    }
+
+    WitnessOrder after(BlockCapsule block) {
+      if (block.getNum() == 0 || block.getNum() % witnesses.size() != 0) {
+        return skippedSlots == 0 ? this
+            : new WitnessOrder(shuffled, witnesses, genesisTime, 0, until);
+      }
+      List<ByteString> reshuffled = new RandomGenerator<ByteString>()
+          .shuffle(new ArrayList<>(witnesses), block.getTimeStamp());
+      return new WitnessOrder(reshuffled, reshuffled, genesisTime, 0, until);
+    }
+  }
+
+  private static boolean isSigned(BlockCapsule block) {
+    try {
+      return block.validateSignature();
+    } catch (ValidateSignatureException | RuntimeException e) {
+      return false;
+    }
+  }
+}
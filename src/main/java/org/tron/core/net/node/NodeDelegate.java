@@ -3,23 +3,37 @@ package org.tron.core.net.node;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.tron.common.overlay.message.Message;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.exception.BadBlockException;
-import org.tron.core.exception.BadTransactionException;
 import org.tron.core.exception.UnLinkedBlockException;
 import org.tron.core.exception.UnReachBlockException;
 import org.tron.core.net.message.MessageTypes;
+import org.tron.protos.Protocol.BlockHeader;
 
 public interface NodeDelegate {
 
   LinkedList<Sha256Hash> handleBlock(BlockCapsule block, boolean syncMode)
       throws BadBlockException, UnLinkedBlockException;
 
-  void handleTransaction(TransactionCapsule trx) throws BadTransactionException;
+  /**
+   * completes once the transaction is applied or dropped, exceptionally with a
+   * BadTransactionException if its sender should not have relayed it.
+   */
+  CompletableFuture<Void> handleTransaction(TransactionCapsule trx);
+
+  /**
+   * check the headers of blocks to sync before their bodies are fetched.
+   *
+   * @throws UnLinkedBlockException if they do not follow the parent.
+   * @throws BadBlockException if they are not the blocks announced or not validly signed.
+   */
+  void validateBlockHeaders(BlockId parent, long parentTime, List<BlockId> ids,
+      List<BlockHeader> headers) throws BadBlockException, UnLinkedBlockException;
 
   LinkedList<BlockId> getLostBlockIds(List<BlockId> blockChainSummary);
 
@@ -28,6 +42,11 @@ public interface NodeDelegate {
 
   Message getData(Sha256Hash msgId, MessageTypes type);
 
+  /**
+   * the transactions waiting for a block, to rebuild compact blocks from.
+   */
+  List<TransactionCapsule> getPendingTransactions();
+
   void syncToCli(long unSyncNum);
 
   long getBlockTime(BlockId id);
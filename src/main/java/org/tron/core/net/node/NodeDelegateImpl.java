@@ -1,18 +1,23 @@
 package org.tron.core.net.node;
 
 import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.tron.common.overlay.message.Message;
 import org.tron.common.utils.Sha256Hash;
+import org.tron.common.utils.Time;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.config.Parameter.NodeConstant;
 import org.tron.core.db.Manager;
 import org.tron.core.exception.BadBlockException;
@@ -29,12 +34,22 @@ import org.tron.core.exception.ValidateSignatureException;
 import org.tron.core.net.message.BlockMessage;
 import org.tron.core.net.message.MessageTypes;
 import org.tron.core.net.message.TransactionMessage;
+import org.tron.core.net.node.HeaderChainVerifier.WitnessOrder;
+import org.tron.core.witness.WitnessController;
+import org.tron.core.witness.WitnessSchedule;
+import org.tron.protos.Protocol.BlockHeader;
 
 @Slf4j
 public class NodeDelegateImpl implements NodeDelegate {
 
+  // syncs followed at once, each keeps the witness order after its last verified header
+  private static final int HEADER_ORDERS_KEPT = 64;
+
   private Manager dbManager;
 
+  private final Map<BlockId, WitnessOrder> headerOrders = Collections.synchronizedMap(
+      new BoundedMap<>(HEADER_ORDERS_KEPT));
+
   public NodeDelegateImpl(Manager dbManager) {
     this.dbManager = dbManager;
   }
@@ -47,6 +62,7 @@ public class NodeDelegateImpl implements NodeDelegate {
     if (gap / 1000 < -6000) {
       throw new BadBlockException("block time error");
     }
+    block.decodeBody();
     try {
       dbManager.pushBlock(block);
       if (!syncMode) {
@@ -72,22 +88,58 @@ public class NodeDelegateImpl implements NodeDelegate {
 
 
   @Override
-  public void handleTransaction(TransactionCapsule trx) throws BadTransactionException {
+  public CompletableFuture<Void> handleTransaction(TransactionCapsule trx) {
     logger.info("handle transaction");
-    try {
-      dbManager.pushTransactions(trx);
-    } catch (ContractValidateException e) {
-      logger.info("Contract validate failed");
-      logger.debug(e.getMessage(), e);
-      throw new BadTransactionException();
-    } catch (ContractExeException e) {
-      logger.info("Contract execute failed");
-      logger.debug(e.getMessage(), e);
-      throw new BadTransactionException();
-    } catch (ValidateSignatureException e) {
-      throw new BadTransactionException();
-    } catch (HighFreqException e) {
-      logger.info(e.getMessage());
+    CompletableFuture<Void> handled = new CompletableFuture<>();
+    dbManager.getTransactionPipeline().submit(trx).whenComplete((applied, e) -> {
+      if (e == null) {
+        handled.complete(null);
+      } else if (e instanceof HighFreqException) {
+        logger.info(e.getMessage());
+        handled.complete(null);
+      } else {
+        if (e instanceof ContractValidateException) {
+          logger.info("Contract validate failed");
+        } else if (e instanceof ContractExeException) {
+          logger.info("Contract execute failed");
+        }
+        logger.debug(e.getMessage(), e);
+        handled.completeExceptionally(new BadTransactionException());
+      }
+    });
+    return handled;
+  }
+
+  @Override
+  public void validateBlockHeaders(BlockId parent, long parentTime, List<BlockId> ids,
+      List<BlockHeader> headers) throws BadBlockException, UnLinkedBlockException {
+    WitnessController controller = dbManager.getWitnessController();
+    List<ByteString> shuffled;
+    long witnessesUntil;
+    WitnessOrder order;
+    // the schedule, the witness list and the maintenance state of the same head
+    synchronized (dbManager) {
+      WitnessSchedule schedule = controller.getSchedule();
+      shuffled = schedule.getShuffledWitnesses();
+      witnessesUntil = dbManager.getDynamicPropertiesStore().getNextMaintenanceTime().getMillis();
+      if (parent.equals(schedule.getHeadBlockId())) {
+        List<ByteString> witnesses = controller.getWitnesses().stream()
+            .map(WitnessCapsule::getAddress)
+            .collect(Collectors.toList());
+        order = shuffled.isEmpty() || witnesses.isEmpty() ? null
+            : new WitnessOrder(shuffled, witnesses, dbManager.getGenesisBlock().getTimeStamp(),
+                dbManager.lastHeadBlockIsMaintenance() ? dbManager.getSkipSlotInMaintenance() : 0,
+                witnessesUntil);
+      } else {
+        order = headerOrders.get(parent);
+      }
+    }
+
+    WitnessOrder last = new HeaderChainVerifier(shuffled, witnessesUntil,
+        Time.getCurrentMillis() + Manager.LOOP_INTERVAL, order)
+        .verify(parent, parentTime, ids, headers);
+    if (last != null && !ids.isEmpty()) {
+      headerOrders.put(ids.get(ids.size() - 1), last);
     }
   }
 
@@ -205,6 +257,7 @@ public class NodeDelegateImpl implements NodeDelegate {
         } catch (ItemNotFoundException e) {
           logger.debug(e.getMessage());
         }
+        return null;
       case TRX:
         return new TransactionMessage(
             dbManager.getTransactionStore().get(hash.getBytes()).getData());
@@ -214,6 +267,11 @@ public class NodeDelegateImpl implements NodeDelegate {
     }
   }
 
+  @Override
+  public List<TransactionCapsule> getPendingTransactions() {
+    return dbManager.getPendingTransactionsSnapshot();
+  }
+
   @Override
   public void syncToCli(long unSyncNum) {
     logger.info("There are " + unSyncNum + " blocks we need to sync.");
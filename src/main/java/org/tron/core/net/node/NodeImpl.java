@@ -1,12 +1,12 @@
 package org.tron.core.net.node;
 
 import static org.tron.core.config.Parameter.NodeConstant.MAX_BLOCKS_ALREADY_FETCHED;
-import static org.tron.core.config.Parameter.NodeConstant.MAX_BLOCKS_IN_PROCESS;
 import static org.tron.core.config.Parameter.NodeConstant.MAX_BLOCKS_SYNC_FROM_ONE_PEER;
 
 import io.netty.util.internal.ConcurrentSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,10 +18,8 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javafx.util.Pair;
 import lombok.extern.slf4j.Slf4j;
@@ -33,21 +31,29 @@ import org.tron.common.overlay.message.ReasonCode;
 import org.tron.common.overlay.server.Channel.TronState;
 import org.tron.common.overlay.server.SyncPool;
 import org.tron.common.utils.ExecutorLoop;
+import org.tron.common.utils.ExecutorLoop.OverflowPolicy;
+import org.tron.common.utils.ExpiringHashMap;
+import org.tron.common.utils.RollingBloomFilter;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.common.utils.Time;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.config.Parameter.BlockConstant;
 import org.tron.core.config.Parameter.NetConstants;
 import org.tron.core.config.Parameter.NodeConstant;
 import org.tron.core.exception.BadBlockException;
-import org.tron.core.exception.BadTransactionException;
 import org.tron.core.exception.TraitorPeerException;
 import org.tron.core.exception.TronException;
 import org.tron.core.exception.UnLinkedBlockException;
+import org.tron.core.net.message.BlockHeadersMessage;
 import org.tron.core.net.message.BlockInventoryMessage;
 import org.tron.core.net.message.BlockMessage;
+import org.tron.core.net.message.BlockTransactionsMessage;
 import org.tron.core.net.message.ChainInventoryMessage;
+import org.tron.core.net.message.CompactBlockMessage;
+import org.tron.core.net.message.FetchBlockHeadersMessage;
+import org.tron.core.net.message.FetchBlockTransactionsMessage;
 import org.tron.core.net.message.FetchInvDataMessage;
 import org.tron.core.net.message.InventoryMessage;
 import org.tron.core.net.message.ItemNotFound;
@@ -57,7 +63,9 @@ import org.tron.core.net.message.TransactionMessage;
 import org.tron.core.net.message.TronMessage;
 import org.tron.core.net.peer.PeerConnection;
 import org.tron.core.net.peer.PeerConnectionDelegate;
+import org.tron.protos.Protocol.BlockHeader;
 import org.tron.protos.Protocol.Inventory.InventoryType;
+import org.tron.protos.Protocol.Transaction;
 
 @Slf4j
 @Component
@@ -95,8 +103,16 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     }
 
     void sendFetch() {
-      send.forEach((peer, ids) ->
-          ids.forEach((key, value) -> peer.sendMessage(new FetchInvDataMessage(value, key))));
+      send.forEach((peer, ids) -> ids.forEach((key, value) -> {
+        if (!peer.sendMessage(new FetchInvDataMessage(value, key))) {
+          // not requested after all, ask again, maybe another peer
+          value.forEach(id -> {
+            peer.getAdvObjWeRequested().remove(id);
+            advObjWeRequested.remove(id);
+            advObjToFetch.put(id, key);
+          });
+        }
+      }));
     }
   }
 
@@ -133,32 +149,67 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
   private ScheduledExecutorService disconnectInactiveExecutor = Executors
       .newSingleThreadScheduledExecutor();
 
-  private ScheduledExecutorService cleanInventoryExecutor = Executors
-      .newSingleThreadScheduledExecutor();
-
   //broadcast
   private ConcurrentHashMap<Sha256Hash, InventoryType> advObjToSpread = new ConcurrentHashMap<>();
 
-  private HashMap<Sha256Hash, Long> advObjWeRequested = new HashMap<>();
+  private ExpiringHashMap advObjWeRequested = new ExpiringHashMap(
+      NetConstants.MAX_INVENTORY_SIZE_IN_MINUTES * 60 * 1000, NetConstants.MAX_INVENTORY_SIZE);
 
   private ConcurrentHashMap<Sha256Hash, InventoryType> advObjToFetch = new ConcurrentHashMap<>();
 
+  // blocks and trxs we got or spread lately, they are not fetched again from anyone
+  private RollingBloomFilter recentlySeen = new RollingBloomFilter(
+      NetConstants.MAX_RECENTLY_SEEN_SIZE, NetConstants.INVENTORY_FILTER_FP_RATE);
+
   private Thread advertiseLoopThread;
 
   private Thread advObjFetchLoopThread;
 
-  private HashMap<Sha256Hash, Long> badAdvObj = new HashMap<>(); //TODO:need auto erase oldest obj
+  // also written when a transaction fails verification on the pipeline
+  private ExpiringHashMap badAdvObj = new ExpiringHashMap(NetConstants.BAD_ADV_OBJ_TIME_OUT,
+      NetConstants.MAX_BAD_ADV_OBJ_SIZE);
+
+  // compact blocks waiting for the transactions we asked their sender for
+  private Map<BlockId, PartialBlock> partialBlocks = new ConcurrentHashMap<>();
 
   //sync
-  private HashMap<BlockId, Long> syncBlockIdWeRequested = new HashMap<>();
+  private ExpiringHashMap syncBlockIdWeRequested = new ExpiringHashMap(
+      NetConstants.SYNC_TIME_OUT * 2, (int) MAX_BLOCKS_ALREADY_FETCHED * 2);
 
   private Long unSyncNum = 0L;
 
   private Thread handleSyncBlockLoop;
 
-  private Set<BlockMessage> blockWaitToProc = new ConcurrentSet<>();
+  private final SyncDownloader<PeerConnection> syncDownloader = new SyncDownloader<>(
+      (int) NodeConstant.MIN_BLOCKS_SYNC_WINDOW, (int) MAX_BLOCKS_ALREADY_FETCHED,
+      (int) MAX_BLOCKS_SYNC_FROM_ONE_PEER, NetConstants.SYNC_REASSIGN_TIME_OUT,
+      NetConstants.SYNC_TIME_OUT / 2);
+
+  // the ids of a chain inventory wait here until the peer sent their headers and they checked out
+  private static class HeaderRequest {
+
+    private final BlockId parent;
+    private final long parentTime;
+    private final Deque<BlockId> chainIds;
+    private final List<BlockId> ids;
+    private final long remainNum;
+    private final long time = Time.getCurrentMillis();
+
+    private HeaderRequest(BlockId parent, long parentTime, Deque<BlockId> chainIds,
+        List<BlockId> ids, long remainNum) {
+      this.parent = parent;
+      this.parentTime = parentTime;
+      this.chainIds = chainIds;
+      this.ids = ids;
+      this.remainNum = remainNum;
+    }
+  }
+
+  private Map<PeerConnection, HeaderRequest> headersRequested = new ConcurrentHashMap<>();
 
-  private Set<BlockMessage> blockWaitToProcBak = new ConcurrentSet<>();
+  // timestamps of the headers checked lately, peers syncing the same chain are not asked again
+  private Map<BlockId, Long> verifiedHeaders = Collections.synchronizedMap(new BoundedMap<>(
+      (int) (MAX_BLOCKS_ALREADY_FETCHED * 2 + NodeConstant.SYNC_RETURN_BATCH_NUM)));
 
   private Set<BlockMessage> blockInProc = new ConcurrentSet<>();
 
@@ -168,11 +219,6 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
   private ExecutorLoop<Message> loopAdvertiseInv;
 
-  private ExecutorLoop<Message> handleBacklogBlocks;
-
-  private ExecutorService handleBackLogBlocksPool = Executors.newCachedThreadPool();
-
-
   private ScheduledExecutorService fetchSyncBlocksExecutor = Executors
       .newSingleThreadScheduledExecutor();
 
@@ -183,8 +229,6 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
   //private volatile boolean isHandleSyncBlockRunning = false;
 
-  private boolean isSuspendFetch = false;
-
   private boolean isFetchSyncActive = false;
 
   @Override
@@ -212,6 +256,21 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       case INVENTORY:
         onHandleInventoryMessage(peer, (InventoryMessage) msg);
         break;
+      case COMPACT_BLOCK:
+        onHandleCompactBlockMessage(peer, (CompactBlockMessage) msg);
+        break;
+      case FETCH_BLOCK_TRXS:
+        onHandleFetchBlockTransactionsMessage(peer, (FetchBlockTransactionsMessage) msg);
+        break;
+      case BLOCK_TRXS:
+        onHandleBlockTransactionsMessage(peer, (BlockTransactionsMessage) msg);
+        break;
+      case FETCH_BLOCK_HEADERS:
+        onHandleFetchBlockHeadersMessage(peer, (FetchBlockHeadersMessage) msg);
+        break;
+      case BLOCKHEADERS:
+        onHandleBlockHeadersMessage(peer, (BlockHeadersMessage) msg);
+        break;
       default:
         throw new IllegalArgumentException("No such message");
     }
@@ -239,6 +298,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       logger.info("Ready to broadcast a block, Its hash is " + msg.getMessageId());
       freshBlockId.offer(((BlockMessage) msg).getBlockId());
       blockToAdvertise.add(((BlockMessage) msg).getBlockId());
+      relayCompactBlock(((BlockMessage) msg).getBlockCapsule());
       type = InventoryType.BLOCK;
     } else if (msg instanceof TransactionMessage) {
       trxToAdvertise.add(msg.getMessageId());
@@ -247,9 +307,30 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       return;
     }
     //TODO: here need to cache fresh message to let peer fetch these data not from DB
+    recentlySeen.add(msg.getMessageId());
     advObjToSpread.put(msg.getMessageId(), type);
   }
 
+  /**
+   * peers reading compact blocks get the block right away as its header and short transaction ids,
+   * it is marked known to them so the inventory loop passes them over.
+   */
+  private void relayCompactBlock(BlockCapsule block) {
+    BlockId blockId = block.getBlockId();
+    CompactBlockMessage compact = null;
+    for (PeerConnection peer : getActivePeer()) {
+      if (!peer.isCompactBlocks() || peer.isNeedSyncFromUs()
+          || peer.getKnownInventory().contains(blockId)) {
+        continue;
+      }
+      if (compact == null) {
+        compact = new CompactBlockMessage(block);
+      }
+      peer.getKnownInventory().add(blockId);
+      peer.sendMessage(compact);
+    }
+  }
+
   @Override
   public void listen() {
     pool.init();
@@ -269,13 +350,12 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     advObjFetchLoopThread.join();
     handleSyncBlockLoop.join();
     disconnectInactiveExecutor.shutdown();
-    cleanInventoryExecutor.shutdown();
     fetchSyncBlocksExecutor.shutdown();
   }
 
   private void activeTronPump() {
     // broadcast inv
-    loopAdvertiseInv = new ExecutorLoop<>(2, 10, b -> {
+    loopAdvertiseInv = new ExecutorLoop<Message>(2, 10, b -> {
       //logger.info("loop advertise inv");
       for (PeerConnection peer : getActivePeer()) {
         if (!peer.isNeedSyncFromUs()) {
@@ -283,23 +363,34 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           peer.sendMessage(b);
         }
       }
-    }, throwable -> logger.error("Unhandled exception: ", throwable));
+    }, throwable -> logger.error("Unhandled exception: ", throwable))
+        .setThreadPoolName("advertise-inv")
+        .setCoalesceKey(Message::getMessageId)
+        .setSharedPool(true);
 
     // fetch blocks
-    loopFetchBlocks = new ExecutorLoop<>(2, 10, c -> {
+    loopFetchBlocks = new ExecutorLoop<FetchInvDataMessage>(2, 10, c -> {
       logger.info("loop fetch blocks");
-      if (fetchMap.containsKey(c.getMessageId())) {
-        fetchMap.get(c.getMessageId()).sendMessage(c);
+      PeerConnection peer = fetchMap.remove(c.getMessageId());
+      if (peer != null) {
+        peer.sendMessage(c);
       }
-    }, throwable -> logger.error("Unhandled exception: ", throwable));
+    }, throwable -> logger.error("Unhandled exception: ", throwable))
+        .setThreadPoolName("fetch-blocks")
+        // the blocks announced last are the ones worth fetching
+        .setOverflowPolicy(OverflowPolicy.DROP_OLDEST)
+        .setDropHandler(c -> fetchMap.remove(c.getMessageId()));
 
     // sync block chain
-    loopSyncBlockChain = new ExecutorLoop<>(2, 10, d -> {
+    loopSyncBlockChain = new ExecutorLoop<SyncBlockChainMessage>(2, 10, d -> {
       //logger.info("loop sync block chain");
       if (syncMap.containsKey(d.getMessageId())) {
         syncMap.get(d.getMessageId()).sendMessage(d);
       }
-    }, throwable -> logger.error("Unhandled exception: ", throwable));
+    }, throwable -> logger.error("Unhandled exception: ", throwable))
+        .setThreadPoolName("sync-block-chain")
+        .setCoalesceKey(Message::getMessageId)
+        .setSharedPool(true);
 
     advertiseLoopThread = new Thread(() -> {
       while (isAdvertiseActive) {
@@ -322,11 +413,9 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
               .filter(peer -> !peer.isNeedSyncFromUs())
               .forEach(peer -> {
                 spread.entrySet().stream()
-                    .filter(idToSpread ->
-                        !peer.getAdvObjSpreadToUs().containsKey(idToSpread.getKey())
-                            && !peer.getAdvObjWeSpread().containsKey(idToSpread.getKey()))
+                    .filter(idToSpread -> !peer.getKnownInventory().contains(idToSpread.getKey()))
                     .forEach(idToSpread -> {
-                      peer.getAdvObjWeSpread().put(idToSpread.getKey(), Time.getCurrentMillis());
+                      peer.getKnownInventory().add(idToSpread.getKey());
                       sendPackage.add(idToSpread, peer);
                     });
 //                peer.cleanInvGarbage();
@@ -352,6 +441,12 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           InvToSend sendPackage = new InvToSend();
           advObjToFetch.entrySet()
               .forEach(idToFetch -> {
+                // another peer delivered it meanwhile, or it is on the way
+                if (recentlySeen.contains(idToFetch.getKey())
+                    || advObjWeRequested.containsKey(idToFetch.getKey())) {
+                  advObjToFetch.remove(idToFetch.getKey());
+                  return;
+                }
                 getActivePeer().stream().filter(peer -> !peer.isBusy()
                     && peer.getAdvObjSpreadToUs().containsKey(idToFetch.getKey()))
                     .findFirst()
@@ -361,6 +456,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
                       advObjToFetch.remove(idToFetch.getKey());
                       peer.getAdvObjWeRequested()
                           .put(idToFetch.getKey(), Time.getCurrentMillis());
+                      advObjWeRequested.put(idToFetch.getKey(), Time.getCurrentMillis());
                     });
               });
           sendPackage.sendFetch();
@@ -402,22 +498,12 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       }
     }, 10, 10, TimeUnit.SECONDS);
 
-    cleanInventoryExecutor.scheduleWithFixedDelay(() -> {
-      try {
-        getActivePeer().forEach(p -> p.cleanInvGarbage());
-      } catch (Throwable t) {
-        logger.error("Unhandled exception", t);
-      }
-    }, 2, NetConstants.MAX_INVENTORY_SIZE_IN_MINUTES / 2, TimeUnit.MINUTES);
-
     fetchSyncBlocksExecutor.scheduleWithFixedDelay(() -> {
       try {
-        if (isFetchSyncActive) {
-          if (!isSuspendFetch) {
-            startFetchSyncBlock();
-          } else {
-            logger.debug("suspend");
-          }
+        // also runs while blocks are on the way, to ask again for the ones of stalled peers
+        if (isFetchSyncActive
+            || getActivePeer().stream().anyMatch(PeerConnection::isNeedSyncFromPeer)) {
+          startFetchSyncBlock();
         }
         isFetchSyncActive = false;
       } catch (Throwable t) {
@@ -427,28 +513,10 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
   }
 
   private synchronized void handleSyncBlock() {
-
-    if (((ThreadPoolExecutor) handleBackLogBlocksPool).getActiveCount() > MAX_BLOCKS_IN_PROCESS) {
-      logger.info("we're already processing too many blocks");
-      return;
-    } else if (isSuspendFetch) {
-      isSuspendFetch = false;
-    }
-
-    final boolean[] isBlockProc = {false};
-
-    do {
-      synchronized (blockWaitToProcBak) {
-        blockWaitToProc.addAll(blockWaitToProcBak);
-        //need lock here
-        blockWaitToProcBak.clear();
-      }
-
-      isBlockProc[0] = false;
-      Set<BlockMessage> pool = new HashSet<>();
-      pool.addAll(blockWaitToProc);
-      pool.forEach(msg -> {
-        final boolean[] isFound = {false};
+    // in height order, each once every block below it arrived
+    List<BlockMessage> ready;
+    while (!(ready = syncDownloader.pollReady()).isEmpty()) {
+      ready.forEach(msg -> {
         getActivePeer().stream()
             .filter(peer ->
                 !peer.getSyncBlockToFetch().isEmpty()
@@ -456,30 +524,13 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
             .forEach(peer -> {
               peer.getSyncBlockToFetch().pop();
               peer.getBlockInProc().add(msg.getBlockId());
-              isFound[0] = true;
             });
 
-        if (isFound[0]) {
-          if (!freshBlockId.contains(msg.getBlockId())) {
-            blockWaitToProc.remove(msg);
-            //TODO: blockWaitToProc and handle thread.
-            BlockCapsule block = msg.getBlockCapsule();
-            //handleBackLogBlocksPool.execute(() -> processSyncBlock(block));
-            processSyncBlock(block);
-            isBlockProc[0] = true;
-          }
+        if (!freshBlockId.contains(msg.getBlockId())) {
+          processSyncBlock(msg.getBlockCapsule());
         }
       });
-
-      if (((ThreadPoolExecutor) handleBackLogBlocksPool).getActiveCount() > MAX_BLOCKS_IN_PROCESS) {
-        logger.info("we're already processing too many blocks");
-        if (blockWaitToProc.size() >= MAX_BLOCKS_ALREADY_FETCHED) {
-          isSuspendFetch = true;
-        }
-        break;
-      }
-
-    } while (isBlockProc[0]);
+    }
   }
 
   private synchronized void logNodeStatus() {
@@ -490,19 +541,31 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
         "MyHeadBlockNum: %d\n"
             + "advToSpreadNum: %d\n"
             + "advObjectToFetchNum: %d\n"
-            + "advObjWeRequestedNum: %d\n"
+            + "advObjWeRequested: %s\n"
             + "unSyncNum: %d\n"
-            + "blockWaitToProcess: %d\n"
-            + "syncBlockIdWeRequested: %d\n"
-            + "badAdvObjSize: %d\n",
+            + "syncWindow: %d, wanted: %d, waitToProcess: %d, reassigned: %d\n"
+            + "syncBlockIdWeRequested: %s\n"
+            + "badAdvObj: %s\n"
+            + "recentlySeen: %s\n"
+            + "peerInventories: %d, evicted: %d\n"
+            + "%s\n%s\n%s\n",
         del.getHeadBlockId().getNum(),
         advObjToSpread.size(),
         advObjToFetch.size(),
-        advObjWeRequested.size(),
+        advObjWeRequested,
         getUnSyncNum(),
-        blockWaitToProc.size(),
-        syncBlockIdWeRequested.size(),
-        badAdvObj.size()
+        syncDownloader.getWindow(),
+        syncDownloader.getWanted(),
+        syncDownloader.getBuffered(),
+        syncDownloader.getReassigned(),
+        syncBlockIdWeRequested,
+        badAdvObj,
+        recentlySeen,
+        getActivePeer().stream().mapToLong(peer -> peer.getAdvObjSpreadToUs().size()).sum(),
+        getActivePeer().stream().mapToLong(peer -> peer.getAdvObjSpreadToUs().getEvicted()).sum(),
+        loopAdvertiseInv,
+        loopFetchBlocks,
+        loopSyncBlockChain
     ));
 
     logger.info(sb.toString());
@@ -516,10 +579,16 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           .filter(time -> time < Time.getCurrentMillis() - NetConstants.ADV_TIME_OUT)
           .findFirst().ifPresent(time -> isDisconnected[0] = true);
 
-      if (!isDisconnected[0]) {
-        peer.getSyncBlockRequested().values().stream()
-            .filter(time -> time < Time.getCurrentMillis() - NetConstants.SYNC_TIME_OUT)
-            .findFirst().ifPresent(time -> isDisconnected[0] = true);
+      // blocks still on the way count against a peer only while it delivers none
+      if (!isDisconnected[0] && !peer.getSyncBlockRequested().isEmpty()
+          && syncDownloader.isStalled(peer, Time.getCurrentMillis(), NetConstants.SYNC_TIME_OUT)) {
+        isDisconnected[0] = true;
+      }
+
+      HeaderRequest headerRequest = headersRequested.get(peer);
+      if (headerRequest != null
+          && headerRequest.time < Time.getCurrentMillis() - NetConstants.SYNC_TIME_OUT) {
+        isDisconnected[0] = true;
       }
 
       //TODO:optimize here
@@ -545,26 +614,14 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 //    peer.cleanInvGarbage();
 
     msg.getHashList().forEach(id -> {
-      final boolean[] spreaded = {false};
-      final boolean[] requested = {false};
-      getActivePeer().forEach(p -> {
-        if (p.getAdvObjWeSpread().containsKey(id)) {
-          spreaded[0] = true;
-        }
-        if (p.getAdvObjWeRequested().containsKey(id)) {
-          requested[0] = true;
-        }
-      });
-
-      if (!spreaded[0]) {
-        //TODO: avoid TRX flood attack here.
-        peer.getAdvObjSpreadToUs().put(id, System.currentTimeMillis());
-        if (!requested[0]) {
-          //TODO: make a error cache here, Don't handle error TRX or BLK repeatedly.
-          if (!badAdvObj.containsKey(id)) {
-            this.advObjToFetch.put(id, msg.getInventoryType());
-          }
-        }
+      peer.getKnownInventory().add(id);
+      //TODO: avoid TRX flood attack here.
+      peer.getAdvObjSpreadToUs().put(id, System.currentTimeMillis());
+      // we have it, asked a peer for it, or know it is bad
+      if (!recentlySeen.contains(id)
+          && !advObjWeRequested.containsKey(id)
+          && !badAdvObj.containsKey(id)) {
+        this.advObjToFetch.put(id, msg.getInventoryType());
       }
     });
   }
@@ -596,36 +653,120 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     Map<BlockId, Long> syncBlockRequested = peer.getSyncBlockRequested();
     BlockId blockId = blkMsg.getBlockId();
     logger.info("handle Block number is " + blkMsg.getBlockId().getNum());
+    peer.getKnownInventory().add(blockId);
 
     if (advObjWeRequested.containsKey(blockId)) {
       //broadcast mode
       advObjWeRequested.remove(blockId);
+      this.advObjWeRequested.remove(blockId);
       processAdvBlock(peer, blkMsg.getBlockCapsule());
       startFetchItem();
     } else if (syncBlockRequested.containsKey(blockId)) {
       //sync mode
-      syncBlockRequested.remove(blockId);
-      //peer.getSyncBlockToFetch().remove(blockId);
+      // a block asked again from another peer is taken from whichever delivers first
+      getActivePeer().forEach(p -> p.getSyncBlockRequested().remove(blockId));
       syncBlockIdWeRequested.remove(blockId);
-      //TODO: maybe use consume pipe here better
-      blockWaitToProcBak.add(blkMsg);
+      syncDownloader.received(peer, blkMsg, Time.getCurrentMillis());
       isHandleSyncBlockActive = true;
-      //processSyncBlock(blkMsg.getBlockCapsule());
-      if (!peer.isBusy()) {
-        if (peer.getUnfetchSyncNum() > 0
-            && peer.getSyncBlockToFetch().size() <= NodeConstant.SYNC_FETCH_BATCH_NUM) {
-          syncNextBatchChainIds(peer);
-        } else {
-          //startFetchSyncBlock();
-          isFetchSyncActive = true;
+      // more ids are asked for while blocks are on the way, not once the peer is idle
+      if (peer.getSyncChainRequested() == null
+          && !headersRequested.containsKey(peer)
+          && peer.getUnfetchSyncNum() > 0
+          && peer.getSyncBlockToFetch().size() <= NodeConstant.SYNC_FETCH_BATCH_NUM) {
+        syncNextBatchChainIds(peer);
+      } else {
+        isFetchSyncActive = true;
+      }
+    }
+  }
+
+  private void onHandleCompactBlockMessage(PeerConnection peer, CompactBlockMessage msg) {
+    BlockId blockId = msg.getBlockId();
+    peer.getAdvObjSpreadToUs().put(blockId, Time.getCurrentMillis());
+    peer.getKnownInventory().add(blockId);
+    if (freshBlockId.contains(blockId)
+        || badAdvObj.containsKey(blockId)
+        || partialBlocks.containsKey(blockId)
+        || advObjWeRequested.containsKey(blockId)
+        || del.containBlock(blockId)) {
+      return;
+    }
+    advObjToFetch.remove(blockId);
+
+    PartialBlock partial = new PartialBlock(msg, peer);
+    List<Integer> missing = partial.fill(del.getPendingTransactions());
+    if (missing.isEmpty()) {
+      processCompactBlock(peer, partial);
+    } else {
+      logger.info("compact block {} misses {} of {} trxs", blockId.getString(), missing.size(),
+          msg.getTransactionCount());
+      partialBlocks.put(blockId, partial);
+      peer.getAdvObjWeRequested().put(blockId, Time.getCurrentMillis());
+      advObjWeRequested.put(blockId, Time.getCurrentMillis());
+      peer.sendMessage(new FetchBlockTransactionsMessage(blockId, missing));
+    }
+  }
+
+  private void onHandleFetchBlockTransactionsMessage(PeerConnection peer,
+      FetchBlockTransactionsMessage msg) {
+    BlockId blockId = msg.getBlockId();
+    List<Transaction> trxs = new ArrayList<>();
+    Message blkMsg = del.containBlock(blockId) ? del.getData(blockId, MessageTypes.BLOCK) : null;
+    if (blkMsg instanceof BlockMessage) {
+      List<TransactionCapsule> blockTrxs = ((BlockMessage) blkMsg).getBlockCapsule()
+          .getTransactions();
+      for (int index : msg.getIndexes()) {
+        if (index < 0 || index >= blockTrxs.size()) {
+          trxs.clear();
+          break;
         }
+        trxs.add(blockTrxs.get(index).getInstance());
       }
+    }
+    peer.sendMessage(new BlockTransactionsMessage(blockId, trxs));
+  }
+
+  private void onHandleBlockTransactionsMessage(PeerConnection peer,
+      BlockTransactionsMessage msg) {
+    BlockId blockId = msg.getBlockId();
+    PartialBlock partial = partialBlocks.get(blockId);
+    if (partial == null || partial.getPeer() != peer) {
+      return;
+    }
+    partialBlocks.remove(blockId);
+    peer.getAdvObjWeRequested().remove(blockId);
+    advObjWeRequested.remove(blockId);
+    if (partial.complete(msg.getTransactions())) {
+      processCompactBlock(peer, partial);
+    } else {
+      fetchWholeBlock(peer, blockId);
+    }
+  }
 
+  private void processCompactBlock(PeerConnection peer, PartialBlock partial) {
+    BlockCapsule block = partial.toBlock();
+    if (block != null) {
+      processAdvBlock(peer, block);
+    } else {
+      // a short id collision filled a slot with the wrong transaction
+      fetchWholeBlock(peer, partial.getBlockId());
     }
   }
 
+  /**
+   * the compact block could not be rebuilt, it comes as a block message the regular way.
+   */
+  private void fetchWholeBlock(PeerConnection peer, BlockId blockId) {
+    logger.info("compact block {} not rebuilt, fetch it whole", blockId.getString());
+    peer.getAdvObjWeRequested().put(blockId, Time.getCurrentMillis());
+    advObjWeRequested.put(blockId, Time.getCurrentMillis());
+    peer.sendMessage(
+        new FetchInvDataMessage(Collections.singletonList(blockId), InventoryType.BLOCK));
+  }
+
   private void processAdvBlock(PeerConnection peer, BlockCapsule block) {
     //TODO: lack the complete flow.
+    recentlySeen.add(block.getBlockId());
     if (!freshBlockId.contains(block.getBlockId())) {
       try {
         LinkedList<Sha256Hash> trxIds = del.handleBlock(block, false);
@@ -695,7 +836,8 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
                 updateBlockWeBothHave(peer, block);
                 if (peer.getSyncBlockToFetch().isEmpty()
                     && peer.getUnfetchSyncNum() == 0
-                    && peer.getBlockInProc().isEmpty()) { //send sync to let peer know we are sync.
+                    && peer.getBlockInProc().isEmpty()
+                    && !headersRequested.containsKey(peer)) { //send sync to let peer know we are sync.
                   needFetchAgain.offer(peer);
                 }
               }
@@ -721,13 +863,18 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
         throw new TraitorPeerException("We don't send fetch request to" + peer);
       } else {
         peer.getAdvObjWeRequested().remove(trxMsg.getMessageId());
-        del.handleTransaction(trxMsg.getTransactionCapsule());
+        advObjWeRequested.remove(trxMsg.getMessageId());
+        peer.getKnownInventory().add(trxMsg.getMessageId());
+        recentlySeen.add(trxMsg.getMessageId());
+        del.handleTransaction(trxMsg.getTransactionCapsule()).whenComplete((v, e) -> {
+          if (e != null) {
+            badAdvObj.put(trxMsg.getMessageId(), System.currentTimeMillis());
+          }
+        });
       }
     } catch (TraitorPeerException e) {
       logger.error(e.getMessage());
       banTraitorPeer(peer);
-    } catch (BadTransactionException e) {
-      badAdvObj.put(trxMsg.getMessageId(), System.currentTimeMillis());
     }
   }
 
@@ -881,33 +1028,10 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           blockIdWeGet.poll();
         }
 
-        //sew it
-        peer.getSyncBlockToFetch().addAll(blockIdWeGet);
-        peer.setUnfetchSyncNum(msg.getRemainNum());
-
-        long newUnSyncNum = getUnSyncNum();
-        if (unSyncNum != newUnSyncNum) {
-          unSyncNum = newUnSyncNum;
-          del.syncToCli(unSyncNum);
-        }
-
-        if (msg.getRemainNum() == 0) {
-          if (!peer.getSyncBlockToFetch().isEmpty()) {
-            //startFetchSyncBlock();
-            isFetchSyncActive = true;
-          } else {
-            //let peer know we are sync.
-            syncNextBatchChainIds(peer);
-          }
-        } else {
-          if (peer.getSyncBlockToFetch().size() > NodeConstant.SYNC_FETCH_BATCH_NUM) {
-            //one batch by one batch.
-            //startFetchSyncBlock();
-            isFetchSyncActive = true;
-          } else {
-            syncNextBatchChainIds(peer);
-          }
+        if (peer.isHeadersFirst() && requestHeaders(peer, blockIdWeGet, msg.getRemainNum())) {
+          return;
         }
+        sewChainIds(peer, blockIdWeGet, msg.getRemainNum());
 
         //TODO: check head block time is legal here
         //TODO: refresh sync status to cli. call del.syncToCli() here
@@ -922,6 +1046,125 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
     }
   }
 
+  private void sewChainIds(PeerConnection peer, Deque<BlockId> blockIdWeGet, long remainNum) {
+    peer.getSyncBlockToFetch().addAll(blockIdWeGet);
+    peer.setUnfetchSyncNum(remainNum);
+
+    long newUnSyncNum = getUnSyncNum();
+    if (unSyncNum != newUnSyncNum) {
+      unSyncNum = newUnSyncNum;
+      del.syncToCli(unSyncNum);
+    }
+
+    if (remainNum == 0) {
+      if (!peer.getSyncBlockToFetch().isEmpty()) {
+        //startFetchSyncBlock();
+        isFetchSyncActive = true;
+      } else {
+        //let peer know we are sync.
+        syncNextBatchChainIds(peer);
+      }
+    } else {
+      if (peer.getSyncBlockToFetch().size() > NodeConstant.SYNC_FETCH_BATCH_NUM) {
+        //one batch by one batch.
+        //startFetchSyncBlock();
+        isFetchSyncActive = true;
+      } else {
+        syncNextBatchChainIds(peer);
+      }
+    }
+  }
+
+  /**
+   * ask the peer for the headers of the ids it offered, they are only fetched once the headers
+   * check out.
+   *
+   * @return false if there is nothing to check, the ids are known or cannot be linked to ours.
+   */
+  private boolean requestHeaders(PeerConnection peer, Deque<BlockId> blockIdWeGet,
+      long remainNum) {
+    BlockId parent = peer.getSyncBlockToFetch().isEmpty()
+        ? peer.getHeadBlockWeBothHave() : peer.getSyncBlockToFetch().peekLast();
+    List<BlockId> ids = new ArrayList<>(blockIdWeGet);
+    int checked = 0;
+    while (checked < ids.size()
+        && (verifiedHeaders.containsKey(ids.get(checked)) || del.containBlock(ids.get(checked)))) {
+      parent = ids.get(checked++);
+    }
+    ids = ids.subList(checked, ids.size());
+    if (ids.isEmpty() || ids.get(0).getNum() != parent.getNum() + 1) {
+      return false;
+    }
+
+    headersRequested.put(peer,
+        new HeaderRequest(parent, getBlockTime(peer, parent), blockIdWeGet, ids, remainNum));
+    peer.sendMessage(new FetchBlockHeadersMessage(new ArrayList<>(ids), InventoryType.BLOCK));
+    return true;
+  }
+
+  private long getBlockTime(PeerConnection peer, BlockId blockId) {
+    Long time = verifiedHeaders.get(blockId);
+    if (time != null) {
+      return time;
+    }
+    if (blockId.equals(peer.getHeadBlockWeBothHave())) {
+      return peer.getHeadBlockTimeWeBothHave();
+    }
+    if (del.containBlock(blockId)) {
+      return ((BlockMessage) del.getData(blockId, MessageTypes.BLOCK)).getBlockCapsule()
+          .getTimeStamp();
+    }
+    return 0;
+  }
+
+  private void onHandleFetchBlockHeadersMessage(PeerConnection peer,
+      FetchBlockHeadersMessage msg) {
+    List<BlockHeader> headers = new ArrayList<>();
+    for (Sha256Hash hash : msg.getHashList()) {
+      if (headers.size() >= NodeConstant.SYNC_RETURN_BATCH_NUM
+          || !del.contain(hash, MessageTypes.BLOCK)) {
+        break;
+      }
+      headers.add(((BlockMessage) del.getData(hash, MessageTypes.BLOCK)).getBlockCapsule()
+          .getInstance().getBlockHeader());
+    }
+    peer.sendMessage(new BlockHeadersMessage(headers));
+  }
+
+  private void onHandleBlockHeadersMessage(PeerConnection peer, BlockHeadersMessage msg) {
+    HeaderRequest request = headersRequested.remove(peer);
+    if (request == null) {
+      // the sync with the peer started over since we asked
+      logger.info("headers from {} not waited for", peer);
+      return;
+    }
+
+    List<BlockHeader> headers = msg.getBlockHeaders();
+    if (headers.size() < request.ids.size()) {
+      // the peer no longer has some of the blocks, its chain moved on since it announced them
+      logger.info("{} sent {} of {} headers, syncing again", peer, headers.size(),
+          request.ids.size());
+      startSyncWithPeer(peer);
+      return;
+    }
+    try {
+      del.validateBlockHeaders(request.parent, request.parentTime, request.ids, headers);
+    } catch (BadBlockException e) {
+      logger.error("bad headers from {}: {}", peer, e.getMessage());
+      banTraitorPeer(peer);
+      return;
+    } catch (UnLinkedBlockException e) {
+      logger.info("headers from {} do not link: {}", peer, e.getMessage());
+      startSyncWithPeer(peer);
+      return;
+    }
+
+    for (int i = 0; i < headers.size(); i++) {
+      verifiedHeaders.put(request.ids.get(i), headers.get(i).getRawData().getTimestamp());
+    }
+    sewChainIds(peer, request.chainIds, request.remainNum);
+  }
+
   private void startFetchItem() {
 
   }
@@ -937,45 +1180,19 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
   }
 
   private synchronized void startFetchSyncBlock() {
-    //TODO: check how many block is processing and decide if fetch more
-    HashMap<PeerConnection, List<BlockId>> send = new HashMap<>();
-    HashSet<BlockId> request = new HashSet<>();
-
+    Map<PeerConnection, Set<BlockId>> available = new HashMap<>();
     getActivePeer().stream()
-        .filter(peer -> peer.isNeedSyncFromPeer() && !peer.isBusy())
-        .forEach(peer -> {
-          if (!send.containsKey(peer)) { //TODO: Attention multi thread here
-            send.put(peer, new LinkedList<>());
-          }
-          for (BlockId blockId :
-              peer.getSyncBlockToFetch()) {
-            if (!request.contains(blockId) //TODO: clean processing block
-                && !syncBlockIdWeRequested.containsKey(blockId)) {
-              send.get(peer).add(blockId);
-              request.add(blockId);
-              //TODO: check max block num to fetch from one peer.
-              if (send.get(peer).size()
-                  > MAX_BLOCKS_SYNC_FROM_ONE_PEER) { //Max Blocks peer get one time
-                break;
-              }
-            }
-          }
-        });
+        .filter(PeerConnection::isNeedSyncFromPeer)
+        .forEach(peer -> available.put(peer, new HashSet<>(peer.getSyncBlockToFetch())));
 
-    send.forEach((peer, blockIds) -> {
-      //TODO: use collector
+    long now = Time.getCurrentMillis();
+    syncDownloader.assign(available, del::containBlock, now).forEach((peer, blockIds) -> {
       blockIds.forEach(blockId -> {
-        syncBlockIdWeRequested.put(blockId, System.currentTimeMillis());
-        peer.getSyncBlockRequested().put(blockId, System.currentTimeMillis());
+        syncBlockIdWeRequested.put(blockId, now);
+        peer.getSyncBlockRequested().put(blockId, now);
       });
-      List<Sha256Hash> ids = new LinkedList<>();
-      ids.addAll(blockIds);
-      if (!ids.isEmpty()) {
-        peer.sendMessage(new FetchInvDataMessage(ids, InventoryType.BLOCK));
-      }
+      peer.sendMessage(new FetchInvDataMessage(new LinkedList<>(blockIds), InventoryType.BLOCK));
     });
-
-    send.clear();
   }
 
   private void updateBlockWeBothHave(PeerConnection peer, BlockCapsule block) {
@@ -1017,6 +1234,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
   private void startSyncWithPeer(PeerConnection peer) {
     peer.setNeedSyncFromPeer(true);
+    headersRequested.remove(peer);
     peer.getSyncBlockToFetch().clear();
     peer.setUnfetchSyncNum(0);
     peer.setHeadBlockWeBothHave(del.getGenesisBlock().getBlockId());
@@ -1065,6 +1283,17 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           .forEach(blockId -> advObjWeRequested.remove(blockId));
       //TODO: adv obj fetch trigger.
     }
+
+    syncDownloader.removePeer(peer);
+    headersRequested.remove(peer);
+
+    // another peer that has the block sends it whole
+    partialBlocks.values().stream()
+        .filter(partial -> partial.getPeer() == peer)
+        .forEach(partial -> {
+          partialBlocks.remove(partial.getBlockId());
+          advObjToFetch.put(partial.getBlockId(), InventoryType.BLOCK);
+        });
   }
 
   private void disconnectPeer(PeerConnection peer, ReasonCode reason) {
@@ -0,0 +1,117 @@
+package org.tron.core.net.node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.net.message.CompactBlockMessage;
+import org.tron.core.net.peer.PeerConnection;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.Transaction;
+
+/**
+ * A compact block being rebuilt: the slots the pending transactions filled, and the ones still
+ * asked from the peer that relayed it. A short id matching more than one transaction leaves its
+ * slot empty so the peer sends the right one; the merkle root catches whatever slips through.
+ */
+class PartialBlock {
+
+  private final CompactBlockMessage compact;
+  private final PeerConnection peer;
+  private final Transaction[] transactions;
+  private final List<Integer> missing = new ArrayList<>();
+
+  PartialBlock(CompactBlockMessage compact, PeerConnection peer) {
+    this.compact = compact;
+    this.peer = peer;
+    this.transactions = new Transaction[compact.getTransactionCount()];
+  }
+
+  BlockId getBlockId() {
+    return compact.getBlockId();
+  }
+
+  PeerConnection getPeer() {
+    return peer;
+  }
+
+  /**
+   * fill the slots from the pool.
+   *
+   * @return the positions still missing, in block order.
+   */
+  List<Integer> fill(Collection<TransactionCapsule> pool) {
+    long[] shortIds = compact.getShortIds();
+    Map<Long, Integer> slots = new HashMap<>(shortIds.length * 2);
+    Set<Integer> ambiguous = new HashSet<>();
+    for (int i = 0; i < shortIds.length; i++) {
+      Integer other = slots.putIfAbsent(shortIds[i], i);
+      if (other != null) {
+        ambiguous.add(other);
+        ambiguous.add(i);
+      }
+    }
+
+    for (TransactionCapsule trx : pool) {
+      if (trx == null) {
+        continue;
+      }
+      Integer slot = slots.get(compact.shortIdOf(trx.getTransactionId()));
+      if (slot == null || ambiguous.contains(slot)) {
+        continue;
+      }
+      if (transactions[slot] != null && !transactions[slot].equals(trx.getInstance())) {
+        ambiguous.add(slot);
+        transactions[slot] = null;
+      } else {
+        transactions[slot] = trx.getInstance();
+      }
+    }
+
+    missing.clear();
+    for (int i = 0; i < transactions.length; i++) {
+      if (transactions[i] == null) {
+        missing.add(i);
+      }
+    }
+    return new ArrayList<>(missing);
+  }
+
+  /**
+   * fill the missing slots with the peer's answer.
+   *
+   * @return false if the answer does not match what was asked.
+   */
+  boolean complete(List<Transaction> trxs) {
+    if (trxs.size() != missing.size()) {
+      return false;
+    }
+    for (int i = 0; i < trxs.size(); i++) {
+      transactions[missing.get(i)] = trxs.get(i);
+    }
+    missing.clear();
+    return true;
+  }
+
+  /**
+   * the rebuilt block, null unless every slot is filled and the transactions hash to the root in
+   * the header.
+   */
+  BlockCapsule toBlock() {
+    if (!missing.isEmpty()) {
+      return null;
+    }
+    BlockCapsule block = new BlockCapsule(Block.newBuilder()
+        .setBlockHeader(compact.getBlockHeader())
+        .addAllTransactions(Arrays.asList(transactions))
+        .build());
+    return block.calcMerkleRoot().equals(block.getMerkleRoot()) ? block : null;
+  }
+}
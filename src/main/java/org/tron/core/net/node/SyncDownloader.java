@@ -0,0 +1,315 @@
+package org.tron.core.net.node;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.net.message.BlockMessage;
+
+/**
+ * Downloads the blocks of a sync from all peers at once. The blocks wanted are kept in height
+ * order and only the lowest ones, a window that grows while the peers keep up and shrinks while
+ * blocks pile up unimported, are asked for. Each goes to the peer expected to deliver it first by
+ * its measured rate, is asked from another one if the peer stalls, and is handed on for import only
+ * once every block below it arrived.
+ *
+ * @param <P> the peer.
+ */
+class SyncDownloader<P> {
+
+  static final int INITIAL_PEER_QUOTA = 16;
+  // blocks per second assumed of a peer before it delivered any
+  static final double INITIAL_PEER_RATE = 10;
+  // a peer is asked for the blocks it delivers in this time
+  static final long REQUEST_HORIZON_MS = 2000;
+
+  private static final double RATE_WEIGHT = 0.2;
+  private static final Comparator<BlockId> HEIGHT_ORDER =
+      Comparator.comparingLong(BlockId::getNum).thenComparing(BlockId::toString);
+
+  private final int minWindow;
+  private final int maxWindow;
+  private final int maxPerPeer;
+  private final long minTimeout;
+  private final long maxTimeout;
+
+  private final TreeMap<BlockId, Wanted> wanted = new TreeMap<>(HEIGHT_ORDER);
+  private final Map<P, PeerRate> peers = new HashMap<>();
+  private int window;
+  private int buffered;
+  private long reassigned;
+
+  private class Wanted {
+
+    private P peer;
+    private P lastPeer;
+    private BlockMessage block;
+  }
+
+  private static class PeerRate {
+
+    private final Map<BlockId, Long> requests = new LinkedHashMap<>();
+    private double rate = INITIAL_PEER_RATE;
+    private boolean measured;
+    // the last delivery, or the first request after the peer had none, -1 before any
+    private long lastActivity = -1;
+  }
+
+  /**
+   * @param minWindow fewest blocks asked for ahead of the import.
+   * @param maxWindow most blocks asked for or waiting for the import.
+   * @param maxPerPeer most blocks asked from one peer at once.
+   * @param minTimeout a peer delivering nothing for this long while asked for blocks is
+   * considered stalled, longer for slow peers.
+   * @param maxTimeout the longest a peer is waited for.
+   */
+  SyncDownloader(int minWindow, int maxWindow, int maxPerPeer, long minTimeout,
+      long maxTimeout) {
+    this.minWindow = minWindow;
+    this.maxWindow = maxWindow;
+    this.maxPerPeer = maxPerPeer;
+    this.minTimeout = minTimeout;
+    this.maxTimeout = maxTimeout;
+    this.window = minWindow;
+  }
+
+  /**
+   * take the blocks the peers can serve as wanted, ask again for the ones of stalled peers, and
+   * share out the lowest ones not asked for yet.
+   *
+   * @param available the blocks each peer syncing with us can serve.
+   * @param known blocks already in the chain, only asked about blocks seen the first time.
+   * @return the blocks to ask from each peer, in height order.
+   */
+  synchronized Map<P, List<BlockId>> assign(Map<P, Set<BlockId>> available,
+      Predicate<BlockId> known, long now) {
+    new ArrayList<>(peers.keySet()).stream()
+        .filter(peer -> !available.containsKey(peer))
+        .forEach(this::removePeer);
+    available.keySet().forEach(peer -> peers.computeIfAbsent(peer, p -> new PeerRate()));
+
+    Set<BlockId> servable = new HashSet<>();
+    available.values().forEach(servable::addAll);
+    wanted.entrySet().removeIf(entry -> !servable.contains(entry.getKey())
+        && entry.getValue().block == null && entry.getValue().peer == null);
+    servable.stream()
+        .filter(blockId -> !wanted.containsKey(blockId) && !known.test(blockId))
+        .forEach(blockId -> wanted.put(blockId, new Wanted()));
+
+    boolean stalled = reclaimStalled(now);
+
+    Map<P, List<BlockId>> requests = new HashMap<>();
+    int inWindow = 0;
+    boolean windowFull = true;
+    for (Entry<BlockId, Wanted> entry : wanted.entrySet()) {
+      if (inWindow++ >= window) {
+        break;
+      }
+      Wanted want = entry.getValue();
+      if (want.peer != null || want.block != null) {
+        continue;
+      }
+      P peer = choosePeer(entry.getKey(), want.lastPeer, available);
+      if (peer == null) {
+        windowFull = false;
+        continue;
+      }
+      want.peer = peer;
+      PeerRate rate = peers.get(peer);
+      if (rate.requests.isEmpty()) {
+        rate.lastActivity = now;
+      }
+      rate.requests.put(entry.getKey(), now);
+      requests.computeIfAbsent(peer, p -> new ArrayList<>()).add(entry.getKey());
+    }
+
+    // the peers keep up with the window and the import with the peers
+    if (windowFull && !stalled && inWindow > window && buffered < window / 2) {
+      window = Math.min(maxWindow, window + window / 4 + 1);
+    }
+    return requests;
+  }
+
+  /**
+   * the peer with room for more that is expected to deliver the block first, another than the
+   * one that stalled on it if there is one.
+   */
+  private P choosePeer(BlockId blockId, P lastPeer, Map<P, Set<BlockId>> available) {
+    P best = null;
+    double bestTime = Double.MAX_VALUE;
+    for (Entry<P, Set<BlockId>> entry : available.entrySet()) {
+      P peer = entry.getKey();
+      PeerRate rate = peers.get(peer);
+      if (!entry.getValue().contains(blockId) || rate.requests.size() >= quota(rate)) {
+        continue;
+      }
+      double time = (rate.requests.size() + 1) / rate.rate;
+      if (peer.equals(lastPeer)) {
+        time = Double.MAX_VALUE / 2;
+      }
+      if (time < bestTime) {
+        best = peer;
+        bestTime = time;
+      }
+    }
+    return best;
+  }
+
+  private int quota(PeerRate rate) {
+    if (!rate.measured) {
+      return Math.min(INITIAL_PEER_QUOTA, maxPerPeer);
+    }
+    long quota = Math.round(rate.rate * REQUEST_HORIZON_MS / 1000);
+    return (int) Math.max(1, Math.min(maxPerPeer, quota));
+  }
+
+  private long timeout(PeerRate rate) {
+    long expected = Math.round(4 * 1000 / rate.rate);
+    return Math.max(minTimeout, Math.min(maxTimeout, expected));
+  }
+
+  /**
+   * @return whether any peer stalled.
+   */
+  private boolean reclaimStalled(long now) {
+    boolean stalled = false;
+    for (Entry<P, PeerRate> entry : peers.entrySet()) {
+      PeerRate rate = entry.getValue();
+      if (rate.requests.isEmpty() || now - rate.lastActivity < timeout(rate)) {
+        continue;
+      }
+      stalled = true;
+      rate.rate = Math.max(rate.rate / 2, 0.1);
+      rate.measured = true;
+      rate.requests.keySet().forEach(blockId -> {
+        Wanted want = wanted.get(blockId);
+        if (want != null && entry.getKey().equals(want.peer)) {
+          want.lastPeer = want.peer;
+          want.peer = null;
+          reassigned++;
+        }
+      });
+      rate.requests.clear();
+    }
+    return stalled;
+  }
+
+  /**
+   * a block arrived from the peer, kept until the blocks below it are here too.
+   *
+   * @return false if it was not wanted or already here.
+   */
+  synchronized boolean received(P peer, BlockMessage block, long now) {
+    BlockId blockId = block.getBlockId();
+    PeerRate rate = peers.get(peer);
+    if (rate != null) {
+      Long requestTime = rate.requests.remove(blockId);
+      if (requestTime != null) {
+        long interval = Math.max(1, now - Math.max(rate.lastActivity, requestTime));
+        double sample = 1000.0 / interval;
+        rate.rate = rate.measured ? rate.rate + RATE_WEIGHT * (sample - rate.rate) : sample;
+        rate.measured = true;
+        rate.lastActivity = now;
+      }
+    }
+
+    Wanted want = wanted.get(blockId);
+    if (want == null || want.block != null) {
+      return false;
+    }
+    if (want.peer != null && !want.peer.equals(peer)) {
+      PeerRate other = peers.get(want.peer);
+      if (other != null) {
+        other.requests.remove(blockId);
+      }
+    }
+    want.peer = null;
+    want.block = block;
+    buffered++;
+    return true;
+  }
+
+  /**
+   * the blocks that arrived with every block below them, in height order, to be imported now.
+   */
+  synchronized List<BlockMessage> pollReady() {
+    List<BlockMessage> ready = new ArrayList<>();
+    Iterator<Wanted> iterator = wanted.values().iterator();
+    while (iterator.hasNext()) {
+      Wanted want = iterator.next();
+      if (want.block == null) {
+        break;
+      }
+      ready.add(want.block);
+      iterator.remove();
+      buffered--;
+    }
+    // blocks pile up behind a missing one or faster than they are imported
+    if (buffered > window * 3 / 4) {
+      window = Math.max(minWindow, window - window / 4);
+    }
+    return ready;
+  }
+
+  /**
+   * the blocks asked from a peer that went away are asked from the others.
+   */
+  synchronized void removePeer(P peer) {
+    PeerRate rate = peers.remove(peer);
+    if (rate == null) {
+      return;
+    }
+    rate.requests.keySet().forEach(blockId -> {
+      Wanted want = wanted.get(blockId);
+      if (want != null && peer.equals(want.peer)) {
+        want.peer = null;
+      }
+    });
+  }
+
+  /**
+   * whether the peer has been asked for blocks and delivered none for the given time.
+   */
+  synchronized boolean isStalled(P peer, long now, long timeout) {
+    PeerRate rate = peers.get(peer);
+    return rate != null && rate.lastActivity >= 0 && now - rate.lastActivity > timeout;
+  }
+
+  synchronized int getWindow() {
+    return window;
+  }
+
+  synchronized int getWanted() {
+    return wanted.size();
+  }
+
+  synchronized int getBuffered() {
+    return buffered;
+  }
+
+  synchronized long getReassigned() {
+    return reassigned;
+  }
+
+  /**
+   * blocks per second the peer delivered lately.
+   */
+  synchronized double getRate(P peer) {
+    PeerRate rate = peers.get(peer);
+    return rate == null ? 0 : rate.rate;
+  }
+
+  synchronized int getRequested(P peer) {
+    PeerRate rate = peers.get(peer);
+    return rate == null ? 0 : rate.requests.size();
+  }
+}
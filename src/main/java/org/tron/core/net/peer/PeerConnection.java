@@ -1,14 +1,11 @@
 package org.tron.core.net.peer;
 
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import javafx.util.Pair;
@@ -16,7 +13,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.tron.common.overlay.message.Message;
+import org.tron.common.overlay.message.ReasonCode;
 import org.tron.common.overlay.server.Channel;
+import org.tron.common.overlay.server.MessagePriority;
+import org.tron.common.utils.ExpiringHashMap;
+import org.tron.common.utils.RollingBloomFilter;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.common.utils.Time;
 import org.tron.core.capsule.BlockCapsule.BlockId;
@@ -47,27 +48,22 @@ public class PeerConnection extends Channel {
 
   private Queue<Sha256Hash> invWeAdv = new LinkedBlockingQueue<>();
 
-  private Map<Sha256Hash, Long> advObjSpreadToUs = new ConcurrentHashMap<>();
+  // inventories older than the peers keep announcing expire, the oldest give way when full
+  private ExpiringHashMap advObjSpreadToUs = new ExpiringHashMap(
+      NetConstants.MAX_INVENTORY_SIZE_IN_MINUTES * 60 * 1000, NetConstants.MAX_INVENTORY_SIZE);
 
-  private Map<Sha256Hash, Long> advObjWeSpread = new ConcurrentHashMap<>();
+  // what the peer announced, sent or was announced, it is not told about again
+  private RollingBloomFilter knownInventory = new RollingBloomFilter(
+      NetConstants.MAX_INVENTORY_SIZE, NetConstants.INVENTORY_FILTER_FP_RATE);
 
   private Map<Sha256Hash, Long> advObjWeRequested = new ConcurrentHashMap<>();
 
-  public Map<Sha256Hash, Long> getAdvObjSpreadToUs() {
+  public ExpiringHashMap getAdvObjSpreadToUs() {
     return advObjSpreadToUs;
   }
 
-  public void setAdvObjSpreadToUs(
-      HashMap<Sha256Hash, Long> advObjSpreadToUs) {
-    this.advObjSpreadToUs = advObjSpreadToUs;
-  }
-
-  public Map<Sha256Hash, Long> getAdvObjWeSpread() {
-    return advObjWeSpread;
-  }
-
-  public void setAdvObjWeSpread(HashMap<Sha256Hash, Long> advObjWeSpread) {
-    this.advObjWeSpread = advObjWeSpread;
+  public RollingBloomFilter getKnownInventory() {
+    return knownInventory;
   }
 
   //sync chain
@@ -133,30 +129,6 @@ public class PeerConnection extends Channel {
   }
 
 
-  public void cleanInvGarbage() {
-    long oldestTimestamp =
-        Time.getCurrentMillis() - NetConstants.MAX_INVENTORY_SIZE_IN_MINUTES * 60 * 1000;
-
-    Iterator<Entry<Sha256Hash, Long>> iterator = this.advObjSpreadToUs.entrySet().iterator();
-
-    removeIterator(iterator, oldestTimestamp);
-
-    iterator = this.advObjWeSpread.entrySet().iterator();
-
-    removeIterator(iterator, oldestTimestamp);
-  }
-
-  private void removeIterator(Iterator<Entry<Sha256Hash, Long>> iterator, long oldestTimestamp) {
-    while (iterator.hasNext()) {
-      Map.Entry entry = iterator.next();
-      Long ts = (Long) entry.getValue();
-
-      if (ts < oldestTimestamp) {
-        iterator.remove();
-      }
-    }
-  }
-
   public boolean isBanned() {
     return banned;
   }
@@ -232,7 +204,9 @@ public class PeerConnection extends Channel {
             + "syncBlockRequestedSize:%d\n"
             + "unFetchSynNum:%d\n"
             + "syncChainRequested:%s\n"
-            + "blockInPorc:%d\n",
+            + "blockInPorc:%d\n"
+            + "sendQueue:\n%s"
+            + "compression: %s\n",
         this.getNode().getHost() + ":" + this.getNode().getPort(),
         this.getPeerIdShort(),
         (int) this.getPeerStats().getAvgLatency(),
@@ -245,7 +219,9 @@ public class PeerConnection extends Channel {
         syncBlockRequested.size(),
         unfetchSyncNum,
         syncChainRequested == null ? "NULL" : Time.getTimeString(syncChainRequested.getValue()),
-        blockInProc.size())
+        blockInProc.size(),
+        msgQueue,
+        getCompressionSavings() == null ? "none" : getCompressionSavings())
         + nodeStatistics.toString() + "\n";
   }
 
@@ -259,9 +235,23 @@ public class PeerConnection extends Channel {
         && syncChainRequested == null;
   }
 
-  public void sendMessage(Message message) {
-    msgQueue.sendMessage(message);
+  /**
+   * @return false if the message was dropped as the send queue of its class is full. A peer too
+   * far behind to take a block or sync message is disconnected, the chain can not be kept in step
+   * with it otherwise.
+   */
+  public boolean sendMessage(Message message) {
+    if (!msgQueue.sendMessage(message)) {
+      MessagePriority priority = MessagePriority.of(message);
+      if (priority == MessagePriority.CONSENSUS || priority == MessagePriority.SYNC) {
+        logger.warn("{} send queue of {} is full, disconnecting", priority,
+            getInetSocketAddress());
+        disconnect(ReasonCode.USELESS_PEER);
+      }
+      return false;
+    }
     nodeStatistics.tronOutMessage.add();
+    return true;
   }
 
   @Override
@@ -0,0 +1,166 @@
+package org.tron.core.services;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.api.GrpcAPI.ChainEvent;
+import org.tron.api.GrpcAPI.EventSubscription;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.db.Manager;
+import org.tron.core.events.EventBus;
+import org.tron.core.events.EventSubscriber;
+import org.tron.core.exception.BadItemException;
+import org.tron.core.exception.ItemNotFoundException;
+
+/**
+ * One SubscribeEvents call: replays stored blocks if asked to, then follows the event bus from
+ * the requested cursor, sending only as fast as the client reads. The replay is driven by the
+ * ready callbacks of the call, so a slow client holds no thread while it catches up.
+ */
+@Slf4j
+public class EventStream extends EventSubscriber {
+
+  private final Manager manager;
+  private final EventBus bus;
+  private final ServerCallStreamObserver<ChainEvent> observer;
+  private final EventSubscription request;
+
+  // blocks replayed that may also come through the live stream, by number
+  private final Map<Long, ByteString> replayed = new HashMap<>();
+  private volatile boolean cancelled;
+
+  // replay position: the block being sent and the index of its next transaction, -1 before the
+  // block itself
+  private boolean replaying;
+  private long replayNum;
+  private long replayHead;
+  private long inFlight;
+  private long liveAfter;
+  private BlockCapsule replayBlock;
+  private int replayTransaction;
+
+  public EventStream(Manager manager, ServerCallStreamObserver<ChainEvent> observer,
+      EventSubscription request) {
+    super(request.getTypesList());
+    this.manager = manager;
+    this.bus = manager.getEventBus();
+    this.observer = observer;
+    this.request = request;
+  }
+
+  /**
+   * called on the thread of the call, returns as soon as the client stops reading or the stream
+   * follows the bus.
+   */
+  public void start() {
+    observer.setOnReadyHandler(this::onReady);
+    observer.setOnCancelHandler(() -> {
+      cancelled = true;
+      bus.unsubscribe(this);
+    });
+
+    if (request.getFromBlockNum() > 0) {
+      startReplay(request.getFromBlockNum());
+    } else if (request.getAfterCursor() > 0) {
+      if (request.getSession() != bus.getSession()) {
+        observer.onError(Status.OUT_OF_RANGE
+            .withDescription("session " + request.getSession()
+                + " has ended, resubscribe from a block number")
+            .asRuntimeException());
+      } else if (!bus.subscribe(this, request.getAfterCursor())) {
+        expired(request.getAfterCursor() + 1);
+      }
+    } else {
+      bus.subscribeLive(this);
+    }
+  }
+
+  private synchronized void startReplay(long fromBlockNum) {
+    // a block being applied now may be replayed and then published, its live copy is skipped
+    inFlight = manager.getHeadBlockNum();
+    liveAfter = bus.getPublished();
+    replayHead = manager.getHeadBlockNum();
+    replayNum = fromBlockNum;
+    replaying = true;
+    replay();
+  }
+
+  private synchronized void onReady() {
+    if (replaying) {
+      replay();
+    } else {
+      bus.wakeUp();
+    }
+  }
+
+  /**
+   * send replayed events while the client reads them, then hand over to the bus. Picked up again
+   * by the next ready callback.
+   */
+  private void replay() {
+    try {
+      while (!cancelled && observer.isReady()) {
+        if (replayBlock == null) {
+          if (replayNum > replayHead) {
+            replaying = false;
+            if (!bus.subscribe(this, liveAfter)) {
+              expired(liveAfter + 1);
+            }
+            return;
+          }
+          replayBlock = manager.getBlockById(manager.getBlockIdByNum(replayNum));
+          if (replayNum >= inFlight) {
+            replayed.put(replayNum, replayBlock.getBlockId().getByteString());
+          }
+          replayTransaction = -1;
+        }
+        if (replayTransaction < 0) {
+          send(EventBus.blockEvent(ChainEvent.Type.BLOCK_APPLIED, replayBlock));
+          replayTransaction = 0;
+        } else if (replayTransaction < replayBlock.getTransactions().size()) {
+          send(EventBus.transactionEvent(replayBlock,
+              replayBlock.getTransactions().get(replayTransaction++)));
+        } else {
+          replayBlock = null;
+          replayNum++;
+        }
+      }
+    } catch (BadItemException | ItemNotFoundException e) {
+      replaying = false;
+      logger.info("replay stopped: " + e.getMessage());
+      observer.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+    }
+  }
+
+  private void send(ChainEvent.Builder builder) {
+    ChainEvent event = builder.setSession(bus.getSession()).build();
+    if (accepts(event)) {
+      observer.onNext(event);
+    }
+  }
+
+  @Override
+  protected boolean isReady() {
+    return observer.isReady();
+  }
+
+  @Override
+  protected void deliver(ChainEvent event) {
+    if (!replayed.isEmpty() && event.getType() != ChainEvent.Type.BLOCK_REVERTED
+        && event.getBlockId().equals(replayed.get(event.getBlockNum()))) {
+      return;
+    }
+    observer.onNext(event);
+  }
+
+  @Override
+  protected void expired(long cursor) {
+    observer.onError(Status.OUT_OF_RANGE
+        .withDescription("events from cursor " + cursor
+            + " are no longer buffered, resubscribe from a block number")
+        .asRuntimeException());
+  }
+}
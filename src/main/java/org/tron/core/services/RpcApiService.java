@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.util.HashMap;
@@ -18,7 +19,9 @@ import org.tron.api.GrpcAPI.Address;
 import org.tron.api.GrpcAPI.AssetIssueList;
 import org.tron.api.GrpcAPI.BlockReference;
 import org.tron.api.GrpcAPI.BytesMessage;
+import org.tron.api.GrpcAPI.ChainEvent;
 import org.tron.api.GrpcAPI.EmptyMessage;
+import org.tron.api.GrpcAPI.EventSubscription;
 import org.tron.api.GrpcAPI.Node;
 import org.tron.api.GrpcAPI.NodeList;
 import org.tron.api.GrpcAPI.NumberMessage;
@@ -320,6 +323,13 @@ public class RpcApiService implements Service {
       responseObserver.onCompleted();
     }
 
+    @Override
+    public void subscribeEvents(EventSubscription request,
+        StreamObserver<ChainEvent> responseObserver) {
+      new EventStream(app.getDbManager(), (ServerCallStreamObserver<ChainEvent>) responseObserver,
+          request).start();
+    }
+
     @Override
     public void listAccounts(EmptyMessage request, StreamObserver<AccountList> responseObserver) {
       responseObserver.onNext(wallet.getAllAccounts());
@@ -2,6 +2,7 @@ package org.tron.core.services;
 
 import com.google.common.collect.Maps;
 import com.google.protobuf.ByteString;
+import java.util.Collections;
 import java.util.Map;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +14,6 @@ import org.tron.common.utils.ByteArray;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.config.args.Args;
-import org.tron.core.db.Manager;
 import org.tron.core.exception.ContractExeException;
 import org.tron.core.exception.ContractValidateException;
 import org.tron.core.exception.TronException;
@@ -22,31 +22,34 @@ import org.tron.core.exception.ValidateScheduleException;
 import org.tron.core.exception.ValidateSignatureException;
 import org.tron.core.net.message.BlockMessage;
 import org.tron.core.witness.BlockProductionCondition;
+import org.tron.core.witness.ProductionScheduler;
+import org.tron.core.witness.ProductionStats;
 import org.tron.core.witness.WitnessController;
 
 @Slf4j
 public class WitnessService implements Service {
 
   private static final int MIN_PARTICIPATION_RATE = 33; // MIN_PARTICIPATION_RATE * 1%
-  private static final int PRODUCE_TIME_OUT = 500; // ms
   private Application tronApp;
   @Getter
   protected Map<ByteString, WitnessCapsule> localWitnessStateMap = Maps
       .newHashMap(); //  <address,WitnessCapsule>
   private Thread generateThread;
-  private volatile boolean isRunning = false;
   private Map<ByteString, byte[]> privateKeyMap = Maps.newHashMap();
-  private boolean needSyncCheck = Args.getInstance().isNeedSyncCheck();
+  private volatile boolean needSyncCheck = Args.getInstance().isNeedSyncCheck();
 
   private WitnessController controller;
+  private ProductionScheduler scheduler;
 
   /**
    * Construction method.
    */
   public WitnessService(Application tronApp) {
     this.tronApp = tronApp;
-    generateThread = new Thread(scheduleProductionLoop);
     controller = tronApp.getDbManager().getWitnessController();
+    scheduler = new ProductionScheduler(controller,
+        Collections.unmodifiableSet(localWitnessStateMap.keySet()), new Producer());
+    generateThread = new Thread(scheduleProductionLoop, "WitnessProduction");
   }
 
   /**
@@ -58,163 +61,56 @@ public class WitnessService implements Service {
           logger.error("LocalWitnesses is null");
           return;
         }
-
-        while (isRunning) {
-          try {
-            if (this.needSyncCheck) {
-              Thread.sleep(500L);
-            } else {
-              DateTime time = DateTime.now();
-              long timeToNextSecond = Manager.LOOP_INTERVAL
-                  - (time.getSecondOfMinute() * 1000 + time.getMillisOfSecond())
-                  % Manager.LOOP_INTERVAL;
-              if (timeToNextSecond < 50L) {
-                timeToNextSecond = timeToNextSecond + Manager.LOOP_INTERVAL;
-              }
-              DateTime nextTime = time.plus(timeToNextSecond);
-              logger.debug(
-                  "ProductionLoop sleep : " + timeToNextSecond + " ms,next time:" + nextTime);
-              Thread.sleep(timeToNextSecond);
-            }
-            this.blockProductionLoop();
-          } catch (InterruptedException ex) {
-            logger.info("ProductionLoop interrupted");
-          } catch (Exception ex) {
-            logger.error("unknown exception happened in witness loop", ex);
-          }
-        }
+        scheduler.run();
       };
 
   /**
-   * Loop to generate blocks
+   * production outcome of every slot and latency of the blocks we produced.
    */
-  private void blockProductionLoop() throws InterruptedException {
-    BlockProductionCondition result = this.tryProduceBlock();
-
-    if (result == null) {
-      logger.warn("Result is null");
-      return;
-    }
-
-    switch (result) {
-      case PRODUCED:
-        logger.debug("Produced");
-        break;
-      case NOT_SYNCED:
-        logger.info("Not sync");
-        break;
-      case NOT_MY_TURN:
-        logger.debug("It's not my turn");
-        break;
-      case NOT_TIME_YET:
-        logger.info("Not time yet");
-        break;
-      case NO_PRIVATE_KEY:
-        logger.info("No pri key");
-        break;
-      case LOW_PARTICIPATION:
-        logger.info("Low part");
-        break;
-      case LAG:
-        logger.info("Lag");
-        break;
-      case CONSECUTIVE:
-        logger.info("Consecutive");
-        break;
-      case TIME_OUT:
-        logger.debug("Time out");
-      case EXCEPTION_PRODUCING_BLOCK:
-        logger.info("Exception");
-        break;
-      default:
-        break;
-    }
+  public ProductionStats getProductionStats() {
+    return scheduler.getStats();
   }
 
-  /**
-   * Generate and broadcast blocks
-   */
-  private BlockProductionCondition tryProduceBlock() throws InterruptedException {
-    logger.info("Try Produce Block");
-    long now = DateTime.now().getMillis() + 50L;
-    if (this.needSyncCheck) {
-      long nexSlotTime = controller.getSlotTime(1);
-      if (nexSlotTime > now) { // check sync during first loop
-        needSyncCheck = false;
-        Thread.sleep(nexSlotTime - now); //Processing Time Drift later
-        now = DateTime.now().getMillis();
-      } else {
-        logger.debug("Not sync ,now:{},headBlockTime:{},headBlockNumber:{},headBlockId:{}",
-            new DateTime(now),
-            new DateTime(this.tronApp.getDbManager().getDynamicPropertiesStore()
-                .getLatestBlockHeaderTimestamp()),
-            this.tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderNumber(),
-            this.tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderHash());
-        return BlockProductionCondition.NOT_SYNCED;
-      }
-    }
-
-    final int participation = this.controller.calculateParticipationRate();
-    if (participation < MIN_PARTICIPATION_RATE) {
-      logger.warn(
-          "Participation[" + participation + "] <  MIN_PARTICIPATION_RATE[" + MIN_PARTICIPATION_RATE
-              + "]");
-      return BlockProductionCondition.LOW_PARTICIPATION;
-    }
-
-    long slot = controller.getSlotAtTime(now);
-    logger.debug("Slot:" + slot);
+  private class Producer implements ProductionScheduler.Producer {
 
-    if (slot == 0) {
-      logger.info("Not time yet,now:{},headBlockTime:{},headBlockNumber:{},headBlockId:{}",
-          new DateTime(now),
-          new DateTime(
-              this.tronApp.getDbManager().getDynamicPropertiesStore()
+    @Override
+    public BlockProductionCondition prepare(long slot, ByteString witness, long now) {
+      if (needSyncCheck) {
+        if (controller.getSlotTime(1) < now) {
+          logger.debug("Not sync ,now:{},headBlockTime:{},headBlockNumber:{},headBlockId:{}",
+              new DateTime(now),
+              new DateTime(tronApp.getDbManager().getDynamicPropertiesStore()
                   .getLatestBlockHeaderTimestamp()),
-          this.tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderNumber(),
-          this.tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderHash());
-      return BlockProductionCondition.NOT_TIME_YET;
-    }
-
-    final ByteString scheduledWitness = controller.getScheduledWitness(slot);
-
-    if (!this.getLocalWitnessStateMap().containsKey(scheduledWitness)) {
-      logger.info("It's not my turn,ScheduledWitness[{}],slot[{}],abSlot[{}],",
-          ByteArray.toHexString(scheduledWitness.toByteArray()), slot,
-          controller.getAbSlotAtTime(now));
-      return BlockProductionCondition.NOT_MY_TURN;
-    }
+              tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderNumber(),
+              tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderHash());
+          return BlockProductionCondition.NOT_SYNCED;
+        }
+        needSyncCheck = false;
+      }
 
-    long scheduledTime = controller.getSlotTime(slot);
+      final int participation = controller.calculateParticipationRate();
+      if (participation < MIN_PARTICIPATION_RATE) {
+        logger.warn(
+            "Participation[" + participation + "] <  MIN_PARTICIPATION_RATE["
+                + MIN_PARTICIPATION_RATE + "]");
+        return BlockProductionCondition.LOW_PARTICIPATION;
+      }
 
-    if (scheduledTime - now > PRODUCE_TIME_OUT) {
-      return BlockProductionCondition.LAG;
+      if (!privateKeyMap.containsKey(witness)) {
+        return BlockProductionCondition.NO_PRIVATE_KEY;
+      }
+      return null;
     }
 
-    if (!privateKeyMap.containsKey(scheduledWitness)) {
-      return BlockProductionCondition.NO_PRIVATE_KEY;
+    @Override
+    public BlockCapsule produce(long slotTime, ByteString witness) throws TronException {
+      return generateBlock(slotTime, witness);
     }
 
-    try {
-      BlockCapsule block = generateBlock(scheduledTime, scheduledWitness);
-      if (DateTime.now().getMillis() - now > Manager.LOOP_INTERVAL) {
-        logger.warn("Task timeout ( > {}ms)，startTime:{},endTime:{}", Manager.LOOP_INTERVAL,
-            new DateTime(now), DateTime.now());
-        return BlockProductionCondition.TIME_OUT;
-      }
-
-      logger.info(
-          "Produce block successfully, blockNumber:{},abSlot[{}],blockId:{}, blockTime:{}, parentBlockId:{}",
-          block.getNum(), controller.getAbSlotAtTime(now), block.getBlockId(),
-          new DateTime(block.getTimeStamp()),
-          this.tronApp.getDbManager().getDynamicPropertiesStore().getLatestBlockHeaderHash());
+    @Override
+    public void broadcast(BlockCapsule block) {
       broadcastBlock(block);
-      return BlockProductionCondition.PRODUCED;
-    } catch (TronException e) {
-      logger.debug(e.getMessage(), e);
-      return BlockProductionCondition.EXCEPTION_PRODUCING_BLOCK;
     }
-
   }
 
   private void broadcastBlock(BlockCapsule block) {
@@ -262,13 +158,12 @@ public class WitnessService implements Service {
 
   @Override
   public void start() {
-    isRunning = true;
     generateThread.start();
   }
 
   @Override
   public void stop() {
-    isRunning = false;
+    scheduler.stop();
     generateThread.interrupt();
   }
 }
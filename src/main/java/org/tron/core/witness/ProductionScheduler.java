@@ -0,0 +1,185 @@
+package org.tron.core.witness;
+
+import com.google.protobuf.ByteString;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.tron.common.utils.ByteArray;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.db.Manager;
+import org.tron.core.exception.TronException;
+
+/**
+ * Drives block production from slot deadlines instead of a polling loop. For every slot it wakes
+ * {@link #PREPARE_AHEAD} ms early, checks whether the slot is ours and whether we may produce,
+ * then waits for the exact start of the slot to sign and broadcast the block the manager has been
+ * assembling since the last head.
+ */
+@Slf4j
+public class ProductionScheduler implements Runnable {
+
+  /**
+   * The checks that decide whether a slot of ours is produced, and the production itself.
+   */
+  public interface Producer {
+
+    /**
+     * called ahead of a slot of ours.
+     *
+     * @return the reason the slot can not be produced, null to produce it.
+     */
+    BlockProductionCondition prepare(long slot, ByteString witness, long now);
+
+    /**
+     * sign and apply the block of the slot.
+     */
+    BlockCapsule produce(long slotTime, ByteString witness) throws TronException;
+
+    void broadcast(BlockCapsule block);
+  }
+
+  // ms before the slot starts to run the checks, so signing is all that is left at the boundary
+  public static final long PREPARE_AHEAD = 200L;
+  // a producer waking this late gives up the slot instead of producing into the next one
+  private static final long LATE_LIMIT = Manager.LOOP_INTERVAL - PREPARE_AHEAD;
+  // parking is only accurate to about this much, the rest of the wait is spent yielding
+  private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+  // wait before looking again when the schedule can not be read
+  private static final long RETRY_DELAY = 500L;
+
+  private final WitnessController controller;
+  private final Set<ByteString> localWitnesses;
+  private final Producer producer;
+  private final ProductionStats stats = new ProductionStats();
+
+  private volatile boolean running = true;
+  // start of the last slot handled, a slot is never looked at twice
+  private long lastSlotTime;
+
+  public ProductionScheduler(WitnessController controller, Set<ByteString> localWitnesses,
+      Producer producer) {
+    this.controller = controller;
+    this.localWitnesses = localWitnesses;
+    this.producer = producer;
+  }
+
+  public ProductionStats getStats() {
+    return stats;
+  }
+
+  public void stop() {
+    running = false;
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        runSlot();
+      } catch (InterruptedException ex) {
+        logger.info("ProductionLoop interrupted");
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception ex) {
+        logger.error("unknown exception happened in witness loop", ex);
+        try {
+          Thread.sleep(RETRY_DELAY);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private void runSlot() throws InterruptedException {
+    // the slot starting next, relative to the head at this moment. Handling a slot may end before
+    // it starts, within PREPARE_AHEAD of it, so count from the last one to not take it again.
+    long now = Math.max(System.currentTimeMillis(), lastSlotTime + 1);
+    long slotTime = controller.getSlotTime(controller.getSlotAtTime(now) + 1);
+    lastSlotTime = slotTime;
+    sleepUntil(slotTime - PREPARE_AHEAD);
+
+    // a block may have arrived while sleeping, slots are numbered from the new head
+    long slot = controller.getSlotAtTime(slotTime);
+    if (slot == 0) {
+      stats.recordOutcome(BlockProductionCondition.NOT_TIME_YET);
+      return;
+    }
+    ByteString witness = controller.getScheduledWitness(slot);
+    if (!localWitnesses.contains(witness)) {
+      logger.debug("It's not my turn,ScheduledWitness[{}],slot[{}]",
+          ByteArray.toHexString(witness.toByteArray()), slot);
+      stats.recordOutcome(BlockProductionCondition.NOT_MY_TURN);
+      return;
+    }
+
+    BlockProductionCondition condition = producer.prepare(slot, witness,
+        System.currentTimeMillis());
+    if (condition != null) {
+      missed(slotTime, condition);
+      return;
+    }
+
+    sleepUntil(slotTime);
+    if (System.currentTimeMillis() - slotTime > LATE_LIMIT) {
+      missed(slotTime, BlockProductionCondition.LAG);
+      return;
+    }
+
+    BlockCapsule block;
+    try {
+      block = producer.produce(slotTime, witness);
+    } catch (TronException e) {
+      logger.debug(e.getMessage(), e);
+      missed(slotTime, BlockProductionCondition.EXCEPTION_PRODUCING_BLOCK);
+      return;
+    }
+    long producedTime = System.currentTimeMillis();
+    if (producedTime - slotTime > Manager.LOOP_INTERVAL) {
+      logger.warn("Task timeout ( > {}ms)，slotTime:{},endTime:{}", Manager.LOOP_INTERVAL,
+          new DateTime(slotTime), new DateTime(producedTime));
+      missed(slotTime, BlockProductionCondition.TIME_OUT);
+      return;
+    }
+
+    producer.broadcast(block);
+    long broadcastTime = System.currentTimeMillis();
+    stats.recordProduced(slotTime, producedTime, broadcastTime);
+    logger.info("Produce block successfully, blockNumber:{},blockId:{},blockTime:{},"
+            + "produced +{}ms,broadcast +{}ms", block.getNum(), block.getBlockId(),
+        new DateTime(block.getTimeStamp()), producedTime - slotTime, broadcastTime - slotTime);
+  }
+
+  private void missed(long slotTime, BlockProductionCondition condition) {
+    stats.recordOutcome(condition);
+    logger.info("Missed slot at {}: {}, {}", new DateTime(slotTime), condition, stats);
+  }
+
+  /**
+   * sleep until the wall clock reaches when, to within a fraction of a millisecond.
+   */
+  private void sleepUntil(long when) throws InterruptedException {
+    long remaining = when - System.currentTimeMillis();
+    if (remaining <= 0) {
+      return;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remaining);
+    while (true) {
+      if (Thread.interrupted() || !running) {
+        throw new InterruptedException();
+      }
+      long left = deadline - System.nanoTime();
+      if (left <= 0) {
+        return;
+      }
+      if (left > SPIN_NANOS) {
+        LockSupport.parkNanos(left - SPIN_NANOS);
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.tron.core.witness;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outcome of every slot the production scheduler looked at, and how long after the start of the
+ * slot our blocks were produced and broadcast.
+ */
+public class ProductionStats {
+
+  private final Map<BlockProductionCondition, AtomicLong> outcomes =
+      new EnumMap<>(BlockProductionCondition.class);
+
+  private final Latency produceLatency = new Latency();
+  private final Latency broadcastLatency = new Latency();
+
+  public ProductionStats() {
+    for (BlockProductionCondition condition : BlockProductionCondition.values()) {
+      outcomes.put(condition, new AtomicLong());
+    }
+  }
+
+  public void recordOutcome(BlockProductionCondition condition) {
+    outcomes.get(condition).incrementAndGet();
+  }
+
+  /**
+   * a block of ours, with the start of its slot and the times it was signed and sent.
+   */
+  public void recordProduced(long slotTime, long producedTime, long broadcastTime) {
+    recordOutcome(BlockProductionCondition.PRODUCED);
+    produceLatency.record(producedTime - slotTime);
+    broadcastLatency.record(broadcastTime - slotTime);
+  }
+
+  public long getCount(BlockProductionCondition condition) {
+    return outcomes.get(condition).get();
+  }
+
+  /**
+   * slots that were ours but produced no block, by reason.
+   */
+  public Map<BlockProductionCondition, Long> getMissedSlots() {
+    Map<BlockProductionCondition, Long> missed = new EnumMap<>(BlockProductionCondition.class);
+    outcomes.forEach((condition, count) -> {
+      if (isMiss(condition) && count.get() > 0) {
+        missed.put(condition, count.get());
+      }
+    });
+    return Collections.unmodifiableMap(missed);
+  }
+
+  public static boolean isMiss(BlockProductionCondition condition) {
+    switch (condition) {
+      case PRODUCED:
+      case NOT_MY_TURN:
+      case NOT_TIME_YET:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * ms from the start of the slot until the block was signed and applied locally.
+   */
+  public Latency getProduceLatency() {
+    return produceLatency;
+  }
+
+  /**
+   * ms from the start of the slot until the block was handed to the network.
+   */
+  public Latency getBroadcastLatency() {
+    return broadcastLatency;
+  }
+
+  @Override
+  public String toString() {
+    return "produced " + getCount(BlockProductionCondition.PRODUCED)
+        + ", missed " + getMissedSlots()
+        + ", produce latency " + produceLatency
+        + ", broadcast latency " + broadcastLatency;
+  }
+
+  public static class Latency {
+
+    private long count;
+    private long total;
+    private long max;
+    private long last;
+
+    synchronized void record(long millis) {
+      count++;
+      total += millis;
+      max = Math.max(max, millis);
+      last = millis;
+    }
+
+    public synchronized long getCount() {
+      return count;
+    }
+
+    public synchronized long getMax() {
+      return max;
+    }
+
+    public synchronized long getLast() {
+      return last;
+    }
+
+    public synchronized long getAverage() {
+      return count == 0 ? 0 : total / count;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return "last " + last + "ms, avg " + getAverage() + "ms, max " + max + "ms";
+    }
+  }
+}
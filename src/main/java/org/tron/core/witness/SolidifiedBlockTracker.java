@@ -0,0 +1,118 @@
+package org.tron.core.witness;
+
+import static org.tron.core.config.Parameter.ChainConstant.SOLIDIFIED_THRESHOLD;
+
+import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.core.capsule.WitnessCapsule;
+
+/**
+ * Latest block number of every active witness, kept sorted so the solidified height is a single
+ * array read. A new block moves one witness's number within the array instead of sorting all of
+ * them again, and listeners hear about every height that becomes solid.
+ */
+@Slf4j
+public class SolidifiedBlockTracker {
+
+  /**
+   * told once for every published rise of the solidified height.
+   */
+  public interface Listener {
+
+    void onBlockSolidified(long blockNum);
+  }
+
+  private final Map<ByteString, Long> latestBlockNums = new HashMap<>();
+  // ascending, one entry per witness
+  private long[] sorted = new long[0];
+  private long published = -1;
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * track a new set of witnesses, after maintenance or on startup.
+   */
+  public synchronized void reset(Collection<WitnessCapsule> witnesses) {
+    latestBlockNums.clear();
+    witnesses.forEach(witness ->
+        latestBlockNums.put(witness.getAddress(), witness.getLatestBlockNum()));
+    sorted = latestBlockNums.values().stream().mapToLong(Long::longValue).sorted().toArray();
+  }
+
+  /**
+   * a witness produced a block.
+   *
+   * @return false if the witness is not tracked.
+   */
+  public synchronized boolean update(ByteString address, long blockNum) {
+    Long previous = latestBlockNums.get(address);
+    if (previous == null) {
+      return false;
+    }
+    latestBlockNums.put(address, blockNum);
+
+    // equal numbers are interchangeable, so any copy of the old one can be moved
+    int index = Arrays.binarySearch(sorted, previous);
+    if (blockNum > previous) {
+      while (index + 1 < sorted.length && sorted[index + 1] < blockNum) {
+        sorted[index] = sorted[index + 1];
+        index++;
+      }
+    } else {
+      while (index > 0 && sorted[index - 1] > blockNum) {
+        sorted[index] = sorted[index - 1];
+        index--;
+      }
+    }
+    sorted[index] = blockNum;
+    return true;
+  }
+
+  public synchronized int size() {
+    return sorted.length;
+  }
+
+  /**
+   * highest block confirmed by enough witnesses, -1 while there are too few of them.
+   */
+  public synchronized long getSolidifiedBlockNum() {
+    int position = (int) (sorted.length * (1 - SOLIDIFIED_THRESHOLD)) - 1;
+    return position < 0 ? -1 : sorted[position];
+  }
+
+  /**
+   * tell the listeners about the solidified height if it is above the last one published. Called
+   * once the block that raised it has been committed.
+   */
+  public void publish() {
+    long blockNum;
+    synchronized (this) {
+      blockNum = getSolidifiedBlockNum();
+      if (blockNum <= published) {
+        return;
+      }
+      published = blockNum;
+    }
+    for (Listener listener : listeners) {
+      try {
+        listener.onBlockSolidified(blockNum);
+      } catch (Exception e) {
+        logger.error("solidified block listener failed at block " + blockNum, e);
+      }
+    }
+  }
+}
@@ -2,12 +2,21 @@ package org.tron.core.witness;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.UnsignedBytes;
 import com.google.protobuf.ByteString;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -33,14 +42,29 @@ import org.tron.core.exception.ItemNotFoundException;
 @Slf4j
 public class WitnessController {
 
+  // accounts counted per maintenance task
+  private static final int VOTE_BATCH_SIZE = 1024;
+  private static final ForkJoinPool MAINTENANCE_POOL =
+      new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+  // enough to keep every worker busy while the next batches are read
+  private static final int MAX_BATCHES_IN_FLIGHT = 2 * MAINTENANCE_POOL.getParallelism();
+
   @Setter
   private Manager manager;
   private volatile List<WitnessCapsule> wits = new ArrayList<>();
 
   @Getter
-  @Setter
   protected List<WitnessCapsule> shuffledWitnessStates;
 
+  // slot lookups read the published schedule without locking; a schedule is only served while
+  // its version is the current one, any change to what it was built from bumps the version
+  private final AtomicLong scheduleVersion = new AtomicLong();
+  private volatile WitnessSchedule schedule;
+
+  // latest block numbers of the active witnesses, for the solidified height
+  @Getter
+  private final SolidifiedBlockTracker solidifiedBlockTracker = new SolidifiedBlockTracker();
+
   private ReadWriteLock witsLock = new ReentrantReadWriteLock();
   private Lock witsRead = witsLock.readLock();
   private Lock witsWrite = witsLock.writeLock();
@@ -60,6 +84,7 @@ public class WitnessController {
       }
     });
     sortWitness();
+    solidifiedBlockTracker.reset(getWitnesses());
     this.setShuffledWitnessStates(getWitnesses());
   }
 
@@ -91,16 +116,24 @@ public class WitnessController {
 
   }
 
+  public void setShuffledWitnessStates(List<WitnessCapsule> shuffledWitnessStates) {
+    this.shuffledWitnessStates = shuffledWitnessStates;
+    invalidateSchedule();
+  }
+
   public void setWitnesses(List<WitnessCapsule> wits) {
     witsWrite.lock();
     this.wits = wits;
     witsWrite.unlock();
+    solidifiedBlockTracker.reset(wits);
   }
 
   public void addWitness(final WitnessCapsule witnessCapsule) {
     witsWrite.lock();
     this.wits.add(witnessCapsule);
     witsWrite.unlock();
+    solidifiedBlockTracker.reset(wits);
+    invalidateSchedule();
   }
 
   public void sortWitness() {
@@ -110,6 +143,52 @@ public class WitnessController {
     } finally {
       witsWrite.unlock();
     }
+    invalidateSchedule();
+  }
+
+  /**
+   * drop the published schedule, the next slot lookup builds one for the current head. Called
+   * whenever the head block or the maintenance state changes.
+   */
+  public void invalidateSchedule() {
+    scheduleVersion.incrementAndGet();
+  }
+
+  /**
+   * schedule for the blocks following the current head.
+   */
+  public WitnessSchedule getSchedule() {
+    WitnessSchedule current = schedule;
+    long version = scheduleVersion.get();
+    if (current == null || current.getVersion() != version) {
+      current = buildSchedule(version);
+      schedule = current;
+    }
+    return current;
+  }
+
+  private WitnessSchedule buildSchedule(long version) {
+    long interval = Manager.LOOP_INTERVAL;
+    BlockCapsule head = getHead();
+    long genesisTime = getGenesisBlock().getTimeStamp();
+    long headSlot = (head.getTimeStamp() - genesisTime) / interval;
+
+    long slotBase;
+    if (head.getNum() == 0) {
+      slotBase = genesisTime;
+    } else {
+      long headSlotTime = head.getTimeStamp() - ((head.getTimeStamp() - genesisTime) % interval);
+      slotBase = headSlotTime;
+      if (lastHeadBlockIsMaintenance()) {
+        slotBase += manager.getSkipSlotInMaintenance() * interval;
+      }
+    }
+
+    List<WitnessCapsule> shuffled = getShuffledWitnessStates();
+    List<ByteString> order = CollectionUtils.isEmpty(shuffled) ? Collections.emptyList()
+        : shuffled.stream().map(WitnessCapsule::getAddress).collect(Collectors.toList());
+    return new WitnessSchedule(version, head.getBlockId(), head.getNum(), headSlot, interval,
+        slotBase, order);
   }
 
 
@@ -117,13 +196,7 @@ public class WitnessController {
    * get slot at time.
    */
   public long getSlotAtTime(long when) {
-    long firstSlotTime = getSlotTime(1);
-    if (when < firstSlotTime) {
-      return 0;
-    }
-    logger
-        .debug("nextFirstSlotTime:[{}],when[{}]", new DateTime(firstSlotTime), new DateTime(when));
-    return (when - firstSlotTime) / Manager.LOOP_INTERVAL + 1;
+    return getSchedule().getSlotAtTime(when);
   }
 
   public BlockCapsule getGenesisBlock() {
@@ -159,21 +232,7 @@ public class WitnessController {
     if (slotNum == 0) {
       return Time.getCurrentMillis();
     }
-    long interval = Manager.LOOP_INTERVAL;
-
-    if (getHead().getNum() == 0) {
-      return getGenesisBlock().getTimeStamp() + slotNum * interval;
-    }
-
-    if (lastHeadBlockIsMaintenance()) {
-      slotNum += manager.getSkipSlotInMaintenance();
-    }
-
-    long headSlotTime = getHead().getTimeStamp();
-    headSlotTime = headSlotTime
-        - ((headSlotTime - getGenesisBlock().getTimeStamp()) % interval);
-
-    return headSlotTime + interval * slotNum;
+    return getSchedule().getSlotTime(slotNum);
   }
 
   /**
@@ -183,11 +242,11 @@ public class WitnessController {
 
     ByteString witnessAddress = block.getInstance().getBlockHeader().getRawData()
         .getWitnessAddress();
-    BlockCapsule head = getHead();
+    WitnessSchedule current = getSchedule();
     //to deal with other condition later
-    if (head.getNum() != 0 && head.getBlockId().equals(block.getParentHash())) {
-      long slot = getSlotAtTime(block.getTimeStamp());
-      final ByteString scheduledWitness = getScheduledWitness(slot);
+    if (current.getHeadBlockNum() != 0 && current.getHeadBlockId().equals(block.getParentHash())) {
+      long slot = current.getSlotAtTime(block.getTimeStamp());
+      final ByteString scheduledWitness = current.getScheduledWitness(slot);
       if (!scheduledWitness.equals(witnessAddress)) {
         logger.warn(
             "Witness is out of order, scheduledWitness[{}],blockWitnessAddress[{}],blockTimeStamp[{}],slot[{}]",
@@ -207,27 +266,11 @@ public class WitnessController {
    * get ScheduledWitness by slot.
    */
   public ByteString getScheduledWitness(final long slot) {
-
-    final long currentSlot = getHeadSlot() + slot;
-
-    if (currentSlot < 0) {
-      throw new RuntimeException("currentSlot should be positive.");
-    }
-    final List<WitnessCapsule> currentShuffledWitnesses = this.getShuffledWitnessStates();
-    if (CollectionUtils.isEmpty(currentShuffledWitnesses)) {
-      throw new RuntimeException("ShuffledWitnesses is null.");
-    }
-    final int witnessIndex = (int) currentSlot % currentShuffledWitnesses.size();
-
-    final ByteString scheduledWitness = currentShuffledWitnesses.get(witnessIndex).getAddress();
-    //logger.info("scheduled_witness:" + scheduledWitness.toStringUtf8() + ",slot:" + currentSlot);
-
-    return scheduledWitness;
+    return getSchedule().getScheduledWitness(slot);
   }
 
   public long getHeadSlot() {
-    return (getHead().getTimeStamp() - getGenesisBlock().getTimeStamp())
-        / Manager.LOOP_INTERVAL;
+    return getSchedule().getHeadSlot();
   }
 
   /**
@@ -254,35 +297,49 @@ public class WitnessController {
     }
   }
 
+  /**
+   * votes per witness. Accounts are streamed in key-ordered batches, each batch is counted on the
+   * maintenance pool and the partial counts are summed in submission order. At most
+   * {@link #MAX_BATCHES_IN_FLIGHT} batches are held at once, the oldest is merged before another
+   * is read, so the account store is never in memory as a whole.
+   */
   private Map<ByteString, Long> countVote(AccountStore accountStore) {
+    final Map<ByteString, Long> countWitness = Maps.newHashMap();
+    Deque<ForkJoinTask<Map<ByteString, Long>>> partials = new ArrayDeque<>();
+    accountStore.forEachBatch(VOTE_BATCH_SIZE, batch -> {
+      if (partials.size() == MAX_BATCHES_IN_FLIGHT) {
+        mergeVote(countWitness, partials.poll().join());
+      }
+      partials.add(MAINTENANCE_POOL.submit(() -> countVote(batch)));
+    });
+    while (!partials.isEmpty()) {
+      mergeVote(countWitness, partials.poll().join());
+    }
+    return countWitness;
+  }
+
+  private static void mergeVote(Map<ByteString, Long> countWitness,
+      Map<ByteString, Long> partial) {
+    partial.forEach((address, voteCount) -> countWitness.merge(address, voteCount, Long::sum));
+  }
 
+  private static Map<ByteString, Long> countVote(List<byte[]> accounts) {
     final Map<ByteString, Long> countWitness = Maps.newHashMap();
-    final List<AccountCapsule> accountList = accountStore.getAllAccounts();
-    //logger.info("there is account List size is {}", accountList.size());
-    accountList.forEach(account -> {
-//      logger.info("there is account ,account address is {}",
-//          account.createReadableString());
-
-      Optional<Long> sum = account.getVotesList().stream().map(vote -> vote.getVoteCount())
-          .reduce((a, b) -> a + b);
-      if (sum.isPresent()) {
-        if (sum.get() <= account.getShare()) {
-          account.getVotesList().forEach(vote -> {
-            //TODO validate witness //active_witness
-            ByteString voteAddress = vote.getVoteAddress();
-            long voteCount = vote.getVoteCount();
-            if (countWitness.containsKey(voteAddress)) {
-              countWitness.put(voteAddress, countWitness.get(voteAddress) + voteCount);
-            } else {
-              countWitness.put(voteAddress, voteCount);
-            }
-          });
-        } else {
-          logger.info(
-              "account" + account.createReadableString() + ",share[" + account.getShare()
-                  + "] > voteSum["
-                  + sum.get() + "]");
-        }
+    accounts.forEach(bytes -> {
+      AccountCapsule account = new AccountCapsule(bytes);
+      if (account.getInstance() == null || account.getVotesList().isEmpty()) {
+        return;
+      }
+      long sum = account.getVotesList().stream().mapToLong(vote -> vote.getVoteCount()).sum();
+      if (sum <= account.getShare()) {
+        //TODO validate witness //active_witness
+        account.getVotesList().forEach(vote ->
+            countWitness.merge(vote.getVoteAddress(), vote.getVoteCount(), Long::sum));
+      } else {
+        logger.info(
+            "account" + account.createReadableString() + ",share[" + account.getShare()
+                + "] > voteSum["
+                + sum + "]");
       }
     });
     return countWitness;
@@ -302,45 +359,51 @@ public class WitnessController {
     } else {
       List<WitnessCapsule> currentWits = getWitnesses();
 
-      final List<WitnessCapsule> witnessCapsuleList = Lists.newArrayList();
+      // every witness is reset, counted and flagged in memory, then written once
+      final Map<ByteString, WitnessCapsule> allWitnesses = new HashMap<>();
       witnessStore.getAllWitnesses().forEach(witnessCapsule -> {
         witnessCapsule.setVoteCount(0);
         witnessCapsule.setIsJobs(false);
-        witnessStore.put(witnessCapsule.createDbKey(), witnessCapsule);
+        allWitnesses.put(witnessCapsule.getAddress(), witnessCapsule);
       });
 
-      countWitness.forEach((address, voteCount) -> {
-        final WitnessCapsule witnessCapsule = witnessStore.get(StringUtil.createDbKey(address));
-        if (null == witnessCapsule) {
-          logger
-              .warn("witnessCapsule is null.address is {}",
-                  StringUtil.createReadableString(address));
-          return;
-        }
+      final List<WitnessCapsule> witnessCapsuleList = Lists.newArrayList();
+      // in address order, so equal candidates are ranked the same on every node
+      countWitness.keySet().stream()
+          .sorted(Comparator.comparing(ByteString::toByteArray,
+              UnsignedBytes.lexicographicalComparator()))
+          .forEach(address -> {
+            long voteCount = countWitness.get(address);
+            final WitnessCapsule witnessCapsule = allWitnesses.get(address);
+            if (null == witnessCapsule) {
+              logger
+                  .warn("witnessCapsule is null.address is {}",
+                      StringUtil.createReadableString(address));
+              return;
+            }
 
-        ByteString witnessAddress = witnessCapsule.getInstance().getAddress();
-        AccountCapsule witnessAccountCapsule = accountStore
-            .get(StringUtil.createDbKey(witnessAddress));
-        if (witnessAccountCapsule == null) {
-          logger.warn(
-              "witnessAccount[" + StringUtil.createReadableString(witnessAddress) + "] not exists");
-        } else {
-          if (witnessAccountCapsule.getBalance() < WitnessCapsule.MIN_BALANCE) {
-            logger.warn(
-                "witnessAccount[" + StringUtil.createReadableString(witnessAddress)
-                    + "] has balance["
-                    + witnessAccountCapsule
-                    .getBalance() + "] < MIN_BALANCE[" + WitnessCapsule.MIN_BALANCE + "]");
-          } else {
-            witnessCapsule.setVoteCount(witnessCapsule.getVoteCount() + voteCount);
-            witnessCapsule.setIsJobs(false);
-            witnessCapsuleList.add(witnessCapsule);
-            witnessStore.put(witnessCapsule.createDbKey(), witnessCapsule);
-            logger.info("address is {}  ,countVote is {}", witnessCapsule.createReadableString(),
-                witnessCapsule.getVoteCount());
-          }
-        }
-      });
+            ByteString witnessAddress = witnessCapsule.getInstance().getAddress();
+            AccountCapsule witnessAccountCapsule = accountStore
+                .get(StringUtil.createDbKey(witnessAddress));
+            if (witnessAccountCapsule == null) {
+              logger.warn(
+                  "witnessAccount[" + StringUtil.createReadableString(witnessAddress)
+                      + "] not exists");
+            } else {
+              if (witnessAccountCapsule.getBalance() < WitnessCapsule.MIN_BALANCE) {
+                logger.warn(
+                    "witnessAccount[" + StringUtil.createReadableString(witnessAddress)
+                        + "] has balance["
+                        + witnessAccountCapsule
+                        .getBalance() + "] < MIN_BALANCE[" + WitnessCapsule.MIN_BALANCE + "]");
+              } else {
+                witnessCapsule.setVoteCount(witnessCapsule.getVoteCount() + voteCount);
+                witnessCapsuleList.add(witnessCapsule);
+                logger.info("address is {}  ,countVote is {}",
+                    witnessCapsule.createReadableString(), witnessCapsule.getVoteCount());
+              }
+            }
+          });
 
       sortWitness(witnessCapsuleList);
       if (witnessCapsuleList.size() > Manager.MAX_ACTIVE_WITNESS_NUM) {
@@ -348,11 +411,12 @@ public class WitnessController {
       } else {
         setWitnesses(witnessCapsuleList);
       }
+      getWitnesses().forEach(witnessCapsule -> witnessCapsule.setIsJobs(true));
 
-      getWitnesses().forEach(witnessCapsule -> {
-        witnessCapsule.setIsJobs(true);
-        witnessStore.put(witnessCapsule.createDbKey(), witnessCapsule);
-      });
+      Map<byte[], WitnessCapsule> writes = new LinkedHashMap<>();
+      allWitnesses.values().forEach(witnessCapsule ->
+          writes.put(witnessCapsule.createDbKey(), witnessCapsule));
+      witnessStore.putAll(writes);
 
       logger.info(
           "updateWitness,before:{} ",
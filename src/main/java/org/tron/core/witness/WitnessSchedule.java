@@ -0,0 +1,90 @@
+package org.tron.core.witness;
+
+import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+
+/**
+ * Slot timing and witness order for the blocks following one head. Immutable, so it is shared
+ * between threads without locking; {@link WitnessController} builds a new one whenever the head,
+ * the maintenance state or the shuffled witnesses change.
+ */
+public class WitnessSchedule {
+
+  private final long version;
+  private final BlockId headBlockId;
+  private final long headBlockNum;
+  private final long headSlot;
+  private final long interval;
+  // time of slot 0, slot n starts at slotBase + n * interval
+  private final long slotBase;
+  private final ByteString[] shuffledWitnesses;
+
+  WitnessSchedule(long version, BlockId headBlockId, long headBlockNum, long headSlot,
+      long interval, long slotBase, List<ByteString> shuffledWitnesses) {
+    this.version = version;
+    this.headBlockId = headBlockId;
+    this.headBlockNum = headBlockNum;
+    this.headSlot = headSlot;
+    this.interval = interval;
+    this.slotBase = slotBase;
+    this.shuffledWitnesses = shuffledWitnesses.toArray(new ByteString[0]);
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  public BlockId getHeadBlockId() {
+    return headBlockId;
+  }
+
+  public long getHeadBlockNum() {
+    return headBlockNum;
+  }
+
+  /**
+   * absolute slot of the head block.
+   */
+  public long getHeadSlot() {
+    return headSlot;
+  }
+
+  /**
+   * start of a slot after the head, slot 1 being the first one.
+   */
+  public long getSlotTime(long slot) {
+    return slotBase + slot * interval;
+  }
+
+  /**
+   * slot after the head that contains when, 0 if when is before the first slot.
+   */
+  public long getSlotAtTime(long when) {
+    long firstSlotTime = getSlotTime(1);
+    if (when < firstSlotTime) {
+      return 0;
+    }
+    return (when - firstSlotTime) / interval + 1;
+  }
+
+  /**
+   * witness expected to produce the block of a slot after the head.
+   */
+  public ByteString getScheduledWitness(long slot) {
+    final long currentSlot = headSlot + slot;
+    if (currentSlot < 0) {
+      throw new RuntimeException("currentSlot should be positive.");
+    }
+    if (shuffledWitnesses.length == 0) {
+      throw new RuntimeException("ShuffledWitnesses is null.");
+    }
+    return shuffledWitnesses[(int) currentSlot % shuffledWitnesses.length];
+  }
+
+  public List<ByteString> getShuffledWitnesses() {
+    return Collections.unmodifiableList(Arrays.asList(shuffledWitnesses));
+  }
+}
@@ -0,0 +1,136 @@
+package org.tron.common.overlay.message;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.overlay.server.WireTrafficStats.CompressionSavings;
+import org.tron.core.net.message.BlockMessage;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.BlockHeader;
+import org.tron.protos.Protocol.Compression;
+
+public class MessageFrameTest {
+
+  private static BlockMessage block(int size) {
+    return new BlockMessage(Block.newBuilder()
+        .setBlockHeader(BlockHeader.newBuilder()
+            .setWitnessSignature(ByteString.copyFrom(new byte[size])))
+        .build());
+  }
+
+  private static ByteBuf encode(Message msg) {
+    return encode(msg, null);
+  }
+
+  private static ByteBuf encode(Message msg, MessageCompression compression) {
+    MessageEncoder encoder = new MessageEncoder();
+    encoder.setCompression(compression);
+    EmbeddedChannel channel = new EmbeddedChannel(encoder);
+    Assert.assertTrue(channel.writeOutbound(msg));
+    ByteBuf frame = channel.readOutbound();
+    channel.finish();
+    return frame;
+  }
+
+  @Test
+  public void framesSurviveArbitrarySplits() {
+    BlockMessage sent = block(300_000);
+    ByteBuf encoded = encode(sent);
+    Assert.assertEquals(MessageEncoder.frameLength(sent.getData().length),
+        encoded.readableBytes());
+
+    EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(0));
+    // delivered a few bytes at a time, the length prefix itself split
+    channel.writeInbound(encoded.readRetainedSlice(2));
+    Assert.assertNull(channel.readInbound());
+    while (encoded.readableBytes() > 0) {
+      channel.writeInbound(encoded.readRetainedSlice(Math.min(65536, encoded.readableBytes())));
+    }
+    encoded.release();
+
+    ByteBuf frame = channel.readInbound();
+    try {
+      Message received = MessageCodec.createMessage(frame);
+      Assert.assertEquals(sent.getType(), received.getType());
+      Assert.assertArrayEquals(sent.getData(), received.getData());
+    } finally {
+      frame.release();
+    }
+    Assert.assertNull(channel.readInbound());
+    Assert.assertFalse(channel.finish());
+  }
+
+  @Test
+  public void oversizedFrameIsRejected() {
+    EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(1024));
+    ByteBuf encoded = encode(block(2048));
+    try {
+      channel.writeInbound(encoded);
+      Assert.fail("a frame above the limit was accepted");
+    } catch (TooLongFrameException e) {
+      // expected
+    }
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void lengthPrefix() {
+    ByteBuf buf = Unpooled.buffer();
+    buf.writeBytes(new byte[]{(byte) 0xAC, 0x02});
+    Assert.assertEquals(300, MessageFrameDecoder.readLength(buf));
+    buf.clear().writeByte(0x80);
+    Assert.assertEquals(-1, MessageFrameDecoder.readLength(buf));
+  }
+
+  @Test
+  public void compressionIsNegotiated() {
+    Assert.assertEquals(Compression.SNAPPY, MessageCompression.negotiate(
+        MessageCompression.supported(true), Arrays.asList(Compression.NONE, Compression.SNAPPY)));
+    Assert.assertEquals(Compression.NONE, MessageCompression.negotiate(
+        MessageCompression.supported(true), Collections.emptyList()));
+    Assert.assertEquals(Compression.NONE, MessageCompression.negotiate(
+        MessageCompression.supported(false), Collections.singletonList(Compression.SNAPPY)));
+  }
+
+  @Test
+  public void largeBlocksAreCompressed() {
+    CompressionSavings savings = new CompressionSavings();
+    MessageCompression compression = new MessageCompression(1024, 1 << 20, savings);
+    BlockMessage sent = block(100_000);
+
+    ByteBuf frame = encode(sent, compression);
+    Assert.assertTrue(frame.readableBytes() < 10_000);
+    Assert.assertEquals(MessageFrameDecoder.readLength(frame), frame.readableBytes());
+    try {
+      Message received = MessageCodec.createMessage(frame, compression);
+      Assert.assertArrayEquals(sent.getData(), received.getData());
+    } finally {
+      frame.release();
+    }
+    Assert.assertTrue(savings.getSavedBytes() > 2 * 90_000);
+
+    // below the threshold the frame is left alone
+    BlockMessage small = block(100);
+    frame = encode(small, compression);
+    Assert.assertEquals(MessageEncoder.frameLength(small.getData().length), frame.readableBytes());
+    frame.release();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compressedFrameNeedsNegotiation() {
+    ByteBuf frame = encode(block(100_000),
+        new MessageCompression(1024, 1 << 20, new CompressionSavings()));
+    try {
+      MessageFrameDecoder.readLength(frame);
+      MessageCodec.createMessage(frame);
+    } finally {
+      frame.release();
+    }
+  }
+}
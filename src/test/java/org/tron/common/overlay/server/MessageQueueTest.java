@@ -0,0 +1,111 @@
+package org.tron.common.overlay.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.overlay.message.Message;
+import org.tron.common.overlay.message.PingMessage;
+import org.tron.common.overlay.message.PongMessage;
+import org.tron.core.net.message.BlockMessage;
+import org.tron.core.net.message.MessageTypes;
+import org.tron.core.net.message.TransactionMessage;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.Transaction;
+
+public class MessageQueueTest {
+
+  private static EmbeddedChannel activate(MessageQueue queue) {
+    queue.setChannel(new Channel());
+    return new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+      @Override
+      public void handlerAdded(ChannelHandlerContext ctx) {
+        queue.activate(ctx);
+      }
+    });
+  }
+
+  private static byte typeOf(Object written) {
+    return ((Message) written).getType().asByte();
+  }
+
+  @Test
+  public void queuedMessagesAreWrittenOnActivation() {
+    MessageQueue queue = new MessageQueue();
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(queue.sendMessage(new PongMessage()));
+    }
+    Assert.assertEquals(100, queue.getQueued());
+
+    EmbeddedChannel channel = activate(queue);
+    channel.runPendingTasks();
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(MessageTypes.P2P_PONG.asByte(), typeOf(channel.readOutbound()));
+    }
+    Assert.assertNull(channel.readOutbound());
+    Assert.assertEquals(0, queue.getQueued());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void classesAreServedByWeight() {
+    MessageQueue queue = new MessageQueue();
+    for (int i = 0; i < 10; i++) {
+      queue.sendMessage(new TransactionMessage(Transaction.getDefaultInstance()));
+      queue.sendMessage(new PongMessage());
+    }
+    queue.sendMessage(new BlockMessage(Block.getDefaultInstance()));
+    Assert.assertEquals(10, queue.getQueued(MessagePriority.TRANSACTIONS));
+    Assert.assertEquals(1, queue.getQueued(MessagePriority.CONSENSUS));
+
+    EmbeddedChannel channel = activate(queue);
+    channel.runPendingTasks();
+    // the block jumps the queue, then two transactions for every pong
+    Assert.assertEquals(MessageTypes.BLOCK.asByte(), typeOf(channel.readOutbound()));
+    for (int round = 0; round < 5; round++) {
+      Assert.assertEquals(MessageTypes.TRX.asByte(), typeOf(channel.readOutbound()));
+      Assert.assertEquals(MessageTypes.TRX.asByte(), typeOf(channel.readOutbound()));
+      Assert.assertEquals(MessageTypes.P2P_PONG.asByte(), typeOf(channel.readOutbound()));
+    }
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(MessageTypes.P2P_PONG.asByte(), typeOf(channel.readOutbound()));
+    }
+    Assert.assertNull(channel.readOutbound());
+    Assert.assertEquals(10, queue.getSent(MessagePriority.KEEPALIVE));
+    Assert.assertTrue(queue.getMaxWaitMillis(MessagePriority.KEEPALIVE)
+        >= queue.getAverageWaitMillis(MessagePriority.KEEPALIVE));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void fullQueueDropsNewMessages() {
+    MessageQueue queue = new MessageQueue();
+    for (int i = 0; i < MessageQueue.MAX_QUEUED; i++) {
+      Assert.assertTrue(queue.sendMessage(new PongMessage()));
+    }
+    Assert.assertFalse(queue.sendMessage(new PongMessage()));
+    Assert.assertEquals(1, queue.getDropped());
+    Assert.assertEquals(MessageQueue.MAX_QUEUED, queue.getQueued());
+  }
+
+  @Test
+  public void nextRequestIsSentOnAnswer() throws InterruptedException {
+    MessageQueue queue = new MessageQueue();
+    EmbeddedChannel channel = activate(queue);
+    queue.sendMessage(new PingMessage());
+    channel.runPendingTasks();
+    Assert.assertEquals(MessageTypes.P2P_PING.asByte(), typeOf(channel.readOutbound()));
+
+    // a second ping waits while one is unanswered
+    queue.sendMessage(new PingMessage());
+    channel.runPendingTasks();
+    Assert.assertNull(channel.readOutbound());
+
+    queue.receivedMessage(new PongMessage());
+    queue.sendMessage(new PingMessage());
+    channel.runPendingTasks();
+    Assert.assertEquals(MessageTypes.P2P_PING.asByte(), typeOf(channel.readOutbound()));
+    channel.finishAndReleaseAll();
+  }
+}
@@ -0,0 +1,110 @@
+package org.tron.common.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.utils.ExecutorLoop.OverflowPolicy;
+
+public class ExecutorLoopTest {
+
+  private final CountDownLatch blocked = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+  private final List<Integer> dropped = Collections.synchronizedList(new ArrayList<>());
+
+  private ExecutorLoop<Integer> loop;
+
+  // the first input holds the only thread until released, the others queue up
+  private ExecutorLoop<Integer> loop(int queueSize) {
+    Consumer<Integer> consumer = i -> {
+      if (i == 0) {
+        blocked.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      handled.add(i);
+    };
+    loop = new ExecutorLoop<>(1, queueSize, consumer, Throwable::printStackTrace)
+        .setDropHandler(dropped::add);
+    return loop;
+  }
+
+  private void fill(int... inputs) throws InterruptedException {
+    Assert.assertTrue(loop.push(0));
+    Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+    for (int i : inputs) {
+      loop.push(i);
+    }
+  }
+
+  private void finish() throws InterruptedException {
+    release.countDown();
+    loop.join();
+  }
+
+  @After
+  public void destroy() {
+    release.countDown();
+    loop.shutdown();
+  }
+
+  @Test
+  public void oldestGiveWay() throws InterruptedException {
+    loop(3);
+    fill(1, 2, 3, 4, 5);
+    Assert.assertEquals(3, loop.getQueueSize());
+    finish();
+    Assert.assertEquals(Arrays.asList(0, 3, 4, 5), handled);
+    Assert.assertEquals(Arrays.asList(1, 2), dropped);
+    Assert.assertEquals(2, loop.getDropped());
+    Assert.assertEquals(4, loop.getProcessed());
+    Assert.assertEquals(3, loop.getMaxQueueSize());
+  }
+
+  @Test
+  public void newAreRejected() throws InterruptedException {
+    loop(3).setOverflowPolicy(OverflowPolicy.DROP_NEW);
+    fill(1, 2, 3);
+    Assert.assertFalse(loop.push(4));
+    finish();
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3), handled);
+    Assert.assertEquals(Collections.singletonList(4), dropped);
+    Assert.assertEquals(1, loop.getRejected());
+    Assert.assertFalse(loop.push(5));
+  }
+
+  @Test
+  public void sameKeysAreCoalesced() throws InterruptedException {
+    // 11 replaces 1, 12 replaces 2, 3 stays
+    loop(3).setCoalesceKey(i -> i % 10);
+    fill(1, 2, 11, 3, 12);
+    Assert.assertEquals(3, loop.getQueueSize());
+    finish();
+    Assert.assertEquals(Arrays.asList(0, 11, 12, 3), handled);
+    Assert.assertEquals(Arrays.asList(1, 2), dropped);
+    Assert.assertEquals(2, loop.getCoalesced());
+    Assert.assertTrue(loop.getMaxLatency() > 0);
+  }
+
+  @Test(timeout = 10_000)
+  public void pushNeverWaits() throws InterruptedException {
+    loop(10).setSharedPool(true);
+    fill();
+    for (int i = 1; i <= 10_000; i++) {
+      loop.push(i);
+    }
+    finish();
+    Assert.assertEquals(11, handled.size());
+    Assert.assertEquals(9990, loop.getDropped());
+  }
+}
@@ -0,0 +1,91 @@
+package org.tron.common.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+
+public class ExpiringHashMapTest {
+
+  private long now = 1_000_000;
+
+  private static Sha256Hash hash(long i) {
+    return Sha256Hash.of(ByteArray.fromLong(i));
+  }
+
+  @Test
+  public void entriesExpireAfterTheirTime() {
+    ExpiringHashMap map = new ExpiringHashMap(1000, 100, () -> now);
+    map.put(hash(1), 7);
+    Assert.assertEquals(7, map.get(hash(1)));
+    Assert.assertEquals(ExpiringHashMap.ABSENT, map.get(hash(2)));
+
+    now += 500;
+    map.put(hash(2), 8);
+    now += 600;
+    Assert.assertFalse(map.containsKey(hash(1)));
+    Assert.assertTrue(map.containsKey(hash(2)));
+    Assert.assertEquals(1, map.size());
+    Assert.assertEquals(1, map.getExpired());
+
+    // putting again keeps it longer
+    Assert.assertEquals(8, map.put(hash(2), 9));
+    now += 800;
+    Assert.assertEquals(9, map.get(hash(2)));
+    now += 10_000;
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void soonestToExpireGiveWayWhenFull() {
+    ExpiringHashMap map = new ExpiringHashMap(60_000, 50, () -> now);
+    for (int i = 0; i < 50; i++) {
+      map.put(hash(i), i);
+      now += 1000;
+    }
+    map.put(hash(50), 50);
+    Assert.assertEquals(50, map.size());
+    Assert.assertEquals(1, map.getEvicted());
+    Assert.assertFalse(map.containsKey(hash(0)));
+    Assert.assertTrue(map.containsKey(hash(1)));
+    Assert.assertTrue(map.containsKey(hash(50)));
+  }
+
+  @Test
+  public void behavesLikeAMap() {
+    ExpiringHashMap map = new ExpiringHashMap(60_000, 5000, () -> now);
+    Map<Sha256Hash, Long> expected = new HashMap<>();
+    Random random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      // block ids and plain hashes alike
+      int n = random.nextInt(3000);
+      Sha256Hash key = random.nextBoolean() ? new BlockId(hash(n), n) : hash(n);
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key) != null, map.remove(key));
+      } else {
+        long value = random.nextLong();
+        Long previous = expected.put(key, value);
+        Assert.assertEquals(previous == null ? ExpiringHashMap.ABSENT : previous,
+            map.put(key, value));
+      }
+    }
+    Assert.assertEquals(expected.size(), map.size());
+    expected.forEach((key, value) -> Assert.assertEquals((long) value, map.get(key)));
+    Assert.assertEquals(0, map.getEvicted());
+  }
+
+  @Test
+  public void longPauseExpiresEverything() {
+    ExpiringHashMap map = new ExpiringHashMap(100, 1000, () -> now);
+    for (int i = 0; i < 1000; i++) {
+      map.put(hash(i), i);
+    }
+    now += 1_000_000;
+    Assert.assertEquals(0, map.size());
+    Assert.assertEquals(1000, map.getExpired());
+    map.put(hash(1), 1);
+    Assert.assertEquals(1, map.get(hash(1)));
+  }
+}
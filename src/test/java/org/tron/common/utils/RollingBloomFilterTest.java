@@ -0,0 +1,57 @@
+package org.tron.common.utils;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RollingBloomFilterTest {
+
+  private static Sha256Hash hash(long i) {
+    return Sha256Hash.of(ByteArray.fromLong(i));
+  }
+
+  @Test
+  public void lastEntriesAreAlwaysFound() {
+    RollingBloomFilter filter = new RollingBloomFilter(1000, 0.001, new Random(1));
+    for (int i = 0; i < 10_000; i++) {
+      filter.add(hash(i));
+      if (i % 1000 == 999) {
+        for (int j = Math.max(0, i - 999); j <= i; j++) {
+          Assert.assertTrue(filter.contains(hash(j)));
+        }
+      }
+    }
+    Assert.assertEquals(10_000, filter.getAdded());
+  }
+
+  @Test
+  public void oldEntriesAreForgotten() {
+    RollingBloomFilter filter = new RollingBloomFilter(1000, 0.001, new Random(2));
+    for (int i = 0; i < 3000; i++) {
+      filter.add(hash(i));
+    }
+    int found = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (filter.contains(hash(i))) {
+        found++;
+      }
+    }
+    Assert.assertTrue(found < 10);
+  }
+
+  @Test
+  public void falsePositivesStayNearTheRate() {
+    RollingBloomFilter filter = new RollingBloomFilter(5000, 0.01, new Random(3));
+    // a full generation and a half, the most bits set
+    for (int i = 0; i < 7500; i++) {
+      filter.add(hash(i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (filter.contains(hash(1_000_000 + i))) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue(falsePositives < 1500);
+  }
+}
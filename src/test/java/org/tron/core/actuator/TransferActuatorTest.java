@@ -13,7 +13,9 @@ import org.junit.Test;
 import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.FileUtil;
 import org.tron.core.Wallet;
+import org.tron.core.actuator.AccessSet.Space;
 import org.tron.core.capsule.AccountCapsule;
+import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.capsule.TransactionResultCapsule;
 import org.tron.core.config.Parameter.ChainConstant;
 import org.tron.core.config.args.Args;
@@ -22,6 +24,7 @@ import org.tron.core.exception.ContractExeException;
 import org.tron.core.exception.ContractValidateException;
 import org.tron.protos.Contract;
 import org.tron.protos.Protocol.AccountType;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
 import org.tron.protos.Protocol.Transaction.Result.code;
 
 @Slf4j
@@ -157,4 +160,30 @@ public class TransferActuatorTest {
     Assert.assertEquals(owner.getBalance(), 0 - ChainConstant.TRANSFER_FEE);
     Assert.assertEquals(toAccount.getBalance(), 10000 + 100L);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void sharedContractAndAccessSet() throws Exception {
+    Contract.TransferContract transferContract = getContract(AMOUNT)
+        .unpack(Contract.TransferContract.class);
+    TransactionCapsule trx =
+        new TransactionCapsule(transferContract, ContractType.TransferContract);
+    Assert.assertSame(trx.getContract(0), trx.getContract(0));
+    Assert.assertArrayEquals(ByteArray.fromHexString(OWNER_ADDRESS), trx.getOwner(0));
+
+    Actuator actuator = ActuatorFactory.createActuator(trx, dbManager).get(0);
+    Assert.assertEquals(ByteString.copyFrom(ByteArray.fromHexString(OWNER_ADDRESS)),
+        actuator.getOwnerAddress());
+
+    AccessSet accessSet = actuator.getAccessSet();
+    Assert.assertTrue(accessSet.getReads().isEmpty());
+    Assert.assertEquals(2, accessSet.getWrites().size());
+    Assert.assertTrue(accessSet.getWrites().contains(new AccessSet.Key(Space.ACCOUNT,
+        ByteString.copyFrom(ByteArray.fromHexString(TO_ADDRESS)))));
+
+    AccessSet reader = new AccessSet()
+        .read(Space.ACCOUNT, ByteString.copyFrom(ByteArray.fromHexString(TO_ADDRESS)));
+    Assert.assertTrue(accessSet.conflictsWith(reader));
+    Assert.assertFalse(reader.conflictsWith(new AccessSet()
+        .read(Space.ACCOUNT, ByteString.copyFrom(ByteArray.fromHexString(TO_ADDRESS)))));
+  }
+}
@@ -1,7 +1,14 @@
 package org.tron.core.capsule;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import com.google.protobuf.ByteString;
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -12,6 +19,7 @@ import org.junit.Test;
 import org.tron.common.utils.FileUtil;
 import org.tron.core.Constant;
 import org.tron.core.config.args.Args;
+import org.tron.core.db.AssetBalanceStore;
 import org.tron.protos.Protocol.Account.Vote;
 import org.tron.protos.Protocol.AccountType;
 
@@ -50,6 +58,25 @@ public class AccountCapsuleTest {
     Assert.assertEquals(1111, accountCapsuleTest.getBalance());
   }
 
+  @Test
+  public void deferredFieldsTest() throws Exception {
+    AccountCapsule account = new AccountCapsule(ByteString.copyFrom(randomBytes(32)),
+        AccountType.Normal);
+    account.addAsset("a", 100L);
+    account.setBalance(50);
+    Assert.assertTrue(account.reduceAssetAmount(ByteString.copyFromUtf8("a"), 40));
+    Assert.assertTrue(account.addAssetAmount(ByteString.copyFromUtf8("b"), 5));
+    account.setLatestOperationTime(7);
+    Assert.assertTrue(account.isDirty());
+
+    AccountCapsule decoded = new AccountCapsule(account.getData());
+    Assert.assertEquals(50, decoded.getBalance());
+    Assert.assertEquals(7, decoded.getLatestOperationTime());
+    Assert.assertEquals(60L, (long) decoded.getAssetMap().get("a"));
+    Assert.assertEquals(5L, (long) decoded.getAssetMap().get("b"));
+    Assert.assertEquals(account.getInstance(), decoded.getInstance());
+  }
+
   @Test
   public void addVotesTest() {
     //test addVote and getVotesList function
@@ -102,6 +129,28 @@ public class AccountCapsuleTest {
     Assert.assertTrue(addAsssetTrue);
   }
 
+  @Test
+  public void storedAssetsAreReadOnce() {
+    AssetBalanceStore store = mock(AssetBalanceStore.class);
+    Map<String, Long> stored = new LinkedHashMap<>();
+    stored.put("a", 7L);
+    when(store.getAllBalances(any())).thenReturn(stored);
+
+    AccountCapsule account = new AccountCapsule(ByteString.copyFrom(randomBytes(32)),
+        AccountType.Normal);
+    account.setAssetBalanceStore(store);
+    Assert.assertEquals(7L, (long) account.getAssetMap().get("a"));
+    Assert.assertEquals(7L, (long) account.getInstance().getAssetMap().get("a"));
+    Assert.assertTrue(account.reduceAssetAmount(ByteString.copyFromUtf8("a"), 2));
+    Assert.assertEquals(5L, (long) account.getAssetMap().get("a"));
+    verify(store, times(1)).getAllBalances(any());
+
+    // written again, the store is read anew
+    account.setAssetBalanceStore(store);
+    account.getAssetMap();
+    verify(store, times(2)).getAllBalances(any());
+  }
+
 
   public static byte[] randomBytes(int length) {
     //generate the random number
@@ -2,6 +2,7 @@ package org.tron.core.capsule;
 
 import com.google.protobuf.ByteString;
 import java.io.File;
+import java.util.Arrays;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -11,8 +12,10 @@ import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.FileUtil;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.core.Constant;
+import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.config.args.Args;
 import org.tron.core.exception.BadItemException;
+import org.tron.protos.Protocol.Block;
 
 @Slf4j
 public class BlockCapsuleTest {
@@ -81,6 +84,59 @@ public class BlockCapsuleTest {
 
   }
 
+  @Test
+  public void testCachedIdFollowsChanges() {
+    BlockCapsule blockCapsule = new BlockCapsule(2, blockCapsule0.getBlockId().getByteString(),
+        1234, ByteString.copyFrom("1234567".getBytes()));
+    BlockId emptyId = blockCapsule.getBlockId();
+    Assert.assertSame(emptyId, blockCapsule.getBlockId());
+
+    blockCapsule.addTransaction(new TransactionCapsule("123", 1L));
+    blockCapsule.setMerkleRoot();
+    BlockId filledId = blockCapsule.getBlockId();
+    Assert.assertNotEquals(emptyId, filledId);
+    Assert.assertEquals(new BlockCapsule(blockCapsule.getInstance()).getBlockId(), filledId);
+    Assert.assertArrayEquals(blockCapsule.getInstance().toByteArray(), blockCapsule.getData());
+
+    blockCapsule.sign(ByteArray
+        .fromHexString("cba92a516ea09f620a16ff7ee95ce0df1d56550a8babe9964981a7144c8a784a"));
+    Assert.assertNotEquals(filledId, blockCapsule.getBlockId());
+    Assert.assertArrayEquals(blockCapsule.getInstance().toByteArray(), blockCapsule.getData());
+  }
+
+  @Test
+  public void testLazyDecode() throws BadItemException {
+    BlockCapsule blockCapsule = new BlockCapsule(3, blockCapsule0.getBlockId().getByteString(),
+        1234, ByteString.copyFrom("1234567".getBytes()));
+    blockCapsule.addTransaction(new TransactionCapsule("123", 1L));
+    blockCapsule.addTransaction(new TransactionCapsule("124", 2L));
+    blockCapsule.setMerkleRoot();
+
+    BlockCapsule decoded = new BlockCapsule(blockCapsule.getData());
+    Assert.assertEquals(blockCapsule.getBlockId(), decoded.getBlockId());
+    Assert.assertEquals(blockCapsule.getParentHash(), decoded.getParentHash());
+    Assert.assertEquals(2, decoded.getTransactionCount());
+    Assert.assertEquals(blockCapsule.getTransactions().get(1).getTransactionId(),
+        decoded.getTransactions().get(1).getTransactionId());
+    Assert.assertEquals(blockCapsule.getMerkleRoot(), decoded.calcMerkleRoot());
+    Assert.assertEquals(blockCapsule.getInstance(), decoded.getInstance());
+
+    // a broken transaction only shows up once the body is used
+    byte[] broken = Arrays.copyOf(blockCapsule.getData(), blockCapsule.getData().length + 3);
+    broken[broken.length - 3] = (Block.TRANSACTIONS_FIELD_NUMBER << 3) | 2;
+    broken[broken.length - 2] = 1;
+    broken[broken.length - 1] = (byte) 0xff;
+    BlockCapsule partial = new BlockCapsule(broken);
+    Assert.assertEquals(blockCapsule.getBlockId(), partial.getBlockId());
+    Assert.assertEquals(3, partial.getTransactionCount());
+    try {
+      partial.getTransactions();
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      logger.info(e.getMessage());
+    }
+  }
+
   @Test
   public void testValidate() {
 
@@ -0,0 +1,29 @@
+package org.tron.core.capsule;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.crypto.ECKey;
+import org.tron.protos.Contract.WitnessUpdateContract;
+import org.tron.protos.Protocol.Transaction;
+
+public class TransactionCapsuleTest {
+
+  @Test
+  public void witnessUpdateOwner() throws Exception {
+    ECKey key = new ECKey();
+    Transaction unsigned = new TransactionCapsule(WitnessUpdateContract.newBuilder()
+        .setOwnerAddress(ByteString.copyFrom(key.getAddress()))
+        .setUpdateUrl(ByteString.copyFromUtf8("https://witness.example"))
+        .build()).getInstance();
+    // r, s and v as wallets send them
+    byte[] signature = key.sign(new TransactionCapsule(unsigned).getRawHash().getBytes())
+        .toByteArray();
+    TransactionCapsule trx = new TransactionCapsule(
+        unsigned.toBuilder().addSignature(ByteString.copyFrom(signature)).build());
+    Assert.assertArrayEquals(key.getAddress(), trx.getOwner(0));
+    Assert.assertArrayEquals(key.getAddress(),
+        TransactionCapsule.getOwner(trx.getInstance().getRawData().getContract(0)));
+    Assert.assertTrue(trx.validateSignature());
+  }
+}
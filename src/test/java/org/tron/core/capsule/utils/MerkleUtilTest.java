@@ -0,0 +1,72 @@
+package org.tron.core.capsule.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.Sha256Hash;
+
+public class MerkleUtilTest {
+
+  private static List<Sha256Hash> leaves(int count) {
+    List<Sha256Hash> leaves = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      leaves.add(Sha256Hash.of(ByteArray.fromInt(i)));
+    }
+    return leaves;
+  }
+
+  private static Sha256Hash treeRoot(List<Sha256Hash> leaves) {
+    return new MerkleTree().createTree(leaves).getRoot().getHash();
+  }
+
+  @Test
+  public void sameRootAsMerkleTree() {
+    Assert.assertEquals(Sha256Hash.ZERO_HASH, MerkleUtil.computeRoot(new ArrayList<>()));
+    for (int count = 1; count <= 33; count++) {
+      List<Sha256Hash> leaves = leaves(count);
+      Assert.assertEquals("leaf count " + count, treeRoot(leaves), MerkleUtil.computeRoot(leaves));
+    }
+    // large enough for the levels to be hashed in parallel
+    List<Sha256Hash> leaves = leaves(4097);
+    Assert.assertEquals(treeRoot(leaves), MerkleUtil.computeRoot(leaves));
+  }
+
+  @Test
+  public void accumulator() {
+    MerkleUtil.Accumulator accumulator = new MerkleUtil.Accumulator();
+    Assert.assertEquals(Sha256Hash.ZERO_HASH, accumulator.getRoot());
+
+    List<Sha256Hash> leaves = leaves(70);
+    for (int i = 0; i < leaves.size(); i++) {
+      accumulator.append(leaves.get(i));
+      Assert.assertEquals(MerkleUtil.computeRoot(leaves.subList(0, i + 1)), accumulator.getRoot());
+    }
+
+    accumulator.clear();
+    Assert.assertEquals(0, accumulator.size());
+    Assert.assertEquals(Sha256Hash.ZERO_HASH, accumulator.getRoot());
+  }
+
+  @Test
+  public void proof() {
+    for (int count = 1; count <= 13; count++) {
+      List<Sha256Hash> leaves = leaves(count);
+      Sha256Hash root = MerkleUtil.computeRoot(leaves);
+      for (int i = 0; i < count; i++) {
+        MerkleUtil.Proof proof = MerkleUtil.getProof(leaves, i);
+        Assert.assertTrue(proof.verify(leaves.get(i), root));
+        if (count > 1) {
+          Assert.assertFalse(proof.verify(leaves.get((i + 1) % count), root));
+        }
+      }
+    }
+
+    List<Sha256Hash> leaves = leaves(5);
+    MerkleUtil.Proof proof = MerkleUtil.getProof(leaves, 4);
+    Assert.assertFalse(
+        new MerkleUtil.Proof(3, 5, proof.getSiblings()).verify(leaves.get(4),
+            MerkleUtil.computeRoot(leaves)));
+  }
+}
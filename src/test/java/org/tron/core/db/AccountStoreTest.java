@@ -2,6 +2,8 @@ package org.tron.core.db;
 
 import com.google.protobuf.ByteString;
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -52,4 +54,57 @@ public class AccountStoreTest {
     ;
     Assert.assertTrue(AccountStoreTest.has(data));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void workingSet() {
+    byte[] key = TransactionStoreTest.randomBytes(32);
+    AccountStoreTest.put(key, new AccountCapsule(ByteString.copyFrom(key), AccountType.Normal));
+
+    Assert.assertTrue(AccountStoreTest.openWorkingSet());
+    Assert.assertFalse(AccountStoreTest.openWorkingSet());
+    try {
+      AccountCapsule account = AccountStoreTest.get(key);
+      Assert.assertSame(account, AccountStoreTest.get(key));
+      account.setBalance(10);
+      AccountStoreTest.put(key, account);
+      account.setBalance(20);
+      AccountStoreTest.put(key, account);
+      Assert.assertEquals(0, AccountStoreTest.load(key).getBalance());
+
+      AccountStoreTest.flushWorkingSet();
+      Assert.assertEquals(20, AccountStoreTest.load(key).getBalance());
+      Assert.assertFalse(account.isDirty());
+
+      account.setBalance(30);
+      AccountStoreTest.put(key, account);
+    } finally {
+      AccountStoreTest.closeWorkingSet();
+    }
+    // not flushed, so discarded
+    Assert.assertEquals(20, AccountStoreTest.get(key).getBalance());
+  }
+
+  @Test
+  public void workingSetPerThread() throws InterruptedException {
+    byte[] key = TransactionStoreTest.randomBytes(32);
+    AccountStoreTest.put(key, new AccountCapsule(ByteString.copyFrom(key), AccountType.Normal));
+
+    Assert.assertTrue(AccountStoreTest.openWorkingSet());
+    try {
+      AccountCapsule account = AccountStoreTest.get(key);
+      AtomicBoolean opened = new AtomicBoolean();
+      AtomicReference<AccountCapsule> other = new AtomicReference<>();
+      Thread thread = new Thread(() -> {
+        opened.set(AccountStoreTest.openWorkingSet());
+        other.set(AccountStoreTest.get(key));
+        AccountStoreTest.closeWorkingSet();
+      });
+      thread.start();
+      thread.join();
+      Assert.assertTrue(opened.get());
+      Assert.assertNotSame(account, other.get());
+    } finally {
+      AccountStoreTest.closeWorkingSet();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.tron.core.db;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.capsule.AccountCapsule;
+import org.tron.core.config.args.Args;
+import org.tron.protos.Protocol.AccountType;
+
+public class AssetBalanceStoreTest {
+
+  private static String dbPath = "output_AssetBalanceStore_test";
+  private static AssetBalanceStore assetBalanceStore;
+  private static AccountStore accountStore;
+
+  @AfterClass
+  public static void destroy() {
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+    assetBalanceStore.destroy();
+    accountStore.destroy();
+  }
+
+  @BeforeClass
+  public static void init() {
+    Args.setParam(new String[]{"-d", dbPath, "-w"},
+        Constant.TEST_CONF);
+    assetBalanceStore = AssetBalanceStore.create("asset-balance-test");
+    accountStore = AccountStore.create("account-test");
+    accountStore.setAssetBalanceStore(assetBalanceStore);
+  }
+
+  @Test
+  public void prefixScan() {
+    byte[] address = TransactionStoreTest.randomBytes(21);
+    byte[] longer = ByteArray.fromHexString(ByteArray.toHexString(address) + "00");
+    assetBalanceStore.putBalance(address, "a", 1);
+    assetBalanceStore.putBalance(address, "b", 2);
+    assetBalanceStore.putBalance(longer, "a", 3);
+
+    Map<String, Long> balances = assetBalanceStore.getAllBalances(address);
+    Assert.assertEquals(2, balances.size());
+    Assert.assertEquals(1L, (long) balances.get("a"));
+    Assert.assertEquals(2L, (long) balances.get("b"));
+    Assert.assertEquals(3L, (long) assetBalanceStore.getBalance(longer, "a"));
+    Assert.assertNull(assetBalanceStore.getBalance(address, "c"));
+
+    assetBalanceStore.deleteBalance(address, "b");
+    Assert.assertEquals(1, assetBalanceStore.getAllBalances(address).size());
+  }
+
+  @Test
+  public void accountAssetsLiveInStore() {
+    byte[] address = TransactionStoreTest.randomBytes(21);
+    AccountCapsule account = new AccountCapsule(ByteString.copyFrom(address), AccountType.Normal);
+    account.addAsset("token", 100L);
+    accountStore.put(address, account);
+
+    Assert.assertEquals(100L, (long) assetBalanceStore.getBalance(address, "token"));
+    AccountCapsule loaded = accountStore.get(address);
+    Assert.assertEquals(0, new AccountCapsule(loaded.getData()).getInstance().getAssetCount());
+    Assert.assertEquals(100L, (long) loaded.getInstance().getAssetMap().get("token"));
+
+    Assert.assertTrue(loaded.reduceAssetAmount(ByteString.copyFromUtf8("token"), 40));
+    accountStore.put(address, loaded);
+    Assert.assertEquals(60L, (long) assetBalanceStore.getBalance(address, "token"));
+
+    // a freshly built capsule replaces the whole account, its assets included
+    accountStore.put(address, new AccountCapsule(ByteString.copyFrom(address), AccountType.Normal));
+    Assert.assertTrue(assetBalanceStore.getAllBalances(address).isEmpty());
+  }
+}
@@ -0,0 +1,54 @@
+package org.tron.core.db;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+public class BlockBuilderTest {
+
+  private static TransactionCapsule createTransaction(long amount) {
+    TransferContract contract = TransferContract.newBuilder()
+        .setOwnerAddress(ByteString.copyFromUtf8("owner"))
+        .setToAddress(ByteString.copyFromUtf8("to"))
+        .setAmount(amount)
+        .build();
+    return new TransactionCapsule(contract, ContractType.TransferContract);
+  }
+
+  @Test
+  public void appendUntilFull() {
+    TransactionCapsule trx = createTransaction(1);
+    long size = BlockBuilder.sizeInBlock(trx);
+    BlockBuilder builder = new BlockBuilder(size * 2);
+    Sha256Hash head = Sha256Hash.of("head".getBytes());
+
+    Assert.assertTrue(builder.append(trx, head));
+    Assert.assertTrue(builder.append(createTransaction(2), head));
+    Assert.assertFalse(builder.append(createTransaction(3), head));
+    Assert.assertEquals(2, builder.getTransactions().size());
+    Assert.assertEquals(size * 2, builder.getTrxsSize());
+    Assert.assertEquals(1, builder.getPostponedTrxCount());
+    Assert.assertTrue(builder.isBuiltOn(head));
+  }
+
+  @Test
+  public void headChangeResets() {
+    BlockBuilder builder = new BlockBuilder(1024);
+    Sha256Hash head = Sha256Hash.of("head".getBytes());
+    Sha256Hash newHead = Sha256Hash.of("newHead".getBytes());
+
+    builder.append(createTransaction(1), head);
+    builder.append(createTransaction(2), newHead);
+    Assert.assertFalse(builder.isBuiltOn(head));
+    Assert.assertTrue(builder.isBuiltOn(newHead));
+    Assert.assertEquals(1, builder.getTransactions().size());
+
+    builder.reset();
+    Assert.assertFalse(builder.isBuiltOn(newHead));
+    Assert.assertTrue(builder.getTransactions().isEmpty());
+  }
+}
@@ -0,0 +1,47 @@
+package org.tron.core.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.core.config.args.AdmissionTier;
+
+public class TransactionAdmissionTest {
+
+  private static final byte[] POOR = {1};
+  private static final byte[] RICH = {2};
+
+  private static TransactionAdmission create() {
+    List<AdmissionTier> tiers = new ArrayList<>();
+    tiers.add(new AdmissionTier(1000, 10, 20));
+    tiers.add(new AdmissionTier(0, 1, 2));
+    return new TransactionAdmission(tiers, address -> address == RICH ? 5000 : 10);
+  }
+
+  @Test
+  public void bucketsRefillByTier() {
+    TransactionAdmission admission = create();
+    long now = 0;
+
+    Assert.assertEquals(-1, admission.tryAcquire(POOR, now));
+    Assert.assertEquals(-1, admission.tryAcquire(POOR, now));
+    // the poor tier is sorted first whatever the configured order
+    Assert.assertEquals(0, admission.tryAcquire(POOR, now));
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals(-1, admission.tryAcquire(RICH, now));
+    }
+    Assert.assertEquals(1, admission.tryAcquire(RICH, now));
+
+    now += TimeUnit.MILLISECONDS.toNanos(1000);
+    Assert.assertEquals(-1, admission.tryAcquire(POOR, now));
+    Assert.assertEquals(0, admission.tryAcquire(POOR, now));
+
+    // 1.5s since the rich bucket was emptied
+    now += TimeUnit.MILLISECONDS.toNanos(500);
+    for (int i = 0; i < 15; i++) {
+      Assert.assertEquals(-1, admission.tryAcquire(RICH, now));
+    }
+    Assert.assertEquals(1, admission.tryAcquire(RICH, now));
+  }
+}
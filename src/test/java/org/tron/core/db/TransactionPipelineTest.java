@@ -0,0 +1,148 @@
+package org.tron.core.db;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.crypto.ECKey;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.config.args.AdmissionTier;
+import org.tron.core.exception.ValidateSignatureException;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+public class TransactionPipelineTest {
+
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+  private TransactionPipeline pipeline;
+
+  @Before
+  public void init() {
+    TransactionAdmission admission = new TransactionAdmission(
+        Collections.singletonList(new AdmissionTier(0, 1000, 1000)), address -> 0);
+    pipeline = new TransactionPipeline(batch -> {
+      batchSizes.add(batch.size());
+      for (TransactionPipeline.Pending pending : batch) {
+        pending.complete(true);
+      }
+    }, admission, 1024, 4);
+  }
+
+  @After
+  public void destroy() {
+    pipeline.shutdown();
+  }
+
+  private static TransactionCapsule transfer(ECKey signer, ECKey owner) {
+    TransferContract contract = TransferContract.newBuilder()
+        .setOwnerAddress(ByteString.copyFrom(owner.getAddress()))
+        .setToAddress(ByteString.copyFrom(new ECKey().getAddress()))
+        .setAmount(1)
+        .build();
+    Transaction unsigned = new TransactionCapsule(contract, ContractType.TransferContract)
+        .getInstance();
+    // r, s and v as wallets send them
+    byte[] signature = signer.sign(new TransactionCapsule(unsigned).getRawHash().getBytes())
+        .toByteArray();
+    return new TransactionCapsule(
+        unsigned.toBuilder().addSignature(ByteString.copyFrom(signature)).build());
+  }
+
+  @Test
+  public void verifiedTransactionsAreApplied() {
+    List<CompletableFuture<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      ECKey key = new ECKey();
+      results.add(pipeline.submit(transfer(key, key)));
+    }
+    for (CompletableFuture<Boolean> result : results) {
+      Assert.assertTrue(result.join());
+    }
+    int applied = 0;
+    for (int size : batchSizes) {
+      Assert.assertTrue(size <= TransactionPipeline.BATCH_SIZE);
+      applied += size;
+    }
+    Assert.assertEquals(100, applied);
+  }
+
+  @Test
+  public void badSignatureIsNeverApplied() throws InterruptedException {
+    try {
+      pipeline.submit(transfer(new ECKey(), new ECKey())).get();
+      Assert.fail("a transaction signed by another key was applied");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ValidateSignatureException);
+    }
+    Assert.assertTrue(batchSizes.isEmpty());
+  }
+
+  @Test
+  public void forgedTransactionsDoNotSpendTheOwnerRate() throws Exception {
+    TransactionAdmission admission = new TransactionAdmission(
+        Collections.singletonList(new AdmissionTier(0, 0.001, 1)), address -> 0);
+    TransactionPipeline strict = new TransactionPipeline(batch -> {
+      for (TransactionPipeline.Pending pending : batch) {
+        pending.complete(true);
+      }
+    }, admission, 1024, 1);
+    try {
+      ECKey victim = new ECKey();
+      for (int i = 0; i < 10; i++) {
+        try {
+          strict.submit(transfer(new ECKey(), victim)).get();
+          Assert.fail("a forged transaction was applied");
+        } catch (ExecutionException e) {
+          Assert.assertTrue(e.getCause() instanceof ValidateSignatureException);
+        }
+      }
+      Assert.assertTrue(strict.submit(transfer(victim, victim)).get());
+      Assert.assertEquals(1, admission.getAdmitted());
+    } finally {
+      strict.shutdown();
+    }
+  }
+
+  @Test
+  public void cancelledTransactionIsNeverApplied() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<TransactionCapsule> applied = Collections.synchronizedList(new ArrayList<>());
+    TransactionPipeline held = new TransactionPipeline(batch -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (TransactionPipeline.Pending pending : batch) {
+        if (pending.claim()) {
+          applied.add(pending.getTransaction());
+          pending.complete(true);
+        }
+      }
+    }, new TransactionAdmission(Collections.emptyList(), address -> 0), 1024, 2);
+    try {
+      ECKey first = new ECKey();
+      ECKey second = new ECKey();
+      TransactionPipeline.Pending cancelled = held.enqueue(transfer(first, first));
+      TransactionPipeline.Pending kept = held.enqueue(transfer(second, second));
+      Assert.assertTrue(cancelled.cancel());
+      release.countDown();
+
+      Assert.assertFalse(cancelled.getResult().get());
+      Assert.assertTrue(kept.getResult().get());
+      Assert.assertFalse(kept.cancel());
+      Assert.assertEquals(1, applied.size());
+      Assert.assertEquals(0, held.getQueuedForApply());
+    } finally {
+      held.shutdown();
+    }
+  }
+}
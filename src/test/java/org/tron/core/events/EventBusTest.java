@@ -0,0 +1,143 @@
+package org.tron.core.events;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.api.GrpcAPI.ChainEvent;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+public class EventBusTest {
+
+  private static ChainEvent.Builder solidified(long num) {
+    return ChainEvent.newBuilder().setType(ChainEvent.Type.BLOCK_SOLIDIFIED).setBlockNum(num);
+  }
+
+  @Test
+  public void ringBufferOverwrites() {
+    EventRingBuffer buffer = new EventRingBuffer(4);
+    for (int i = 1; i <= 6; i++) {
+      Assert.assertEquals(i, buffer.publish(solidified(i)).getCursor());
+    }
+    Assert.assertEquals(6, buffer.getPublished());
+    Assert.assertEquals(3, buffer.getOldest());
+    Assert.assertNull(buffer.get(2));
+    Assert.assertEquals(3, buffer.get(3).getBlockNum());
+    Assert.assertNull(buffer.get(7));
+  }
+
+  @Test
+  public void listenersAndCursors() throws InterruptedException {
+    EventBus bus = new EventBus(8, blockId -> null);
+    try {
+      bus.publish(solidified(1));
+
+      CountDownLatch latch = new CountDownLatch(2);
+      List<Long> solidified = Collections.synchronizedList(new ArrayList<>());
+      bus.addListener(new BlockchainListener() {
+        @Override
+        public void addBlock(Block block) {
+        }
+
+        @Override
+        public void addGenesisBlock(Block block) {
+        }
+
+        @Override
+        public void solidifyBlock(long blockNum) {
+          solidified.add(blockNum);
+          latch.countDown();
+        }
+      });
+      // the listener only sees what is published after it registered
+      bus.publish(solidified(2));
+      bus.publish(solidified(3));
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(2L, (long) solidified.get(0));
+      Assert.assertEquals(3L, (long) solidified.get(1));
+
+      List<Long> cursors = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch resumed = new CountDownLatch(2);
+      Assert.assertTrue(bus.subscribe(new EventSubscriber(Collections.emptyList()) {
+        @Override
+        protected void deliver(ChainEvent event) {
+          cursors.add(event.getCursor());
+          resumed.countDown();
+        }
+
+        @Override
+        protected void expired(long cursor) {
+        }
+      }, 1));
+      Assert.assertTrue(resumed.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(2L, (long) cursors.get(0));
+      Assert.assertEquals(3L, (long) cursors.get(1));
+
+      for (int i = 4; i <= 12; i++) {
+        bus.publish(solidified(i));
+      }
+      Assert.assertFalse(bus.subscribe(new EventSubscriber(Collections.emptyList()) {
+        @Override
+        protected void deliver(ChainEvent event) {
+        }
+
+        @Override
+        protected void expired(long cursor) {
+        }
+      }, 2));
+    } finally {
+      bus.shutdown();
+    }
+  }
+
+  @Test
+  public void bodiesAreReadBackOnDelivery() throws InterruptedException {
+    Transaction trx = Transaction.newBuilder().setRawData(Transaction.raw.newBuilder()
+        .addContract(Transaction.Contract.newBuilder()
+            .setType(ContractType.TransferContract)
+            .setParameter(Any.pack(TransferContract.newBuilder()
+                .setAmount(1).build()))))
+        .build();
+    BlockCapsule block = new BlockCapsule(System.currentTimeMillis(), ByteString.EMPTY, 1,
+        Collections.singletonList(trx));
+    EventBus bus = new EventBus(8, blockId -> block.getBlockId().equals(blockId) ? block : null);
+    try {
+      List<ChainEvent> events = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch delivered = new CountDownLatch(2);
+      CountDownLatch expired = new CountDownLatch(1);
+      bus.subscribeLive(new EventSubscriber(Collections.emptyList()) {
+        @Override
+        protected void deliver(ChainEvent event) {
+          events.add(event);
+          delivered.countDown();
+        }
+
+        @Override
+        protected void expired(long cursor) {
+          expired.countDown();
+        }
+      });
+      bus.publishBlockApplied(block);
+      Assert.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(block.getInstance(), events.get(0).getBlock());
+      Assert.assertEquals(trx, events.get(1).getTransaction());
+
+      // a block that can not be read back any more ends the subscription
+      bus.publishBlockApplied(new BlockCapsule(System.currentTimeMillis(), ByteString.EMPTY, 2,
+          Collections.emptyList()));
+      Assert.assertTrue(expired.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(2, events.size());
+    } finally {
+      bus.shutdown();
+    }
+  }
+}
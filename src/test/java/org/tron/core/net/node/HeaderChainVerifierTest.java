@@ -0,0 +1,192 @@
+package org.tron.core.net.node;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.crypto.ECKey;
+import org.tron.common.utils.RandomGenerator;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.db.Manager;
+import org.tron.core.exception.BadBlockException;
+import org.tron.core.exception.UnLinkedBlockException;
+import org.tron.core.net.node.HeaderChainVerifier.WitnessOrder;
+import org.tron.protos.Protocol.BlockHeader;
+
+public class HeaderChainVerifierTest {
+
+  private final ECKey witness = new ECKey();
+  private final ECKey stranger = new ECKey();
+  private final BlockCapsule genesis = new BlockCapsule(0, ByteString.copyFrom(new byte[32]), 0,
+      ByteString.EMPTY);
+  private final List<BlockCapsule> chain = new ArrayList<>();
+
+  private final List<ECKey> scheduled = new ArrayList<>();
+  private final List<BlockCapsule> scheduledChain = new ArrayList<>();
+
+  private HeaderChainVerifier verifier;
+
+  private static ByteString address(ECKey key) {
+    return ByteString.copyFrom(key.getAddress());
+  }
+
+  private static BlockCapsule signed(long num, BlockId parent, long time, ECKey key) {
+    BlockCapsule block = new BlockCapsule(num, parent.getByteString(), time, address(key));
+    block.setMerkleRoot();
+    block.sign(key.getPrivKeyBytes());
+    return block;
+  }
+
+  @Before
+  public void init() {
+    BlockId parent = genesis.getBlockId();
+    for (int i = 1; i <= 20; i++) {
+      BlockCapsule block = signed(i, parent, i * 3000L, witness);
+      chain.add(block);
+      parent = block.getBlockId();
+    }
+    verifier = new HeaderChainVerifier(Collections.singletonList(address(witness)),
+        Long.MAX_VALUE, Long.MAX_VALUE, null);
+
+    // blocks produced in turn, reshuffled like the witness controller does
+    for (int i = 0; i < 3; i++) {
+      scheduled.add(new ECKey());
+    }
+    List<ByteString> order = addresses(scheduled);
+    parent = genesis.getBlockId();
+    for (int i = 1; i <= 12; i++) {
+      long time = i * Manager.LOOP_INTERVAL;
+      ByteString producer = order.get(i % order.size());
+      BlockCapsule block = signed(i, parent, time, scheduled.stream()
+          .filter(key -> address(key).equals(producer)).findFirst().get());
+      scheduledChain.add(block);
+      parent = block.getBlockId();
+      if (i % order.size() == 0) {
+        order = new RandomGenerator<ByteString>().shuffle(new ArrayList<>(order), time);
+      }
+    }
+  }
+
+  private static List<ByteString> addresses(List<ECKey> keys) {
+    return keys.stream().map(HeaderChainVerifierTest::address).collect(Collectors.toList());
+  }
+
+  private HeaderChainVerifier scheduledVerifier(WitnessOrder order) {
+    return new HeaderChainVerifier(addresses(scheduled), Long.MAX_VALUE, Long.MAX_VALUE, order);
+  }
+
+  private WitnessOrder initialOrder() {
+    return new WitnessOrder(addresses(scheduled), addresses(scheduled), 0, 0, Long.MAX_VALUE);
+  }
+
+  private static List<BlockId> ids(List<BlockCapsule> blocks) {
+    return blocks.stream().map(BlockCapsule::getBlockId).collect(Collectors.toList());
+  }
+
+  private static List<BlockHeader> headers(List<BlockCapsule> blocks) {
+    return blocks.stream().map(block -> block.getInstance().getBlockHeader())
+        .collect(Collectors.toList());
+  }
+
+  private void verify(List<BlockId> ids, List<BlockHeader> headers) throws Exception {
+    verifier.verify(genesis.getBlockId(), 0, ids, headers);
+  }
+
+  @Test
+  public void chainFromTheWitnessesPasses() throws Exception {
+    verify(ids(chain), headers(chain));
+    // from a later parent too
+    verifier.verify(chain.get(9).getBlockId(), chain.get(9).getTimeStamp(),
+        ids(chain.subList(10, 20)), headers(chain.subList(10, 20)));
+  }
+
+  @Test(expected = UnLinkedBlockException.class)
+  public void firstHeaderMustFollowTheParent() throws Exception {
+    verifier.verify(chain.get(3).getBlockId(), chain.get(3).getTimeStamp(),
+        ids(chain.subList(5, 10)), headers(chain.subList(5, 10)));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void brokenLinkIsBad() throws Exception {
+    List<BlockCapsule> blocks = new ArrayList<>(chain.subList(0, 10));
+    blocks.set(5, signed(6, genesis.getBlockId(), 18000L, witness));
+    verify(ids(blocks), headers(blocks));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void headersMustBeTheBlocksAnnounced() throws Exception {
+    List<BlockId> ids = ids(chain);
+    ids.set(7, new BlockId(genesis.getBlockId(), 8));
+    verify(ids, headers(chain));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void missingHeadersAreBad() throws Exception {
+    verify(ids(chain), headers(chain.subList(0, 19)));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void forgedSignatureIsBad() throws Exception {
+    // names the witness but is signed by someone else
+    List<BlockCapsule> blocks = new ArrayList<>(chain.subList(0, 3));
+    BlockCapsule forged = new BlockCapsule(4, blocks.get(2).getBlockId().getByteString(), 12000L,
+        address(witness));
+    forged.setMerkleRoot();
+    forged.sign(stranger.getPrivKeyBytes());
+    blocks.add(forged);
+    verify(ids(blocks), headers(blocks));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void strangerBeforeMaintenanceIsBad() throws Exception {
+    List<BlockCapsule> blocks = new ArrayList<>(chain.subList(0, 3));
+    blocks.add(signed(4, blocks.get(2).getBlockId(), 12000L, stranger));
+    verify(ids(blocks), headers(blocks));
+  }
+
+  @Test
+  public void strangerAfterMaintenanceIsLeftToImport() throws Exception {
+    verifier = new HeaderChainVerifier(Collections.singletonList(address(witness)), 10000L,
+        Long.MAX_VALUE, null);
+    List<BlockCapsule> blocks = new ArrayList<>(chain.subList(0, 3));
+    blocks.add(signed(4, blocks.get(2).getBlockId(), 12000L, stranger));
+    verify(ids(blocks), headers(blocks));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void blocksFromTheFutureAreBad() throws Exception {
+    verifier = new HeaderChainVerifier(Collections.singletonList(address(witness)),
+        Long.MAX_VALUE, 30000L, null);
+    verify(ids(chain), headers(chain));
+  }
+
+  @Test
+  public void witnessesInTurnPass() throws Exception {
+    WitnessOrder order = scheduledVerifier(initialOrder()).verify(genesis.getBlockId(), 0,
+        ids(scheduledChain.subList(0, 5)), headers(scheduledChain.subList(0, 5)));
+    // the next batch goes on from the order after the last header
+    BlockCapsule parent = scheduledChain.get(4);
+    Assert.assertNotNull(scheduledVerifier(order).verify(parent.getBlockId(),
+        parent.getTimeStamp(), ids(scheduledChain.subList(5, 12)),
+        headers(scheduledChain.subList(5, 12))));
+  }
+
+  @Test(expected = BadBlockException.class)
+  public void witnessOutOfTurnIsBad() throws Exception {
+    List<BlockCapsule> blocks = new ArrayList<>(scheduledChain.subList(0, 6));
+    BlockCapsule inTurn = blocks.get(4);
+    ECKey other = scheduled.stream()
+        .filter(key -> !address(key).equals(inTurn.getWitnessAddress())).findFirst().get();
+    blocks.set(4, signed(5, blocks.get(3).getBlockId(), inTurn.getTimeStamp(), other));
+    blocks.set(5, signed(6, blocks.get(4).getBlockId(), blocks.get(5).getTimeStamp(),
+        scheduled.stream().filter(key -> address(key).equals(scheduledChain.get(5)
+            .getWitnessAddress())).findFirst().get()));
+    scheduledVerifier(initialOrder()).verify(genesis.getBlockId(), 0, ids(blocks),
+        headers(blocks));
+  }
+}
@@ -0,0 +1,43 @@
+package org.tron.core.net.node;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.db.Manager;
+import org.tron.core.exception.BadBlockException;
+import org.tron.protos.Protocol.Block;
+import org.tron.protos.Protocol.BlockHeader;
+
+public class NodeDelegateImplTest {
+
+  @Test
+  public void malformedBodyIsABadBlock() throws Exception {
+    Block header = Block.newBuilder().setBlockHeader(BlockHeader.newBuilder()
+        .setRawData(BlockHeader.raw.newBuilder()
+            .setNumber(1)
+            .setTimestamp(System.currentTimeMillis())
+            .setWitnessAddress(ByteString.copyFromUtf8("witness"))))
+        .build();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    header.writeTo(bytes);
+    // a transaction whose first field is cut off in the middle of its varint
+    bytes.write(new byte[]{0x0a, 0x02, 0x08, (byte) 0x80});
+    BlockCapsule block = new BlockCapsule(bytes.toByteArray());
+
+    Manager manager = mock(Manager.class);
+    try {
+      new NodeDelegateImpl(manager).handleBlock(block, false);
+      Assert.fail("a malformed block was accepted");
+    } catch (BadBlockException e) {
+      Assert.assertTrue(e.getMessage().contains("malformed"));
+    }
+    verify(manager, never()).pushBlock(any());
+  }
+}
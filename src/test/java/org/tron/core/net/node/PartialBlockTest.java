@@ -0,0 +1,131 @@
+package org.tron.core.net.node;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.utils.ByteArray;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.net.message.BlockTransactionsMessage;
+import org.tron.core.net.message.CompactBlockMessage;
+import org.tron.core.net.message.FetchBlockTransactionsMessage;
+import org.tron.core.net.message.MessageTypes;
+import org.tron.core.net.message.TronMessageFactory;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+public class PartialBlockTest {
+
+  private final TronMessageFactory factory = new TronMessageFactory();
+
+  private static TransactionCapsule transfer(long i) {
+    return new TransactionCapsule(TransferContract.newBuilder()
+        .setOwnerAddress(ByteString.copyFrom(ByteArray.fromLong(i)))
+        .setToAddress(ByteString.copyFrom(ByteArray.fromLong(i + 1)))
+        .setAmount(i + 1)
+        .build(), ContractType.TransferContract);
+  }
+
+  private static BlockCapsule block(List<TransactionCapsule> trxs) {
+    BlockCapsule block = new BlockCapsule(1, ByteString.copyFrom(new byte[32]), 3000,
+        ByteString.copyFrom(ByteArray.fromLong(7)));
+    block.addTransactions(trxs);
+    block.setMerkleRoot();
+    return block;
+  }
+
+  private static List<TransactionCapsule> transfers(int count) {
+    List<TransactionCapsule> trxs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      trxs.add(transfer(i));
+    }
+    return trxs;
+  }
+
+  private CompactBlockMessage relay(BlockCapsule block, long nonce) throws Exception {
+    CompactBlockMessage sent = new CompactBlockMessage(block, nonce);
+    return (CompactBlockMessage) factory.create(MessageTypes.COMPACT_BLOCK.asByte(),
+        sent.getData());
+  }
+
+  @Test
+  public void rebuiltFromPool() throws Exception {
+    List<TransactionCapsule> trxs = transfers(100);
+    BlockCapsule block = block(trxs);
+    CompactBlockMessage compact = relay(block, 42);
+    Assert.assertEquals(block.getBlockId(), compact.getBlockId());
+    Assert.assertTrue(compact.getData().length < block.getInstance().getBlockHeader()
+        .getSerializedSize() + 100 * CompactBlockMessage.SHORT_ID_BYTES + 16);
+
+    List<TransactionCapsule> pool = new ArrayList<>(transfers(300));
+    Collections.shuffle(pool);
+    PartialBlock partial = new PartialBlock(compact, null);
+    Assert.assertTrue(partial.fill(pool).isEmpty());
+    BlockCapsule rebuilt = partial.toBlock();
+    Assert.assertNotNull(rebuilt);
+    Assert.assertEquals(block.getBlockId(), rebuilt.getBlockId());
+    Assert.assertEquals(block.getInstance(), rebuilt.getInstance());
+  }
+
+  @Test
+  public void missingTransactionsAreFetched() throws Exception {
+    List<TransactionCapsule> trxs = transfers(50);
+    BlockCapsule block = block(trxs);
+    CompactBlockMessage compact = relay(block, 7);
+
+    List<TransactionCapsule> pool = new ArrayList<>(trxs);
+    pool.remove(40);
+    pool.remove(3);
+    PartialBlock partial = new PartialBlock(compact, null);
+    List<Integer> missing = partial.fill(pool);
+    Assert.assertEquals(Arrays.asList(3, 40), missing);
+    Assert.assertNull(partial.toBlock());
+
+    // the request and its answer as they travel
+    FetchBlockTransactionsMessage request = (FetchBlockTransactionsMessage) factory.create(
+        MessageTypes.FETCH_BLOCK_TRXS.asByte(),
+        new FetchBlockTransactionsMessage(compact.getBlockId(), missing).getData());
+    Assert.assertEquals(block.getBlockId(), request.getBlockId());
+    List<Transaction> answer = request.getIndexes().stream()
+        .map(i -> trxs.get(i).getInstance())
+        .collect(Collectors.toList());
+    BlockTransactionsMessage reply = (BlockTransactionsMessage) factory.create(
+        MessageTypes.BLOCK_TRXS.asByte(),
+        new BlockTransactionsMessage(request.getBlockId(), answer).getData());
+
+    Assert.assertTrue(partial.complete(reply.getTransactions()));
+    BlockCapsule rebuilt = partial.toBlock();
+    Assert.assertNotNull(rebuilt);
+    Assert.assertEquals(block.getInstance(), rebuilt.getInstance());
+  }
+
+  @Test
+  public void wrongAnswerIsRejected() throws Exception {
+    List<TransactionCapsule> trxs = transfers(10);
+    PartialBlock partial = new PartialBlock(relay(block(trxs), 1), null);
+    Assert.assertEquals(Collections.singletonList(9), partial.fill(trxs.subList(0, 9)));
+
+    // an unknown block is answered with nothing
+    Assert.assertFalse(partial.complete(Collections.emptyList()));
+    // a transaction not in the block does not hash to the root
+    Assert.assertTrue(partial.complete(Collections.singletonList(transfer(99).getInstance())));
+    Assert.assertNull(partial.toBlock());
+  }
+
+  @Test
+  public void shortIdsDependOnNonce() throws Exception {
+    BlockCapsule block = block(transfers(20));
+    long[] first = relay(block, 1).getShortIds();
+    long[] second = relay(block, 2).getShortIds();
+    for (int i = 0; i < first.length; i++) {
+      Assert.assertTrue(first[i] < 1L << 48);
+      Assert.assertNotEquals(first[i], second[i]);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package org.tron.core.net.node;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.common.utils.ByteArray;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.net.message.BlockMessage;
+
+public class SyncDownloaderTest {
+
+  private final List<BlockMessage> chain = new ArrayList<>();
+
+  private void chain(int length) {
+    ByteString parent = ByteString.copyFrom(new byte[32]);
+    for (int i = 1; i <= length; i++) {
+      BlockCapsule block = new BlockCapsule(i, parent, i * 3000L,
+          ByteString.copyFrom(ByteArray.fromLong(i)));
+      chain.add(new BlockMessage(block));
+      parent = block.getBlockId().getByteString();
+    }
+  }
+
+  private Set<BlockId> ids() {
+    return chain.stream().map(BlockMessage::getBlockId)
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
+  private BlockMessage block(BlockId blockId) {
+    return chain.get((int) blockId.getNum() - 1);
+  }
+
+  private static List<Long> nums(List<BlockMessage> blocks) {
+    return blocks.stream().map(msg -> msg.getBlockId().getNum()).collect(Collectors.toList());
+  }
+
+  @Test
+  public void slowPeerDoesNotHoldBackTheOthers() {
+    chain(40);
+    SyncDownloader<String> downloader = new SyncDownloader<>(40, 100, 100, 1000, 2500);
+    Map<String, Set<BlockId>> available = new HashMap<>();
+    available.put("slow", ids());
+    available.put("fast", ids());
+
+    Map<String, List<BlockId>> requests = downloader.assign(available, id -> false, 0);
+    Assert.assertEquals(SyncDownloader.INITIAL_PEER_QUOTA, requests.get("slow").size());
+    Assert.assertEquals(SyncDownloader.INITIAL_PEER_QUOTA, requests.get("fast").size());
+    // the lowest blocks are shared out first
+    Assert.assertEquals(1, Math.min(requests.get("slow").get(0).getNum(),
+        requests.get("fast").get(0).getNum()));
+
+    List<BlockMessage> imported = new ArrayList<>();
+    long now = 0;
+    while (imported.size() < chain.size() && now < 10_000) {
+      now += 100;
+      for (BlockId blockId : requests.getOrDefault("fast", new ArrayList<>())) {
+        Assert.assertTrue(downloader.received("fast", block(blockId), now));
+      }
+      List<BlockMessage> ready = downloader.pollReady();
+      imported.addAll(ready);
+      // imported blocks leave what the peers offer, as they leave their sync queues
+      ready.forEach(msg -> available.values().forEach(ids -> ids.remove(msg.getBlockId())));
+      requests = downloader.assign(available, id -> false, now);
+    }
+
+    Assert.assertEquals(chain.size(), imported.size());
+    Assert.assertEquals(nums(chain), nums(imported));
+    Assert.assertTrue(downloader.getReassigned() > 0);
+    Assert.assertTrue(now < 2000);
+    Assert.assertTrue(downloader.getRate("fast") > downloader.getRate("slow"));
+    Assert.assertTrue(downloader.isStalled("slow", now, 1000));
+    Assert.assertFalse(downloader.isStalled("fast", now, 1000));
+    Assert.assertEquals(0, downloader.getWanted());
+  }
+
+  @Test
+  public void blocksAreImportedInOrder() {
+    chain(5);
+    SyncDownloader<String> downloader = new SyncDownloader<>(10, 10, 10, 1000, 2500);
+    Map<String, Set<BlockId>> available = new HashMap<>();
+    available.put("peer", ids());
+    Assert.assertEquals(5, downloader.assign(available, id -> false, 0).get("peer").size());
+
+    Assert.assertTrue(downloader.received("peer", chain.get(2), 10));
+    Assert.assertTrue(downloader.received("peer", chain.get(1), 20));
+    Assert.assertTrue(downloader.pollReady().isEmpty());
+    Assert.assertEquals(2, downloader.getBuffered());
+
+    Assert.assertTrue(downloader.received("peer", chain.get(0), 30));
+    Assert.assertFalse(downloader.received("peer", chain.get(0), 40));
+    Assert.assertEquals(nums(chain.subList(0, 3)), nums(downloader.pollReady()));
+
+    Assert.assertTrue(downloader.received("peer", chain.get(4), 50));
+    Assert.assertTrue(downloader.pollReady().isEmpty());
+    Assert.assertTrue(downloader.received("peer", chain.get(3), 60));
+    Assert.assertEquals(nums(chain.subList(3, 5)), nums(downloader.pollReady()));
+  }
+
+  @Test
+  public void knownBlocksAndLostPeersAreSkipped() {
+    chain(10);
+    SyncDownloader<String> downloader = new SyncDownloader<>(10, 10, 10, 1000, 2500);
+    Map<String, Set<BlockId>> available = new HashMap<>();
+    available.put("a", ids());
+    Map<String, List<BlockId>> requests =
+        downloader.assign(available, id -> id.getNum() <= 4, 0);
+    Assert.assertEquals(5, requests.get("a").get(0).getNum());
+    Assert.assertEquals(6, downloader.getWanted());
+
+    // the blocks asked from a peer that went away go to the next one
+    downloader.removePeer("a");
+    available.clear();
+    available.put("b", ids());
+    requests = downloader.assign(available, id -> id.getNum() <= 4, 10);
+    Assert.assertEquals(6, requests.get("b").size());
+    Assert.assertEquals(0, downloader.getRequested("a"));
+  }
+
+  @Test
+  public void windowFollowsTheImport() {
+    chain(400);
+    SyncDownloader<String> downloader = new SyncDownloader<>(20, 200, 200, 1000, 2500);
+    Map<String, Set<BlockId>> available = new HashMap<>();
+    available.put("peer", ids());
+
+    // delivered at once and imported at once, the window grows
+    long now = 0;
+    Map<String, List<BlockId>> requests = downloader.assign(available, id -> false, now);
+    for (int round = 0; round < 6; round++) {
+      now += 10;
+      for (BlockId blockId : requests.get("peer")) {
+        downloader.received("peer", block(blockId), now);
+      }
+      downloader.pollReady().forEach(msg -> available.get("peer").remove(msg.getBlockId()));
+      requests = downloader.assign(available, id -> false, now);
+    }
+    int grown = downloader.getWindow();
+    Assert.assertTrue(grown > 20);
+
+    // everything but the lowest block arrives, the window shrinks back
+    BlockId lowest = requests.get("peer").get(0);
+    for (BlockId blockId : requests.get("peer").subList(1, requests.get("peer").size())) {
+      downloader.received("peer", block(blockId), now);
+    }
+    Assert.assertTrue(downloader.pollReady().isEmpty());
+    Assert.assertTrue(downloader.getWindow() < grown);
+    Assert.assertTrue(downloader.received("peer", block(lowest), now));
+    Assert.assertFalse(downloader.pollReady().isEmpty());
+  }
+}
@@ -0,0 +1,55 @@
+package org.tron.witness;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tron.core.witness.BlockProductionCondition;
+import org.tron.core.witness.ProductionScheduler;
+import org.tron.core.witness.ProductionScheduler.Producer;
+import org.tron.core.witness.WitnessController;
+
+public class ProductionSchedulerTest {
+
+  // short slots so a few of them pass quickly, still longer than PREPARE_AHEAD
+  private static final long INTERVAL = 300;
+
+  private long base;
+
+  @Test(timeout = 10_000)
+  public void everySlotIsHandledOnce() throws InterruptedException {
+    WitnessController controller = mock(WitnessController.class);
+    when(controller.getSlotAtTime(anyLong())).thenAnswer(invocation -> {
+      long when = invocation.getArgument(0);
+      return when < base + INTERVAL ? 0L : (when - base) / INTERVAL;
+    });
+    when(controller.getSlotTime(anyLong())).thenAnswer(invocation -> {
+      long slot = invocation.getArgument(0);
+      return slot == 0 ? System.currentTimeMillis() : base + slot * INTERVAL;
+    });
+    when(controller.getScheduledWitness(anyLong())).thenReturn(ByteString.EMPTY);
+    Producer producer = mock(Producer.class);
+
+    ProductionScheduler scheduler = new ProductionScheduler(controller, Collections.emptySet(),
+        producer);
+    Thread thread = new Thread(scheduler);
+    base = System.currentTimeMillis();
+    thread.start();
+    Thread.sleep(5 * INTERVAL + INTERVAL / 2);
+    scheduler.stop();
+    thread.interrupt();
+    thread.join();
+
+    // the slots from 300 to 1800 ms, each looked at PREPARE_AHEAD before it starts, once
+    long handled = scheduler.getStats().getCount(BlockProductionCondition.NOT_MY_TURN);
+    Assert.assertTrue("handled " + handled, handled >= 4 && handled <= 7);
+    verify(producer, never()).prepare(anyLong(), any(), anyLong());
+  }
+}
@@ -0,0 +1,34 @@
+package org.tron.witness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Map;
+import org.junit.Test;
+import org.tron.core.witness.BlockProductionCondition;
+import org.tron.core.witness.ProductionStats;
+
+public class ProductionStatsTest {
+
+  @Test
+  public void missedSlotsAndLatency() {
+    ProductionStats stats = new ProductionStats();
+    stats.recordOutcome(BlockProductionCondition.NOT_MY_TURN);
+    stats.recordOutcome(BlockProductionCondition.LOW_PARTICIPATION);
+    stats.recordOutcome(BlockProductionCondition.LOW_PARTICIPATION);
+    stats.recordOutcome(BlockProductionCondition.LAG);
+    stats.recordProduced(1000L, 1010L, 1015L);
+    stats.recordProduced(6000L, 6030L, 6040L);
+
+    Map<BlockProductionCondition, Long> missed = stats.getMissedSlots();
+    assertEquals(2, missed.size());
+    assertEquals(2L, (long) missed.get(BlockProductionCondition.LOW_PARTICIPATION));
+    assertEquals(1L, (long) missed.get(BlockProductionCondition.LAG));
+    assertFalse(missed.containsKey(BlockProductionCondition.NOT_MY_TURN));
+
+    assertEquals(2, stats.getCount(BlockProductionCondition.PRODUCED));
+    assertEquals(20, stats.getProduceLatency().getAverage());
+    assertEquals(30, stats.getProduceLatency().getMax());
+    assertEquals(40, stats.getBroadcastLatency().getLast());
+  }
+}
@@ -0,0 +1,61 @@
+package org.tron.witness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.tron.core.capsule.WitnessCapsule;
+import org.tron.core.witness.SolidifiedBlockTracker;
+
+public class SolidifiedBlockTrackerTest {
+
+  private static ByteString address(int i) {
+    return ByteString.copyFrom(new byte[]{(byte) i});
+  }
+
+  @Test
+  public void matchesSortedPercentile() {
+    List<WitnessCapsule> witnesses = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      WitnessCapsule witness = new WitnessCapsule(address(i));
+      witness.setLatestBlockNum(i);
+      witnesses.add(witness);
+    }
+    SolidifiedBlockTracker tracker = new SolidifiedBlockTracker();
+    tracker.reset(witnesses);
+    List<Long> solidified = new ArrayList<>();
+    tracker.addListener(solidified::add);
+
+    // 10 witnesses, the 7th lowest number is solid
+    assertEquals(6, tracker.getSolidifiedBlockNum());
+    tracker.publish();
+
+    tracker.update(address(0), 20);
+    tracker.update(address(1), 21);
+    assertEquals(8, tracker.getSolidifiedBlockNum());
+    tracker.publish();
+    tracker.publish();
+
+    // moving a number down keeps the array sorted
+    tracker.update(address(9), 3);
+    assertEquals(7, tracker.getSolidifiedBlockNum());
+    tracker.publish();
+
+    assertFalse(tracker.update(address(42), 100));
+    assertEquals(2, solidified.size());
+    assertEquals(6L, (long) solidified.get(0));
+    assertEquals(8L, (long) solidified.get(1));
+  }
+
+  @Test
+  public void tooFewWitnesses() {
+    SolidifiedBlockTracker tracker = new SolidifiedBlockTracker();
+    List<WitnessCapsule> witnesses = new ArrayList<>();
+    witnesses.add(new WitnessCapsule(address(1)));
+    tracker.reset(witnesses);
+    assertEquals(-1, tracker.getSolidifiedBlockNum());
+  }
+}
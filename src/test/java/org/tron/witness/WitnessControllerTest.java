@@ -1,6 +1,8 @@
 package org.tron.witness;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
@@ -10,6 +12,7 @@ import org.junit.Test;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.witness.WitnessController;
+import org.tron.core.witness.WitnessSchedule;
 
 public class WitnessControllerTest {
 
@@ -56,5 +59,48 @@ public class WitnessControllerTest {
 
   }
 
+  @Test
+  public void scheduleIsSharedUntilInvalidated() {
+    BlockCapsule[] head = {new BlockCapsule(1L, blank, 1522847890000L, blank)};
+    WitnessController controller = new WitnessController() {
+
+      BlockCapsule genesisBlock = new BlockCapsule(0L, blank, 1522847871000L, blank);
+
+      @Override
+      public BlockCapsule getHead() {
+        return head[0];
+      }
+
+      @Override
+      public BlockCapsule getGenesisBlock() {
+        return genesisBlock;
+      }
 
+      @Override
+      public boolean lastHeadBlockIsMaintenance() {
+        return false;
+      }
+    };
+    ByteString a = ByteString.copyFrom("1", Charset.defaultCharset());
+    ByteString b = ByteString.copyFrom("2", Charset.defaultCharset());
+    controller.setShuffledWitnessStates(Lists.newArrayList(Arrays.asList(
+        new WitnessCapsule(a), new WitnessCapsule(b))));
+
+    WitnessSchedule schedule = controller.getSchedule();
+    assertSame(schedule, controller.getSchedule());
+    assertEquals(a, schedule.getScheduledWitness(1));
+    assertEquals(b, schedule.getScheduledWitness(2));
+
+    // a new head is only picked up once the schedule is invalidated
+    head[0] = new BlockCapsule(2L, blank, 1522847893000L, blank);
+    assertSame(schedule, controller.getSchedule());
+    controller.invalidateSchedule();
+    WitnessSchedule next = controller.getSchedule();
+    assertNotSame(schedule, next);
+    assertEquals(4, next.getHeadSlot());
+    assertEquals(1522847896000L, next.getSlotTime(1));
+    assertEquals(b, next.getScheduledWitness(1));
+    // the old schedule is unchanged
+    assertEquals(a, schedule.getScheduledWitness(1));
+  }
 }